@@ -13,6 +13,7 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.appcompat.widget.Toolbar;
 import androidx.core.util.Pair;
 import androidx.fragment.app.Fragment;
@@ -32,12 +33,15 @@ import org.greenrobot.eventbus.ThreadMode;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.MainActivity;
 import de.danoeh.antennapod.ui.common.ConfirmationDialog;
 import de.danoeh.antennapod.ui.MenuItemUtils;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 import de.danoeh.antennapod.event.EpisodeDownloadEvent;
 import de.danoeh.antennapod.event.FeedItemEvent;
 import de.danoeh.antennapod.event.FeedListUpdateEvent;
@@ -48,6 +52,7 @@ import de.danoeh.antennapod.event.playback.PlaybackPositionEvent;
 import de.danoeh.antennapod.ui.swipeactions.SwipeActions;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedItemFilter;
+import de.danoeh.antennapod.storage.database.DBReader;
 import de.danoeh.antennapod.ui.view.EmptyViewHandler;
 import de.danoeh.antennapod.ui.view.LiftOnScrollListener;
 import io.reactivex.rxjava3.core.Completable;
@@ -64,6 +69,7 @@ public abstract class EpisodesListFragment extends Fragment
     public static final String TAG = "EpisodesListFragment";
     private static final String KEY_UP_ARROW = "up_arrow";
     protected static final int EPISODES_PER_PAGE = 150;
+    private static final int VISIBLE_ITEMS_MARGIN = 20;
     protected int page = 1;
     protected boolean isLoadingMore = false;
     protected boolean hasMoreItems = false;
@@ -80,6 +86,8 @@ public abstract class EpisodesListFragment extends Fragment
     @NonNull
     protected List<FeedItem> episodes = new ArrayList<>();
     protected Disposable disposable;
+    private Disposable changesDisposable;
+    private final Set<Long> changedItemIds = new HashSet<>();
     protected TextView txtvInformation;
 
     @Override
@@ -108,6 +116,9 @@ public abstract class EpisodesListFragment extends Fragment
         if (disposable != null) {
             disposable.dispose();
         }
+        if (changesDisposable != null) {
+            changesDisposable.dispose();
+        }
     }
 
     @Override
@@ -244,12 +255,14 @@ public abstract class EpisodesListFragment extends Fragment
                 () -> {
                     handler.handleAction(listAdapter.getSelectedItems());
                     if (listAdapter.shouldSelectLazyLoadedItems()) {
-                        int applyPage = page + 1;
+                        FeedItem after = episodes.isEmpty() ? null : episodes.get(episodes.size() - 1);
                         List<FeedItem> nextPage;
                         do {
-                            nextPage = loadMoreData(applyPage);
+                            nextPage = loadMoreData(after, EPISODES_PER_PAGE);
                             handler.handleAction(nextPage);
-                            applyPage++;
+                            if (!nextPage.isEmpty()) {
+                                after = nextPage.get(nextPage.size() - 1);
+                            }
                         } while (nextPage.size() == EPISODES_PER_PAGE);
                     }
                 })
@@ -281,7 +294,8 @@ public abstract class EpisodesListFragment extends Fragment
         isLoadingMore = true;
         listAdapter.setDummyViews(1);
         listAdapter.notifyItemInserted(listAdapter.getItemCount() - 1);
-        disposable = Observable.fromCallable(() -> loadMoreData(page))
+        final FeedItem after = episodes.isEmpty() ? null : episodes.get(episodes.size() - 1);
+        disposable = Observable.fromCallable(() -> loadMoreData(after, EPISODES_PER_PAGE))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(
@@ -383,7 +397,7 @@ public abstract class EpisodesListFragment extends Fragment
 
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onPlayerStatusChanged(PlayerStatusEvent event) {
-        loadItems();
+        loadVisibleItems();
     }
 
     @Subscribe(threadMode = ThreadMode.MAIN)
@@ -396,6 +410,41 @@ public abstract class EpisodesListFragment extends Fragment
         loadItems();
     }
 
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onEpisodesChanged(EpisodeChangeEvent event) {
+        if (!event.getInsertedItemIds().isEmpty()) {
+            // New episodes can be anywhere in the sort order
+            loadItems();
+            return;
+        }
+        for (long id : event.getDeletedItemIds()) {
+            int pos = FeedItemEvent.indexOfItemWithId(episodes, id);
+            if (pos >= 0) {
+                episodes.remove(pos);
+                listAdapter.notifyItemRemoved(pos);
+            }
+        }
+        for (long id : event.getUpdatedItemIds()) {
+            if (FeedItemEvent.indexOfItemWithId(episodes, id) >= 0) {
+                changedItemIds.add(id);
+            }
+        }
+        if (changedItemIds.isEmpty()) {
+            return;
+        }
+        if (changesDisposable != null) {
+            changesDisposable.dispose(); // Its items are loaded again together with the new ones
+        }
+        List<Long> loadedIds = new ArrayList<>(changedItemIds);
+        changesDisposable = Observable.fromCallable(() -> DBReader.getFeedItems(loadedIds))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(items -> {
+                    changedItemIds.clear();
+                    onEventMainThread(FeedItemEvent.updated(items));
+                }, error -> Log.e(TAG, Log.getStackTraceString(error)));
+    }
+
     protected void loadItems() {
         if (disposable != null) {
             disposable.dispose();
@@ -423,11 +472,52 @@ public abstract class EpisodesListFragment extends Fragment
                         });
     }
 
+    /**
+     * Reloads only the episodes that are currently visible, instead of all pages that were loaded.
+     * The episodes below them are removed from the list and loaded again when scrolling down.
+     */
+    protected void loadVisibleItems() {
+        int firstVisible = recyclerView.getScrollPosition().first;
+        if (firstVisible == RecyclerView.NO_POSITION || firstVisible >= episodes.size()) {
+            loadItems();
+            return;
+        }
+        if (disposable != null) {
+            disposable.dispose();
+        }
+        final FeedItem after = firstVisible > 0 ? episodes.get(firstVisible - 1) : null;
+        final int limit = recyclerView.getChildCount() + VISIBLE_ITEMS_MARGIN;
+        disposable = Observable.fromCallable(() -> new Pair<>(loadMoreData(after, limit), loadTotalItemCount()))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        data -> {
+                            int keep = after == null ? 0 : FeedItemEvent.indexOfItemWithId(episodes, after.getId()) + 1;
+                            if (after != null && keep == 0) {
+                                loadItems(); // The list changed in the meantime
+                                return;
+                            }
+                            List<FeedItem> newEpisodes = new ArrayList<>(episodes.subList(0, keep));
+                            newEpisodes.addAll(data.first);
+                            episodes = newEpisodes;
+                            hasMoreItems = data.first.size() == limit;
+                            page = Math.max(1, (episodes.size() + EPISODES_PER_PAGE - 1) / EPISODES_PER_PAGE);
+                            listAdapter.updateItems(episodes);
+                            listAdapter.setTotalNumberOfItems(data.second);
+                            updateToolbar();
+                        }, error -> Log.e(TAG, Log.getStackTraceString(error)));
+    }
+
     @NonNull
     protected abstract List<FeedItem> loadData();
 
+    /**
+     * Loads the episodes that come after the given one.
+     *
+     * @param after The last episode that is already loaded, or null to start at the beginning.
+     */
     @NonNull
-    protected abstract List<FeedItem> loadMoreData(int page);
+    protected abstract List<FeedItem> loadMoreData(@Nullable FeedItem after, int limit);
 
     protected abstract int loadTotalItemCount();
 
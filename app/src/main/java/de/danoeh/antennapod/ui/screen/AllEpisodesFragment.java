@@ -62,9 +62,8 @@ public class AllEpisodesFragment extends EpisodesListFragment {
 
     @NonNull
     @Override
-    protected List<FeedItem> loadMoreData(int page) {
-        return DBReader.getEpisodes((page - 1) * EPISODES_PER_PAGE, EPISODES_PER_PAGE, getFilter(),
-                UserPreferences.getAllEpisodesSortOrder());
+    protected List<FeedItem> loadMoreData(@Nullable FeedItem after, int limit) {
+        return DBReader.getEpisodesAfter(after, limit, getFilter(), UserPreferences.getAllEpisodesSortOrder());
     }
 
     @Override
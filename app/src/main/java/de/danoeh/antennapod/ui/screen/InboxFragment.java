@@ -102,8 +102,8 @@ public class InboxFragment extends EpisodesListFragment {
 
     @NonNull
     @Override
-    protected List<FeedItem> loadMoreData(int page) {
-        return DBReader.getEpisodes((page - 1) * EPISODES_PER_PAGE, EPISODES_PER_PAGE,
+    protected List<FeedItem> loadMoreData(@Nullable FeedItem after, int limit) {
+        return DBReader.getEpisodesAfter(after, limit,
                 new FeedItemFilter(FeedItemFilter.NEW), UserPreferences.getInboxSortedOrder());
     }
 
@@ -7,6 +7,7 @@ import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewGroup;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.core.util.Pair;
 
 import de.danoeh.antennapod.R;
@@ -108,9 +109,8 @@ public class PlaybackHistoryFragment extends EpisodesListFragment {
 
     @NonNull
     @Override
-    protected List<FeedItem> loadMoreData(int page) {
-        return DBReader.getEpisodes((page - 1) * EPISODES_PER_PAGE, EPISODES_PER_PAGE, FILTER_HISTORY,
-                SortOrder.COMPLETION_DATE_NEW_OLD);
+    protected List<FeedItem> loadMoreData(@Nullable FeedItem after, int limit) {
+        return DBReader.getEpisodesAfter(after, limit, FILTER_HISTORY, SortOrder.COMPLETION_DATE_NEW_OLD);
     }
 
     @Override
@@ -57,6 +57,7 @@ import org.greenrobot.eventbus.ThreadMode;
 import java.util.Collections;
 import java.util.List;
 import de.danoeh.antennapod.ui.screen.subscriptions.FeedMenuHandler;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 import de.danoeh.antennapod.event.FeedListUpdateEvent;
 
 
@@ -70,6 +71,8 @@ public class SearchFragment extends Fragment implements EpisodeItemListAdapter.O
     private static final String ARG_FEED_NAME = "feedName";
     private static final String ARG_ARCHIVED = "archived";
     private static final int SEARCH_DEBOUNCE_INTERVAL = 1500;
+    private static final int EPISODES_PER_PAGE = 150;
+    private static final int MAX_FEED_RESULTS = 100;
 
     private EpisodeItemListAdapter adapter;
     private HorizontalFeedListAdapter adapterFeeds;
@@ -85,6 +88,9 @@ public class SearchFragment extends Fragment implements EpisodeItemListAdapter.O
     private Handler automaticSearchDebouncer;
     private long lastQueryChange = 0;
     private boolean isOtherViewInFoucus = false;
+    private int page = 1;
+    private boolean isLoadingMore = false;
+    private boolean hasMoreItems = false;
 
 
     /**
@@ -224,6 +230,16 @@ public class SearchFragment extends Fragment implements EpisodeItemListAdapter.O
                     Keyboard.hide(getActivity());
                 }
             }
+
+            @Override
+            public void onScrolled(@NonNull RecyclerView view, int deltaX, int deltaY) {
+                super.onScrolled(view, deltaX, deltaY);
+                if (!isLoadingMore && hasMoreItems && SearchFragment.this.recyclerView.isScrolledToBottom()) {
+                    /* The end of the list has been reached. Load more results. */
+                    page++;
+                    loadMoreResults();
+                }
+            }
         });
         floatingSelectMenu.inflate(R.menu.episodes_apply_action_speeddial);
         floatingSelectMenu.setOnMenuItemClickListener(menuItem -> {
@@ -319,6 +335,11 @@ public class SearchFragment extends Fragment implements EpisodeItemListAdapter.O
         search();
     }
 
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onEpisodesChanged(EpisodeChangeEvent event) {
+        search();
+    }
+
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onUnreadItemsChanged(UnreadItemsUpdateEvent event) {
         search();
@@ -404,6 +425,9 @@ public class SearchFragment extends Fragment implements EpisodeItemListAdapter.O
         updateChipVisibility();
         adapterFeeds.setEndButton(R.string.search_online, isSearchingFeed ? null : this::searchOnline);
 
+        page = 1;
+        isLoadingMore = false;
+        hasMoreItems = false;
         String query = searchView.getQuery().toString();
         if (query.isEmpty()) {
             emptyViewHandler.setTitle(R.string.type_to_search);
@@ -414,7 +438,7 @@ public class SearchFragment extends Fragment implements EpisodeItemListAdapter.O
             // Search within a feed
             adapterFeeds.updateData(Collections.emptyList());
         } else {
-            disposableFeeds = Observable.fromCallable(() -> DBReader.searchFeeds(query, state))
+            disposableFeeds = Observable.fromCallable(() -> DBReader.searchFeeds(query, state, 0, MAX_FEED_RESULTS))
                     .subscribeOn(Schedulers.io())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(results -> {
@@ -423,17 +447,51 @@ public class SearchFragment extends Fragment implements EpisodeItemListAdapter.O
                         emptyViewHandler.setTitle(getString(R.string.no_results_for_query, query));
                     }, error -> Log.e(TAG, Log.getStackTraceString(error)));
         }
-        disposableEpisodes = Observable.fromCallable(() -> DBReader.searchFeedItems(feed, query, state))
+        disposableEpisodes = Observable.fromCallable(
+                        () -> DBReader.searchFeedItems(feed, query, state, 0, EPISODES_PER_PAGE))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(results -> {
                     progressBar.setVisibility(View.GONE);
                     this.results = results;
+                    hasMoreItems = results.size() == EPISODES_PER_PAGE;
                     adapter.updateItems(results);
                     emptyViewHandler.setTitle(getString(R.string.no_results_for_query, searchView.getQuery()));
                 }, error -> Log.e(TAG, Log.getStackTraceString(error)));
     }
 
+    private void loadMoreResults() {
+        if (disposableEpisodes != null) {
+            disposableEpisodes.dispose();
+        }
+        isLoadingMore = true;
+        final long feed = getArguments().getLong(ARG_FEED, 0);
+        final int state = getArguments().getBoolean(ARG_ARCHIVED, false) ? Feed.STATE_ARCHIVED : Feed.STATE_SUBSCRIBED;
+        final String query = searchView.getQuery().toString();
+        final int offset = (page - 1) * EPISODES_PER_PAGE;
+        adapter.setDummyViews(1);
+        adapter.notifyItemInserted(adapter.getItemCount() - 1);
+        disposableEpisodes = Observable.fromCallable(
+                        () -> DBReader.searchFeedItems(feed, query, state, offset, EPISODES_PER_PAGE))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(data -> {
+                    hasMoreItems = data.size() == EPISODES_PER_PAGE;
+                    results.addAll(data);
+                    adapter.setDummyViews(0);
+                    adapter.updateItems(results);
+                    if (adapter.shouldSelectLazyLoadedItems()) {
+                        adapter.setSelected(results.size() - data.size(), results.size(), true);
+                    }
+                }, error -> {
+                    adapter.setDummyViews(0);
+                    Log.e(TAG, Log.getStackTraceString(error));
+                }, () -> {
+                    // Make sure to not always load 2 pages at once
+                    recyclerView.post(() -> isLoadingMore = false);
+                });
+    }
+
     private void searchOnline() {
         if (adapter != null && adapter.inActionMode()) {
             adapter.endSelectMode();
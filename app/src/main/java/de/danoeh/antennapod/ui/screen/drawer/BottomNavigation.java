@@ -14,6 +14,7 @@ import com.google.android.material.bottomnavigation.BottomNavigationView;
 import com.google.android.material.internal.ViewUtils;
 import com.google.android.material.navigation.NavigationBarView;
 import de.danoeh.antennapod.R;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 import de.danoeh.antennapod.event.FeedListUpdateEvent;
 import de.danoeh.antennapod.event.UnreadItemsUpdateEvent;
 import de.danoeh.antennapod.model.feed.FeedItemFilter;
@@ -171,4 +172,9 @@ public class BottomNavigation {
     public void onFeedListChanged(FeedListUpdateEvent event) {
         updateBottomNavigationBadgeIfNeeded();
     }
+
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onEpisodesChanged(EpisodeChangeEvent event) {
+        updateBottomNavigationBadgeIfNeeded();
+    }
 }
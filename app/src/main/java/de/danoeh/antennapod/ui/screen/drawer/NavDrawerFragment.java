@@ -59,6 +59,7 @@ import de.danoeh.antennapod.storage.database.NavDrawerData;
 import de.danoeh.antennapod.ui.screen.feed.RemoveFeedDialog;
 import de.danoeh.antennapod.ui.screen.feed.RenameFeedDialog;
 import de.danoeh.antennapod.ui.screen.subscriptions.SubscriptionsFilterDialog;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 import de.danoeh.antennapod.event.FeedListUpdateEvent;
 import de.danoeh.antennapod.event.QueueEvent;
 import de.danoeh.antennapod.event.UnreadItemsUpdateEvent;
@@ -261,6 +262,26 @@ public class NavDrawerFragment extends Fragment implements SharedPreferences.OnS
         loadData();
     }
 
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onEpisodesChanged(EpisodeChangeEvent event) {
+        if (navDrawerData == null) {
+            loadData();
+            return;
+        }
+        NavDrawerData previous = navDrawerData;
+        Set<Long> changedFeedIds = new HashSet<>(event.getFeedIds());
+        disposable = Observable.fromCallable(
+                () -> {
+                    NavDrawerData data = DBReader.getNavDrawerData(UserPreferences.getSubscriptionsFilter(),
+                            UserPreferences.getFeedOrder(), UserPreferences.getFeedCounterSetting(),
+                            Feed.STATE_SUBSCRIBED, previous, changedFeedIds);
+                    return new Pair<>(data, makeFlatDrawerData(data.tags, data.feedCounters));
+                })
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onDataLoaded, error -> Log.e(TAG, Log.getStackTraceString(error)));
+    }
+
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onQueueChanged(QueueEvent event) {
         Log.d(TAG, "onQueueChanged(" + event + ")");
@@ -433,16 +454,17 @@ public class NavDrawerFragment extends Fragment implements SharedPreferences.OnS
                 })
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
-                .subscribe(
-                        result -> {
-                            navDrawerData = result.first;
-                            flatItemList = result.second;
-                            navAdapter.notifyDataSetChanged();
-                            progressBar.setVisibility(View.GONE); // Stays hidden once there is something in the list
-                        }, error -> {
-                            Log.e(TAG, Log.getStackTraceString(error));
-                            progressBar.setVisibility(View.GONE);
-                        });
+                .subscribe(this::onDataLoaded, error -> {
+                    Log.e(TAG, Log.getStackTraceString(error));
+                    progressBar.setVisibility(View.GONE);
+                });
+    }
+
+    private void onDataLoaded(Pair<NavDrawerData, List<DrawerItem>> result) {
+        navDrawerData = result.first;
+        flatItemList = result.second;
+        navAdapter.notifyDataSetChanged();
+        progressBar.setVisibility(View.GONE); // Stays hidden once there is something in the list
     }
 
     private List<DrawerItem> makeFlatDrawerData(List<NavDrawerData.TagItem> tags,
@@ -27,6 +27,7 @@ import com.google.android.material.appbar.MaterialToolbar;
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.MainActivity;
 import de.danoeh.antennapod.databinding.FeedItemListFragmentBinding;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 import de.danoeh.antennapod.event.EpisodeDownloadEvent;
 import de.danoeh.antennapod.event.FavoritesEvent;
 import de.danoeh.antennapod.event.FeedEvent;
@@ -78,6 +79,7 @@ import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
 import org.greenrobot.eventbus.ThreadMode;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
@@ -92,6 +94,7 @@ public class FeedItemlistFragment extends Fragment implements AdapterView.OnItem
     private static final String ARGUMENT_FEED_ID = "argument.de.danoeh.antennapod.feed_id";
     private static final String KEY_UP_ARROW = "up_arrow";
     protected static final int EPISODES_PER_PAGE = 150;
+    private static final int VISIBLE_ITEMS_MARGIN = 20;
     protected int page = 1;
     protected boolean isLoadingMore = false;
     protected boolean hasMoreItems = false;
@@ -219,22 +222,19 @@ public class FeedItemlistFragment extends Fragment implements AdapterView.OnItem
 
     private void handleActionForAllSelectedItems(EpisodeMultiSelectActionHandler handler) {
         handler.handleAction(adapter.getSelectedItems());
-        if (adapter.shouldSelectLazyLoadedItems()) {
-            int applyPage = page + 1;
+        if (adapter.shouldSelectLazyLoadedItems() && feed != null && !feed.getItems().isEmpty()) {
+            FeedItem after = feed.getItems().get(feed.getItems().size() - 1);
             List<FeedItem> nextPage;
             do {
-                nextPage = loadMoreData(applyPage);
+                nextPage = DBReader.getFeedItemsAfter(feed, true, after, EPISODES_PER_PAGE);
                 handler.handleAction(nextPage);
-                applyPage++;
+                if (!nextPage.isEmpty()) {
+                    after = nextPage.get(nextPage.size() - 1);
+                }
             } while (nextPage.size() == EPISODES_PER_PAGE);
         }
     }
 
-    private List<FeedItem> loadMoreData(int page) {
-        Feed feed = DBReader.getFeed(feedID, true, (page - 1) * EPISODES_PER_PAGE, EPISODES_PER_PAGE);
-        return feed != null ? feed.getItems() : Collections.emptyList();
-    }
-
     private void updateRecyclerPadding() {
         boolean hasMorePages = feed != null && feed.isPaged() && feed.getNextPageLink() != null;
         boolean pageLoaderVisible = viewBinding.recyclerView.isScrolledToBottom() && hasMorePages;
@@ -442,12 +442,12 @@ public class FeedItemlistFragment extends Fragment implements AdapterView.OnItem
 
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void favoritesChanged(FavoritesEvent event) {
-        updateUi();
+        loadVisibleItems();
     }
 
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onQueueChanged(QueueEvent event) {
-        updateUi();
+        loadVisibleItems();
     }
 
     @Override
@@ -471,7 +471,7 @@ public class FeedItemlistFragment extends Fragment implements AdapterView.OnItem
 
     @Subscribe(threadMode = ThreadMode.MAIN)
     public void onPlayerStatusChanged(PlayerStatusEvent event) {
-        updateUi();
+        loadVisibleItems();
     }
 
     @Subscribe(threadMode = ThreadMode.MAIN)
@@ -486,6 +486,13 @@ public class FeedItemlistFragment extends Fragment implements AdapterView.OnItem
         }
     }
 
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onEpisodesChanged(EpisodeChangeEvent event) {
+        if (feed != null && event.containsFeed(feed.getId())) {
+            updateUi();
+        }
+    }
+
     @Subscribe(sticky = true, threadMode = ThreadMode.MAIN)
     public void onEventMainThread(FeedUpdateRunningEvent event) {
         nextPageLoader.setLoadingState(event.isFeedUpdateRunning);
@@ -693,6 +700,46 @@ public class FeedItemlistFragment extends Fragment implements AdapterView.OnItem
                     });
     }
 
+    /**
+     * Reloads only the episodes that are currently visible, instead of all pages that were loaded.
+     * The episodes below them are removed from the list and loaded again when scrolling down.
+     */
+    private void loadVisibleItems() {
+        int firstVisible = viewBinding.recyclerView.getScrollPosition().first;
+        if (feed == null || firstVisible == RecyclerView.NO_POSITION || firstVisible >= feed.getItems().size()) {
+            loadItems();
+            return;
+        }
+        if (disposable != null) {
+            disposable.dispose();
+        }
+        final Feed currentFeed = feed;
+        final FeedItem after = firstVisible > 0 ? currentFeed.getItems().get(firstVisible - 1) : null;
+        final int limit = viewBinding.recyclerView.getChildCount() + VISIBLE_ITEMS_MARGIN;
+        disposable = Observable.fromCallable(() -> new Pair<>(
+                        DBReader.getFeedItemsAfter(currentFeed, true, after, limit),
+                        DBReader.getFeedEpisodeCount(currentFeed.getId(), currentFeed.getItemFilter())))
+                .subscribeOn(Schedulers.io())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                        result -> {
+                            List<FeedItem> items = currentFeed.getItems();
+                            int keep = after == null ? 0 : FeedItemEvent.indexOfItemWithId(items, after.getId()) + 1;
+                            if (feed != currentFeed || (after != null && keep == 0)) {
+                                loadItems(); // The list changed in the meantime
+                                return;
+                            }
+                            List<FeedItem> newItems = new ArrayList<>(items.subList(0, keep));
+                            newItems.addAll(result.first);
+                            feed.setItems(newItems);
+                            hasMoreItems = result.first.size() == limit;
+                            page = Math.max(1, (newItems.size() + EPISODES_PER_PAGE - 1) / EPISODES_PER_PAGE);
+                            adapter.updateItems(newItems);
+                            adapter.setTotalNumberOfItems(result.second);
+                            updateToolbar();
+                        }, error -> Log.e(TAG, Log.getStackTraceString(error)));
+    }
+
     private void loadMoreItems() {
         if (disposable != null) {
             disposable.dispose();
@@ -700,7 +747,11 @@ public class FeedItemlistFragment extends Fragment implements AdapterView.OnItem
         isLoadingMore = true;
         adapter.setDummyViews(1);
         adapter.notifyItemInserted(adapter.getItemCount() - 1);
-        disposable = Observable.fromCallable(() -> loadMoreData(page))
+        final Feed currentFeed = feed;
+        final FeedItem after = currentFeed.getItems().isEmpty()
+                ? null : currentFeed.getItems().get(currentFeed.getItems().size() - 1);
+        disposable = Observable.fromCallable(
+                () -> DBReader.getFeedItemsAfter(currentFeed, true, after, EPISODES_PER_PAGE))
                 .subscribeOn(Schedulers.io())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(
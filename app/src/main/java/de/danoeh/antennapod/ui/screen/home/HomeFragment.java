@@ -15,6 +15,7 @@ import androidx.fragment.app.FragmentContainerView;
 import de.danoeh.antennapod.R;
 import de.danoeh.antennapod.activity.MainActivity;
 import de.danoeh.antennapod.databinding.HomeFragmentBinding;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 import de.danoeh.antennapod.event.FeedListUpdateEvent;
 import de.danoeh.antennapod.event.FeedUpdateRunningEvent;
 import de.danoeh.antennapod.model.feed.FeedItemFilter;
@@ -159,6 +160,11 @@ public class HomeFragment extends Fragment implements Toolbar.OnMenuItemClickLis
         updateWelcomeScreenVisibility();
     }
 
+    @Subscribe(threadMode = ThreadMode.MAIN)
+    public void onEpisodesChanged(EpisodeChangeEvent event) {
+        updateWelcomeScreenVisibility();
+    }
+
     private void updateWelcomeScreenVisibility() {
         if (disposable != null) {
             disposable.dispose();
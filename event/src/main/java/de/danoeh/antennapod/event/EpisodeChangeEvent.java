@@ -0,0 +1,107 @@
+package de.danoeh.antennapod.event;
+
+import androidx.annotation.NonNull;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Describes which episodes were inserted, updated or deleted, and which feeds they belong to.
+ * Changes of many database writes are merged into one event, so that subscribers can update
+ * the affected rows instead of reloading everything after every single feed.
+ */
+public class EpisodeChangeEvent {
+    private final Set<Long> feedIds = new HashSet<>();
+    // Item ID -> feed ID. Each item is contained in at most one of the maps.
+    private final Map<Long, Long> inserted = new HashMap<>();
+    private final Map<Long, Long> updated = new HashMap<>();
+    private final Map<Long, Long> deleted = new HashMap<>();
+
+    /**
+     * Marks the properties of a feed as changed, even if none of its episodes changed.
+     */
+    public void feedChanged(long feedId) {
+        feedIds.add(feedId);
+    }
+
+    public void itemInserted(long feedId, long itemId) {
+        feedIds.add(feedId);
+        if (deleted.remove(itemId) != null) {
+            // Deleted and stored again: subscribers still know the item
+            updated.put(itemId, feedId);
+        } else {
+            updated.remove(itemId);
+            inserted.put(itemId, feedId);
+        }
+    }
+
+    public void itemUpdated(long feedId, long itemId) {
+        feedIds.add(feedId);
+        if (!inserted.containsKey(itemId) && !deleted.containsKey(itemId)) {
+            updated.put(itemId, feedId);
+        }
+    }
+
+    public void itemDeleted(long feedId, long itemId) {
+        feedIds.add(feedId);
+        if (inserted.remove(itemId) == null) {
+            // Only report deletions of items that subscribers can know about
+            updated.remove(itemId);
+            deleted.put(itemId, feedId);
+        }
+    }
+
+    /**
+     * Adds the changes of a later event to this one.
+     */
+    public void merge(@NonNull EpisodeChangeEvent other) {
+        feedIds.addAll(other.feedIds);
+        for (Map.Entry<Long, Long> entry : other.deleted.entrySet()) {
+            itemDeleted(entry.getValue(), entry.getKey());
+        }
+        for (Map.Entry<Long, Long> entry : other.inserted.entrySet()) {
+            itemInserted(entry.getValue(), entry.getKey());
+        }
+        for (Map.Entry<Long, Long> entry : other.updated.entrySet()) {
+            itemUpdated(entry.getValue(), entry.getKey());
+        }
+    }
+
+    public boolean isEmpty() {
+        return feedIds.isEmpty();
+    }
+
+    @NonNull
+    public Set<Long> getFeedIds() {
+        return Collections.unmodifiableSet(feedIds);
+    }
+
+    public boolean containsFeed(long feedId) {
+        return feedIds.contains(feedId);
+    }
+
+    @NonNull
+    public Set<Long> getInsertedItemIds() {
+        return Collections.unmodifiableSet(inserted.keySet());
+    }
+
+    @NonNull
+    public Set<Long> getUpdatedItemIds() {
+        return Collections.unmodifiableSet(updated.keySet());
+    }
+
+    @NonNull
+    public Set<Long> getDeletedItemIds() {
+        return Collections.unmodifiableSet(deleted.keySet());
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "EpisodeChangeEvent{feeds=" + feedIds.size() + ", inserted=" + inserted.size()
+                + ", updated=" + updated.size() + ", deleted=" + deleted.size() + "}";
+    }
+}
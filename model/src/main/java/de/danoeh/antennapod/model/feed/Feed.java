@@ -56,10 +56,26 @@ public class Feed {
     private List<FeedItem> items;
 
     /**
-     * String that identifies the last update (adopted from Last-Modified or ETag header).
+     * Last-Modified header of the last update. Older versions stored the ETag header here.
      */
     private String lastModified;
+    /**
+     * ETag header of the last update.
+     */
+    private String etag;
+    /**
+     * Hash of the feed content that was parsed by the last update.
+     */
+    private String contentHash;
     private long lastRefreshAttempt;
+    /**
+     * Time when the feed should be refreshed next by automatic refreshes, see FeedRefreshScheduler.
+     */
+    private long nextRefreshDue;
+    /**
+     * Number of refreshes in a row that did not find new episodes.
+     */
+    private int unchangedRefreshes;
 
     private ArrayList<FeedFunding> fundingList;
     /**
@@ -423,6 +439,38 @@ public class Feed {
         this.lastRefreshAttempt = lastRefreshAttempt;
     }
 
+    public long getNextRefreshDue() {
+        return nextRefreshDue;
+    }
+
+    public void setNextRefreshDue(long nextRefreshDue) {
+        this.nextRefreshDue = nextRefreshDue;
+    }
+
+    public int getUnchangedRefreshes() {
+        return unchangedRefreshes;
+    }
+
+    public void setUnchangedRefreshes(int unchangedRefreshes) {
+        this.unchangedRefreshes = unchangedRefreshes;
+    }
+
+    public String getEtag() {
+        return etag;
+    }
+
+    public void setEtag(String etag) {
+        this.etag = etag;
+    }
+
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    public void setContentHash(String contentHash) {
+        this.contentHash = contentHash;
+    }
+
     public int getPageNr() {
         return pageNr;
     }
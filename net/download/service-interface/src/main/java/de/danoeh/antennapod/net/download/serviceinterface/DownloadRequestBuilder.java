@@ -14,6 +14,7 @@ public class DownloadRequestBuilder {
     private String username;
     private String password;
     private String lastModified;
+    private String etag;
     private final long feedfileId;
     private final int feedfileType;
     private final Bundle arguments = new Bundle();
@@ -48,6 +49,7 @@ public class DownloadRequestBuilder {
     public void setForce(boolean force) {
         if (force) {
             lastModified = null;
+            etag = null;
         }
     }
 
@@ -56,6 +58,11 @@ public class DownloadRequestBuilder {
         return this;
     }
 
+    public DownloadRequestBuilder etag(String etag) {
+        this.etag = etag;
+        return this;
+    }
+
     public DownloadRequestBuilder withAuthentication(String username, String password) {
         this.username = username;
         this.password = password;
@@ -64,6 +71,6 @@ public class DownloadRequestBuilder {
 
     public DownloadRequest build() {
         return new DownloadRequest(destination, source, title, feedfileId, feedfileType,
-                lastModified, username, password, false, arguments, initiatedByUser);
+                lastModified, username, password, false, arguments, initiatedByUser).setEtag(etag);
     }
 }
\ No newline at end of file
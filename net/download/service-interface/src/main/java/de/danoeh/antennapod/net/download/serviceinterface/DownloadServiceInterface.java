@@ -14,6 +14,19 @@ public abstract class DownloadServiceInterface {
     public static final String WORK_DATA_PROGRESS = "progress";
     public static final String WORK_DATA_MEDIA_ID = "media_id";
     public static final String WORK_DATA_WAS_QUEUED = "was_queued";
+    public static final String WORK_DATA_PRIORITY = "priority";
+    /**
+     * Started by the user, for example by tapping the download button.
+     */
+    public static final int PRIORITY_USER = 0;
+    /**
+     * Episode in the queue. Downloaded in queue order.
+     */
+    public static final int PRIORITY_QUEUE = 1;
+    /**
+     * Started by automatic download or other background work.
+     */
+    public static final int PRIORITY_AUTO = 2;
     private static DownloadServiceInterface impl;
     private Map<String, DownloadStatus> currentDownloads = new HashMap<>();
 
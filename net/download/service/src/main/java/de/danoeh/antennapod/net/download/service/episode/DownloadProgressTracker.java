@@ -0,0 +1,246 @@
+package de.danoeh.antennapod.net.download.service.episode;
+
+import android.Manifest;
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.text.format.DateUtils;
+import android.text.format.Formatter;
+
+import androidx.annotation.NonNull;
+import androidx.core.app.NotificationCompat;
+import androidx.core.content.ContextCompat;
+import androidx.work.Data;
+import androidx.work.ListenableWorker;
+
+import de.danoeh.antennapod.model.download.DownloadRequest;
+import de.danoeh.antennapod.net.download.service.R;
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface;
+import de.danoeh.antennapod.ui.appstartintent.MainActivityStarter;
+import de.danoeh.antennapod.ui.notifications.NotificationUtils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the progress of all running episode downloads on a single thread. Progress is only passed to
+ * WorkManager when it changed, and one notification shows all downloads with their speed and remaining time.
+ */
+public class DownloadProgressTracker {
+    private static final long SAMPLE_INTERVAL_MILLIS = 1000;
+    /**
+     * The notification is updated at least this often while the percentage does not change,
+     * so that the speed and remaining time of stalled downloads are updated.
+     */
+    private static final long MAX_NOTIFICATION_INTERVAL_MILLIS = 5000;
+    private static final double SPEED_SMOOTHING = 0.3;
+    private static DownloadProgressTracker instance;
+
+    private final Context context;
+    private final Map<Long, Download> downloads = new LinkedHashMap<>();
+    private ScheduledExecutorService executor = null;
+    private String lastNotificationText = null;
+
+    private static class Download {
+        final ListenableWorker worker;
+        final DownloadRequest request;
+        final String title;
+        long lastSoFar;
+        long lastSampleTime;
+        double bytesPerSecond = -1;
+        int publishedPercent = -1;
+        long shownBytesPerSecond = -1;
+        long shownRemainingSeconds = -1;
+        long shownTime = 0;
+
+        Download(ListenableWorker worker, DownloadRequest request, String title, long now) {
+            this.worker = worker;
+            this.request = request;
+            this.title = title;
+            this.lastSoFar = request.getSoFar();
+            this.lastSampleTime = now;
+        }
+
+        long getRemainingSeconds() {
+            if (bytesPerSecond <= 0 || request.getSize() <= 0) {
+                return -1;
+            }
+            return (long) (Math.max(0, request.getSize() - request.getSoFar()) / bytesPerSecond);
+        }
+    }
+
+    private DownloadProgressTracker(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    public static synchronized DownloadProgressTracker getInstance(Context context) {
+        if (instance == null) {
+            instance = new DownloadProgressTracker(context);
+        }
+        return instance;
+    }
+
+    /**
+     * Starts tracking a download. Its progress is published as progress of the given worker.
+     */
+    public void register(ListenableWorker worker, DownloadRequest request, String title) {
+        Download download;
+        synchronized (this) {
+            download = new Download(worker, request, title, now());
+            downloads.put(request.getFeedfileId(), download);
+            if (executor == null) {
+                executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "DownloadProgressTracker");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+                executor.scheduleWithFixedDelay(this::sample,
+                        SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            download.publishedPercent = request.getProgressPercent();
+            download.shownTime = download.lastSampleTime;
+        }
+        publish(download);
+        updateNotification();
+    }
+
+    public synchronized void unregister(long feedfileId) {
+        if (downloads.remove(feedfileId) == null) {
+            return;
+        }
+        if (!downloads.isEmpty()) {
+            updateNotification();
+            return;
+        }
+        executor.shutdownNow();
+        executor = null;
+        lastNotificationText = null;
+        NotificationManager nm = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        nm.cancel(R.id.notification_downloading);
+    }
+
+    private void sample() {
+        List<Download> changed = new ArrayList<>();
+        boolean notificationOutdated = false;
+        synchronized (this) {
+            long now = now();
+            for (Download download : downloads.values()) {
+                long soFar = download.request.getSoFar();
+                long elapsed = now - download.lastSampleTime;
+                if (elapsed > 0) {
+                    double current = Math.max(0, soFar - download.lastSoFar) * 1000.0 / elapsed;
+                    download.bytesPerSecond = download.bytesPerSecond < 0 ? current
+                            : SPEED_SMOOTHING * current + (1 - SPEED_SMOOTHING) * download.bytesPerSecond;
+                }
+                download.lastSoFar = soFar;
+                download.lastSampleTime = now;
+                int percent = download.request.getProgressPercent();
+                boolean percentChanged = percent != download.publishedPercent;
+                if (percentChanged) {
+                    download.publishedPercent = percent;
+                    changed.add(download);
+                }
+                if (percentChanged || now - download.shownTime >= MAX_NOTIFICATION_INTERVAL_MILLIS) {
+                    download.shownBytesPerSecond = (long) download.bytesPerSecond;
+                    download.shownRemainingSeconds = download.getRemainingSeconds();
+                    download.shownTime = now;
+                    notificationOutdated = true;
+                }
+            }
+        }
+        for (Download download : changed) {
+            publish(download);
+        }
+        if (notificationOutdated) {
+            updateNotification();
+        }
+    }
+
+    private void publish(Download download) {
+        Data data;
+        synchronized (this) {
+            data = new Data.Builder()
+                    .putInt(DownloadServiceInterface.WORK_DATA_PROGRESS, download.publishedPercent)
+                    .build();
+        }
+        // Not waiting for the result, so that a slow database does not delay the other downloads
+        download.worker.setProgressAsync(data);
+    }
+
+    private synchronized void updateNotification() {
+        String text = getNotificationText();
+        if (downloads.isEmpty() || text.equals(lastNotificationText)) {
+            return;
+        }
+        lastNotificationText = text;
+        NotificationManager nm = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS)
+                == PackageManager.PERMISSION_GRANTED) {
+            nm.notify(R.id.notification_downloading, buildNotification());
+        }
+    }
+
+    private String getNotificationText() {
+        StringBuilder text = new StringBuilder();
+        for (Download download : downloads.values()) {
+            text.append(String.format(Locale.getDefault(), "%s (%d%%", download.title, download.publishedPercent));
+            if (download.shownBytesPerSecond > 0 && download.shownRemainingSeconds >= 0) {
+                text.append(", ").append(context.getString(R.string.download_notification_speed,
+                        Formatter.formatShortFileSize(context, download.shownBytesPerSecond),
+                        DateUtils.formatElapsedTime(download.shownRemainingSeconds)));
+            }
+            text.append(")\n");
+        }
+        return text.toString().trim();
+    }
+
+    /**
+     * Notification that shows the progress of all downloads.
+     */
+    @NonNull
+    public synchronized Notification buildNotification() {
+        String bigText = getNotificationText();
+        String contentText;
+        if (downloads.size() == 1) {
+            contentText = bigText;
+        } else {
+            contentText = context.getResources().getQuantityString(R.plurals.downloads_left,
+                    downloads.size(), downloads.size());
+        }
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context,
+                NotificationUtils.CHANNEL_ID_DOWNLOADING);
+        builder.setTicker(context.getString(R.string.download_notification_title_episodes))
+                .setContentTitle(context.getString(R.string.download_notification_title_episodes))
+                .setContentText(contentText)
+                .setStyle(new NotificationCompat.BigTextStyle().bigText(bigText))
+                .setContentIntent(getDownloadsIntent())
+                .setAutoCancel(false)
+                .setOngoing(true)
+                .setWhen(0)
+                .setOnlyAlertOnce(true)
+                .setShowWhen(false)
+                .setSmallIcon(R.drawable.ic_notification_sync)
+                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
+        return builder.build();
+    }
+
+    private PendingIntent getDownloadsIntent() {
+        Intent intent = new MainActivityStarter(context).withFragmentLoaded("DownloadsFragment").getIntent();
+        return PendingIntent.getActivity(context, R.id.pending_intent_download_service_notification, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | (Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0));
+    }
+
+    private static long now() {
+        return System.nanoTime() / 1_000_000L;
+    }
+}
@@ -0,0 +1,331 @@
+package de.danoeh.antennapod.net.download.service.episode;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import de.danoeh.antennapod.net.download.service.feed.remote.BandwidthLimiter;
+import de.danoeh.antennapod.net.download.service.feed.remote.ConnectionLimiter;
+import de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which episode downloads run at the same time. WorkManager starts the download workers in no
+ * particular order, so each worker asks the scheduler before transferring anything.
+ * Downloads started by the user run right away. Other downloads wait for a free slot, episodes in the queue
+ * first (in queue order), then automatic downloads. Only one worker waits at a time. Workers that are not
+ * next in line give their thread back to WorkManager and are scheduled again a bit later.
+ */
+public class DownloadScheduler {
+    private static final String TAG = "DownloadScheduler";
+    static final int MAX_DOWNLOADS_PER_HOST = 2;
+    /**
+     * Segmented downloads open several connections. They count against this limit as well.
+     */
+    static final int MAX_CONNECTIONS_PER_HOST = 4;
+    /**
+     * Downloads that were enqueued but did not ask for a slot within this time do not hold back other downloads,
+     * for example because WorkManager is waiting for a network connection.
+     */
+    static final long ANNOUNCEMENT_TIMEOUT_MILLIS = 60_000;
+    private static final long MAX_WAIT_MILLIS = 30_000;
+    private static DownloadScheduler instance;
+
+    /**
+     * Result of {@link #acquire}.
+     */
+    public enum Decision {
+        /** The download may start now. */
+        START,
+        /** Other downloads come first, the worker should try again later. */
+        DEFER,
+        /** The download was removed while waiting and must not be started or scheduled again. */
+        CANCELLED
+    }
+
+    private static final Comparator<Entry> RANK = (a, b) -> {
+        if (a.priority != b.priority) {
+            return Integer.compare(a.priority, b.priority);
+        }
+        if (a.queuePosition != b.queuePosition) {
+            return Integer.compare(a.queuePosition, b.queuePosition);
+        }
+        return Long.compare(a.sequence, b.sequence);
+    };
+
+    private final long maxWaitMillis;
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final BandwidthLimiter bandwidthLimiter = new BandwidthLimiter();
+    private int maxParallelDownloads = 3;
+    private long nextSequence = 0;
+
+    private static class Entry {
+        final long mediaId;
+        final long sequence;
+        int priority;
+        int queuePosition = Integer.MAX_VALUE;
+        @Nullable
+        String host = null;
+        long announcedAt;
+        boolean waiting = false;
+        boolean running = false;
+        boolean deferred = false;
+        int extraConnections = 0;
+
+        Entry(long mediaId, long sequence, int priority, long announcedAt) {
+            this.mediaId = mediaId;
+            this.sequence = sequence;
+            this.priority = priority;
+            this.announcedAt = announcedAt;
+        }
+    }
+
+    public static synchronized DownloadScheduler getInstance() {
+        if (instance == null) {
+            instance = new DownloadScheduler(MAX_WAIT_MILLIS);
+        }
+        return instance;
+    }
+
+    DownloadScheduler(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    public synchronized void setMaxParallelDownloads(int maxParallelDownloads) {
+        this.maxParallelDownloads = Math.max(1, maxParallelDownloads);
+        notifyAll();
+    }
+
+    /**
+     * Shared by all episode downloads, so that the speed limit applies to their combined speed.
+     */
+    public BandwidthLimiter getBandwidthLimiter() {
+        return bandwidthLimiter;
+    }
+
+    /**
+     * Hands out the additional connections of a segmented download. Downloads started by the user
+     * start without waiting, so they might not get any.
+     */
+    public ConnectionLimiter getConnectionLimiter(long mediaId) {
+        return new ConnectionLimiter() {
+            @Override
+            public int acquireExtraConnections(int requested) {
+                return DownloadScheduler.this.acquireExtraConnections(mediaId, requested);
+            }
+
+            @Override
+            public void releaseExtraConnections(int count) {
+                DownloadScheduler.this.releaseExtraConnections(mediaId, count);
+            }
+        };
+    }
+
+    /**
+     * One connection is kept free if another download from the same host is waiting for a slot.
+     *
+     * @return Number of granted connections
+     */
+    synchronized int acquireExtraConnections(long mediaId, int requested) {
+        Entry entry = entries.get(mediaId);
+        if (entry == null || !entry.running || entry.host == null) {
+            return 0;
+        }
+        int available = MAX_CONNECTIONS_PER_HOST - getConnectionsOnHost(entry.host);
+        for (Entry other : entries.values()) {
+            if (!other.running && !other.deferred && entry.host.equals(other.host)) {
+                available--;
+                break;
+            }
+        }
+        int granted = Math.max(0, Math.min(requested, available));
+        entry.extraConnections += granted;
+        return granted;
+    }
+
+    synchronized void releaseExtraConnections(long mediaId, int count) {
+        Entry entry = entries.get(mediaId);
+        if (entry != null && count > 0) {
+            entry.extraConnections = Math.max(0, entry.extraConnections - count);
+            notifyAll();
+        }
+    }
+
+    /**
+     * Tells the scheduler that a download was enqueued, so that downloads with a lower priority
+     * do not take the slot before the worker of this one is started.
+     */
+    public synchronized void announce(long mediaId, int priority) {
+        Entry entry = entries.get(mediaId);
+        if (entry == null) {
+            entries.put(mediaId, new Entry(mediaId, nextSequence++, priority, now()));
+            return;
+        }
+        entry.priority = Math.min(entry.priority, priority);
+        if (!entry.running && !entry.waiting) {
+            entry.announcedAt = now();
+            entry.deferred = false;
+        }
+        notifyAll();
+    }
+
+    /**
+     * Waits until the download may start.
+     *
+     * @param queuePosition Position of the episode in the queue, or -1 if it is not queued
+     * @return Whether the download may start, should be tried again later, or was cancelled
+     */
+    public synchronized Decision acquire(long mediaId, int priority, int queuePosition,
+                                        @Nullable String host) throws InterruptedException {
+        Entry entry = entries.get(mediaId);
+        if (entry == null) {
+            entry = new Entry(mediaId, nextSequence++, priority, now());
+            entries.put(mediaId, entry);
+        }
+        entry.priority = Math.min(entry.priority, priority);
+        if (queuePosition >= 0 && entry.priority > DownloadServiceInterface.PRIORITY_QUEUE) {
+            entry.priority = DownloadServiceInterface.PRIORITY_QUEUE;
+        }
+        entry.queuePosition = queuePosition >= 0 ? queuePosition : Integer.MAX_VALUE;
+        entry.host = host;
+        entry.deferred = false;
+        entry.waiting = true;
+        notifyAll(); // Waiting downloads that come after this one give up their thread
+        long deadline = now() + maxWaitMillis;
+        try {
+            while (true) {
+                if (entries.get(mediaId) != entry) {
+                    return Decision.CANCELLED;
+                }
+                removeStaleEntries();
+                if (canStart(entry)) {
+                    entry.running = true;
+                    Log.d(TAG, "Starting download of media " + mediaId);
+                    return Decision.START;
+                }
+                long remaining = deadline - now();
+                if (remaining <= 0 || hasBetterWaitingEntry(entry)) {
+                    entry.deferred = true;
+                    entry.announcedAt = now();
+                    Log.d(TAG, "Deferring download of media " + mediaId);
+                    return Decision.DEFER;
+                }
+                wait(remaining);
+            }
+        } finally {
+            entry.waiting = false;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Removes a download that finished or was cancelled, so that the next one can start.
+     */
+    public synchronized void remove(long mediaId) {
+        if (entries.remove(mediaId) != null) {
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return Media IDs of the running downloads, followed by the waiting ones in the order they will be started
+     */
+    synchronized List<Long> getScheduledMediaIds() {
+        removeStaleEntries();
+        List<Entry> running = new ArrayList<>();
+        List<Entry> pending = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            (entry.running ? running : pending).add(entry);
+        }
+        Collections.sort(running, RANK);
+        Collections.sort(pending, RANK);
+        List<Long> result = new ArrayList<>();
+        for (Entry entry : running) {
+            result.add(entry.mediaId);
+        }
+        for (Entry entry : pending) {
+            result.add(entry.mediaId);
+        }
+        return result;
+    }
+
+    private boolean canStart(Entry entry) {
+        if (entry.priority == DownloadServiceInterface.PRIORITY_USER) {
+            return true;
+        }
+        int running = 0;
+        for (Entry other : entries.values()) {
+            if (other.running) {
+                running++;
+            }
+        }
+        if (running >= maxParallelDownloads || isBlockedByHost(entry)) {
+            return false;
+        }
+        int betterPending = 0;
+        for (Entry other : entries.values()) {
+            if (other != entry && !other.running && !other.deferred && !isBlockedByHost(other)
+                    && RANK.compare(other, entry) < 0) {
+                betterPending++;
+            }
+        }
+        return betterPending < maxParallelDownloads - running;
+    }
+
+    private boolean isBlockedByHost(Entry entry) {
+        if (entry.host == null) {
+            return false;
+        }
+        int runningOnHost = 0;
+        for (Entry other : entries.values()) {
+            if (other.running && entry.host.equals(other.host)) {
+                runningOnHost++;
+            }
+        }
+        return runningOnHost >= MAX_DOWNLOADS_PER_HOST || getConnectionsOnHost(entry.host) >= MAX_CONNECTIONS_PER_HOST;
+    }
+
+    private int getConnectionsOnHost(String host) {
+        int connections = 0;
+        for (Entry other : entries.values()) {
+            if (other.running && host.equals(other.host)) {
+                connections += 1 + other.extraConnections;
+            }
+        }
+        return connections;
+    }
+
+    /**
+     * Only the waiting download that is next in line keeps its thread.
+     */
+    private boolean hasBetterWaitingEntry(Entry entry) {
+        for (Entry other : entries.values()) {
+            if (other != entry && other.waiting && RANK.compare(other, entry) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void removeStaleEntries() {
+        long now = now();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (!entry.running && !entry.waiting && now - entry.announcedAt > ANNOUNCEMENT_TIMEOUT_MILLIS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    long now() {
+        return System.nanoTime() / 1_000_000L;
+    }
+}
@@ -1,12 +1,12 @@
 package de.danoeh.antennapod.net.download.service.episode;
 
 import android.Manifest;
-import android.app.Notification;
 import android.app.NotificationManager;
 import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.net.wifi.WifiManager;
 import android.os.Build;
 import android.util.Log;
@@ -14,12 +14,16 @@ import androidx.annotation.NonNull;
 import androidx.core.app.NotificationCompat;
 import androidx.core.content.ContextCompat;
 import androidx.work.Data;
+import androidx.work.ExistingWorkPolicy;
 import androidx.work.ForegroundInfo;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.WorkManager;
 import androidx.work.Worker;
 import androidx.work.WorkerParameters;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import de.danoeh.antennapod.net.download.service.R;
+import de.danoeh.antennapod.net.download.service.feed.DownloadServiceInterfaceImpl;
 import de.danoeh.antennapod.net.download.service.feed.remote.DefaultDownloaderFactory;
 import de.danoeh.antennapod.net.download.service.feed.remote.Downloader;
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequestCreator;
@@ -31,6 +35,7 @@ import de.danoeh.antennapod.model.download.DownloadResult;
 import de.danoeh.antennapod.model.feed.FeedMedia;
 import de.danoeh.antennapod.model.download.DownloadRequest;
 import de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface;
+import de.danoeh.antennapod.storage.preferences.UserPreferences;
 import de.danoeh.antennapod.ui.appstartintent.MainActivityStarter;
 import de.danoeh.antennapod.ui.notifications.NotificationUtils;
 import org.apache.commons.io.FileUtils;
@@ -38,14 +43,18 @@ import org.greenrobot.eventbus.EventBus;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 public class EpisodeDownloadWorker extends Worker {
     private static final String TAG = "EpisodeDownloadWorker";
-    private static final Map<String, Integer> notificationProgress = new HashMap<>();
+    private static final long DEFER_DELAY_MILLIS = 10_000;
+    /**
+     * Below {@link DownloadScheduler#ANNOUNCEMENT_TIMEOUT_MILLIS}, so that deferred downloads keep their place.
+     */
+    private static final long MAX_DEFER_DELAY_MILLIS = 40_000;
+    private static final String WORK_DATA_QUEUE_POSITION = "queue_position";
+    private static final String WORK_DATA_DEFER_COUNT = "defer_count";
+    private static final int QUEUE_POSITION_UNKNOWN = Integer.MIN_VALUE;
 
     private Downloader downloader = null;
 
@@ -62,37 +71,40 @@ public class EpisodeDownloadWorker extends Worker {
             return Result.failure();
         }
 
-        DownloadRequest request = DownloadRequestCreator.create(media).build();
-        Thread progressUpdaterThread = new Thread() {
-            @Override
-            public void run() {
-                while (true) {
-                    try {
-                        synchronized (notificationProgress) {
-                            if (isInterrupted()) {
-                                return;
-                            }
-                            notificationProgress.put(media.getEpisodeTitle(), request.getProgressPercent());
-                        }
-                        setProgressAsync(
-                                new Data.Builder()
-                                    .putInt(DownloadServiceInterface.WORK_DATA_PROGRESS, request.getProgressPercent())
-                                    .build())
-                                .get();
-                        NotificationManager nm = (NotificationManager) getApplicationContext()
-                                .getSystemService(Context.NOTIFICATION_SERVICE);
-                        if (ContextCompat.checkSelfPermission(getApplicationContext(),
-                                Manifest.permission.POST_NOTIFICATIONS) == PackageManager.PERMISSION_GRANTED) {
-                            nm.notify(R.id.notification_downloading, generateProgressNotification());
-                        }
-                        Thread.sleep(1000);
-                    } catch (InterruptedException | ExecutionException e) {
-                        return;
-                    }
-                }
+        DownloadScheduler scheduler = DownloadScheduler.getInstance();
+        scheduler.setMaxParallelDownloads(UserPreferences.getMaxParallelDownloads());
+        scheduler.getBandwidthLimiter().setRate(UserPreferences.getDownloadSpeedLimit() * 1024L);
+        int priority = getInputData().getInt(DownloadServiceInterface.WORK_DATA_PRIORITY,
+                DownloadServiceInterface.PRIORITY_AUTO);
+        int queuePosition = getInputData().getInt(WORK_DATA_QUEUE_POSITION, QUEUE_POSITION_UNKNOWN);
+        if (queuePosition == QUEUE_POSITION_UNKNOWN) {
+            queuePosition = DBReader.getQueueIDList().indexOf(media.getItemId());
+        }
+        try {
+            DownloadScheduler.Decision decision = scheduler.acquire(mediaId, priority, queuePosition,
+                    Uri.parse(media.getDownloadUrl()).getHost());
+            if (decision == DownloadScheduler.Decision.DEFER && !isStopped()) {
+                deferDownload(media, queuePosition);
             }
-        };
-        progressUpdaterThread.start();
+            if (decision != DownloadScheduler.Decision.START) {
+                return Result.success();
+            }
+        } catch (InterruptedException e) {
+            scheduler.remove(mediaId);
+            return Result.retry();
+        }
+
+        try {
+            return downloadWithProgress(media);
+        } finally {
+            scheduler.remove(mediaId);
+        }
+    }
+
+    private Result downloadWithProgress(FeedMedia media) {
+        DownloadRequest request = DownloadRequestCreator.create(media).build();
+        DownloadProgressTracker progressTracker = DownloadProgressTracker.getInstance(getApplicationContext());
+        progressTracker.register(this, request, media.getEpisodeTitle());
         Result result;
         try {
             result = performDownload(media, request);
@@ -101,22 +113,9 @@ public class EpisodeDownloadWorker extends Worker {
             result = Result.failure();
         }
         if (result.equals(Result.failure()) && downloader != null) {
-            FileUtils.deleteQuietly(new File(downloader.getDownloadRequest().getDestination()));
-        }
-        progressUpdaterThread.interrupt();
-        try {
-            progressUpdaterThread.join();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
-        synchronized (notificationProgress) {
-            notificationProgress.remove(media.getEpisodeTitle());
-            if (notificationProgress.isEmpty()) {
-                NotificationManager nm = (NotificationManager) getApplicationContext()
-                        .getSystemService(Context.NOTIFICATION_SERVICE);
-                nm.cancel(R.id.notification_downloading);
-            }
+            deletePartialDownload(downloader.getDownloadRequest());
         }
+        progressTracker.unregister(request.getFeedfileId());
         Log.d(TAG, "Worker for " + media.getDownloadUrl() + " returned.");
         return result;
     }
@@ -127,13 +126,42 @@ public class EpisodeDownloadWorker extends Worker {
         if (downloader != null) {
             downloader.cancel();
         }
+        DownloadScheduler.getInstance().remove(getInputData().getLong(DownloadServiceInterface.WORK_DATA_MEDIA_ID, 0));
+    }
+
+    /**
+     * Gives the thread back to WorkManager while other downloads come first. Appending to the unique work
+     * of this download keeps it in the list of downloads and makes sure it is not started twice.
+     * The queue position is passed on, so that deferred runs do not need to load the queue again.
+     * Downloads that are deferred again wait longer, so that a long list of waiting downloads
+     * does not keep WorkManager busy.
+     */
+    private void deferDownload(FeedMedia media, int queuePosition) {
+        int deferCount = getInputData().getInt(WORK_DATA_DEFER_COUNT, 0);
+        OneTimeWorkRequest.Builder workRequest = new OneTimeWorkRequest.Builder(EpisodeDownloadWorker.class)
+                .setInitialDelay(getDeferDelayMillis(deferCount), TimeUnit.MILLISECONDS)
+                .setConstraints(DownloadServiceInterfaceImpl.getConstraints())
+                .setInputData(new Data.Builder()
+                        .putAll(getInputData())
+                        .putInt(WORK_DATA_QUEUE_POSITION, queuePosition)
+                        .putInt(WORK_DATA_DEFER_COUNT, deferCount + 1)
+                        .build());
+        for (String tag : getTags()) {
+            workRequest.addTag(tag);
+        }
+        WorkManager.getInstance(getApplicationContext()).enqueueUniqueWork(media.getDownloadUrl(),
+                ExistingWorkPolicy.APPEND_OR_REPLACE, workRequest.build());
+    }
+
+    static long getDeferDelayMillis(int deferCount) {
+        return Math.min(DEFER_DELAY_MILLIS << Math.min(deferCount, 8), MAX_DEFER_DELAY_MILLIS);
     }
 
     @NonNull
     @Override
     public ListenableFuture<ForegroundInfo> getForegroundInfoAsync() {
-        return Futures.immediateFuture(
-                new ForegroundInfo(R.id.notification_downloading, generateProgressNotification()));
+        return Futures.immediateFuture(new ForegroundInfo(R.id.notification_downloading,
+                DownloadProgressTracker.getInstance(getApplicationContext()).buildNotification()));
     }
 
     private Result performDownload(FeedMedia media, DownloadRequest request) {
@@ -160,6 +188,8 @@ public class EpisodeDownloadWorker extends Worker {
             Log.d(TAG, "Unable to create downloader");
             return Result.failure();
         }
+        downloader.setBandwidthLimiter(DownloadScheduler.getInstance().getBandwidthLimiter());
+        downloader.setConnectionLimiter(DownloadScheduler.getInstance().getConnectionLimiter(media.getId()));
 
         WifiManager wifiManager = (WifiManager) getApplicationContext().getSystemService(Context.WIFI_SERVICE);
         WifiManager.WifiLock wifiLock = null;
@@ -199,7 +229,7 @@ public class EpisodeDownloadWorker extends Worker {
         if (status.getReason() == DownloadError.ERROR_HTTP_DATA_ERROR
                 && Integer.parseInt(status.getReasonDetailed()) == 416) {
             Log.d(TAG, "Requested invalid range, restarting download from the beginning");
-            FileUtils.deleteQuietly(new File(downloader.getDownloadRequest().getDestination()));
+            deletePartialDownload(downloader.getDownloadRequest());
             sendMessage(request.getTitle(), false);
             return retry3times();
         }
@@ -218,6 +248,15 @@ public class EpisodeDownloadWorker extends Worker {
         return retry3times();
     }
 
+    /**
+     * Deletes the partially downloaded file and the progress of its segments, if it was downloaded
+     * over several connections.
+     */
+    private static void deletePartialDownload(DownloadRequest request) {
+        FileUtils.deleteQuietly(new File(request.getDestination()));
+        FileUtils.deleteQuietly(new File(request.getDestination() + DownloadRequest.SEGMENT_MAP_SUFFIX));
+    }
+
     private Result retry3times() {
         if (isLastRunAttempt()) {
             sendErrorNotification(downloader.getDownloadRequest().getTitle());
@@ -249,12 +288,6 @@ public class EpisodeDownloadWorker extends Worker {
                 PendingIntent.FLAG_UPDATE_CURRENT | (Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0));
     }
 
-    private PendingIntent getDownloadsIntent(Context context) {
-        Intent intent = new MainActivityStarter(context).withFragmentLoaded("DownloadsFragment").getIntent();
-        return PendingIntent.getActivity(context, R.id.pending_intent_download_service_notification, intent,
-                PendingIntent.FLAG_UPDATE_CURRENT | (Build.VERSION.SDK_INT >= 23 ? PendingIntent.FLAG_IMMUTABLE : 0));
-    }
-
     private void sendErrorNotification(String title) {
         if (EventBus.getDefault().hasSubscriberForEvent(MessageEvent.class)) {
             sendMessage(title, false);
@@ -277,38 +310,4 @@ public class EpisodeDownloadWorker extends Worker {
             nm.notify(R.id.notification_download_report, builder.build());
         }
     }
-
-    private Notification generateProgressNotification() {
-        StringBuilder bigTextB = new StringBuilder();
-        Map<String, Integer> progressCopy;
-        synchronized (notificationProgress) {
-            progressCopy = new HashMap<>(notificationProgress);
-        }
-        for (Map.Entry<String, Integer> entry : progressCopy.entrySet()) {
-            bigTextB.append(String.format(Locale.getDefault(), "%s (%d%%)\n", entry.getKey(), entry.getValue()));
-        }
-        String bigText = bigTextB.toString().trim();
-        String contentText;
-        if (progressCopy.size() == 1) {
-            contentText = bigText;
-        } else {
-            contentText = getApplicationContext().getResources().getQuantityString(R.plurals.downloads_left,
-                    progressCopy.size(), progressCopy.size());
-        }
-        NotificationCompat.Builder builder = new NotificationCompat.Builder(getApplicationContext(),
-                NotificationUtils.CHANNEL_ID_DOWNLOADING);
-        builder.setTicker(getApplicationContext().getString(R.string.download_notification_title_episodes))
-                .setContentTitle(getApplicationContext().getString(R.string.download_notification_title_episodes))
-                .setContentText(contentText)
-                .setStyle(new NotificationCompat.BigTextStyle().bigText(bigText))
-                .setContentIntent(getDownloadsIntent(getApplicationContext()))
-                .setAutoCancel(false)
-                .setOngoing(true)
-                .setWhen(0)
-                .setOnlyAlertOnce(true)
-                .setShowWhen(false)
-                .setSmallIcon(R.drawable.ic_notification_sync)
-                .setVisibility(NotificationCompat.VISIBILITY_PUBLIC);
-        return builder.build();
-    }
 }
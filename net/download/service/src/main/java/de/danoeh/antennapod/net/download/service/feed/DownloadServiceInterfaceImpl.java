@@ -9,6 +9,7 @@ import androidx.work.OneTimeWorkRequest;
 import androidx.work.OutOfQuotaPolicy;
 import androidx.work.WorkInfo;
 import androidx.work.WorkManager;
+import de.danoeh.antennapod.net.download.service.episode.DownloadScheduler;
 import de.danoeh.antennapod.net.download.service.episode.EpisodeDownloadWorker;
 import de.danoeh.antennapod.storage.database.DBWriter;
 import de.danoeh.antennapod.model.feed.FeedItem;
@@ -25,7 +26,7 @@ import java.util.concurrent.TimeUnit;
 
 public class DownloadServiceInterfaceImpl extends DownloadServiceInterface {
     public void downloadNow(Context context, FeedItem item, boolean ignoreConstraints) {
-        OneTimeWorkRequest.Builder workRequest = getRequest(context, item);
+        OneTimeWorkRequest.Builder workRequest = getRequest(context, item, PRIORITY_USER);
         workRequest.setExpedited(OutOfQuotaPolicy.RUN_AS_NON_EXPEDITED_WORK_REQUEST);
         if (ignoreConstraints) {
             workRequest.setConstraints(new Constraints.Builder().setRequiredNetworkType(NetworkType.CONNECTED).build());
@@ -40,13 +41,13 @@ public class DownloadServiceInterfaceImpl extends DownloadServiceInterface {
         if (item.isDownloaded()) {
             return;
         }
-        OneTimeWorkRequest.Builder workRequest = getRequest(context, item);
+        OneTimeWorkRequest.Builder workRequest = getRequest(context, item, PRIORITY_AUTO);
         workRequest.setConstraints(getConstraints());
         WorkManager.getInstance(context).enqueueUniqueWork(item.getMedia().getDownloadUrl(),
                 ExistingWorkPolicy.KEEP, workRequest.build());
     }
 
-    private static OneTimeWorkRequest.Builder getRequest(Context context, FeedItem item) {
+    private static OneTimeWorkRequest.Builder getRequest(Context context, FeedItem item, int priority) {
         OneTimeWorkRequest.Builder workRequest = new OneTimeWorkRequest.Builder(EpisodeDownloadWorker.class)
                 .setInitialDelay(0L, TimeUnit.MILLISECONDS)
                 .addTag(DownloadServiceInterface.WORK_TAG)
@@ -55,11 +56,15 @@ public class DownloadServiceInterfaceImpl extends DownloadServiceInterface {
             DBWriter.addQueueItem(context, item);
             workRequest.addTag(DownloadServiceInterface.WORK_DATA_WAS_QUEUED);
         }
-        workRequest.setInputData(new Data.Builder().putLong(WORK_DATA_MEDIA_ID, item.getMedia().getId()).build());
+        workRequest.setInputData(new Data.Builder()
+                .putLong(WORK_DATA_MEDIA_ID, item.getMedia().getId())
+                .putInt(WORK_DATA_PRIORITY, priority)
+                .build());
+        DownloadScheduler.getInstance().announce(item.getMedia().getId(), priority);
         return workRequest;
     }
 
-    private static Constraints getConstraints() {
+    public static Constraints getConstraints() {
         Constraints.Builder constraints = new Constraints.Builder();
         if (UserPreferences.isAllowMobileEpisodeDownload()) {
             constraints.setRequiredNetworkType(NetworkType.CONNECTED);
@@ -75,6 +80,7 @@ public class DownloadServiceInterfaceImpl extends DownloadServiceInterface {
         if (media.fileExists()) {
             DBWriter.deleteFeedMediaOfItem(context, media); // Remove partially downloaded file
         }
+        DownloadScheduler.getInstance().remove(media.getId());
         String tag = WORK_TAG_EPISODE_URL + media.getDownloadUrl();
         Future<List<WorkInfo>> future = WorkManager.getInstance(context).getWorkInfosByTag(tag);
         Observable.fromFuture(future)
@@ -0,0 +1,319 @@
+package de.danoeh.antennapod.net.download.service.feed;
+
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.danoeh.antennapod.model.feed.Feed;
+import okhttp3.HttpUrl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Refreshes a list of feeds in two pipelined stages. Downloading and parsing (the parser reads the
+ * response while it is downloaded) runs on several threads, with a limit of connections per host.
+ * Storing the results runs on a single thread, so downloads do not wait for the database
+ * and database writes do not compete for the database lock.
+ * Results that are already downloaded are still stored when the refresh is cancelled.
+ */
+class FeedRefreshEngine<T> {
+    private static final String TAG = "FeedRefreshEngine";
+    private static final long MIN_RELEASE_INTERVAL = TimeUnit.HOURS.toMillis(1);
+    private static final long UNKNOWN_RELEASE_INTERVAL = TimeUnit.DAYS.toMillis(365);
+
+    interface Stages<T> {
+        /**
+         * Downloads and parses the feed. Called on multiple threads.
+         *
+         * @return The result to pass to {@link #store}, or null if there is nothing to store.
+         */
+        @Nullable
+        T fetch(@NonNull Feed feed) throws Exception;
+
+        /**
+         * Stores the result in the database. Always called on the same thread.
+         *
+         * @return The saved feed, or null if nothing was saved.
+         */
+        @Nullable
+        Feed store(@NonNull T fetched) throws Exception;
+
+        void onFailed(@NonNull Feed feed, @NonNull Exception e);
+
+        /**
+         * Called when a feed is done, whether it was successful or not.
+         *
+         * @param savedFeed The feed returned by {@link #store}, or null.
+         */
+        void onFinished(@NonNull Feed feed, @Nullable Feed savedFeed);
+
+        /**
+         * No new downloads are started once this returns true.
+         */
+        boolean isCancelled();
+    }
+
+    private final Stages<T> stages;
+    private final int fetchThreads;
+    private final int connectionsPerHost;
+    private final BlockingQueue<Fetched<T>> storeQueue;
+    private final Fetched<T> endOfQueue = new Fetched<>(null, null);
+    private final Statistics statistics = new Statistics();
+
+    private final List<Feed> pending = new ArrayList<>();
+    private final Map<Feed, String> hosts = new IdentityHashMap<>();
+    private final Map<String, Integer> connectionsByHost = new HashMap<>();
+
+    /**
+     * @param fetchThreads Number of feeds that are downloaded at the same time
+     * @param connectionsPerHost Number of feeds from the same host that are downloaded at the same time
+     * @param storeQueueSize Number of parsed feeds that can wait for being stored.
+     *                       When this is reached, downloading pauses to limit memory usage.
+     */
+    FeedRefreshEngine(Stages<T> stages, int fetchThreads, int connectionsPerHost, int storeQueueSize) {
+        this.stages = stages;
+        this.fetchThreads = fetchThreads;
+        this.connectionsPerHost = connectionsPerHost;
+        this.storeQueue = new ArrayBlockingQueue<>(storeQueueSize);
+    }
+
+    /**
+     * Refreshes the feeds and blocks until they are done.
+     *
+     * @param feeds Feeds in the order in which they should be refreshed
+     */
+    void run(List<Feed> feeds) {
+        if (feeds.isEmpty()) {
+            return;
+        }
+        synchronized (pending) {
+            pending.addAll(feeds);
+            for (Feed feed : feeds) {
+                hosts.put(feed, getHost(feed));
+            }
+        }
+        statistics.start(feeds.size());
+        Thread storeThread = new Thread(this::storeLoop, "FeedRefreshStore");
+        storeThread.start();
+
+        int numThreads = Math.min(fetchThreads, feeds.size());
+        ExecutorService fetchExecutor = Executors.newFixedThreadPool(numThreads);
+        for (int i = 0; i < numThreads; i++) {
+            fetchExecutor.submit(this::fetchLoop);
+        }
+        fetchExecutor.shutdown();
+        try {
+            fetchExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            storeQueue.put(endOfQueue);
+            storeThread.join();
+        } catch (InterruptedException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            Thread.currentThread().interrupt();
+        } finally {
+            // Does nothing if the refresh finished. Otherwise, the end of the queue might never be reached.
+            synchronized (pending) {
+                pending.clear();
+                pending.notifyAll();
+            }
+            fetchExecutor.shutdownNow();
+            storeThread.interrupt();
+        }
+        Log.d(TAG, statistics.toString());
+    }
+
+    Statistics getStatistics() {
+        return statistics;
+    }
+
+    private void fetchLoop() {
+        while (true) {
+            Feed feed = takeNextFeed();
+            if (feed == null) {
+                return;
+            }
+            String host;
+            synchronized (pending) {
+                host = hosts.get(feed);
+            }
+            T result;
+            long start = System.currentTimeMillis();
+            try {
+                result = stages.fetch(feed);
+            } catch (Exception e) {
+                statistics.failed.incrementAndGet();
+                stages.onFailed(feed, e);
+                stages.onFinished(feed, null);
+                continue;
+            } finally {
+                statistics.fetched.incrementAndGet();
+                statistics.fetchMillis.addAndGet(System.currentTimeMillis() - start);
+                releaseHost(host);
+            }
+            if (result == null) {
+                statistics.notStored.incrementAndGet();
+                stages.onFinished(feed, null);
+                continue;
+            }
+            try {
+                storeQueue.put(new Fetched<>(feed, result));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void storeLoop() {
+        while (true) {
+            Fetched<T> fetched;
+            try {
+                fetched = storeQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (fetched == endOfQueue) {
+                return;
+            }
+            Feed savedFeed = null;
+            long start = System.currentTimeMillis();
+            try {
+                savedFeed = stages.store(fetched.result);
+                statistics.stored.incrementAndGet();
+            } catch (Exception e) {
+                statistics.failed.incrementAndGet();
+                stages.onFailed(fetched.feed, e);
+            }
+            statistics.storeMillis.addAndGet(System.currentTimeMillis() - start);
+            stages.onFinished(fetched.feed, savedFeed);
+        }
+    }
+
+    /**
+     * Takes the first pending feed whose host does not have too many connections yet.
+     * Waits if all hosts of the pending feeds are busy.
+     *
+     * @return The feed, or null if there are no more feeds or the refresh was cancelled.
+     */
+    @Nullable
+    private Feed takeNextFeed() {
+        synchronized (pending) {
+            while (!pending.isEmpty() && !stages.isCancelled()) {
+                for (int i = 0; i < pending.size(); i++) {
+                    String host = hosts.get(pending.get(i));
+                    Integer connections = connectionsByHost.get(host);
+                    if (connections == null || connections < connectionsPerHost) {
+                        connectionsByHost.put(host, connections == null ? 1 : connections + 1);
+                        return pending.remove(i);
+                    }
+                }
+                try {
+                    pending.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+            statistics.skipped.set(pending.size());
+            return null;
+        }
+    }
+
+    private void releaseHost(String host) {
+        synchronized (pending) {
+            int connections = connectionsByHost.get(host);
+            if (connections <= 1) {
+                connectionsByHost.remove(host);
+            } else {
+                connectionsByHost.put(host, connections - 1);
+            }
+            pending.notifyAll();
+        }
+    }
+
+    @NonNull
+    private static String getHost(Feed feed) {
+        if (feed.isLocalFeed() || feed.getDownloadUrl() == null) {
+            return "";
+        }
+        HttpUrl url = HttpUrl.parse(feed.getDownloadUrl());
+        return url == null ? "" : url.host();
+    }
+
+    /**
+     * Sorts feeds so that the ones that most likely have new episodes come first: the time since the
+     * last refresh divided by the average time between episodes. Feeds that were never refreshed
+     * come first. Feeds that were skipped because a refresh was cancelled are therefore
+     * the first ones next time.
+     *
+     * @param releaseIntervals Average time between releases by feed ID
+     */
+    static void sortByExpectedNewEpisodes(List<Feed> feeds, Map<Long, Long> releaseIntervals, long now) {
+        Map<Long, Double> expectedEpisodes = new HashMap<>();
+        for (Feed feed : feeds) {
+            Long interval = releaseIntervals.get(feed.getId());
+            if (interval == null) {
+                interval = UNKNOWN_RELEASE_INTERVAL;
+            }
+            long timeSinceRefresh = now - feed.getLastRefreshAttempt();
+            expectedEpisodes.put(feed.getId(), (double) timeSinceRefresh / Math.max(interval, MIN_RELEASE_INTERVAL));
+        }
+        Collections.sort(feeds, (lhs, rhs) ->
+                Double.compare(expectedEpisodes.get(rhs.getId()), expectedEpisodes.get(lhs.getId())));
+    }
+
+    private static class Fetched<T> {
+        final Feed feed;
+        final T result;
+
+        Fetched(Feed feed, T result) {
+            this.feed = feed;
+            this.result = result;
+        }
+    }
+
+    static class Statistics {
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger stored = new AtomicInteger();
+        final AtomicInteger notStored = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger skipped = new AtomicInteger();
+        final AtomicLong fetchMillis = new AtomicLong();
+        final AtomicLong storeMillis = new AtomicLong();
+        private int total;
+        private long startTime;
+
+        private void start(int total) {
+            this.total = total;
+            this.startTime = System.currentTimeMillis();
+        }
+
+        int getFinished() {
+            return stored.get() + notStored.get() + failed.get();
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            long duration = Math.max(1, System.currentTimeMillis() - startTime);
+            int finished = getFinished();
+            return String.format(Locale.US, "Refreshed %d of %d feeds in %d ms (%.1f feeds/s): "
+                            + "%d stored, %d with nothing to store, %d failed, %d skipped. "
+                            + "Average download %d ms, average store %d ms",
+                    finished, total, duration, finished * 1000.0 / duration,
+                    stored.get(), notStored.get(), failed.get(), skipped.get(),
+                    fetchMillis.get() / Math.max(1, fetched.get()), storeMillis.get() / Math.max(1, stored.get()));
+        }
+    }
+}
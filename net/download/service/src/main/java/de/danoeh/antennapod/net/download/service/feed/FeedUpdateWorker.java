@@ -27,6 +27,7 @@ import de.danoeh.antennapod.net.download.serviceinterface.DownloadRequestCreator
 import de.danoeh.antennapod.net.sync.serviceinterface.SynchronizationQueue;
 import de.danoeh.antennapod.storage.database.DBReader;
 import de.danoeh.antennapod.storage.database.FeedDatabaseWriter;
+import de.danoeh.antennapod.storage.database.FeedRefreshScheduler;
 import de.danoeh.antennapod.storage.database.DBWriter;
 import de.danoeh.antennapod.net.common.NetworkUtils;
 import de.danoeh.antennapod.model.download.DownloadError;
@@ -40,15 +41,17 @@ import de.danoeh.antennapod.storage.database.NonSubscribedFeedsCleaner;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
 import de.danoeh.antennapod.ui.notifications.NotificationUtils;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class FeedUpdateWorker extends Worker {
     private static final String TAG = "FeedUpdateWorker";
     private static final long JOB_SCHEDULE_TIME_VARIATION = TimeUnit.MINUTES.toMillis(15);
+    private static final int FETCH_THREADS = 6;
+    private static final int CONNECTIONS_PER_HOST = 2;
+    private static final int STORE_QUEUE_SIZE = 4;
+    private static final long RELEASE_INTERVAL_TIME_SPAN = TimeUnit.DAYS.toMillis(180);
+    private static final long NOTIFICATION_UPDATE_INTERVAL = 1000;
 
     private final NewEpisodesNotification newEpisodesNotification;
     private final NotificationManagerCompat notificationManager;
@@ -86,11 +89,16 @@ public class FeedUpdateWorker extends Worker {
                     itr.remove();
                     continue;
                 }
+                if (isAutomaticRefresh && isAutomaticRefreshEnabled
+                        && feed.getNextRefreshDue() > System.currentTimeMillis() + JOB_SCHEDULE_TIME_VARIATION) {
+                    // No new episodes expected yet
+                    itr.remove();
+                    continue;
+                }
                 if (!feed.isLocalFeed()) {
                     allAreLocal = false;
                 }
             }
-            Collections.shuffle(toUpdate); // If the worker gets cancelled early, every feed has a chance to be updated
         } else {
             Feed feed = DBReader.getFeed(feedId, false, 0, Integer.MAX_VALUE);
             if (feed == null) {
@@ -113,6 +121,7 @@ public class FeedUpdateWorker extends Worker {
         refreshFeeds(toUpdate,  force);
 
         NonSubscribedFeedsCleaner.deleteOldNonSubscribedFeeds(getApplicationContext());
+        DBWriter.checkpointDatabase();
         AutoDownloadManager.getInstance().autodownloadUndownloadedItems(getApplicationContext());
         notificationManager.cancel(R.id.notification_updating_feeds);
         SynchronizationQueue.getInstance().syncImmediately();
@@ -161,54 +170,83 @@ public class FeedUpdateWorker extends Worker {
     private void refreshFeeds(List<Feed> toUpdate, boolean force) {
         List<Feed> notificationRemainingFeeds = new ArrayList<>(toUpdate);
         updateNotification(notificationRemainingFeeds);
-        ExecutorService executor = Executors.newFixedThreadPool(4);
-        for (Feed feed : toUpdate) {
-            executor.submit(() -> {
-                if (isStopped()) {
-                    return;
+        FeedRefreshEngine.sortByExpectedNewEpisodes(toUpdate,
+                DBReader.getAverageReleaseIntervals(RELEASE_INTERVAL_TIME_SPAN), System.currentTimeMillis());
+        FeedRefreshEngine<FetchedFeed> engine = new FeedRefreshEngine<>(new FeedRefreshEngine.Stages<>() {
+            private long lastNotificationUpdate = 0;
+
+            @Nullable
+            @Override
+            public FetchedFeed fetch(@NonNull Feed feed) throws Exception {
+                if (feed.isLocalFeed()) {
+                    // Only writing the result waits for the store stage, scanning a large folder takes a while
+                    Feed scannedFeed = LocalFeedUpdater.scanFeed(feed, getApplicationContext(), null);
+                    return scannedFeed != null ? new FetchedFeed(feed, scannedFeed) : null;
                 }
-                try {
-                    Feed savedFeed;
-                    if (feed.isLocalFeed()) {
-                        savedFeed = LocalFeedUpdater.updateFeed(feed, getApplicationContext(), null);
-                    } else {
-                        savedFeed = refreshFeed(feed, force);
-                    }
-                    if (savedFeed != null) {
-                        newEpisodesNotification.showIfNeeded(getApplicationContext(), savedFeed);
-                    }
-                } catch (Exception e) {
-                    e.printStackTrace();
-                    DBWriter.setFeedLastUpdateFailed(feed.getId(), true);
-                    DownloadResult status = new DownloadResult(feed.getTitle(),
-                            feed.getId(), Feed.FEEDFILETYPE_FEED, false,
-                            DownloadError.ERROR_IO_ERROR, e.getMessage());
-                    DBWriter.addDownloadStatus(status);
+                return fetchFeed(feed, force);
+            }
+
+            @Nullable
+            @Override
+            public Feed store(@NonNull FetchedFeed fetched) {
+                if (fetched.scannedLocalFeed != null) {
+                    // Returns null if storing failed, which is already logged
+                    return LocalFeedUpdater.storeScannedFeed(fetched.feed, getApplicationContext(),
+                            fetched.scannedLocalFeed);
+                }
+                return storeFeed(fetched);
+            }
+
+            @Override
+            public void onFailed(@NonNull Feed feed, @NonNull Exception e) {
+                e.printStackTrace();
+                DBWriter.setFeedLastUpdateFailed(feed.getId(), true);
+                DownloadResult status = new DownloadResult(feed.getTitle(),
+                        feed.getId(), Feed.FEEDFILETYPE_FEED, false,
+                        DownloadError.ERROR_IO_ERROR, e.getMessage());
+                DBWriter.addDownloadStatus(status);
+            }
+
+            @Override
+            public void onFinished(@NonNull Feed feed, @Nullable Feed savedFeed) {
+                if (savedFeed != null) {
+                    newEpisodesNotification.showIfNeeded(getApplicationContext(), savedFeed);
                 }
                 synchronized (notificationRemainingFeeds) {
                     notificationRemainingFeeds.remove(feed);
-                    if (!notificationRemainingFeeds.isEmpty()) {
+                    long now = System.currentTimeMillis();
+                    if (!notificationRemainingFeeds.isEmpty()
+                            && now - lastNotificationUpdate > NOTIFICATION_UPDATE_INTERVAL) {
+                        lastNotificationUpdate = now;
                         updateNotification(notificationRemainingFeeds);
                     }
                 }
-            });
-        }
-        executor.shutdown();
-        try {
-            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            //~300 years have elapsed
-        }
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return isStopped();
+            }
+        }, FETCH_THREADS, CONNECTIONS_PER_HOST, STORE_QUEUE_SIZE);
+        engine.run(toUpdate);
     }
 
-    Feed refreshFeed(Feed feed, boolean force) throws Exception {
+    /**
+     * Downloads and parses the feed.
+     *
+     * @return The parsed feed, or null if the download failed or was cancelled.
+     */
+    @Nullable
+    private FetchedFeed fetchFeed(Feed feed, boolean force) throws Exception {
         boolean nextPage = getInputData().getBoolean(FeedUpdateManagerImpl.EXTRA_NEXT_PAGE, false)
                 && feed.getNextPageLink() != null;
         if (nextPage) {
             feed.setPageNr(feed.getPageNr() + 1);
         }
+        // The validators belong to the first page, so they are not used for other pages
+        boolean revalidate = !force && !feed.hasLastUpdateFailed() && !nextPage;
         DownloadRequestBuilder builder = DownloadRequestCreator.create(feed);
-        builder.setForce(force || feed.hasLastUpdateFailed());
+        builder.setForce(!revalidate);
         if (nextPage) {
             builder.setSource(feed.getNextPageLink());
         }
@@ -219,10 +257,22 @@ public class FeedUpdateWorker extends Worker {
             throw new Exception("Unable to create downloader");
         }
 
+        FeedParserTask parserTask = new FeedParserTask(request, revalidate ? feed.getContentHash() : null);
+        downloader.setResponseBodyHandler(parserTask);
         downloader.call();
 
-        if (!downloader.getResult().isSuccessful()) {
-            if (downloader.cancelled || downloader.getResult().getReason() == DownloadError.ERROR_DOWNLOAD_CANCELLED) {
+        if (downloader.getResult().isSuccessful() && parserTask.isContentUnchanged()) {
+            // Same content as last time, so there is nothing to store
+            DBWriter.setFeedValidators(feed.getId(), request.getEtag(), request.getLastModified(),
+                    feed.getContentHash());
+            FeedRefreshScheduler.onRefreshed(feed, true, getMinRefreshInterval());
+            return null;
+        } else if (!downloader.getResult().isSuccessful()) {
+            if (downloader.notModified) {
+                FeedRefreshScheduler.onRefreshed(feed, true, getMinRefreshInterval());
+                return null;
+            } else if (downloader.cancelled
+                    || downloader.getResult().getReason() == DownloadError.ERROR_DOWNLOAD_CANCELLED) {
                 return null;
             }
             DBWriter.setFeedLastUpdateFailed(request.getFeedfileId(), true);
@@ -230,7 +280,6 @@ public class FeedUpdateWorker extends Worker {
             return null;
         }
 
-        FeedParserTask parserTask = new FeedParserTask(request);
         FeedHandlerResult feedHandlerResult = parserTask.call();
         if (!parserTask.isSuccessful()) {
             DBWriter.setFeedLastUpdateFailed(request.getFeedfileId(), true);
@@ -238,22 +287,75 @@ public class FeedUpdateWorker extends Worker {
             return null;
         }
         feedHandlerResult.feed.setLastRefreshAttempt(System.currentTimeMillis());
+        return new FetchedFeed(feed, request, downloader, parserTask, feedHandlerResult, nextPage);
+    }
+
+    /**
+     * Merges the parsed feed into the database.
+     */
+    private Feed storeFeed(FetchedFeed fetched) {
+        DownloadRequest request = fetched.request;
+        FeedHandlerResult feedHandlerResult = fetched.feedHandlerResult;
         Feed savedFeed = FeedDatabaseWriter.updateFeed(getApplicationContext(), feedHandlerResult.feed, false);
+        if (savedFeed != null && !fetched.isNextPage) {
+            // Only stored after the content was merged, so that unmerged content is not skipped next time
+            DBWriter.setFeedValidators(savedFeed.getId(), request.getEtag(), request.getLastModified(),
+                    fetched.parserTask.getContentHash());
+        }
 
         if (request.getFeedfileId() == 0) {
             return savedFeed; // No download logs for new subscriptions
         }
+        FeedRefreshScheduler.onRefreshed(fetched.feed, false, getMinRefreshInterval());
         // we create a 'successful' download log if the feed's last refresh failed
         List<DownloadResult> log = DBReader.getFeedDownloadLog(request.getFeedfileId(), 1);
         if (!log.isEmpty() && !log.get(0).isSuccessful()) {
-            DBWriter.addDownloadStatus(parserTask.getDownloadStatus());
+            DBWriter.addDownloadStatus(fetched.parserTask.getDownloadStatus());
         }
-        if (downloader.permanentRedirectUrl != null) {
-            DBWriter.updateFeedDownloadURL(request.getSource(), downloader.permanentRedirectUrl);
+        if (fetched.downloader.permanentRedirectUrl != null) {
+            DBWriter.updateFeedDownloadURL(request.getSource(), fetched.downloader.permanentRedirectUrl);
         } else if (feedHandlerResult.redirectUrl != null
                 && !feedHandlerResult.redirectUrl.equals(request.getSource())) {
             DBWriter.updateFeedDownloadURL(request.getSource(), feedHandlerResult.redirectUrl);
         }
         return savedFeed;
     }
+
+    private static long getMinRefreshInterval() {
+        return TimeUnit.MINUTES.toMillis(UserPreferences.getUpdateInterval());
+    }
+
+    /**
+     * Result of downloading and parsing a feed, or of scanning the folder of a local feed.
+     */
+    private static class FetchedFeed {
+        final Feed feed;
+        final DownloadRequest request;
+        final Downloader downloader;
+        final FeedParserTask parserTask;
+        final FeedHandlerResult feedHandlerResult;
+        final boolean isNextPage;
+        final Feed scannedLocalFeed;
+
+        FetchedFeed(Feed feed, DownloadRequest request, Downloader downloader, FeedParserTask parserTask,
+                    FeedHandlerResult feedHandlerResult, boolean isNextPage) {
+            this.feed = feed;
+            this.request = request;
+            this.downloader = downloader;
+            this.parserTask = parserTask;
+            this.feedHandlerResult = feedHandlerResult;
+            this.isNextPage = isNextPage;
+            this.scannedLocalFeed = null;
+        }
+
+        FetchedFeed(@NonNull Feed localFeed, @NonNull Feed scannedLocalFeed) {
+            this.feed = localFeed;
+            this.request = null;
+            this.downloader = null;
+            this.parserTask = null;
+            this.feedHandlerResult = null;
+            this.isNextPage = false;
+            this.scannedLocalFeed = scannedLocalFeed;
+        }
+    }
 }
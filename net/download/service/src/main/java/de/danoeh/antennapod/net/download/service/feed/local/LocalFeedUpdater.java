@@ -54,6 +54,19 @@ public class LocalFeedUpdater {
 
     public static Feed updateFeed(Feed feed, Context context,
                                   @Nullable UpdaterProgressListener updaterProgressListener) {
+        Feed scannedFeed = scanFeed(feed, context, updaterProgressListener);
+        return scannedFeed != null ? storeScannedFeed(feed, context, scannedFeed) : null;
+    }
+
+    /**
+     * Lists the files of the folder and reads the metadata of new files. This can take a while for large
+     * folders, but does not write to the database, see {@link #storeScannedFeed}.
+     *
+     * @return The feed with one item per media file, or null if the folder could not be read
+     */
+    @Nullable
+    public static Feed scanFeed(Feed feed, Context context,
+                                @Nullable UpdaterProgressListener updaterProgressListener) {
         try {
             String uriString = feed.getDownloadUrl().replace(Feed.PREFIX_LOCAL_FOLDER, "");
             DocumentFile documentFolder = DocumentFile.fromTreeUri(context, Uri.parse(uriString));
@@ -65,13 +78,29 @@ public class LocalFeedUpdater {
                 throw new IOException("Cannot read local directory. "
                         + "Try re-connecting the folder on the podcast info page.");
             }
-            Feed updatedFeed = tryUpdateFeed(feed, context, documentFolder.getUri(), updaterProgressListener);
+            return tryScanFeed(feed, context, documentFolder.getUri(), updaterProgressListener);
+        } catch (Exception e) {
+            e.printStackTrace();
+            reportError(feed, e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Stores a feed returned by {@link #scanFeed}.
+     *
+     * @return The stored feed, or null if it could not be stored
+     */
+    @Nullable
+    public static Feed storeScannedFeed(Feed feed, Context context, Feed scannedFeed) {
+        try {
+            FeedDatabaseWriter.updateFeed(context, scannedFeed, true);
 
             List<DownloadResult> downloadResults = DBReader.getFeedDownloadLog(feed.getId(), 1);
             if (downloadResults.isEmpty() || !downloadResults.get(0).isSuccessful()) {
                 reportSuccess(feed);
             }
-            return updatedFeed;
+            return scannedFeed;
         } catch (Exception e) {
             e.printStackTrace();
             reportError(feed, e.getMessage());
@@ -82,12 +111,27 @@ public class LocalFeedUpdater {
     @VisibleForTesting
     static Feed tryUpdateFeed(Feed feed, Context context, Uri folderUri,
                               UpdaterProgressListener updaterProgressListener) throws IOException {
-        if (feed.getItems() == null) {
-            feed.setItems(new ArrayList<>());
+        Feed scannedFeed = tryScanFeed(feed, context, folderUri, updaterProgressListener);
+        FeedDatabaseWriter.updateFeed(context, scannedFeed, true);
+        return scannedFeed;
+    }
+
+    private static Feed tryScanFeed(Feed feed, Context context, Uri folderUri,
+                                    UpdaterProgressListener updaterProgressListener) throws IOException {
+        if (feed.getId() != 0) {
+            // make sure it is the latest 'version' of this feed from the db (all items etc)
+            Feed savedFeed = DBReader.getFeed(feed.getId(), false, 0, Integer.MAX_VALUE);
+            if (savedFeed == null) {
+                throw new IOException("Feed was removed while refreshing");
+            }
+            feed = savedFeed;
+        } else {
+            if (feed.getItems() == null) {
+                feed.setItems(new ArrayList<>());
+            }
+            // for new feeds, settings etc are set up properly.
+            feed = FeedDatabaseWriter.updateFeed(context, feed, false);
         }
-        // make sure it is the latest 'version' of this feed from the db (all items etc)
-        // and for new feeds, settings etc are set up properly.
-        feed = FeedDatabaseWriter.updateFeed(context, feed, false);
 
         // list files in feed folder
         List<FastDocumentFile> allFiles = FastDocumentFile.list(context, folderUri);
@@ -131,9 +175,6 @@ public class LocalFeedUpdater {
         feed.getPreferences().setAutoDownload(FeedPreferences.AutoDownloadSetting.DISABLED);
         feed.setDescription(context.getString(R.string.local_feed_description));
         feed.setAuthor(context.getString(R.string.local_folder));
-
-        FeedDatabaseWriter.updateFeed(context, feed, true);
-
         return feed;
     }
 
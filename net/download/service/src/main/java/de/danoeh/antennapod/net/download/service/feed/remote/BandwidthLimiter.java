@@ -0,0 +1,49 @@
+package de.danoeh.antennapod.net.download.service.feed.remote;
+
+import java.io.InterruptedIOException;
+
+/**
+ * Limits the combined speed of all downloads that share it. Works like a token bucket that holds
+ * the bytes of one second, so short bursts are allowed but the average rate stays below the limit.
+ */
+public class BandwidthLimiter {
+    private static final long BURST_NANOS = 1_000_000_000L;
+
+    private volatile long bytesPerSecond = 0;
+    private long nextFreeNanos = Long.MIN_VALUE;
+
+    /**
+     * @param bytesPerSecond Maximum rate, or 0 for no limit
+     */
+    public void setRate(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(0, bytesPerSecond);
+    }
+
+    public long getRate() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Blocks until the given number of bytes may be transferred.
+     */
+    public void acquire(int bytes) throws InterruptedIOException {
+        long rate = bytesPerSecond;
+        if (rate <= 0 || bytes <= 0) {
+            return;
+        }
+        long waitNanos;
+        synchronized (this) {
+            long now = System.nanoTime();
+            nextFreeNanos = Math.max(nextFreeNanos, now - BURST_NANOS) + bytes * 1_000_000_000L / rate;
+            waitNanos = nextFreeNanos - now;
+        }
+        if (waitNanos <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(waitNanos / 1_000_000L, (int) (waitNanos % 1_000_000L));
+        } catch (InterruptedException e) {
+            throw new InterruptedIOException("Interrupted while limiting bandwidth");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package de.danoeh.antennapod.net.download.service.feed.remote;
+
+/**
+ * Decides how many connections a download may open to its server in addition to the first one,
+ * so that segmented downloads do not exceed the connection limit of the host.
+ */
+public interface ConnectionLimiter {
+    /**
+     * @param requested Number of additional connections the download would like to use
+     * @return Number of additional connections that may be used, between 0 and the requested number
+     */
+    int acquireExtraConnections(int requested);
+
+    /**
+     * Gives back connections that were returned by {@link #acquireExtraConnections}.
+     */
+    void releaseExtraConnections(int count);
+}
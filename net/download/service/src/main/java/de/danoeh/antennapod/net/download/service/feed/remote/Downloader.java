@@ -1,6 +1,7 @@
 package de.danoeh.antennapod.net.download.service.feed.remote;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import java.util.Date;
 import java.util.concurrent.Callable;
@@ -18,6 +19,16 @@ public abstract class Downloader implements Callable<Downloader> {
     private volatile boolean finished;
     public volatile boolean cancelled;
     public String permanentRedirectUrl = null;
+    /**
+     * The server responded that the file did not change since the last download.
+     */
+    public boolean notModified = false;
+    @Nullable
+    ResponseBodyHandler responseBodyHandler = null;
+    @Nullable
+    BandwidthLimiter bandwidthLimiter = null;
+    @Nullable
+    ConnectionLimiter connectionLimiter = null;
 
     @NonNull
     final DownloadRequest request;
@@ -59,4 +70,26 @@ public abstract class Downloader implements Callable<Downloader> {
         cancelled = true;
     }
 
+    /**
+     * Passes the response body to the given handler instead of writing it to the destination file.
+     */
+    public void setResponseBodyHandler(@Nullable ResponseBodyHandler responseBodyHandler) {
+        this.responseBodyHandler = responseBodyHandler;
+    }
+
+    /**
+     * Limits the download speed, together with all other downloads that use the same limiter.
+     */
+    public void setBandwidthLimiter(@Nullable BandwidthLimiter bandwidthLimiter) {
+        this.bandwidthLimiter = bandwidthLimiter;
+    }
+
+    /**
+     * Limits the number of connections that a segmented download opens. Without a limiter,
+     * all segments are downloaded at the same time.
+     */
+    public void setConnectionLimiter(@Nullable ConnectionLimiter connectionLimiter) {
+        this.connectionLimiter = connectionLimiter;
+    }
+
 }
\ No newline at end of file
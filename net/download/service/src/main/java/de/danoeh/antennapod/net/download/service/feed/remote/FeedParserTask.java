@@ -3,6 +3,7 @@ package de.danoeh.antennapod.net.download.service.feed.remote;
 import android.text.TextUtils;
 import android.util.Log;
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedPreferences;
@@ -18,25 +19,87 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Date;
 import java.util.concurrent.Callable;
 
-public class FeedParserTask implements Callable<FeedHandlerResult> {
+/**
+ * Parses a downloaded feed. The feed is either parsed while it is being downloaded, when the task
+ * is used as the {@link ResponseBodyHandler} of the downloader, or from the downloaded file.
+ * A streamed response is hashed while it is parsed. When the hash is the same as the one of the content
+ * that was parsed last time, the result is dropped, so the unchanged feed is not stored again.
+ */
+public class FeedParserTask implements Callable<FeedHandlerResult>, ResponseBodyHandler {
     private static final String TAG = "FeedParserTask";
     private final DownloadRequest request;
     private DownloadResult downloadResult;
     private boolean successful = true;
+    private boolean parsedResponseBody = false;
+    private FeedHandlerResult streamedResult = null;
+    private final String previousContentHash;
+    private String contentHash = null;
+    private boolean contentUnchanged = false;
 
     public FeedParserTask(DownloadRequest request) {
+        this(request, null);
+    }
+
+    /**
+     * @param previousContentHash Hash of the content that was parsed by the last update of the feed, or null
+     */
+    public FeedParserTask(DownloadRequest request, @Nullable String previousContentHash) {
         this.request = request;
+        this.previousContentHash = previousContentHash;
         downloadResult = new DownloadResult(
         0, request.getTitle(), 0, request.getFeedfileType(), false,
                 DownloadError.ERROR_REQUEST_ERROR, new Date(),
                 "Unknown error: Status not set");
     }
 
+    @Override
+    public void onResponseBody(@NonNull InputStream body, @Nullable String contentType) {
+        parsedResponseBody = true;
+        MessageDigest digest = createDigest();
+        DigestInputStream hashedBody = new DigestInputStream(body, digest);
+        streamedResult = parse(hashedBody, contentType);
+        if (streamedResult == null || !readToEnd(hashedBody)) {
+            return;
+        }
+        contentHash = toHex(digest.digest());
+        if (contentHash.equals(previousContentHash)) {
+            Log.d(TAG, "Content did not change: " + request.getSource());
+            contentUnchanged = true;
+            streamedResult = null;
+        }
+    }
+
+    /**
+     * Returns the result of parsing the response body if it was streamed already,
+     * otherwise parses the downloaded file.
+     *
+     * @return The result, or null if parsing failed or the content did not change.
+     */
     @Override
     public FeedHandlerResult call() {
+        if (contentUnchanged) {
+            return null;
+        } else if (parsedResponseBody) {
+            if (streamedResult != null) {
+                // The validators are only known after the download has finished
+                streamedResult.feed.setLastModified(request.getLastModified());
+            }
+            return streamedResult;
+        }
+        return parse(null, null);
+    }
+
+    /**
+     * @param body The feed to parse, or null to parse the downloaded file.
+     */
+    private FeedHandlerResult parse(@Nullable InputStream body, @Nullable String contentType) {
         Feed feed = new Feed(request.getSource(), request.getLastModified());
         feed.setLocalFileUrl(request.getDestination());
         feed.setId(request.getFeedfileId());
@@ -51,7 +114,11 @@ public class FeedParserTask implements Callable<FeedHandlerResult> {
 
         FeedHandlerResult result = null;
         try {
-            result = feedHandler.parseFeed(feed);
+            if (body != null) {
+                result = feedHandler.parseFeed(feed, body, contentType);
+            } else {
+                result = feedHandler.parseFeed(feed);
+            }
             Log.d(TAG, feed.getTitle() + " parsed");
             checkFeedData(feed);
             if (TextUtils.isEmpty(feed.getImageUrl())) {
@@ -76,6 +143,7 @@ public class FeedParserTask implements Callable<FeedHandlerResult> {
             reason = DownloadError.ERROR_PARSER_EXCEPTION;
             reasonDetailed = e.getMessage();
         } finally {
+            // Clean up files that may have been left behind, even if the feed was streamed
             File feedFile = new File(request.getDestination());
             if (feedFile.exists()) {
                 boolean deleted = feedFile.delete();
@@ -99,6 +167,53 @@ public class FeedParserTask implements Callable<FeedHandlerResult> {
         return successful;
     }
 
+    /**
+     * @return True if the streamed content has the same hash as the content that was parsed last time.
+     *         In that case, {@link #call()} returns null.
+     */
+    public boolean isContentUnchanged() {
+        return contentUnchanged;
+    }
+
+    /**
+     * @return Hash of the streamed content, or null if it is not known
+     */
+    @Nullable
+    public String getContentHash() {
+        return contentHash;
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * The parser can stop reading before the end of the stream, but the hash needs to include everything.
+     */
+    private static boolean readToEnd(InputStream in) {
+        byte[] buffer = new byte[4096];
+        try {
+            while (in.read(buffer) != -1) {
+                // Just update the hash
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
     /**
      * Checks if the feed was parsed correctly.
      */
@@ -13,19 +13,21 @@ import de.danoeh.antennapod.net.common.RedirectChecker;
 import de.danoeh.antennapod.net.download.service.R;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
 import okhttp3.CacheControl;
+import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.io.RandomAccessFile;
 import java.net.HttpURLConnection;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 import java.net.UnknownHostException;
 import java.util.Collections;
-import java.util.Date;
 import java.util.Locale;
 
 import de.danoeh.antennapod.model.feed.FeedMedia;
@@ -42,6 +44,12 @@ public class HttpDownloader extends Downloader {
     private static final String TAG = "HttpDownloader";
     private static final int BUFFER_SIZE = 8 * 1024;
 
+    /**
+     * Set when the server did not respond to range requests as expected, so the file is downloaded
+     * over one connection.
+     */
+    private boolean segmentedDownloadRefused = false;
+
     public HttpDownloader(@NonNull DownloadRequest request) {
         super(request);
     }
@@ -49,7 +57,9 @@ public class HttpDownloader extends Downloader {
     @Override
     protected void download() {
         File destination = new File(request.getDestination());
-        final boolean fileExists = destination.exists();
+        File segmentMapFile = SegmentedDownload.getSegmentMapFile(destination);
+        final boolean segmentable = responseBodyHandler == null && !segmentedDownloadRefused
+                && request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA;
 
         RandomAccessFile out = null;
         InputStream connection;
@@ -57,41 +67,35 @@ public class HttpDownloader extends Downloader {
 
         try {
             final URI uri = UriUtil.getURIFromRequestUrl(request.getSource());
-            Request.Builder httpReq = new Request.Builder().url(uri.toURL());
-            httpReq.tag(request);
-            httpReq.cacheControl(new CacheControl.Builder().noStore().build());
-
-            if (request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA) {
-                // set header explicitly so that okhttp doesn't do transparent gzip
-                Log.d(TAG, "addHeader(\"Accept-Encoding\", \"identity\")");
-                httpReq.addHeader("Accept-Encoding", "identity");
-                httpReq.cacheControl(new CacheControl.Builder().noCache().build()); // noStore breaks CDNs
-            }
-
-            if (uri.getScheme().equals("http")) {
-                httpReq.addHeader("Upgrade-Insecure-Requests", "1");
-            }
-
-            if (!TextUtils.isEmpty(request.getLastModified())) {
-                String lastModified = request.getLastModified();
-                Date lastModifiedDate = DateUtils.parse(lastModified);
-                if (lastModifiedDate != null) {
-                    long threeDaysAgo = System.currentTimeMillis() - 1000 * 60 * 60 * 24 * 3;
-                    if (lastModifiedDate.getTime() > threeDaysAgo) {
-                        Log.d(TAG, "addHeader(\"If-Modified-Since\", \"" + lastModified + "\")");
-                        httpReq.addHeader("If-Modified-Since", lastModified);
+            if (segmentable) {
+                SegmentMap segmentMap = SegmentMap.read(segmentMapFile);
+                if (segmentMap != null && destination.length() == segmentMap.getTotalSize()) {
+                    Log.d(TAG, "Resuming segmented download");
+                    if (downloadSegmented(uri, segmentMap, null)) {
+                        return;
                     }
-                } else {
-                    Log.d(TAG, "addHeader(\"If-None-Match\", \"" + lastModified + "\")");
-                    httpReq.addHeader("If-None-Match", lastModified);
+                    FileUtils.deleteQuietly(destination);
                 }
             }
+            if (segmentMapFile.exists()) {
+                // The file was preallocated, so its length does not tell how much was downloaded
+                FileUtils.deleteQuietly(segmentMapFile);
+                FileUtils.deleteQuietly(destination);
+            }
+            final boolean fileExists = destination.exists();
+
+            Request.Builder httpReq = newRequestBuilder(uri);
+            addValidators(httpReq);
 
             // add range header if necessary
-            if (fileExists && destination.length() > 0) {
+            final boolean probeRanges = segmentable && destination.length() == 0;
+            if (responseBodyHandler == null && fileExists && destination.length() > 0) {
                 request.setSoFar(destination.length());
                 httpReq.addHeader("Range", "bytes=" + request.getSoFar() + "-");
                 Log.d(TAG, "Adding range header: " + request.getSoFar());
+            } else if (probeRanges) {
+                // Servers that support ranges respond with the total size, servers that don't ignore this
+                httpReq.addHeader("Range", "bytes=0-");
             }
 
             Response response = newCall(httpReq);
@@ -105,6 +109,7 @@ public class HttpDownloader extends Downloader {
             Log.d(TAG, "Response code is " + response.code());
             if (!response.isSuccessful() && response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
                 Log.d(TAG, "Feed '" + request.getSource() + "' not modified since last update, Download canceled");
+                notModified = true;
                 onCancelled();
                 return;
             } else if (!response.isSuccessful() || response.body() == null) {
@@ -120,6 +125,33 @@ public class HttpDownloader extends Downloader {
                 permanentRedirectUrl = redirect;
             }
 
+            if (responseBodyHandler != null) {
+                streamResponseBody(response, responseBody);
+                return;
+            }
+
+            if (probeRanges && response.code() == HttpURLConnection.HTTP_PARTIAL) {
+                long[] range = SegmentedDownload.parseContentRange(response.header("Content-Range"));
+                if (range != null && range[0] == 0 && range[2] > 0) {
+                    request.setSize(range[2]);
+                    if (request.getSize() > getFreeSpaceAvailable()) {
+                        onFail(DownloadError.ERROR_NOT_ENOUGH_SPACE, null);
+                        return;
+                    }
+                    SegmentMap segmentMap = SegmentMap.create(range[2],
+                            SegmentedDownload.getSegmentCount(range[2]), SegmentedDownload.getRangeValidator(response));
+                    if (downloadSegmented(uri, segmentMap, responseBody)) {
+                        storeValidators(response);
+                    } else {
+                        // Start again with one connection
+                        FileUtils.deleteQuietly(destination);
+                        IOUtils.closeQuietly(responseBody);
+                        download();
+                    }
+                    return;
+                }
+            }
+
             connection = new BufferedInputStream(responseBody.byteStream());
 
             String contentRangeHeader = (fileExists) ? response.header("Content-Range") : null;
@@ -161,6 +193,9 @@ public class HttpDownloader extends Downloader {
             Log.d(TAG, "Starting download");
             try {
                 while (!cancelled && (count = connection.read(buffer)) != -1) {
+                    if (bandwidthLimiter != null) {
+                        bandwidthLimiter.acquire(count);
+                    }
                     out.write(buffer, 0, count);
                     request.setSoFar(request.getSoFar() + count);
                     int progressPercent = (int) (100.0 * request.getSoFar() / request.getSize());
@@ -183,12 +218,7 @@ public class HttpDownloader extends Downloader {
                     onFail(DownloadError.ERROR_IO_ERROR, "Download completed, but nothing was read");
                     return;
                 }
-                String lastModified = response.header("Last-Modified");
-                if (lastModified != null) {
-                    request.setLastModified(lastModified);
-                } else {
-                    request.setLastModified(response.header("ETag"));
-                }
+                storeValidators(response);
                 onSuccess();
             }
 
@@ -223,6 +253,127 @@ public class HttpDownloader extends Downloader {
         }
     }
 
+    /**
+     * Downloads the file in several parts at the same time.
+     *
+     * @return false if the server refused the range requests, so the file needs to be downloaded with
+     *          one connection. In that case, the segment map was deleted and the download was not reported
+     *          as finished.
+     */
+    private boolean downloadSegmented(URI uri, SegmentMap segmentMap, ResponseBody firstSegmentBody)
+            throws IOException {
+        Log.d(TAG, "Downloading " + segmentMap.getTotalSize() + " bytes in "
+                + segmentMap.getSegmentCount() + " segments");
+        File destination = new File(request.getDestination());
+        request.setStatusMsg(R.string.download_running);
+        request.setSize(segmentMap.getTotalSize());
+        request.setSoFar(segmentMap.getDownloaded());
+        String validator = segmentMap.getValidator();
+        SegmentedDownload segmentedDownload = new SegmentedDownload(this, destination, segmentMap, (start, end) -> {
+            Request.Builder httpReq = newRequestBuilder(uri);
+            httpReq.addHeader("Range", "bytes=" + start + "-" + (end - 1));
+            if (!TextUtils.isEmpty(validator)) {
+                // The server sends the whole file instead if it changed in the meantime
+                httpReq.addHeader("If-Range", validator);
+            }
+            return newCall(httpReq);
+        });
+        int extraConnections = segmentMap.getSegmentCount() - 1;
+        if (connectionLimiter != null) {
+            extraConnections = connectionLimiter.acquireExtraConnections(extraConnections);
+        }
+        try {
+            segmentedDownload.run(firstSegmentBody, 1 + extraConnections);
+        } catch (SegmentedDownload.RangeRefusedException e) {
+            Log.d(TAG, "Segmented download not possible: " + e.getMessage());
+            segmentedDownloadRefused = true;
+            FileUtils.deleteQuietly(SegmentedDownload.getSegmentMapFile(destination));
+            return false;
+        } catch (SegmentedDownload.UnsuccessfulResponseException e) {
+            callOnFailByResponseCode(e.response);
+            return true;
+        } finally {
+            if (connectionLimiter != null) {
+                connectionLimiter.releaseExtraConnections(extraConnections);
+            }
+        }
+        if (cancelled) {
+            onCancelled();
+            return true;
+        }
+        FileUtils.deleteQuietly(SegmentedDownload.getSegmentMapFile(destination));
+        onSuccess();
+        return true;
+    }
+
+    private Request.Builder newRequestBuilder(URI uri) throws IOException {
+        Request.Builder httpReq = new Request.Builder().url(uri.toURL());
+        httpReq.tag(request);
+        httpReq.cacheControl(new CacheControl.Builder().noStore().build());
+
+        if (request.getFeedfileType() == FeedMedia.FEEDFILETYPE_FEEDMEDIA) {
+            // set header explicitly so that okhttp doesn't do transparent gzip
+            Log.d(TAG, "addHeader(\"Accept-Encoding\", \"identity\")");
+            httpReq.addHeader("Accept-Encoding", "identity");
+            httpReq.cacheControl(new CacheControl.Builder().noCache().build()); // noStore breaks CDNs
+        }
+
+        if (uri.getScheme().equals("http")) {
+            httpReq.addHeader("Upgrade-Insecure-Requests", "1");
+        }
+        return httpReq;
+    }
+
+    /**
+     * Passes the response body to the handler while it is being downloaded, without touching the disk.
+     */
+    private void streamResponseBody(Response response, ResponseBody responseBody) throws IOException {
+        request.setStatusMsg(R.string.download_running);
+        request.setSize(responseBody.contentLength());
+        if (request.getSize() < 0) {
+            request.setSize(DownloadResult.SIZE_UNKNOWN);
+        }
+        ProgressInputStream body = new ProgressInputStream(new BufferedInputStream(responseBody.byteStream()));
+        responseBodyHandler.onResponseBody(body, response.header("Content-Type"));
+        if (cancelled) {
+            onCancelled();
+            return;
+        } else if (body.readError != null) {
+            throw body.readError;
+        } else if (request.getSoFar() == 0) {
+            onFail(DownloadError.ERROR_IO_ERROR, "Download completed, but nothing was read");
+            return;
+        }
+        storeValidators(response);
+        onSuccess();
+    }
+
+    /**
+     * Sends the validators of the last download, so that the server can respond with 304 Not Modified.
+     */
+    private void addValidators(Request.Builder httpReq) {
+        String etag = request.getEtag();
+        String lastModified = request.getLastModified();
+        if (TextUtils.isEmpty(etag) && !TextUtils.isEmpty(lastModified) && DateUtils.parse(lastModified) == null) {
+            // Older versions stored the ETag instead of Last-Modified if there was no Last-Modified header
+            etag = lastModified;
+            lastModified = null;
+        }
+        if (!TextUtils.isEmpty(etag)) {
+            Log.d(TAG, "addHeader(\"If-None-Match\", \"" + etag + "\")");
+            httpReq.addHeader("If-None-Match", etag);
+        }
+        if (!TextUtils.isEmpty(lastModified)) {
+            Log.d(TAG, "addHeader(\"If-Modified-Since\", \"" + lastModified + "\")");
+            httpReq.addHeader("If-Modified-Since", lastModified);
+        }
+    }
+
+    private void storeValidators(Response response) {
+        request.setLastModified(response.header("Last-Modified"));
+        request.setEtag(response.header("ETag"));
+    }
+
     private Response newCall(Request.Builder httpReq) throws IOException {
         OkHttpClient httpClient = AntennapodHttpClient.getHttpClient();
         try {
@@ -304,4 +455,44 @@ public class HttpDownloader extends Downloader {
         result.setCancelled();
         cancelled = true;
     }
+
+    /**
+     * Updates the progress of the request and remembers network errors,
+     * so that they are not mistaken for errors of the handler that reads the stream.
+     */
+    private class ProgressInputStream extends FilterInputStream {
+        IOException readError = null;
+
+        ProgressInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int count = read(single, 0, 1);
+            return count == -1 ? -1 : (single[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (cancelled) {
+                throw new InterruptedIOException("Download was cancelled");
+            }
+            int count;
+            try {
+                count = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                readError = e;
+                throw e;
+            }
+            if (count > 0) {
+                request.setSoFar(request.getSoFar() + count);
+                if (request.getSize() > 0) {
+                    request.setProgressPercent((int) (100.0 * request.getSoFar() / request.getSize()));
+                }
+            }
+            return count;
+        }
+    }
 }
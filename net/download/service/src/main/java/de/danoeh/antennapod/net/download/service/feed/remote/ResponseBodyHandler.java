@@ -0,0 +1,20 @@
+package de.danoeh.antennapod.net.download.service.feed.remote;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.InputStream;
+
+/**
+ * Consumes the body of a response while it is being downloaded, instead of writing it to a file first.
+ */
+public interface ResponseBodyHandler {
+    /**
+     * Called once the server responded successfully. Errors while reading the stream are reported
+     * by the downloader, so implementations only need to handle their own errors.
+     *
+     * @param body The response body. It is closed by the downloader.
+     * @param contentType The Content-Type header of the response
+     */
+    void onResponseBody(@NonNull InputStream body, @Nullable String contentType);
+}
@@ -0,0 +1,173 @@
+package de.danoeh.antennapod.net.download.service.feed.remote;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * The byte ranges of a segmented download and how much of each range was already written.
+ * Stored next to the downloaded file, so that an interrupted download can continue every segment.
+ */
+class SegmentMap {
+    private static final int FORMAT_VERSION = 1;
+
+    private final long totalSize;
+    @NonNull
+    private final String validator;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] positions;
+
+    private SegmentMap(long totalSize, @NonNull String validator, long[] starts, long[] ends, long[] positions) {
+        this.totalSize = totalSize;
+        this.validator = validator;
+        this.starts = starts;
+        this.ends = ends;
+        this.positions = positions;
+    }
+
+    /**
+     * Splits a file into segments of about the same size.
+     *
+     * @param validator ETag or Last-Modified header of the file, used to detect that it changed on the server
+     */
+    static SegmentMap create(long totalSize, int numSegments, @Nullable String validator) {
+        if (totalSize <= 0 || numSegments <= 0) {
+            throw new IllegalArgumentException("Invalid size " + totalSize + " or number of segments " + numSegments);
+        }
+        numSegments = (int) Math.min(numSegments, totalSize);
+        long segmentSize = (totalSize + numSegments - 1) / numSegments;
+        long[] starts = new long[numSegments];
+        long[] ends = new long[numSegments];
+        for (int i = 0; i < numSegments; i++) {
+            starts[i] = i * segmentSize;
+            ends[i] = Math.min(totalSize, (i + 1) * segmentSize);
+        }
+        return new SegmentMap(totalSize, validator != null ? validator : "", starts, ends, starts.clone());
+    }
+
+    /**
+     * @return The map stored in the file, or null if there is none or it cannot be read.
+     */
+    @Nullable
+    static SegmentMap read(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            long totalSize = in.readLong();
+            String validator = in.readUTF();
+            int numSegments = in.readInt();
+            if (numSegments <= 0 || numSegments > 64) {
+                return null;
+            }
+            long[] starts = new long[numSegments];
+            long[] ends = new long[numSegments];
+            long[] positions = new long[numSegments];
+            for (int i = 0; i < numSegments; i++) {
+                starts[i] = in.readLong();
+                ends[i] = in.readLong();
+                positions[i] = in.readLong();
+                if (starts[i] > positions[i] || positions[i] > ends[i] || ends[i] > totalSize) {
+                    return null;
+                }
+            }
+            return new SegmentMap(totalSize, validator, starts, ends, positions);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the map to a temporary file first, so that the stored map is never incomplete.
+     */
+    synchronized void write(File file) throws IOException {
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(totalSize);
+            out.writeUTF(validator);
+            out.writeInt(starts.length);
+            for (int i = 0; i < starts.length; i++) {
+                out.writeLong(starts[i]);
+                out.writeLong(ends[i]);
+                out.writeLong(positions[i]);
+            }
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Unable to store segment map");
+        }
+    }
+
+    long getTotalSize() {
+        return totalSize;
+    }
+
+    @NonNull
+    String getValidator() {
+        return validator;
+    }
+
+    int getSegmentCount() {
+        return starts.length;
+    }
+
+    /**
+     * @return The position of the next byte to download in the segment.
+     */
+    synchronized long getPosition(int segment) {
+        return positions[segment];
+    }
+
+    /**
+     * @return The position after the last byte of the segment.
+     */
+    long getEnd(int segment) {
+        return ends[segment];
+    }
+
+    synchronized boolean isComplete(int segment) {
+        return positions[segment] >= ends[segment];
+    }
+
+    synchronized boolean isComplete() {
+        for (int i = 0; i < starts.length; i++) {
+            if (positions[i] < ends[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Marks the next bytes of a segment as written.
+     *
+     * @return The number of bytes written in all segments.
+     */
+    synchronized long advance(int segment, long bytes) {
+        if (positions[segment] + bytes > ends[segment]) {
+            throw new IllegalArgumentException("Segment " + segment + " would exceed its end");
+        }
+        positions[segment] += bytes;
+        return getDownloaded();
+    }
+
+    synchronized long getDownloaded() {
+        long downloaded = 0;
+        for (int i = 0; i < starts.length; i++) {
+            downloaded += positions[i] - starts[i];
+        }
+        return downloaded;
+    }
+}
@@ -0,0 +1,266 @@
+package de.danoeh.antennapod.net.download.service.feed.remote;
+
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import de.danoeh.antennapod.model.download.DownloadRequest;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.IOUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Downloads a file over several connections at the same time, each one fetching a different byte range
+ * into a preallocated file. Many CDNs limit the speed of each connection, so this can be a lot faster
+ * for large episodes. Progress is stored in a {@link SegmentMap} next to the file.
+ */
+class SegmentedDownload {
+    private static final String TAG = "SegmentedDownload";
+    /**
+     * Smaller files are downloaded over one connection.
+     */
+    static final long MIN_SEGMENTED_SIZE = 16L * 1024 * 1024;
+    static final int MAX_SEGMENTS = 4;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    /**
+     * Number of downloaded bytes after which the segment map is stored again.
+     */
+    private static final long SAVE_INTERVAL = 4L * 1024 * 1024;
+
+    interface RangeRequester {
+        /**
+         * Requests a part of the file.
+         *
+         * @param start Position of the first byte
+         * @param end   Position after the last byte
+         */
+        Response request(long start, long end) throws IOException;
+    }
+
+    /**
+     * The server did not respond with the requested range, so the file needs to be downloaded over one connection.
+     */
+    static class RangeRefusedException extends IOException {
+        RangeRefusedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * The server responded to a range request with an error.
+     */
+    static class UnsuccessfulResponseException extends IOException {
+        @NonNull
+        final Response response;
+
+        UnsuccessfulResponseException(@NonNull Response response) {
+            super("Unexpected response code " + response.code());
+            this.response = response;
+        }
+    }
+
+    private final Downloader downloader;
+    private final DownloadRequest request;
+    private final File destination;
+    private final File mapFile;
+    private final SegmentMap map;
+    private final RangeRequester requester;
+    private long unsavedBytes = 0;
+    private volatile boolean stopped = false;
+
+    SegmentedDownload(Downloader downloader, File destination, SegmentMap map, RangeRequester requester) {
+        this.downloader = downloader;
+        this.request = downloader.getDownloadRequest();
+        this.destination = destination;
+        this.mapFile = getSegmentMapFile(destination);
+        this.map = map;
+        this.requester = requester;
+    }
+
+    static File getSegmentMapFile(File destination) {
+        return new File(destination.getPath() + DownloadRequest.SEGMENT_MAP_SUFFIX);
+    }
+
+    static int getSegmentCount(long totalSize) {
+        return totalSize >= MIN_SEGMENTED_SIZE ? MAX_SEGMENTS : 1;
+    }
+
+    /**
+     * Parses a Content-Range header like "bytes 0-499/1234".
+     *
+     * @return Start, end (inclusive) and total size, with -1 for an unknown total size.
+     *          Null if the header cannot be parsed.
+     */
+    @Nullable
+    static long[] parseContentRange(@Nullable String header) {
+        if (header == null || !header.startsWith("bytes ")) {
+            return null;
+        }
+        int dash = header.indexOf('-');
+        int slash = header.indexOf('/');
+        if (dash < 0 || slash < dash) {
+            return null;
+        }
+        try {
+            long start = Long.parseLong(header.substring("bytes ".length(), dash).trim());
+            long end = Long.parseLong(header.substring(dash + 1, slash).trim());
+            String total = header.substring(slash + 1).trim();
+            return new long[] {start, end, "*".equals(total) ? -1 : Long.parseLong(total)};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns a validator that can be sent in an If-Range header. Weak ETags are not allowed there.
+     */
+    @Nullable
+    static String getRangeValidator(Response response) {
+        String etag = response.header("ETag");
+        if (!TextUtils.isEmpty(etag) && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return response.header("Last-Modified");
+    }
+
+    /**
+     * Downloads all segments that are not complete yet. Returns when all of them are complete,
+     * or when the download was cancelled.
+     *
+     * @param firstSegmentBody An open response body starting at the current position of the first segment,
+     *                         or null to request it
+     * @param maxConnections   Number of segments that are downloaded at the same time
+     */
+    void run(@Nullable ResponseBody firstSegmentBody, int maxConnections) throws IOException {
+        map.write(mapFile);
+        int numSegments = map.getSegmentCount();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(numSegments, maxConnections)));
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            if (file.length() != map.getTotalSize()) {
+                file.setLength(map.getTotalSize());
+            }
+            FileChannel channel = file.getChannel();
+            List<Future<?>> segments = new ArrayList<>();
+            for (int i = 0; i < numSegments; i++) {
+                final int segment = i;
+                final ResponseBody body = i == 0 ? firstSegmentBody : null;
+                segments.add(executor.submit(() -> {
+                    downloadSegment(segment, body, channel);
+                    return null;
+                }));
+            }
+            IOException error = null;
+            for (Future<?> segment : segments) {
+                try {
+                    segment.get();
+                } catch (ExecutionException e) {
+                    stopped = true;
+                    if (error == null) {
+                        error = e.getCause() instanceof IOException
+                                ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    stopped = true;
+                    error = new IOException(e);
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            executor.shutdownNow();
+            IOUtils.closeQuietly(firstSegmentBody);
+            map.write(mapFile);
+        }
+    }
+
+    private void downloadSegment(int segment, @Nullable ResponseBody body, FileChannel channel) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        while (!map.isComplete(segment) && !isStopped()) {
+            long start = map.getPosition(segment);
+            if (body == null) {
+                body = requestRange(start, map.getEnd(segment));
+            }
+            long position = start;
+            try (InputStream in = body.byteStream()) {
+                int count;
+                while (!isStopped() && position < map.getEnd(segment)
+                        && (count = in.read(buffer, 0, (int) Math.min(buffer.length, map.getEnd(segment) - position)))
+                        != -1) {
+                    if (downloader.bandwidthLimiter != null) {
+                        downloader.bandwidthLimiter.acquire(count);
+                    }
+                    ByteBuffer data = ByteBuffer.wrap(buffer, 0, count);
+                    while (data.hasRemaining()) {
+                        position += channel.write(data, position);
+                    }
+                    onDownloaded(segment, count);
+                }
+            } finally {
+                IOUtils.closeQuietly(body);
+                body = null;
+            }
+            if (position == start && !isStopped()) {
+                throw new IOException("Server sent no data for segment " + segment);
+            }
+            // Servers may send less than requested. In that case, request the rest of the segment.
+        }
+    }
+
+    private ResponseBody requestRange(long start, long end) throws IOException {
+        Log.d(TAG, "Requesting bytes " + start + " to " + end + " of " + map.getTotalSize());
+        Response response = requester.request(start, end);
+        if (response.code() == HttpURLConnection.HTTP_PARTIAL) {
+            long[] range = parseContentRange(response.header("Content-Range"));
+            if (range != null && range[0] == start && (range[2] == -1 || range[2] == map.getTotalSize())
+                    && response.body() != null) {
+                return response.body();
+            }
+            response.close();
+            throw new RangeRefusedException("Unexpected range " + response.header("Content-Range"));
+        }
+        response.close();
+        if (response.isSuccessful()) {
+            // Ranges not supported (anymore), or the file changed on the server
+            throw new RangeRefusedException("Unexpected response code " + response.code());
+        }
+        throw new UnsuccessfulResponseException(response);
+    }
+
+    private void onDownloaded(int segment, int count) throws IOException {
+        long downloaded = map.advance(segment, count);
+        request.setSoFar(downloaded);
+        request.setProgressPercent((int) (100.0 * downloaded / map.getTotalSize()));
+        boolean save;
+        synchronized (this) {
+            unsavedBytes += count;
+            save = unsavedBytes >= SAVE_INTERVAL;
+            if (save) {
+                unsavedBytes = 0;
+            }
+        }
+        if (save) {
+            map.write(mapFile);
+        }
+    }
+
+    private boolean isStopped() {
+        return stopped || downloader.cancelled;
+    }
+}
@@ -0,0 +1,154 @@
+package de.danoeh.antennapod.net.download.service.episode;
+
+import de.danoeh.antennapod.net.download.service.episode.DownloadScheduler.Decision;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static de.danoeh.antennapod.net.download.service.episode.DownloadScheduler.Decision.CANCELLED;
+import static de.danoeh.antennapod.net.download.service.episode.DownloadScheduler.Decision.DEFER;
+import static de.danoeh.antennapod.net.download.service.episode.DownloadScheduler.Decision.START;
+import static de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface.PRIORITY_AUTO;
+import static de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface.PRIORITY_QUEUE;
+import static de.danoeh.antennapod.net.download.serviceinterface.DownloadServiceInterface.PRIORITY_USER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Test class for {@link DownloadScheduler}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DownloadSchedulerTest {
+    private static final long SHORT_WAIT = 100;
+    private static final long LONG_WAIT = 10_000;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testLimitsParallelDownloads() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(SHORT_WAIT);
+        scheduler.setMaxParallelDownloads(2);
+        assertEquals(START, scheduler.acquire(1, PRIORITY_AUTO, -1, "a.example.com"));
+        assertEquals(START, scheduler.acquire(2, PRIORITY_AUTO, -1, "b.example.com"));
+        assertEquals(DEFER, scheduler.acquire(3, PRIORITY_AUTO, -1, "c.example.com"));
+
+        scheduler.remove(1);
+        assertEquals(START, scheduler.acquire(3, PRIORITY_AUTO, -1, "c.example.com"));
+    }
+
+    @Test
+    public void testLimitsDownloadsPerHost() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(SHORT_WAIT);
+        scheduler.setMaxParallelDownloads(4);
+        for (int i = 0; i < DownloadScheduler.MAX_DOWNLOADS_PER_HOST; i++) {
+            assertEquals(START, scheduler.acquire(i, PRIORITY_AUTO, -1, "example.com"));
+        }
+        assertEquals(DEFER, scheduler.acquire(10, PRIORITY_AUTO, -1, "example.com"));
+        assertEquals(START, scheduler.acquire(11, PRIORITY_AUTO, -1, "other.example.com"));
+    }
+
+    @Test
+    public void testUserDownloadStartsRightAway() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(SHORT_WAIT);
+        scheduler.setMaxParallelDownloads(1);
+        assertEquals(START, scheduler.acquire(1, PRIORITY_AUTO, -1, "example.com"));
+        assertEquals(START, scheduler.acquire(2, PRIORITY_USER, -1, "example.com"));
+        assertEquals(START, scheduler.acquire(3, PRIORITY_USER, -1, "example.com"));
+    }
+
+    @Test
+    public void testAnnouncedDownloadKeepsItsSlot() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(SHORT_WAIT);
+        scheduler.setMaxParallelDownloads(1);
+        scheduler.announce(1, PRIORITY_AUTO);
+        scheduler.announce(2, PRIORITY_AUTO);
+        // Worker of the later download happens to start first
+        assertEquals(DEFER, scheduler.acquire(2, PRIORITY_AUTO, -1, "example.com"));
+        // Queued episodes come before automatic downloads
+        assertEquals(START, scheduler.acquire(3, PRIORITY_AUTO, 5, "example.com"));
+    }
+
+    @Test
+    public void testDeferredDownloadDoesNotBlockOthers() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(SHORT_WAIT);
+        scheduler.setMaxParallelDownloads(1);
+        assertEquals(START, scheduler.acquire(1, PRIORITY_AUTO, -1, "example.com"));
+        assertEquals(DEFER, scheduler.acquire(2, PRIORITY_QUEUE, 0, "example.com"));
+        scheduler.remove(1);
+        // The deferred download is not running yet, so another download may use the slot meanwhile
+        assertEquals(START, scheduler.acquire(3, PRIORITY_AUTO, -1, "example.com"));
+    }
+
+    @Test
+    public void testStaleAnnouncementIsIgnored() throws Exception {
+        final long[] offset = {0};
+        DownloadScheduler scheduler = new DownloadScheduler(SHORT_WAIT) {
+            @Override
+            long now() {
+                return super.now() + offset[0];
+            }
+        };
+        scheduler.setMaxParallelDownloads(1);
+        scheduler.announce(1, PRIORITY_USER);
+        offset[0] = DownloadScheduler.ANNOUNCEMENT_TIMEOUT_MILLIS + 1;
+        assertEquals(START, scheduler.acquire(2, PRIORITY_AUTO, -1, "example.com"));
+    }
+
+    @Test
+    public void testSegmentsCountAgainstHostLimit() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(SHORT_WAIT);
+        scheduler.setMaxParallelDownloads(4);
+        assertEquals(START, scheduler.acquire(1, PRIORITY_AUTO, -1, "example.com"));
+        assertEquals(3, scheduler.getConnectionLimiter(1).acquireExtraConnections(3));
+        assertEquals(DEFER, scheduler.acquire(2, PRIORITY_AUTO, -1, "example.com"));
+
+        scheduler.getConnectionLimiter(1).releaseExtraConnections(3);
+        assertEquals(START, scheduler.acquire(2, PRIORITY_AUTO, -1, "example.com"));
+        assertEquals(DownloadScheduler.MAX_CONNECTIONS_PER_HOST - 2,
+                scheduler.getConnectionLimiter(2).acquireExtraConnections(3));
+        assertEquals(0, scheduler.getConnectionLimiter(1).acquireExtraConnections(3));
+    }
+
+    @Test
+    public void testWaitingDownloadsStartInQueueOrder() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(LONG_WAIT);
+        scheduler.setMaxParallelDownloads(1);
+        assertEquals(START, scheduler.acquire(1, PRIORITY_AUTO, -1, "example.com"));
+
+        Future<Decision> third = executor.submit(() -> scheduler.acquire(4, PRIORITY_AUTO, 3, "example.com"));
+        Thread.sleep(SHORT_WAIT);
+        Future<Decision> first = executor.submit(() -> scheduler.acquire(2, PRIORITY_AUTO, 1, "example.com"));
+        // Only the download that is next in line keeps waiting
+        assertEquals(DEFER, third.get(LONG_WAIT / 2, TimeUnit.MILLISECONDS));
+        assertFalse(first.isDone());
+
+        assertEquals(Arrays.asList(1L, 2L, 4L), scheduler.getScheduledMediaIds());
+
+        scheduler.remove(1);
+        assertEquals(START, first.get(LONG_WAIT / 2, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testCancelWhileWaiting() throws Exception {
+        DownloadScheduler scheduler = new DownloadScheduler(LONG_WAIT);
+        scheduler.setMaxParallelDownloads(1);
+        assertEquals(START, scheduler.acquire(1, PRIORITY_AUTO, -1, "example.com"));
+        Future<Decision> waiting = executor.submit(() -> scheduler.acquire(2, PRIORITY_AUTO, -1, "example.com"));
+        Thread.sleep(SHORT_WAIT);
+        scheduler.remove(2);
+        assertEquals(CANCELLED, waiting.get(LONG_WAIT / 2, TimeUnit.MILLISECONDS));
+        assertEquals(1, scheduler.getScheduledMediaIds().size());
+    }
+}
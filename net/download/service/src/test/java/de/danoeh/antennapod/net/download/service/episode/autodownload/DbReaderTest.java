@@ -8,10 +8,14 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 import androidx.test.platform.app.InstrumentationRegistry;
 
+import de.danoeh.antennapod.model.feed.Chapter;
+import de.danoeh.antennapod.model.feed.EmbeddedChapterImage;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedCounter;
 import de.danoeh.antennapod.model.feed.FeedItem;
@@ -37,6 +41,7 @@ import org.robolectric.RobolectricTestRunner;
 import static de.danoeh.antennapod.net.download.service.episode.autodownload.DbTestUtils.saveFeedlist;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -123,6 +128,27 @@ public class DbReaderTest {
             }
         }
 
+        @Test
+        public void testGetFeedByIdentifyingValue() {
+            List<Feed> feeds = saveFeedlist(10, 0, false);
+            for (Feed feed : feeds) {
+                Feed savedFeed = DBReader.getFeedByIdentifyingValue(feed.getIdentifyingValue());
+                assertNotNull(savedFeed);
+                assertEquals(feed.getId(), savedFeed.getId());
+            }
+            assertNull(DBReader.getFeedByIdentifyingValue("url0"));
+            assertNull(DBReader.getFeedByIdentifyingValue(null));
+
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            Feed feed = new Feed("https://example.com/feed", null, "Feed without identifier");
+            adapter.setCompleteFeed(feed);
+            adapter.setFeedDownloadUrl("https://example.com/feed", "https://example.com/moved");
+            adapter.close();
+            assertNull(DBReader.getFeedByIdentifyingValue("https://example.com/feed"));
+            assertEquals(feed.getId(), DBReader.getFeedByIdentifyingValue("https://example.com/moved").getId());
+        }
+
         @Test
         public void testLoadFeedDataOfFeedItemlist() {
             final int numFeeds = 10;
@@ -430,6 +456,56 @@ public class DbReaderTest {
             }
         }
 
+        @Test
+        public void testLoadCachedChapters() throws Exception {
+            List<Feed> feeds = saveFeedlist(1, 2, true);
+            long itemId = feeds.get(0).getItems().get(0).getId();
+            Chapter fromFeed = new Chapter(1000, "Feed chapter", null, null);
+            fromFeed.setId(42);
+            List<Chapter> chapters = Arrays.asList(
+                    new Chapter(0, "Intro", "https://example.com", EmbeddedChapterImage.makeUrl(1234, 567)),
+                    fromFeed);
+            DBWriter.setCachedChapters(itemId, "fingerprint", chapters).get();
+
+            List<Chapter> cached = DBReader.loadCachedChapters(itemId, "fingerprint");
+            assertNotNull(cached);
+            assertEquals(2, cached.size());
+            assertEquals("Intro", cached.get(0).getTitle());
+            assertEquals("https://example.com", cached.get(0).getLink());
+            assertEquals(EmbeddedChapterImage.makeUrl(1234, 567), cached.get(0).getImageUrl());
+            assertEquals(0, cached.get(0).getId());
+            assertEquals(1000, cached.get(1).getStart());
+            assertEquals(42, cached.get(1).getId());
+
+            assertNull(DBReader.loadCachedChapters(itemId, "changed fingerprint"));
+            assertNull(DBReader.loadCachedChapters(feeds.get(0).getItems().get(1).getId(), "fingerprint"));
+        }
+
+        @Test
+        public void testLoadCachedChaptersEmpty() throws Exception {
+            List<Feed> feeds = saveFeedlist(1, 1, true);
+            long itemId = feeds.get(0).getItems().get(0).getId();
+            DBWriter.setCachedChapters(itemId, "fingerprint",
+                    Collections.singletonList(new Chapter(0, "Old", null, null))).get();
+            DBWriter.setCachedChapters(itemId, "fingerprint", Collections.emptyList()).get();
+
+            List<Chapter> cached = DBReader.loadCachedChapters(itemId, "fingerprint");
+            assertNotNull(cached);
+            assertTrue(cached.isEmpty());
+        }
+
+        @Test
+        public void testSavingItemKeepsCachedChapters() throws Exception {
+            List<Feed> feeds = saveFeedlist(1, 1, false, true, 2);
+            FeedItem item = feeds.get(0).getItems().get(0);
+            DBWriter.setCachedChapters(item.getId(), "fingerprint", item.getChapters()).get();
+
+            DBWriter.setFeedItem(item).get();
+            List<Chapter> cached = DBReader.loadCachedChapters(item.getId(), "fingerprint");
+            assertNotNull(cached);
+            assertEquals(2, cached.size());
+        }
+
         @Test
         public void testGetItemWithChapters() {
             final int numChapters = 3;
@@ -463,6 +539,196 @@ public class DbReaderTest {
             assertEquals(item1.getItemIdentifier(), feedItemByGuid.getItemIdentifier());
         }
 
+        @Test
+        public void testGetItemsByGuidOrEpisodeUrl() {
+            List<Feed> feeds = saveFeedlist(1, 3, true);
+            FeedItem item1 = feeds.get(0).getItems().get(0);
+            FeedItem item2 = feeds.get(0).getItems().get(2);
+
+            List<FeedItem> items = DBReader.getFeedItemsByGuidOrEpisodeUrl(
+                    Arrays.asList(item1.getItemIdentifier(), null, "unknown guid", null),
+                    Arrays.asList("unknown url", item2.getMedia().getDownloadUrl(), "unknown url", "unknown url"));
+            assertEquals(4, items.size());
+            assertEquals(item1.getId(), items.get(0).getId());
+            assertEquals(item2.getId(), items.get(1).getId());
+            assertNull(items.get(2));
+            assertNull(items.get(3));
+        }
+
+        @Test
+        public void testGetPlayedEpisodesForSync() {
+            List<Feed> feeds = saveFeedlist(3, 5, true);
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setFeedState(feeds.get(2).getId(), Feed.STATE_NOT_SUBSCRIBED);
+            adapter.close();
+            List<FeedItem> loaded = new ArrayList<>();
+            long lastItemId = 0;
+            List<FeedItem> page = DBReader.getPlayedEpisodesForSync(lastItemId, 4);
+            while (!page.isEmpty()) {
+                assertTrue(page.size() <= 4);
+                for (FeedItem item : page) {
+                    assertTrue(item.getId() > lastItemId);
+                    lastItemId = item.getId();
+                }
+                loaded.addAll(page);
+                page = DBReader.getPlayedEpisodesForSync(lastItemId, 4);
+            }
+            // Episodes of the feed that is not subscribed are not uploaded
+            assertEquals(10, loaded.size());
+            FeedItem item = feeds.get(1).getItems().get(3);
+            FeedItem loadedItem = loaded.get(8);
+            assertEquals(item.getId(), loadedItem.getId());
+            assertEquals(item.getItemIdentifier(), loadedItem.getItemIdentifier());
+            assertEquals(feeds.get(1).getDownloadUrl(), loadedItem.getFeed().getDownloadUrl());
+            assertEquals(item.getMedia().getDownloadUrl(), loadedItem.getMedia().getDownloadUrl());
+        }
+
+        @Test
+        public void testSearchFeedItemsPrefixAndPaging() {
+            saveFeedlist(1, 10, false);
+            List<FeedItem> firstPage = DBReader.searchFeedItems(0, "ite", Feed.STATE_SUBSCRIBED, 0, 6);
+            assertEquals(6, firstPage.size());
+            assertEquals("item 9", firstPage.get(0).getTitle());
+            List<FeedItem> secondPage = DBReader.searchFeedItems(0, "ite", Feed.STATE_SUBSCRIBED, 6, 6);
+            assertEquals(4, secondPage.size());
+            assertEquals("item 0", secondPage.get(3).getTitle());
+            assertTrue(DBReader.searchFeedItems(0, "\" OR *", Feed.STATE_SUBSCRIBED, 0, 6).isEmpty());
+        }
+
+        @Test
+        public void testSearchFeedItemsRanksTitleMatchesFirst() {
+            Feed feed = saveFeedlist(1, 3, false).get(0);
+            FeedItem titleMatch = feed.getItems().get(0);
+            titleMatch.setTitle("Special episode");
+            FeedItem descriptionMatch = feed.getItems().get(2);
+            descriptionMatch.setDescriptionIfLonger("With a special guest");
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setSingleFeedItem(titleMatch);
+            adapter.setSingleFeedItem(descriptionMatch);
+            adapter.close();
+
+            List<FeedItem> results = DBReader.searchFeedItems(feed.getId(), "special", Feed.STATE_SUBSCRIBED, 0, 10);
+            assertEquals(2, results.size());
+            assertEquals(titleMatch.getId(), results.get(0).getId());
+            assertEquals(descriptionMatch.getId(), results.get(1).getId());
+            assertTrue(DBReader.searchFeedItems(0, "item 1", Feed.STATE_SUBSCRIBED, 0, 10).stream()
+                    .noneMatch(item -> item.getId() == titleMatch.getId()));
+        }
+
+        @Test
+        public void testSearchFeedItemsFindsWordsInsideTitles() {
+            Feed feed = saveFeedlist(1, 4, false).get(0);
+            FeedItem substringTitle = feed.getItems().get(0);
+            substringTitle.setTitle("The best podcast of the week");
+            FeedItem cjkTitle = feed.getItems().get(1);
+            cjkTitle.setTitle("東京タワーの話");
+            FeedItem substringDescription = feed.getItems().get(2);
+            substringDescription.setDescriptionIfLonger("Another podcast");
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setSingleFeedItem(substringTitle);
+            adapter.setSingleFeedItem(cjkTitle);
+            adapter.setSingleFeedItem(substringDescription);
+            adapter.close();
+
+            List<FeedItem> results = DBReader.searchFeedItems(0, "cast", Feed.STATE_SUBSCRIBED, 0, 10);
+            assertEquals(1, results.size());
+            assertEquals(substringTitle.getId(), results.get(0).getId());
+            results = DBReader.searchFeedItems(0, "タワー", Feed.STATE_SUBSCRIBED, 0, 10);
+            assertEquals(1, results.size());
+            assertEquals(cjkTitle.getId(), results.get(0).getId());
+            // Descriptions are only searched by the beginning of words
+            assertEquals(2, DBReader.searchFeedItems(0, "podc", Feed.STATE_SUBSCRIBED, 0, 10).size());
+        }
+
+        @Test
+        public void testSearchFeedItemsPagesThroughWordsInsideTitles() {
+            Feed feed = saveFeedlist(1, 4, false).get(0);
+            FeedItem prefixTitle = feed.getItems().get(0);
+            prefixTitle.setTitle("Castaways");
+            FeedItem substringTitle1 = feed.getItems().get(1);
+            substringTitle1.setTitle("Podcast one");
+            FeedItem substringTitle2 = feed.getItems().get(2);
+            substringTitle2.setTitle("Podcast two");
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setSingleFeedItem(prefixTitle);
+            adapter.setSingleFeedItem(substringTitle1);
+            adapter.setSingleFeedItem(substringTitle2);
+            adapter.close();
+
+            List<FeedItem> firstPage = DBReader.searchFeedItems(0, "cast", Feed.STATE_SUBSCRIBED, 0, 2);
+            assertEquals(2, firstPage.size());
+            assertEquals(prefixTitle.getId(), firstPage.get(0).getId());
+            List<FeedItem> secondPage = DBReader.searchFeedItems(0, "cast", Feed.STATE_SUBSCRIBED, 2, 2);
+            assertEquals(1, secondPage.size());
+            assertNotEquals(firstPage.get(1).getId(), secondPage.get(0).getId());
+            assertTrue(DBReader.searchFeedItems(0, "cast", Feed.STATE_SUBSCRIBED, 3, 2).isEmpty());
+        }
+
+        @Test
+        public void testSearchFeedsFindsWordsInsideValues() {
+            saveFeedlist(3, 0, false);
+            assertEquals(3, DBReader.searchFeeds("eed", Feed.STATE_SUBSCRIBED, 0, 10).size());
+            assertEquals(3, DBReader.searchFeeds("escr", Feed.STATE_SUBSCRIBED, 0, 10).size());
+            assertEquals(1, DBReader.searchFeeds("eed 2", Feed.STATE_SUBSCRIBED, 0, 10).size());
+        }
+
+        @Test
+        public void testSearchFeeds() {
+            saveFeedlist(3, 0, false);
+            List<Feed> results = DBReader.searchFeeds("feed 1", Feed.STATE_SUBSCRIBED, 0, 10);
+            assertEquals(1, results.size());
+            assertEquals("feed 1", results.get(0).getTitle());
+            assertEquals(3, DBReader.searchFeeds("descr", Feed.STATE_SUBSCRIBED, 0, 10).size());
+        }
+
+        @Test
+        public void testGetEpisodesAfter() {
+            // Titles and durations are the same in all feeds, so the pages need to break ties
+            saveFeedlist(3, 20, true);
+            SortOrder[] sortOrders = {SortOrder.DATE_NEW_OLD, SortOrder.DATE_OLD_NEW, SortOrder.EPISODE_TITLE_A_Z,
+                SortOrder.EPISODE_TITLE_Z_A, SortOrder.DURATION_LONG_SHORT, SortOrder.SIZE_SMALL_LARGE};
+            for (SortOrder sortOrder : sortOrders) {
+                List<FeedItem> expected = DBReader.getEpisodes(0, Integer.MAX_VALUE,
+                        FeedItemFilter.unfiltered(), sortOrder);
+                List<FeedItem> pages = new ArrayList<>();
+                List<FeedItem> page;
+                do {
+                    FeedItem after = pages.isEmpty() ? null : pages.get(pages.size() - 1);
+                    page = DBReader.getEpisodesAfter(after, 7, FeedItemFilter.unfiltered(), sortOrder);
+                    pages.addAll(page);
+                } while (page.size() == 7);
+                assertEquals(60, pages.size());
+                for (int i = 0; i < expected.size(); i++) {
+                    assertEquals(sortOrder.name(), expected.get(i).getId(), pages.get(i).getId());
+                }
+            }
+        }
+
+        @Test
+        public void testGetFeedItemsAfter() {
+            Feed feed = DBReader.getFeed(saveFeedlist(2, 10, true).get(0).getId(), true, 0, Integer.MAX_VALUE);
+            List<FeedItem> expected = feed.getItems();
+            List<FeedItem> firstPage = DBReader.getFeedItemsAfter(feed, true, null, 4);
+            List<FeedItem> secondPage = DBReader.getFeedItemsAfter(feed, true, firstPage.get(3), 100);
+            assertEquals(4, firstPage.size());
+            assertEquals(6, secondPage.size());
+            assertEquals(expected.get(3).getId(), firstPage.get(3).getId());
+            assertEquals(expected.get(4).getId(), secondPage.get(0).getId());
+            assertEquals(feed, secondPage.get(0).getFeed());
+        }
+
+        @Test
+        public void testGetAverageReleaseIntervals() {
+            Feed feed = saveFeedlist(1, 5, false).get(0);
+            Feed singleEpisode = saveFeedlist(1, 1, false).get(0);
+            Map<Long, Long> intervals = DBReader.getAverageReleaseIntervals(TimeUnit.DAYS.toMillis(30));
+            assertEquals(TimeUnit.DAYS.toMillis(1), (long) intervals.get(feed.getId()));
+            assertFalse(intervals.containsKey(singleEpisode.getId()));
+        }
     }
 
     @RunWith(ParameterizedRobolectricTestRunner.class)
@@ -27,6 +27,7 @@ import org.robolectric.RobolectricTestRunner;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
@@ -753,6 +754,30 @@ public class DbWriterTest {
         }
     }
 
+    @Test
+    public void testAddQueueItemAtSamePosition() throws Exception {
+        // More insertions between the same neighbours than there are free keys between them
+        final int numItems = 40;
+        Feed feed = createTestFeed(numItems);
+        withPodDB(adapter -> adapter.setQueue(feed.getItems().subList(0, 2)));
+
+        List<Long> expected = new ArrayList<>(toItemIds(feed.getItems().subList(0, 2)));
+        for (int i = 2; i < numItems; i++) {
+            long itemId = feed.getItems().get(i).getId();
+            DBWriter.addQueueItemAt(context, itemId, 1).get(TIMEOUT, TimeUnit.SECONDS);
+            expected.add(1, itemId);
+        }
+        assertEquals(expected, toItemIds(DBReader.getQueue()));
+
+        DBWriter.moveQueueItem(numItems - 1, 0, false).get(TIMEOUT, TimeUnit.SECONDS);
+        expected.add(0, expected.remove(numItems - 1));
+        FeedItem first = feed.getItems().get(0);
+        DBWriter.moveQueueItemsToBottom(Collections.singletonList(first)).get(TIMEOUT, TimeUnit.SECONDS);
+        expected.remove(Long.valueOf(first.getId()));
+        expected.add(first.getId());
+        assertEquals(expected, toItemIds(DBReader.getQueue()));
+    }
+
     @Test
     public void testRemoveAllNewFlags() throws Exception {
         final int numItems = 10;
@@ -0,0 +1,206 @@
+package de.danoeh.antennapod.net.download.service.feed;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.danoeh.antennapod.model.feed.Feed;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link FeedRefreshEngine}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FeedRefreshEngineTest {
+
+    @Test
+    public void testAllFeedsAreStoredOnOneThread() {
+        List<Feed> feeds = createFeeds(30, 10);
+        TestStages stages = new TestStages();
+        FeedRefreshEngine<Feed> engine = new FeedRefreshEngine<>(stages, 4, 2, 2);
+        engine.run(feeds);
+
+        assertEquals(30, stages.stored.size());
+        assertEquals(30, stages.finished.get());
+        assertEquals(1, stages.storeThreads.size());
+        assertEquals(30, engine.getStatistics().stored.get());
+        assertFalse(stages.hostLimitExceeded.get());
+    }
+
+    @Test
+    public void testConnectionsPerHost() {
+        List<Feed> feeds = createFeeds(20, 1);
+        TestStages stages = new TestStages();
+        new FeedRefreshEngine<>(stages, 8, 2, 2).run(feeds);
+
+        assertEquals(20, stages.stored.size());
+        assertEquals(2, stages.maxConnections.get());
+        assertFalse(stages.hostLimitExceeded.get());
+    }
+
+    @Test
+    public void testFailuresAndEmptyResults() {
+        List<Feed> feeds = createFeeds(10, 10);
+        TestStages stages = new TestStages();
+        stages.failingFeed = feeds.get(3);
+        stages.emptyFeed = feeds.get(5);
+        FeedRefreshEngine<Feed> engine = new FeedRefreshEngine<>(stages, 3, 2, 2);
+        engine.run(feeds);
+
+        assertEquals(8, stages.stored.size());
+        assertEquals(Collections.singletonList(feeds.get(3)), stages.failed);
+        assertEquals(10, stages.finished.get());
+        assertEquals(1, engine.getStatistics().failed.get());
+        assertEquals(1, engine.getStatistics().notStored.get());
+    }
+
+    @Test
+    public void testCancelStoresFetchedFeeds() {
+        List<Feed> feeds = createFeeds(50, 50);
+        TestStages stages = new TestStages();
+        stages.cancelAfter = 5;
+        FeedRefreshEngine<Feed> engine = new FeedRefreshEngine<>(stages, 2, 2, 2);
+        engine.run(feeds);
+
+        // Every feed that was downloaded is stored, but no new downloads are started
+        assertEquals(stages.fetched.get(), stages.stored.size());
+        assertTrue(stages.fetched.get() < 10);
+        assertEquals(50 - stages.fetched.get(), engine.getStatistics().skipped.get());
+    }
+
+    @Test
+    public void testInterruptStopsAllThreads() throws Exception {
+        List<Feed> feeds = createFeeds(10, 10);
+        TestStages stages = new TestStages();
+        stages.fetchMillis = TimeUnit.MINUTES.toMillis(1);
+        Thread refreshThread = new Thread(() -> new FeedRefreshEngine<>(stages, 2, 2, 2).run(feeds));
+        refreshThread.start();
+        while (stages.fetched.get() < 2) {
+            Thread.sleep(5);
+        }
+        refreshThread.interrupt();
+        refreshThread.join(5000);
+        assertFalse(refreshThread.isAlive());
+
+        long deadline = System.currentTimeMillis() + 5000;
+        while (isStoreThreadAlive() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertFalse(isStoreThreadAlive());
+        assertTrue(stages.stored.isEmpty());
+        assertEquals(2, stages.fetched.get());
+    }
+
+    @Test
+    public void testSortByExpectedNewEpisodes() {
+        long now = TimeUnit.DAYS.toMillis(1000);
+        Feed daily = createFeed(1, "https://example.com/1", now - TimeUnit.DAYS.toMillis(1));
+        Feed weekly = createFeed(2, "https://example.com/2", now - TimeUnit.DAYS.toMillis(1));
+        Feed neverRefreshed = createFeed(3, "https://example.com/3", 0);
+        Feed unknownInterval = createFeed(4, "https://example.com/4", now - TimeUnit.DAYS.toMillis(3));
+        Map<Long, Long> intervals = new HashMap<>();
+        intervals.put(1L, TimeUnit.DAYS.toMillis(1));
+        intervals.put(2L, TimeUnit.DAYS.toMillis(7));
+        intervals.put(3L, TimeUnit.DAYS.toMillis(7));
+
+        List<Feed> feeds = new ArrayList<>(Arrays.asList(unknownInterval, weekly, daily, neverRefreshed));
+        FeedRefreshEngine.sortByExpectedNewEpisodes(feeds, intervals, now);
+        assertEquals(Arrays.asList(neverRefreshed, daily, weekly, unknownInterval), feeds);
+    }
+
+    private static boolean isStoreThreadAlive() {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("FeedRefreshStore".equals(thread.getName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<Feed> createFeeds(int numFeeds, int numHosts) {
+        List<Feed> feeds = new ArrayList<>();
+        for (int i = 0; i < numFeeds; i++) {
+            feeds.add(createFeed(i + 1, "https://host" + (i % numHosts) + ".example.com/feed" + i, 0));
+        }
+        return feeds;
+    }
+
+    private static Feed createFeed(long id, String url, long lastRefreshAttempt) {
+        Feed feed = new Feed(url, null, "Feed " + id);
+        feed.setId(id);
+        feed.setLastRefreshAttempt(lastRefreshAttempt);
+        return feed;
+    }
+
+    private static class TestStages implements FeedRefreshEngine.Stages<Feed> {
+        final List<Feed> stored = Collections.synchronizedList(new ArrayList<>());
+        final List<Feed> failed = Collections.synchronizedList(new ArrayList<>());
+        final Map<Thread, Boolean> storeThreads = new ConcurrentHashMap<>();
+        final Map<String, AtomicInteger> connections = new ConcurrentHashMap<>();
+        final AtomicInteger maxConnections = new AtomicInteger();
+        final AtomicBoolean hostLimitExceeded = new AtomicBoolean();
+        final AtomicInteger fetched = new AtomicInteger();
+        final AtomicInteger finished = new AtomicInteger();
+        Feed failingFeed;
+        Feed emptyFeed;
+        int cancelAfter = Integer.MAX_VALUE;
+        long fetchMillis = 5;
+
+        @Nullable
+        @Override
+        public Feed fetch(@NonNull Feed feed) throws Exception {
+            fetched.incrementAndGet();
+            String host = feed.getDownloadUrl().split("/")[2];
+            AtomicInteger hostConnections = connections.computeIfAbsent(host, h -> new AtomicInteger());
+            int current = hostConnections.incrementAndGet();
+            maxConnections.accumulateAndGet(current, Math::max);
+            if (current > 2) {
+                hostLimitExceeded.set(true);
+            }
+            Thread.sleep(fetchMillis);
+            hostConnections.decrementAndGet();
+            if (feed == failingFeed) {
+                throw new Exception("Download failed");
+            }
+            return feed == emptyFeed ? null : feed;
+        }
+
+        @Nullable
+        @Override
+        public Feed store(@NonNull Feed feed) {
+            storeThreads.put(Thread.currentThread(), true);
+            stored.add(feed);
+            return feed;
+        }
+
+        @Override
+        public void onFailed(@NonNull Feed feed, @NonNull Exception e) {
+            failed.add(feed);
+        }
+
+        @Override
+        public void onFinished(@NonNull Feed feed, @Nullable Feed savedFeed) {
+            finished.incrementAndGet();
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return fetched.get() >= cancelAfter;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package de.danoeh.antennapod.net.download.service.feed.remote;
+
+import android.os.Bundle;
+import de.danoeh.antennapod.model.download.DownloadRequest;
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.parser.feed.FeedHandlerResult;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test class for {@link FeedParserTask}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FeedParserTaskTest {
+    private static final String FEED = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<rss version=\"2.0\"><channel><title>Title</title>"
+            + "<item><title>Episode</title><guid>1</guid></item></channel></rss>\n\n";
+
+    @Test
+    public void testStreamedContentIsHashed() {
+        FeedParserTask task = new FeedParserTask(createRequest());
+        task.onResponseBody(new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)), null);
+        FeedHandlerResult result = task.call();
+
+        assertTrue(task.isSuccessful());
+        assertFalse(task.isContentUnchanged());
+        assertNotNull(result);
+        assertEquals("Title", result.feed.getTitle());
+        assertNotNull(task.getContentHash());
+    }
+
+    @Test
+    public void testUnchangedContentIsNotStored() {
+        FeedParserTask firstTask = new FeedParserTask(createRequest());
+        firstTask.onResponseBody(new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)), null);
+        firstTask.call();
+
+        FeedParserTask task = new FeedParserTask(createRequest(), firstTask.getContentHash());
+        task.onResponseBody(new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)), null);
+
+        assertTrue(task.isSuccessful());
+        assertTrue(task.isContentUnchanged());
+        assertNull(task.call());
+        assertEquals(firstTask.getContentHash(), task.getContentHash());
+    }
+
+    @Test
+    public void testChangedContentIsParsed() {
+        FeedParserTask task = new FeedParserTask(createRequest(), "0123456789abcdef");
+        task.onResponseBody(new ByteArrayInputStream(FEED.getBytes(StandardCharsets.UTF_8)), null);
+        FeedHandlerResult result = task.call();
+
+        assertTrue(task.isSuccessful());
+        assertFalse(task.isContentUnchanged());
+        assertNotNull(result);
+        assertEquals(1, result.feed.getItems().size());
+    }
+
+    private static DownloadRequest createRequest() {
+        return new DownloadRequest("/nonexistent/feed.xml", "https://example.com/feed", "Title", 1,
+                Feed.FEEDFILETYPE_FEED, null, null, new Bundle(), false);
+    }
+}
@@ -0,0 +1,211 @@
+package de.danoeh.antennapod.net.download.service.feed.remote;
+
+import de.danoeh.antennapod.model.download.DownloadRequest;
+import de.danoeh.antennapod.model.feed.FeedMedia;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test class for {@link SegmentedDownload} and {@link SegmentMap}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SegmentedDownloadTest {
+    private static final int SIZE = 10_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = new byte[SIZE];
+    private File destination;
+    private Downloader downloader;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(content);
+        destination = folder.newFile("episode.mp3");
+        downloader = new Downloader(new DownloadRequest(destination.getPath(), "https://example.com/episode.mp3",
+                "Episode", 1, FeedMedia.FEEDFILETYPE_FEEDMEDIA, null, null, null, false)) {
+            @Override
+            protected void download() {
+            }
+        };
+    }
+
+    @Test
+    public void testCreateSegmentMap() {
+        SegmentMap map = SegmentMap.create(SIZE, 3, null);
+        assertEquals(3, map.getSegmentCount());
+        assertEquals(0, map.getPosition(0));
+        assertEquals(map.getEnd(0), map.getPosition(1));
+        assertEquals(map.getEnd(1), map.getPosition(2));
+        assertEquals(SIZE, map.getEnd(2));
+        assertEquals("", map.getValidator());
+
+        assertEquals(2, SegmentMap.create(2, 4, null).getSegmentCount());
+    }
+
+    @Test
+    public void testSegmentMapIsStored() throws IOException {
+        File file = new File(folder.getRoot(), "map");
+        SegmentMap map = SegmentMap.create(SIZE, 4, "\"etag\"");
+        map.advance(1, 100);
+        map.advance(3, SIZE / 4);
+        map.write(file);
+
+        SegmentMap restored = SegmentMap.read(file);
+        assertNotNull(restored);
+        assertEquals(SIZE, restored.getTotalSize());
+        assertEquals("\"etag\"", restored.getValidator());
+        assertEquals(4, restored.getSegmentCount());
+        assertEquals(map.getPosition(1), restored.getPosition(1));
+        assertTrue(restored.isComplete(3));
+        assertEquals(100 + SIZE / 4, restored.getDownloaded());
+
+        FileUtils.writeByteArrayToFile(file, new byte[] {1, 2, 3});
+        assertNull(SegmentMap.read(file));
+        assertNull(SegmentMap.read(new File(folder.getRoot(), "missing")));
+    }
+
+    @Test
+    public void testParseContentRange() {
+        assertArrayEquals(new long[] {0, 499, 1234}, SegmentedDownload.parseContentRange("bytes 0-499/1234"));
+        assertArrayEquals(new long[] {500, 1233, -1}, SegmentedDownload.parseContentRange("bytes 500-1233/*"));
+        assertNull(SegmentedDownload.parseContentRange(null));
+        assertNull(SegmentedDownload.parseContentRange("bytes */1234"));
+        assertNull(SegmentedDownload.parseContentRange("items 0-1/2"));
+    }
+
+    @Test
+    public void testDownloadWithShortResponses() throws IOException {
+        SegmentMap map = SegmentMap.create(SIZE, 4, null);
+        // Servers may send less than requested
+        new SegmentedDownload(downloader, destination, map,
+                (start, end) -> partialResponse(start, Math.min(end, start + 300))).run(null, 4);
+
+        assertTrue(map.isComplete());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+        assertEquals(SIZE, downloader.getDownloadRequest().getSoFar());
+        assertEquals(100, downloader.getDownloadRequest().getProgressPercent());
+    }
+
+    @Test
+    public void testResumeDownloadsOnlyMissingParts() throws IOException {
+        SegmentMap map = SegmentMap.create(SIZE, 4, null);
+        try (RandomAccessFile file = new RandomAccessFile(destination, "rw")) {
+            file.setLength(SIZE);
+            for (int i = 0; i < map.getSegmentCount(); i++) {
+                file.seek(map.getPosition(i));
+                file.write(content, (int) map.getPosition(i), 1000);
+                map.advance(i, 1000);
+            }
+        }
+        map.write(SegmentedDownload.getSegmentMapFile(destination));
+
+        SegmentMap restored = SegmentMap.read(SegmentedDownload.getSegmentMapFile(destination));
+        AtomicLong requested = new AtomicLong();
+        new SegmentedDownload(downloader, destination, restored, (start, end) -> {
+            requested.addAndGet(end - start);
+            return partialResponse(start, end);
+        }).run(null, 4);
+
+        assertEquals(SIZE - 4000, requested.get());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+    }
+
+    @Test
+    public void testFirstSegmentUsesOpenResponse() throws IOException {
+        SegmentMap map = SegmentMap.create(SIZE, 2, null);
+        AtomicLong requested = new AtomicLong();
+        new SegmentedDownload(downloader, destination, map, (start, end) -> {
+            requested.addAndGet(end - start);
+            return partialResponse(start, end);
+        }).run(partialResponse(0, SIZE).body(), 2);
+
+        assertEquals(SIZE - map.getEnd(0), requested.get());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+    }
+
+    @Test
+    public void testDownloadWithFewerConnectionsThanSegments() throws IOException {
+        SegmentMap map = SegmentMap.create(SIZE, 4, null);
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        new SegmentedDownload(downloader, destination, map, (start, end) -> {
+            threads.add(Thread.currentThread());
+            return partialResponse(start, end);
+        }).run(null, 1);
+
+        assertEquals(1, threads.size());
+        assertTrue(map.isComplete());
+        assertArrayEquals(content, FileUtils.readFileToByteArray(destination));
+    }
+
+    @Test
+    public void testRangeRefused() throws IOException {
+        SegmentMap map = SegmentMap.create(SIZE, 4, null);
+        try {
+            new SegmentedDownload(downloader, destination, map,
+                    (start, end) -> response(200, null, content)).run(null, 4);
+            fail("Expected RangeRefusedException");
+        } catch (SegmentedDownload.RangeRefusedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testErrorResponse() throws IOException {
+        SegmentMap map = SegmentMap.create(SIZE, 4, null);
+        try {
+            new SegmentedDownload(downloader, destination, map,
+                    (start, end) -> response(403, null, new byte[0])).run(null, 4);
+            fail("Expected UnsuccessfulResponseException");
+        } catch (SegmentedDownload.UnsuccessfulResponseException e) {
+            assertEquals(403, e.response.code());
+        }
+        // Progress is kept for the next attempt
+        assertNotNull(SegmentMap.read(SegmentedDownload.getSegmentMapFile(destination)));
+    }
+
+    private Response partialResponse(long start, long end) {
+        return response(206, "bytes " + start + "-" + (end - 1) + "/" + SIZE,
+                Arrays.copyOfRange(content, (int) start, (int) end));
+    }
+
+    private static Response response(int code, String contentRange, byte[] body) {
+        Response.Builder builder = new Response.Builder()
+                .request(new Request.Builder().url("https://example.com/episode.mp3").build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("Test")
+                .body(ResponseBody.create(body, MediaType.get("audio/mpeg")));
+        if (contentRange != null) {
+            builder.header("Content-Range", contentRange);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,132 @@
+package de.danoeh.antennapod.net.sync.service;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.VisibleForTesting;
+
+import de.danoeh.antennapod.net.sync.serviceinterface.EpisodeAction;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Append-only storage for episode actions that still need to be uploaded. Each action is one row,
+ * so enqueueing does not need to read or rewrite the actions that are already queued.
+ */
+class EpisodeActionQueueDatabase extends SQLiteOpenHelper {
+    private static final String TAG = "EpisodeActionQueueDb";
+    private static final String DATABASE_NAME = "SyncEpisodeActions.db";
+    private static final int VERSION = 1;
+
+    static final String TABLE_NAME = "EpisodeActions";
+    static final String KEY_ID = "id";
+    static final String KEY_PODCAST = "podcast";
+    static final String KEY_EPISODE = "episode";
+    static final String KEY_ACTION = "action";
+    static final String KEY_JSON = "json";
+
+    private static final String CREATE_TABLE = "CREATE TABLE " + TABLE_NAME + " ("
+            + KEY_ID + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+            + KEY_PODCAST + " TEXT NOT NULL, "
+            + KEY_EPISODE + " TEXT NOT NULL, "
+            + KEY_ACTION + " TEXT NOT NULL, "
+            + KEY_JSON + " TEXT NOT NULL)";
+
+    private static final String CREATE_INDEX_EPISODE = "CREATE INDEX " + TABLE_NAME + "_episode ON "
+            + TABLE_NAME + " (" + KEY_ACTION + ", " + KEY_PODCAST + ", " + KEY_EPISODE + ")";
+
+    private static EpisodeActionQueueDatabase instance;
+
+    private final Context context;
+
+    private EpisodeActionQueueDatabase(Context context) {
+        super(context, DATABASE_NAME, null, VERSION);
+        this.context = context;
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    static synchronized EpisodeActionQueueDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = new EpisodeActionQueueDatabase(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the database, so that the next test opens the database of its own context.
+     */
+    @VisibleForTesting(otherwise = VisibleForTesting.NONE)
+    static synchronized void tearDownTests() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(CREATE_TABLE);
+        db.execSQL(CREATE_INDEX_EPISODE);
+        importLegacyQueue(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        Log.w(TAG, "Upgrading from version " + oldVersion + " to " + newVersion + ".");
+    }
+
+    /**
+     * Inserts one action at the end of the queue.
+     *
+     * @return the row ID of the action, or -1 if it could not be stored
+     */
+    static long insert(SQLiteDatabase db, EpisodeAction action) {
+        if (TextUtils.isEmpty(action.getPodcast()) || TextUtils.isEmpty(action.getEpisode())) {
+            // The server cannot assign the action to an episode
+            Log.w(TAG, "Not queueing action without podcast or episode: " + action);
+            return -1;
+        }
+        JSONObject json = action.writeToJsonObject();
+        if (json == null) {
+            Log.w(TAG, "Not queueing action that cannot be serialized: " + action);
+            return -1;
+        }
+        ContentValues values = new ContentValues();
+        values.put(KEY_PODCAST, action.getPodcast());
+        values.put(KEY_EPISODE, action.getEpisode());
+        values.put(KEY_ACTION, action.getAction().name());
+        values.put(KEY_JSON, json.toString());
+        return db.insert(TABLE_NAME, null, values);
+    }
+
+    /**
+     * Older versions stored the whole queue as one JSON array in the preferences.
+     */
+    private void importLegacyQueue(SQLiteDatabase db) {
+        SharedPreferences prefs = context.getSharedPreferences(
+                SynchronizationQueueStorage.NAME, Context.MODE_PRIVATE);
+        String legacyQueue = prefs.getString(SynchronizationQueueStorage.QUEUED_EPISODE_ACTIONS, null);
+        if (legacyQueue == null) {
+            return;
+        }
+        try {
+            JSONArray queue = new JSONArray(legacyQueue);
+            for (int i = 0; i < queue.length(); i++) {
+                EpisodeAction action = EpisodeAction.readFromJsonObject(queue.getJSONObject(i));
+                if (action != null) {
+                    insert(db, action);
+                }
+            }
+            Log.d(TAG, "Imported " + queue.length() + " queued episode actions");
+        } catch (JSONException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        }
+        prefs.edit().remove(SynchronizationQueueStorage.QUEUED_EPISODE_ACTIONS).apply();
+    }
+}
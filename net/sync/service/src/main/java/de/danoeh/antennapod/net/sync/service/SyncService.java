@@ -20,9 +20,7 @@ import de.danoeh.antennapod.event.MessageEvent;
 import de.danoeh.antennapod.event.SyncServiceEvent;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedItem;
-import de.danoeh.antennapod.model.feed.FeedItemFilter;
 import de.danoeh.antennapod.model.feed.FeedMedia;
-import de.danoeh.antennapod.model.feed.SortOrder;
 import de.danoeh.antennapod.net.common.AntennapodHttpClient;
 import de.danoeh.antennapod.net.common.RedirectChecker;
 import de.danoeh.antennapod.net.common.UrlChecker;
@@ -47,13 +45,22 @@ import de.danoeh.antennapod.ui.notifications.NotificationUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.greenrobot.eventbus.EventBus;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class SyncService extends Worker {
     public static final String TAG = "SyncService";
+    private static final int UPLOAD_BATCH_SIZE = 500;
+    private static final int PLAYED_UPLOAD_PAGE_SIZE = 300;
+    private static final int PARALLEL_UPLOADS = 3;
 
     private static boolean currentlyActive = false;
     private final SynchronizationQueueStorage synchronizationQueueStorage;
@@ -221,40 +228,94 @@ public class SyncService extends Worker {
 
         // upload local actions
         EventBus.getDefault().postSticky(new SyncServiceEvent(R.string.sync_status_episodes_upload));
-        List<EpisodeAction> queuedEpisodeActions = synchronizationQueueStorage.getQueuedEpisodeActions();
+        synchronizationQueueStorage.compactEpisodeActionQueue();
+        SynchronizationQueueStorage.EpisodeActionBatch batch =
+                synchronizationQueueStorage.getQueuedEpisodeActions(UPLOAD_BATCH_SIZE);
+        while (!batch.isEmpty()) {
+            if (!batch.getActions().isEmpty()) {
+                newTimeStamp = uploadEpisodeActions(syncServiceImpl, batch.getActions());
+            }
+            // Actions enqueued during the upload have higher IDs and stay in the queue
+            synchronizationQueueStorage.removeEpisodeActionsUpTo(batch.getLastId());
+            batch = synchronizationQueueStorage.getQueuedEpisodeActions(UPLOAD_BATCH_SIZE);
+        }
         if (lastSync == 0) {
             EventBus.getDefault().postSticky(new SyncServiceEvent(R.string.sync_status_upload_played));
-            List<FeedItem> readItems = DBReader.getEpisodes(0, Integer.MAX_VALUE,
-                    new FeedItemFilter(FeedItemFilter.PLAYED), SortOrder.DATE_NEW_OLD);
-            Log.d(TAG, "First sync. Upload state for all " + readItems.size() + " played episodes");
-            for (FeedItem item : readItems) {
-                FeedMedia media = item.getMedia();
-                if (media == null) {
-                    continue;
+            newTimeStamp = Math.max(newTimeStamp, uploadPlayedEpisodes(syncServiceImpl));
+        }
+        SynchronizationSettings.setLastEpisodeActionSynchronizationAttemptTimestamp(newTimeStamp);
+    }
+
+    /**
+     * Uploads the state of all played episodes, page by page. Up to {@link #PARALLEL_UPLOADS} pages are
+     * uploaded at the same time. Progress is saved after each page, so an interrupted upload continues
+     * where it stopped.
+     *
+     * @return The latest timestamp returned by the server
+     */
+    private long uploadPlayedEpisodes(ISyncService syncServiceImpl) throws SyncServiceException {
+        long lastItemId = SynchronizationSettings.getPlayedEpisodesUploadCheckpoint();
+        Log.d(TAG, "First sync. Upload state of played episodes after item " + lastItemId);
+        long newTimeStamp = 0;
+        ExecutorService executor = Executors.newFixedThreadPool(PARALLEL_UPLOADS);
+        // Pending uploads in the order of their pages, with the ID of the last item of each page
+        Deque<Pair<Long, Future<UploadChangesResponse>>> uploads = new ArrayDeque<>();
+        try {
+            while (true) {
+                List<FeedItem> items = DBReader.getPlayedEpisodesForSync(lastItemId, PLAYED_UPLOAD_PAGE_SIZE);
+                if (items.isEmpty()) {
+                    break;
+                }
+                lastItemId = items.get(items.size() - 1).getId();
+                List<EpisodeAction> actions = new ArrayList<>(items.size());
+                for (FeedItem item : items) {
+                    int duration = item.getMedia().getDuration() / 1000;
+                    actions.add(new EpisodeAction.Builder(item, EpisodeAction.PLAY)
+                            .currentTimestamp()
+                            .started(duration)
+                            .position(duration)
+                            .total(duration)
+                            .build());
+                }
+                if (uploads.size() >= PARALLEL_UPLOADS) {
+                    newTimeStamp = Math.max(newTimeStamp, awaitUpload(uploads.removeFirst()));
                 }
-                EpisodeAction played = new EpisodeAction.Builder(item, EpisodeAction.PLAY)
-                        .currentTimestamp()
-                        .started(media.getDuration() / 1000)
-                        .position(media.getDuration() / 1000)
-                        .total(media.getDuration() / 1000)
-                        .build();
-                queuedEpisodeActions.add(played);
+                Log.d(TAG, "Uploading state of " + actions.size() + " played episodes up to item " + lastItemId);
+                uploads.add(new Pair<>(lastItemId, executor.submit(
+                        () -> syncServiceImpl.uploadEpisodeActions(actions))));
             }
+            while (!uploads.isEmpty()) {
+                newTimeStamp = Math.max(newTimeStamp, awaitUpload(uploads.removeFirst()));
+            }
+        } finally {
+            executor.shutdownNow();
         }
-        if (!queuedEpisodeActions.isEmpty()) {
-            LockingAsyncExecutor.lock();
-            try {
-                Log.d(TAG, "Uploading " + queuedEpisodeActions.size() + " actions: "
-                        + StringUtils.join(queuedEpisodeActions, ", "));
-                UploadChangesResponse postResponse = syncServiceImpl.uploadEpisodeActions(queuedEpisodeActions);
-                newTimeStamp = postResponse.timestamp;
-                Log.d(TAG, "Upload episode response: " + postResponse);
-                synchronizationQueueStorage.clearEpisodeActionQueue();
-            } finally {
-                LockingAsyncExecutor.unlock();
+        SynchronizationSettings.setPlayedEpisodesUploadCheckpoint(0);
+        return newTimeStamp;
+    }
+
+    private long awaitUpload(Pair<Long, Future<UploadChangesResponse>> upload) throws SyncServiceException {
+        try {
+            UploadChangesResponse response = upload.second.get();
+            // All earlier pages are done as well, because uploads are awaited in order
+            SynchronizationSettings.setPlayedEpisodesUploadCheckpoint(upload.first);
+            return response.timestamp;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof SyncServiceException) {
+                throw (SyncServiceException) e.getCause();
             }
+            throw new SyncServiceException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new SyncServiceException(e);
         }
-        SynchronizationSettings.setLastEpisodeActionSynchronizationAttemptTimestamp(newTimeStamp);
+    }
+
+    private long uploadEpisodeActions(ISyncService syncServiceImpl, List<EpisodeAction> actions)
+            throws SyncServiceException {
+        Log.d(TAG, "Uploading " + actions.size() + " actions: " + StringUtils.join(actions, ", "));
+        UploadChangesResponse postResponse = syncServiceImpl.uploadEpisodeActions(actions);
+        Log.d(TAG, "Upload episode response: " + postResponse);
+        return postResponse.timestamp;
     }
 
     private synchronized void processEpisodeActions(List<EpisodeAction> remoteActions) {
@@ -266,11 +327,21 @@ public class SyncService extends Worker {
         Map<Pair<String, String>, EpisodeAction> playActionsToUpdate = EpisodeActionFilter
                 .getRemoteActionsOverridingLocalActions(remoteActions,
                         synchronizationQueueStorage.getQueuedEpisodeActions());
+        List<EpisodeAction> actions = new ArrayList<>(playActionsToUpdate.values());
+        List<String> guids = new ArrayList<>(actions.size());
+        List<String> episodeUrls = new ArrayList<>(actions.size());
+        for (EpisodeAction action : actions) {
+            guids.add(GuidValidator.isValidGuid(action.getGuid()) ? action.getGuid() : null);
+            episodeUrls.add(action.getEpisode());
+        }
+        List<FeedItem> feedItems = DBReader.getFeedItemsByGuidOrEpisodeUrl(guids, episodeUrls);
+
+        int smartMarkAsPlayedSecs = UserPreferences.getSmartMarkAsPlayedSecs();
         LongList queueToBeRemoved = new LongList();
         List<FeedItem> updatedItems = new ArrayList<>();
-        for (EpisodeAction action : playActionsToUpdate.values()) {
-            String guid = GuidValidator.isValidGuid(action.getGuid()) ? action.getGuid() : null;
-            FeedItem feedItem = DBReader.getFeedItemByGuidOrEpisodeUrl(guid, action.getEpisode());
+        for (int i = 0; i < actions.size(); i++) {
+            EpisodeAction action = actions.get(i);
+            FeedItem feedItem = feedItems.get(i);
             if (feedItem == null) {
                 Log.i(TAG, "Unknown feed item: " + action);
                 continue;
@@ -281,7 +352,6 @@ public class SyncService extends Worker {
             }
             FeedMedia media = feedItem.getMedia();
             media.setPosition(action.getPosition() * 1000);
-            int smartMarkAsPlayedSecs = UserPreferences.getSmartMarkAsPlayedSecs();
             boolean almostEnded = media.getDuration() > 0
                     && media.getPosition() >= media.getDuration() - smartMarkAsPlayedSecs * 1000;
             if (almostEnded) {
@@ -296,7 +366,7 @@ public class SyncService extends Worker {
         }
         DBWriter.removeQueueItem(getApplicationContext(), false, queueToBeRemoved.toArray());
         DBReader.loadAdditionalFeedItemListData(updatedItems);
-        DBWriter.setItemList(updatedItems);
+        DBWriter.setItemPlaybackStates(updatedItems);
     }
 
     private void clearErrorNotifications() {
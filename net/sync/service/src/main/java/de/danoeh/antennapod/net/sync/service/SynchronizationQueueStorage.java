@@ -2,10 +2,14 @@ package de.danoeh.antennapod.net.sync.service;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
 
 import de.danoeh.antennapod.net.sync.serviceinterface.EpisodeAction;
 import org.json.JSONArray;
 import org.json.JSONException;
+import org.json.JSONObject;
 
 import java.util.ArrayList;
 import java.util.Collection;
@@ -14,30 +18,104 @@ import java.util.List;
 import de.danoeh.antennapod.storage.preferences.SynchronizationSettings;
 
 public class SynchronizationQueueStorage {
+    private static final String TAG = "SyncQueueStorage";
 
-    private static final String NAME = "synchronization";
-    private static final String QUEUED_EPISODE_ACTIONS = "sync_queued_episode_actions";
+    static final String NAME = "synchronization";
+    // Only used by old versions, episode actions are now stored in EpisodeActionQueueDatabase
+    static final String QUEUED_EPISODE_ACTIONS = "sync_queued_episode_actions";
     private static final String QUEUED_FEEDS_REMOVED = "sync_removed";
     private static final String QUEUED_FEEDS_ADDED = "sync_added";
+    /** Compact the episode action queue every time this many actions were added. */
+    private static final int COMPACTION_INTERVAL = 256;
     private final SharedPreferences sharedPreferences;
+    private final EpisodeActionQueueDatabase episodeActionQueue;
 
     public SynchronizationQueueStorage(Context context) {
         this.sharedPreferences = context.getSharedPreferences(NAME, Context.MODE_PRIVATE);
+        this.episodeActionQueue = EpisodeActionQueueDatabase.getInstance(context);
+    }
+
+    /**
+     * A part of the episode action queue, starting at the oldest action.
+     */
+    static class EpisodeActionBatch {
+        private final List<EpisodeAction> actions;
+        private final long lastId;
+
+        EpisodeActionBatch(List<EpisodeAction> actions, long lastId) {
+            this.actions = actions;
+            this.lastId = lastId;
+        }
+
+        List<EpisodeAction> getActions() {
+            return actions;
+        }
+
+        /**
+         * Pass to {@link #removeEpisodeActionsUpTo(long)} after the batch was uploaded.
+         */
+        long getLastId() {
+            return lastId;
+        }
+
+        boolean isEmpty() {
+            return lastId < 0;
+        }
     }
 
     public ArrayList<EpisodeAction> getQueuedEpisodeActions() {
-        ArrayList<EpisodeAction> actions = new ArrayList<>();
-        try {
-            String json = getSharedPreferences()
-                    .getString(QUEUED_EPISODE_ACTIONS, "[]");
-            JSONArray queue = new JSONArray(json);
-            for (int i = 0; i < queue.length(); i++) {
-                actions.add(EpisodeAction.readFromJsonObject(queue.getJSONObject(i)));
+        return new ArrayList<>(getQueuedEpisodeActions(Integer.MAX_VALUE).getActions());
+    }
+
+    /**
+     * Reads the oldest queued episode actions. The actions stay in the queue until they are
+     * removed with {@link #removeEpisodeActionsUpTo(long)}, so actions that fail to upload are not lost.
+     */
+    EpisodeActionBatch getQueuedEpisodeActions(int limit) {
+        List<EpisodeAction> actions = new ArrayList<>();
+        long lastId = -1;
+        SQLiteDatabase db = episodeActionQueue.getReadableDatabase();
+        try (Cursor cursor = db.query(EpisodeActionQueueDatabase.TABLE_NAME,
+                new String[] {EpisodeActionQueueDatabase.KEY_ID, EpisodeActionQueueDatabase.KEY_JSON},
+                null, null, null, null, EpisodeActionQueueDatabase.KEY_ID, String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                lastId = cursor.getLong(0);
+                try {
+                    EpisodeAction action = EpisodeAction.readFromJsonObject(new JSONObject(cursor.getString(1)));
+                    if (action != null) {
+                        actions.add(action);
+                    }
+                } catch (JSONException e) {
+                    Log.e(TAG, Log.getStackTraceString(e));
+                }
             }
-        } catch (JSONException e) {
-            e.printStackTrace();
         }
-        return actions;
+        return new EpisodeActionBatch(actions, lastId);
+    }
+
+    /**
+     * Removes the uploaded actions. Actions that were added in the meantime stay queued.
+     */
+    void removeEpisodeActionsUpTo(long lastId) {
+        episodeActionQueue.getWritableDatabase().delete(EpisodeActionQueueDatabase.TABLE_NAME,
+                EpisodeActionQueueDatabase.KEY_ID + " <= ?", new String[] {String.valueOf(lastId)});
+    }
+
+    /**
+     * Only the latest play action of an episode is relevant for the server, so older ones
+     * do not need to be uploaded.
+     */
+    void compactEpisodeActionQueue() {
+        String playAction = EpisodeAction.Action.PLAY.name();
+        int removed = episodeActionQueue.getWritableDatabase().delete(EpisodeActionQueueDatabase.TABLE_NAME,
+                EpisodeActionQueueDatabase.KEY_ACTION + " = ? AND " + EpisodeActionQueueDatabase.KEY_ID
+                        + " NOT IN (SELECT MAX(" + EpisodeActionQueueDatabase.KEY_ID + ")"
+                        + " FROM " + EpisodeActionQueueDatabase.TABLE_NAME
+                        + " WHERE " + EpisodeActionQueueDatabase.KEY_ACTION + " = ?"
+                        + " GROUP BY " + EpisodeActionQueueDatabase.KEY_PODCAST
+                        + ", " + EpisodeActionQueueDatabase.KEY_EPISODE + ")",
+                new String[] {playAction, playAction});
+        Log.d(TAG, "Compacted episode action queue, removed " + removed + " play actions");
     }
 
     public ArrayList<String> getQueuedRemovedFeeds() {
@@ -72,9 +150,7 @@ public class SynchronizationQueueStorage {
     }
 
     public void clearEpisodeActionQueue() {
-        getSharedPreferences().edit()
-                .putString(QUEUED_EPISODE_ACTIONS, "[]").apply();
-
+        episodeActionQueue.getWritableDatabase().delete(EpisodeActionQueueDatabase.TABLE_NAME, null, null);
     }
 
     public void clearFeedQueues() {
@@ -86,8 +162,8 @@ public class SynchronizationQueueStorage {
 
     protected void clearQueue() {
         SynchronizationSettings.resetTimestamps();
+        clearEpisodeActionQueue();
         getSharedPreferences().edit()
-                .putString(QUEUED_EPISODE_ACTIONS, "[]")
                 .putString(QUEUED_FEEDS_ADDED, "[]")
                 .putString(QUEUED_FEEDS_REMOVED, "[]")
                 .apply();
@@ -157,16 +233,9 @@ public class SynchronizationQueueStorage {
     }
 
     protected void enqueueEpisodeAction(EpisodeAction action) {
-        SharedPreferences sharedPreferences = getSharedPreferences();
-        String json = sharedPreferences.getString(QUEUED_EPISODE_ACTIONS, "[]");
-        try {
-            JSONArray queue = new JSONArray(json);
-            queue.put(action.writeToJsonObject());
-            sharedPreferences.edit().putString(
-                    QUEUED_EPISODE_ACTIONS, queue.toString()
-            ).apply();
-        } catch (JSONException jsonException) {
-            jsonException.printStackTrace();
+        long id = EpisodeActionQueueDatabase.insert(episodeActionQueue.getWritableDatabase(), action);
+        if (id > 0 && id % COMPACTION_INTERVAL == 0) {
+            compactEpisodeActionQueue();
         }
     }
 
@@ -0,0 +1,118 @@
+package de.danoeh.antennapod.net.sync.service;
+
+import android.content.Context;
+import androidx.test.platform.app.InstrumentationRegistry;
+import de.danoeh.antennapod.net.sync.serviceinterface.EpisodeAction;
+import org.json.JSONArray;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SynchronizationQueueStorageTest {
+    private Context context;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    }
+
+    @After
+    public void tearDown() {
+        EpisodeActionQueueDatabase.tearDownTests();
+    }
+
+    @Test
+    public void testCompactionKeepsLatestPlayActionPerEpisode() {
+        SynchronizationQueueStorage storage = new SynchronizationQueueStorage(context);
+        storage.enqueueEpisodeAction(play("podcast", "episode1", 10));
+        storage.enqueueEpisodeAction(play("podcast", "episode2", 15));
+        storage.enqueueEpisodeAction(play("podcast", "episode1", 20));
+        storage.enqueueEpisodeAction(new EpisodeAction.Builder("podcast", "episode1", EpisodeAction.DOWNLOAD)
+                .currentTimestamp().build());
+        storage.enqueueEpisodeAction(play("podcast", "episode1", 30));
+
+        storage.compactEpisodeActionQueue();
+
+        List<EpisodeAction> actions = storage.getQueuedEpisodeActions();
+        assertEquals(3, actions.size());
+        assertEquals("episode2", actions.get(0).getEpisode());
+        assertEquals(EpisodeAction.DOWNLOAD, actions.get(1).getAction());
+        assertEquals("episode1", actions.get(2).getEpisode());
+        assertEquals(30, actions.get(2).getPosition());
+    }
+
+    @Test
+    public void testRemoveUploadedKeepsActionsEnqueuedDuringUpload() {
+        SynchronizationQueueStorage storage = new SynchronizationQueueStorage(context);
+        storage.enqueueEpisodeAction(play("podcast", "episode1", 10));
+        storage.enqueueEpisodeAction(play("podcast", "episode2", 10));
+        SynchronizationQueueStorage.EpisodeActionBatch batch = storage.getQueuedEpisodeActions(10);
+        assertEquals(2, batch.getActions().size());
+
+        storage.enqueueEpisodeAction(play("podcast", "episode3", 10));
+        storage.removeEpisodeActionsUpTo(batch.getLastId());
+
+        List<EpisodeAction> actions = storage.getQueuedEpisodeActions();
+        assertEquals(1, actions.size());
+        assertEquals("episode3", actions.get(0).getEpisode());
+    }
+
+    @Test
+    public void testBatchesStartAtOldestAction() {
+        SynchronizationQueueStorage storage = new SynchronizationQueueStorage(context);
+        assertTrue(storage.getQueuedEpisodeActions(10).isEmpty());
+        for (int i = 0; i < 5; i++) {
+            storage.enqueueEpisodeAction(play("podcast", "episode" + i, 10));
+        }
+        SynchronizationQueueStorage.EpisodeActionBatch batch = storage.getQueuedEpisodeActions(2);
+        assertEquals(2, batch.getActions().size());
+        assertEquals("episode0", batch.getActions().get(0).getEpisode());
+        storage.removeEpisodeActionsUpTo(batch.getLastId());
+        batch = storage.getQueuedEpisodeActions(2);
+        assertEquals("episode2", batch.getActions().get(0).getEpisode());
+    }
+
+    @Test
+    public void testImportLegacyQueue() {
+        JSONArray legacyQueue = new JSONArray();
+        legacyQueue.put(play("podcast", "episode1", 10).writeToJsonObject());
+        legacyQueue.put(play("podcast", "episode2", 20).writeToJsonObject());
+        context.getSharedPreferences(SynchronizationQueueStorage.NAME, Context.MODE_PRIVATE).edit()
+                .putString(SynchronizationQueueStorage.QUEUED_EPISODE_ACTIONS, legacyQueue.toString())
+                .commit();
+
+        SynchronizationQueueStorage storage = new SynchronizationQueueStorage(context);
+        List<EpisodeAction> actions = storage.getQueuedEpisodeActions();
+        assertEquals(2, actions.size());
+        assertEquals("episode1", actions.get(0).getEpisode());
+        assertEquals(20, actions.get(1).getPosition());
+        assertFalse(context.getSharedPreferences(SynchronizationQueueStorage.NAME, Context.MODE_PRIVATE)
+                .contains(SynchronizationQueueStorage.QUEUED_EPISODE_ACTIONS));
+    }
+
+    @Test
+    public void testActionWithoutEpisodeIsNotQueued() {
+        SynchronizationQueueStorage storage = new SynchronizationQueueStorage(context);
+        storage.enqueueEpisodeAction(play(null, "episode1", 10));
+        storage.enqueueEpisodeAction(play("podcast", null, 10));
+        assertTrue(storage.getQueuedEpisodeActions().isEmpty());
+    }
+
+    private static EpisodeAction play(String podcast, String episode, int position) {
+        return new EpisodeAction.Builder(podcast, episode, EpisodeAction.PLAY)
+                .currentTimestamp()
+                .started(0)
+                .position(position)
+                .total(100)
+                .build();
+    }
+}
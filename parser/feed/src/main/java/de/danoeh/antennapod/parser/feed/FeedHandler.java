@@ -1,13 +1,20 @@
 package de.danoeh.antennapod.parser.feed;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
 import de.danoeh.antennapod.parser.feed.util.TypeGetter;
 import org.apache.commons.io.input.XmlStreamReader;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
+import java.util.Locale;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
@@ -16,21 +23,103 @@ import javax.xml.parsers.SAXParserFactory;
 import de.danoeh.antennapod.model.feed.Feed;
 
 public class FeedHandler {
+    /**
+     * Number of bytes at the start of the document that are kept to detect websites.
+     */
+    private static final int WEBSITE_DETECTION_LIMIT = 32 * 1024;
+
+    /**
+     * Parses the file at {@link Feed#getLocalFileUrl()}.
+     */
     public FeedHandlerResult parseFeed(Feed feed) throws SAXException, IOException,
             ParserConfigurationException, UnsupportedFeedtypeException {
-        TypeGetter tg = new TypeGetter();
-        TypeGetter.Type type = tg.getType(feed);
-        SyndHandler handler = new SyndHandler(feed, type);
+        try (InputStream inputStream = new FileInputStream(feed.getLocalFileUrl())) {
+            return parseFeed(feed, inputStream, null);
+        }
+    }
+
+    /**
+     * Parses the feed in a single pass over the stream. The type of the feed is determined
+     * from its root element, so the stream does not need to be read twice.
+     *
+     * @param httpContentType Content-Type header of the response, used to determine the encoding
+     */
+    public FeedHandlerResult parseFeed(Feed feed, @NonNull InputStream inputStream, @Nullable String httpContentType)
+            throws SAXException, IOException, ParserConfigurationException, UnsupportedFeedtypeException {
+        SyndHandler handler = new SyndHandler(feed);
+        HeadRecordingInputStream recordingStream = new HeadRecordingInputStream(inputStream);
 
         SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware(true);
         SAXParser saxParser = factory.newSAXParser();
-        File file = new File(feed.getLocalFileUrl());
-        Reader inputStreamReader = new XmlStreamReader(file);
-        InputSource inputSource = new InputSource(inputStreamReader);
-
-        saxParser.parse(inputSource, handler);
-        inputStreamReader.close();
+        try {
+            Reader inputStreamReader = hasCharset(httpContentType)
+                    ? new XmlStreamReader(recordingStream, httpContentType)
+                    : new XmlStreamReader(recordingStream);
+            saxParser.parse(new InputSource(inputStreamReader), handler);
+        } catch (SAXException e) {
+            if (e.getException() instanceof UnsupportedFeedtypeException) {
+                UnsupportedFeedtypeException unsupported = (UnsupportedFeedtypeException) e.getException();
+                if (unsupported.getRootElement() != null) {
+                    TypeGetter.throwExceptionIfWebsite(recordingStream.getHead());
+                }
+                throw unsupported;
+            } else if (handler.getType() == null) {
+                // Not even the root element could be read
+                TypeGetter.throwExceptionIfWebsite(recordingStream.getHead());
+                throw new UnsupportedFeedtypeException(e.getMessage());
+            }
+            throw e;
+        }
+        if (handler.getType() == null) {
+            throw new UnsupportedFeedtypeException("Unknown problem when trying to determine feed type");
+        }
         return new FeedHandlerResult(handler.state.feed, handler.state.alternateUrls, handler.state.redirectUrl);
     }
+
+    /**
+     * Without a charset, XmlStreamReader applies RFC 3023 and reads text/xml as US-ASCII, even if the
+     * feed is UTF-8. Such content types are ignored, so that the encoding is detected from the document.
+     */
+    private static boolean hasCharset(@Nullable String httpContentType) {
+        return httpContentType != null && httpContentType.toLowerCase(Locale.ROOT).contains("charset=");
+    }
+
+    /**
+     * Keeps a copy of the first bytes that were read, so that they can be inspected after parsing failed.
+     */
+    private static class HeadRecordingInputStream extends FilterInputStream {
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+
+        HeadRecordingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1 && head.size() < WEBSITE_DETECTION_LIMIT) {
+                head.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0 && head.size() < WEBSITE_DETECTION_LIMIT) {
+                head.write(buffer, offset, Math.min(count, WEBSITE_DETECTION_LIMIT - head.size()));
+            }
+            return count;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        byte[] getHead() {
+            return head.toByteArray();
+        }
+    }
 }
@@ -10,12 +10,14 @@ import de.danoeh.antennapod.model.feed.FeedFunding;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.parser.feed.namespace.Namespace;
 import de.danoeh.antennapod.parser.feed.element.SyndElement;
+import de.danoeh.antennapod.parser.feed.util.DateUtils;
 
 /**
  * Contains all relevant information to describe the current state of a
  * SyndHandler.
  */
 public class HandlerState {
+    static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
 
     /**
      * Feed that the Handler is currently processing.
@@ -37,14 +39,16 @@ public class HandlerState {
     final Map<String, Namespace> namespaces;
     final Stack<Namespace> defaultNamespaces;
     /**
-     * Buffer for saving characters.
+     * Buffer for saving characters. It is reused for all elements, see {@link #getContentBuf()}.
      */
-    protected StringBuilder contentBuf;
+    private StringBuilder contentBuf = new StringBuilder();
+    private boolean collectingContent = false;
 
     /**
      * Temporarily saved objects.
      */
     private final Map<String, Object> tempObjects;
+    private final DateUtils.FormatMemo dateFormatMemo = new DateUtils.FormatMemo();
 
     public HandlerState(Feed feed) {
         this.feed = feed;
@@ -68,6 +72,13 @@ public class HandlerState {
         return currentItem;
     }
 
+    /**
+     * Remembers the date format of this feed, pass it to {@link DateUtils#parse(String, DateUtils.FormatMemo)}.
+     */
+    public DateUtils.FormatMemo getDateFormatMemo() {
+        return dateFormatMemo;
+    }
+
     public Stack<SyndElement> getTagstack() {
         return tagstack;
     }
@@ -92,23 +103,39 @@ public class HandlerState {
      * Returns the SyndElement that comes after the top element of the tagstack.
      */
     public SyndElement getSecondTag() {
-        SyndElement top = tagstack.pop();
-        SyndElement second = tagstack.peek();
-        tagstack.push(top);
-        return second;
+        return tagstack.get(tagstack.size() - 2);
     }
 
     public SyndElement getThirdTag() {
-        SyndElement top = tagstack.pop();
-        SyndElement second = tagstack.pop();
-        SyndElement third = tagstack.peek();
-        tagstack.push(second);
-        tagstack.push(top);
-        return third;
+        return tagstack.get(tagstack.size() - 3);
     }
 
+    /**
+     * Returns the characters since the most recent start tag, or null if an end tag was read since then.
+     * The buffer is reused, so its content is only valid until the next element starts.
+     */
     public StringBuilder getContentBuf() {
-        return contentBuf;
+        return collectingContent ? contentBuf : null;
+    }
+
+    void startContent() {
+        if (contentBuf.capacity() > MAX_RETAINED_BUFFER_SIZE) {
+            // Do not keep the memory of a single huge element around for the rest of the feed
+            contentBuf = new StringBuilder();
+        } else {
+            contentBuf.setLength(0);
+        }
+        collectingContent = true;
+    }
+
+    void appendContent(char[] ch, int start, int length) {
+        if (collectingContent) {
+            contentBuf.append(ch, start, length);
+        }
+    }
+
+    void endContent() {
+        collectingContent = false;
     }
 
     public void addAlternateFeedUrl(String title, String url) {
@@ -24,18 +24,30 @@ public class SyndHandler extends DefaultHandler {
     private static final String TAG = "SyndHandler";
     private static final String DEFAULT_PREFIX = "";
     public final HandlerState state;
+    private TypeGetter.Type type = null;
+    private String lastUri = null;
+    private Namespace lastNamespace = null;
 
-    public SyndHandler(Feed feed, TypeGetter.Type type) {
+    public SyndHandler(Feed feed) {
         state = new HandlerState(feed);
-        if (type == TypeGetter.Type.RSS20 || type == TypeGetter.Type.RSS091) {
-            state.defaultNamespaces.push(new Rss20());
-        }
     }
 
     @Override
     public void startElement(String uri, String localName, String qualifiedName,
             Attributes attributes) throws SAXException {
-        state.contentBuf = new StringBuilder();
+        if (type == null) {
+            // The root element decides which format the rest of the document is parsed as
+            try {
+                type = TypeGetter.getType(state.feed, localName, attributes);
+            } catch (UnsupportedFeedtypeException e) {
+                throw new SAXException(e);
+            }
+            if (type == TypeGetter.Type.RSS20 || type == TypeGetter.Type.RSS091) {
+                // Prefix mappings of the root element have already been reported, so insert below them
+                state.defaultNamespaces.insertElementAt(new Rss20(), 0);
+            }
+        }
+        state.startContent();
         Namespace handler = getHandlingNamespace(uri, qualifiedName);
         if (handler != null) {
             SyndElement element = handler.handleElementStart(localName, state,
@@ -48,12 +60,8 @@ public class SyndHandler extends DefaultHandler {
     @Override
     public void characters(char[] ch, int start, int length)
             throws SAXException {
-        if (!state.tagstack.empty()) {
-            if (state.getTagstack().size() >= 2) {
-                if (state.contentBuf != null) {
-                    state.contentBuf.append(ch, start, length);
-                }
-            }
+        if (state.tagstack.size() >= 2) {
+            state.appendContent(ch, start, length);
         }
     }
 
@@ -66,7 +74,7 @@ public class SyndHandler extends DefaultHandler {
             state.tagstack.pop();
 
         }
-        state.contentBuf = null;
+        state.endContent();
 
     }
 
@@ -82,6 +90,7 @@ public class SyndHandler extends DefaultHandler {
             throws SAXException {
         // Find the right namespace
         if (!state.namespaces.containsKey(uri)) {
+            lastUri = null;
             if (uri.equals(Atom.NSURI)) {
                 if (prefix.equals(DEFAULT_PREFIX)) {
                     state.defaultNamespaces.push(new Atom());
@@ -118,7 +127,16 @@ public class SyndHandler extends DefaultHandler {
     }
 
     private Namespace getHandlingNamespace(String uri, String qualifiedName) {
-        Namespace handler = state.namespaces.get(uri);
+        Namespace handler;
+        //noinspection StringEquality
+        if (uri == lastUri) {
+            // Parsers report the same instance for every element of a namespace, so skip the map lookup
+            handler = lastNamespace;
+        } else {
+            handler = state.namespaces.get(uri);
+            lastUri = uri;
+            lastNamespace = handler;
+        }
         if (handler == null && !state.defaultNamespaces.empty()
                 && !qualifiedName.contains(":")) {
             handler = state.defaultNamespaces.peek();
@@ -136,4 +154,11 @@ public class SyndHandler extends DefaultHandler {
         return state;
     }
 
+    /**
+     * @return The type of the feed, or null if the root element has not been read yet.
+     */
+    public TypeGetter.Type getType() {
+        return type;
+    }
+
 }
@@ -56,13 +56,27 @@ public class Atom extends Namespace {
     private static final String LINK_TYPE_RSS = "application/rss+xml";
 
     /**
-     * Regexp to test whether an Element is a Text Element.
+     * Tests whether an Element is a Text Element.
      */
-    private static final String isText = TITLE + "|" + CONTENT + "|"
-            + SUBTITLE + "|" + SUMMARY;
+    private static boolean isText(String name) {
+        switch (name) {
+            case TITLE:
+            case CONTENT:
+            case SUBTITLE:
+            case SUMMARY:
+                return true;
+            default:
+                return false;
+        }
+    }
 
-    private static final String isFeed = FEED + "|" + Rss20.CHANNEL;
-    private static final String isFeedItem = ENTRY + "|" + Rss20.ITEM;
+    private static boolean isFeed(String name) {
+        return FEED.equals(name) || Rss20.CHANNEL.equals(name);
+    }
+
+    private static boolean isFeedItem(String name) {
+        return ENTRY.equals(name) || Rss20.ITEM.equals(name);
+    }
 
     @Override
     public SyndElement handleElementStart(String localName, HandlerState state,
@@ -71,14 +85,14 @@ public class Atom extends Namespace {
             state.setCurrentItem(new FeedItem());
             state.getItems().add(state.getCurrentItem());
             state.getCurrentItem().setFeed(state.getFeed());
-        } else if (localName.matches(isText)) {
+        } else if (isText(localName)) {
             String type = attributes.getValue(TEXT_TYPE);
             return new AtomText(localName, this, type);
         } else if (LINK.equals(localName)) {
             String href = attributes.getValue(LINK_HREF);
             String rel = attributes.getValue(LINK_REL);
             SyndElement parent = state.getTagstack().peek();
-            if (parent.getName().matches(isFeedItem) && state.getCurrentItem() != null) {
+            if (isFeedItem(parent.getName()) && state.getCurrentItem() != null) {
                 if (rel == null || LINK_REL_ALTERNATE.equals(rel)) {
                     state.getCurrentItem().setLink(href);
                 } else if (LINK_REL_ENCLOSURE.equals(rel)) {
@@ -105,7 +119,7 @@ public class Atom extends Namespace {
                 } else if (LINK_REL_PAYMENT.equals(rel)) {
                     state.getCurrentItem().setPaymentLink(href);
                 }
-            } else if (parent.getName().matches(isFeed)) {
+            } else if (isFeed(parent.getName())) {
                 if (rel == null || LINK_REL_ALTERNATE.equals(rel)) {
                     String type = attributes.getValue(LINK_TYPE);
                     /*
@@ -144,7 +158,7 @@ public class Atom extends Namespace {
                 }
             }
         }
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
@@ -162,64 +176,90 @@ public class Atom extends Namespace {
             state.setCurrentItem(null);
         }
 
-        if (state.getTagstack().size() >= 2) {
-            AtomText textElement = null;
-            String contentRaw;
-            if (state.getContentBuf() != null) {
-                contentRaw = state.getContentBuf().toString();
-            } else {
-                contentRaw = "";
-            }
-            String content = SyndStringUtils.trimAllWhitespace(contentRaw);
-            SyndElement topElement = state.getTagstack().peek();
-            String top = topElement.getName();
-            SyndElement secondElement = state.getSecondTag();
-            String second = secondElement.getName();
-
-            if (top.matches(isText)) {
-                textElement = (AtomText) topElement;
-                textElement.setContent(content);
-            }
+        if (state.getTagstack().size() < 2) {
+            return;
+        }
+        String contentRaw;
+        if (state.getContentBuf() != null) {
+            contentRaw = state.getContentBuf().toString();
+        } else {
+            contentRaw = "";
+        }
+        String content = SyndStringUtils.trimAllWhitespace(contentRaw);
+        SyndElement topElement = state.getTagstack().peek();
+        String top = topElement.getName();
+        String second = state.getSecondTag().getName();
+
+        AtomText textElement = null;
+        if (isText(top) && topElement instanceof AtomText) {
+            textElement = (AtomText) topElement;
+            textElement.setContent(content);
+        }
 
-            if (ID.equals(top)) {
+        switch (top) {
+            case ID:
                 if (FEED.equals(second) && state.getFeed() != null) {
                     state.getFeed().setFeedIdentifier(contentRaw);
                 } else if (ENTRY.equals(second) && state.getCurrentItem() != null) {
                     state.getCurrentItem().setItemIdentifier(contentRaw);
                 }
-            } else if (TITLE.equals(top) && textElement != null) {
+                break;
+            case TITLE:
+                if (textElement == null) {
+                    break;
+                }
                 if (FEED.equals(second) && state.getFeed() != null) {
                     state.getFeed().setTitle(textElement.getProcessedContent());
                 } else if (ENTRY.equals(second) && state.getCurrentItem() != null) {
                     state.getCurrentItem().setTitle(textElement.getProcessedContent());
                 }
-            } else if (SUBTITLE.equals(top) && FEED.equals(second) && textElement != null
-                    && state.getFeed() != null) {
-                state.getFeed().setDescription(textElement.getProcessedContent());
-            } else if (CONTENT.equals(top) && ENTRY.equals(second) && textElement != null
-                    && state.getCurrentItem() != null) {
-                state.getCurrentItem().setDescriptionIfLonger(textElement.getProcessedContent());
-            } else if (SUMMARY.equals(top) && ENTRY.equals(second) && textElement != null
-                    && state.getCurrentItem() != null) {
-                state.getCurrentItem().setDescriptionIfLonger(textElement.getProcessedContent());
-            } else if (UPDATED.equals(top) && ENTRY.equals(second) && state.getCurrentItem() != null
-                    && state.getCurrentItem().getPubDate() == null) {
-                state.getCurrentItem().setPubDate(DateUtils.parseOrNullIfFuture(content));
-            } else if (PUBLISHED.equals(top) && ENTRY.equals(second) && state.getCurrentItem() != null) {
-                state.getCurrentItem().setPubDate(DateUtils.parseOrNullIfFuture(content));
-            } else if (IMAGE_LOGO.equals(top) && state.getFeed() != null && state.getFeed().getImageUrl() == null) {
-                state.getFeed().setImageUrl(content);
-            } else if (IMAGE_ICON.equals(top) && state.getFeed() != null) {
-                state.getFeed().setImageUrl(content);
-            } else if (AUTHOR_NAME.equals(top) && AUTHOR.equals(second)
-                    && state.getFeed() != null && state.getCurrentItem() == null) {
-                String currentName = state.getFeed().getAuthor();
-                if (currentName == null) {
-                    state.getFeed().setAuthor(content);
-                } else {
-                    state.getFeed().setAuthor(currentName + ", " + content);
+                break;
+            case SUBTITLE:
+                if (FEED.equals(second) && textElement != null && state.getFeed() != null) {
+                    state.getFeed().setDescription(textElement.getProcessedContent());
                 }
-            }
+                break;
+            case CONTENT:
+            case SUMMARY:
+                if (ENTRY.equals(second) && textElement != null && state.getCurrentItem() != null) {
+                    state.getCurrentItem().setDescriptionIfLonger(textElement.getProcessedContent());
+                }
+                break;
+            case UPDATED:
+                if (ENTRY.equals(second) && state.getCurrentItem() != null
+                        && state.getCurrentItem().getPubDate() == null) {
+                    state.getCurrentItem().setPubDate(
+                            DateUtils.parseOrNullIfFuture(content, state.getDateFormatMemo()));
+                }
+                break;
+            case PUBLISHED:
+                if (ENTRY.equals(second) && state.getCurrentItem() != null) {
+                    state.getCurrentItem().setPubDate(
+                            DateUtils.parseOrNullIfFuture(content, state.getDateFormatMemo()));
+                }
+                break;
+            case IMAGE_LOGO:
+                if (state.getFeed() != null && state.getFeed().getImageUrl() == null) {
+                    state.getFeed().setImageUrl(content);
+                }
+                break;
+            case IMAGE_ICON:
+                if (state.getFeed() != null) {
+                    state.getFeed().setImageUrl(content);
+                }
+                break;
+            case AUTHOR_NAME:
+                if (AUTHOR.equals(second) && state.getFeed() != null && state.getCurrentItem() == null) {
+                    String currentName = state.getFeed().getAuthor();
+                    if (currentName == null) {
+                        state.getFeed().setAuthor(content);
+                    } else {
+                        state.getFeed().setAuthor(currentName + ", " + content);
+                    }
+                }
+                break;
+            default:
+                break;
         }
     }
 }
@@ -12,7 +12,7 @@ public class Content extends Namespace {
 
     @Override
     public SyndElement handleElementStart(String localName, HandlerState state, Attributes attributes) {
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
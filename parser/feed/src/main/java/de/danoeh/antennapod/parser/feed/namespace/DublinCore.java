@@ -17,7 +17,7 @@ public class DublinCore extends Namespace {
     @Override
     public SyndElement handleElementStart(String localName, HandlerState state,
                                           Attributes attributes) {
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
@@ -29,7 +29,7 @@ public class DublinCore extends Namespace {
             String second = state.getSecondTag().getName();
             if (DATE.equals(top) && ITEM.equals(second)) {
                 String content = state.getContentBuf().toString();
-                currentItem.setPubDate(DateUtils.parseOrNullIfFuture(content));
+                currentItem.setPubDate(DateUtils.parseOrNullIfFuture(content, state.getDateFormatMemo()));
             }
         }
     }
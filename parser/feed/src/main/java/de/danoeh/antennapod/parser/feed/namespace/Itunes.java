@@ -41,44 +41,55 @@ public class Itunes extends Namespace {
                 }
             }
         }
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
     public void handleElementEnd(String localName, HandlerState state) {
-        if (state.getContentBuf() == null) {
+        if (state.getContentBuf() == null || state.getContentBuf().length() == 0) {
             return;
         }
 
-        String content = state.getContentBuf().toString();
-        if (TextUtils.isEmpty(content)) {
-            return;
-        }
-
-        if (AUTHOR.equals(localName) && state.getFeed() != null && state.getTagstack().size() <= 3) {
-            String contentFromHtml = HtmlCompat.fromHtml(content, HtmlCompat.FROM_HTML_MODE_COMPACT).toString();
-            state.getFeed().setAuthor(contentFromHtml);
-        } else if (DURATION.equals(localName)) {
-            try {
-                long durationMs = DurationParser.inMillis(content);
-                state.getTempObjects().put(DURATION, (int) durationMs);
-            } catch (NumberFormatException e) {
-                Log.e(NSTAG, String.format("Duration '%s' could not be parsed", content));
-            }
-        } else if (SUBTITLE.equals(localName)) {
-            if (state.getCurrentItem() != null && TextUtils.isEmpty(state.getCurrentItem().getDescription())) {
-                state.getCurrentItem().setDescriptionIfLonger(content);
-            } else if (state.getFeed() != null && TextUtils.isEmpty(state.getFeed().getDescription())) {
-                state.getFeed().setDescription(content);
-            }
-        } else if (SUMMARY.equals(localName)) {
-            if (state.getCurrentItem() != null) {
-                state.getCurrentItem().setDescriptionIfLonger(content);
-            } else if (Rss20.CHANNEL.equals(state.getSecondTag().getName()) && state.getFeed() != null) {
-                state.getFeed().setDescription(content);
-            }
-        } else if (NEW_FEED_URL.equals(localName) && content.trim().startsWith("http")) {
-            state.redirectUrl = content.trim();
+        switch (localName) {
+            case AUTHOR:
+                if (state.getFeed() != null && state.getTagstack().size() <= 3) {
+                    String content = state.getContentBuf().toString();
+                    String contentFromHtml = HtmlCompat.fromHtml(content, HtmlCompat.FROM_HTML_MODE_COMPACT)
+                            .toString();
+                    state.getFeed().setAuthor(contentFromHtml);
+                }
+                break;
+            case DURATION:
+                String duration = state.getContentBuf().toString();
+                try {
+                    long durationMs = DurationParser.inMillis(duration);
+                    state.getTempObjects().put(DURATION, (int) durationMs);
+                } catch (NumberFormatException e) {
+                    Log.e(NSTAG, String.format("Duration '%s' could not be parsed", duration));
+                }
+                break;
+            case SUBTITLE:
+                if (state.getCurrentItem() != null && TextUtils.isEmpty(state.getCurrentItem().getDescription())) {
+                    state.getCurrentItem().setDescriptionIfLonger(state.getContentBuf().toString());
+                } else if (state.getFeed() != null && TextUtils.isEmpty(state.getFeed().getDescription())) {
+                    state.getFeed().setDescription(state.getContentBuf().toString());
+                }
+                break;
+            case SUMMARY:
+                if (state.getCurrentItem() != null) {
+                    state.getCurrentItem().setDescriptionIfLonger(state.getContentBuf().toString());
+                } else if (Rss20.CHANNEL.equals(state.getSecondTag().getName()) && state.getFeed() != null) {
+                    state.getFeed().setDescription(state.getContentBuf().toString());
+                }
+                break;
+            case NEW_FEED_URL:
+                String url = state.getContentBuf().toString().trim();
+                if (url.startsWith("http")) {
+                    state.redirectUrl = url;
+                }
+                break;
+            default:
+                break;
         }
     }
 }
@@ -115,7 +115,7 @@ public class Media extends Namespace {
             String type = attributes.getValue(DESCRIPTION_TYPE);
             return new AtomText(localName, this, type);
         }
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
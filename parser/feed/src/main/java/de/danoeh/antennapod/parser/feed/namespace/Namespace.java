@@ -4,7 +4,12 @@ import de.danoeh.antennapod.parser.feed.HandlerState;
 import de.danoeh.antennapod.parser.feed.element.SyndElement;
 import org.xml.sax.Attributes;
 
+import java.util.HashMap;
+import java.util.Map;
+
 public abstract class Namespace {
+    private final Map<String, SyndElement> elements = new HashMap<>();
+
     /** Called by a Feedhandler when in startElement and it detects a namespace element
      *     @return The SyndElement to push onto the stack
      * */
@@ -13,4 +18,17 @@ public abstract class Namespace {
     /** Called by a Feedhandler when in endElement and it detects a namespace element 
      * */
     public abstract void handleElementEnd(String localName, HandlerState state);
+
+    /**
+     * Returns the element to push onto the stack for elements that do not need to keep any state.
+     * There is only one instance per element name, so parsing does not allocate one for every tag.
+     */
+    protected SyndElement getElement(String localName) {
+        SyndElement element = elements.get(localName);
+        if (element == null) {
+            element = new SyndElement(localName, this);
+            elements.put(localName, element);
+        }
+        return element;
+    }
 }
@@ -22,39 +22,42 @@ public class PodcastIndex extends Namespace {
     @Override
     public SyndElement handleElementStart(String localName, HandlerState state,
                                           Attributes attributes) {
-        if (FUNDING.equals(localName)) {
-            String href = attributes.getValue(URL);
-            FeedFunding funding = new FeedFunding(href, "");
-            state.setCurrentFunding(funding);
-            state.getFeed().addPayment(state.getCurrentFunding());
-        } else if (CHAPTERS.equals(localName)) {
-            String href = attributes.getValue(URL);
-            if (!TextUtils.isEmpty(href)) {
-                state.getCurrentItem().setPodcastIndexChapterUrl(href);
-            }
-        } else if (SOCIAL_INTERACT.equals(localName)) {
-            String href = attributes.getValue(URI);
-            if (!TextUtils.isEmpty(href) && state.getCurrentItem() != null) {
-                state.getCurrentItem().setSocialInteractUrl(href);
-            }
-        } else if (TRANSCRIPT.equals(localName)) {
-            String href = attributes.getValue(URL);
-            String type = attributes.getValue(TYPE);
-            if (!TextUtils.isEmpty(href) && !TextUtils.isEmpty(type)) {
-                state.getCurrentItem().setTranscriptUrl(type, href);
-            }
+        switch (localName) {
+            case FUNDING:
+                FeedFunding funding = new FeedFunding(attributes.getValue(URL), "");
+                state.setCurrentFunding(funding);
+                state.getFeed().addPayment(state.getCurrentFunding());
+                break;
+            case CHAPTERS:
+                String chaptersUrl = attributes.getValue(URL);
+                if (!TextUtils.isEmpty(chaptersUrl)) {
+                    state.getCurrentItem().setPodcastIndexChapterUrl(chaptersUrl);
+                }
+                break;
+            case SOCIAL_INTERACT:
+                String socialInteractUrl = attributes.getValue(URI);
+                if (!TextUtils.isEmpty(socialInteractUrl) && state.getCurrentItem() != null) {
+                    state.getCurrentItem().setSocialInteractUrl(socialInteractUrl);
+                }
+                break;
+            case TRANSCRIPT:
+                String transcriptUrl = attributes.getValue(URL);
+                String type = attributes.getValue(TYPE);
+                if (!TextUtils.isEmpty(transcriptUrl) && !TextUtils.isEmpty(type)) {
+                    state.getCurrentItem().setTranscriptUrl(type, transcriptUrl);
+                }
+                break;
+            default:
+                break;
         }
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
     public void handleElementEnd(String localName, HandlerState state) {
-        if (state.getContentBuf() == null) {
-            return;
-        }
-        String content = state.getContentBuf().toString();
-        if (FUNDING.equals(localName) && state.getCurrentFunding() != null && !TextUtils.isEmpty(content)) {
-            state.getCurrentFunding().setContent(content);
+        if (FUNDING.equals(localName) && state.getCurrentFunding() != null
+                && state.getContentBuf() != null && state.getContentBuf().length() > 0) {
+            state.getCurrentFunding().setContent(state.getContentBuf().toString());
         }
     }
 }
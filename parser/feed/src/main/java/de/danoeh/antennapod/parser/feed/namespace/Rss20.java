@@ -41,7 +41,7 @@ public class Rss20 extends Namespace {
 
     @Override
     public SyndElement handleElementStart(String localName, HandlerState state, Attributes attributes) {
-        if (ITEM.equals(localName) && CHANNEL.equals(state.getTagstack().lastElement().getName())) {
+        if (ITEM.equals(localName) && CHANNEL.equals(state.getTagstack().peek().getName())) {
             state.setCurrentItem(new FeedItem());
             state.getItems().add(state.getCurrentItem());
             state.getCurrentItem().setFeed(state.getFeed());
@@ -73,7 +73,7 @@ public class Rss20 extends Namespace {
                 state.getCurrentItem().setMedia(media);
             }
         }
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
@@ -97,55 +97,72 @@ public class Rss20 extends Namespace {
             }
             state.setCurrentItem(null);
         } else if (state.getTagstack().size() >= 2 && state.getContentBuf() != null) {
-            String contentRaw = state.getContentBuf().toString();
-            String content = SyndStringUtils.trimAllWhitespace(contentRaw);
-            SyndElement topElement = state.getTagstack().peek();
-            String top = topElement.getName();
-            SyndElement secondElement = state.getSecondTag();
-            String second = secondElement.getName();
-            String third = null;
-            if (state.getTagstack().size() >= 3) {
-                third = state.getThirdTag().getName();
-            }
-            if (GUID.equals(top) && ITEM.equals(second)) {
-                // some feed creators include an empty or non-standard guid-element in their feed,
-                // which should be ignored
-                if (!TextUtils.isEmpty(contentRaw) && state.getCurrentItem() != null) {
-                    state.getCurrentItem().setItemIdentifier(contentRaw);
-                }
-            } else if (TITLE.equals(top)) {
-                // Calling fromHtml only if needed because it is slow for huge feeds
-                String contentFromHtml = HtmlCompat.fromHtml(content, HtmlCompat.FROM_HTML_MODE_COMPACT).toString();
-                if (ITEM.equals(second) && state.getCurrentItem() != null) {
-                    state.getCurrentItem().setTitle(contentFromHtml);
-                } else if (CHANNEL.equals(second) && state.getFeed() != null) {
-                    state.getFeed().setTitle(contentFromHtml);
-                }
-            } else if (LINK.equals(top)) {
-                if (CHANNEL.equals(second) && state.getFeed() != null) {
-                    state.getFeed().setLink(content);
-                } else if (ITEM.equals(second) && state.getCurrentItem() != null) {
-                    state.getCurrentItem().setLink(content);
-                }
-            } else if (PUBDATE.equals(top) && ITEM.equals(second) && state.getCurrentItem() != null) {
-                state.getCurrentItem().setPubDate(DateUtils.parseOrNullIfFuture(content));
-            } else if (URL.equals(top) && IMAGE.equals(second) && CHANNEL.equals(third)) {
-                // prefer itunes:image
-                if (state.getFeed() != null && state.getFeed().getImageUrl() == null) {
-                    state.getFeed().setImageUrl(content);
-                }
-            } else if (DESCR.equals(localName)) {
-                if (CHANNEL.equals(second) && state.getFeed() != null) {
-                    // Calling fromHtml only if needed because it is slow for huge feeds
-                    String contentFromHtml = HtmlCompat.fromHtml(content, HtmlCompat.FROM_HTML_MODE_COMPACT).toString();
-                    state.getFeed().setDescription(contentFromHtml);
-                } else if (ITEM.equals(second) && state.getCurrentItem() != null) {
-                    state.getCurrentItem().setDescriptionIfLonger(content); // fromHtml here breaks \n when not html
-                }
-            } else if (LANGUAGE.equals(localName) && state.getFeed() != null) {
-                state.getFeed().setLanguage(content.toLowerCase(Locale.US));
+            String top = state.getTagstack().peek().getName();
+            String second = state.getSecondTag().getName();
+            switch (top) {
+                case GUID:
+                    // some feed creators include an empty or non-standard guid-element in their feed,
+                    // which should be ignored
+                    if (ITEM.equals(second) && state.getContentBuf().length() > 0 && state.getCurrentItem() != null) {
+                        state.getCurrentItem().setItemIdentifier(state.getContentBuf().toString());
+                    }
+                    break;
+                case TITLE:
+                    if (ITEM.equals(second) && state.getCurrentItem() != null) {
+                        state.getCurrentItem().setTitle(getContentFromHtml(state));
+                    } else if (CHANNEL.equals(second) && state.getFeed() != null) {
+                        state.getFeed().setTitle(getContentFromHtml(state));
+                    }
+                    break;
+                case LINK:
+                    if (CHANNEL.equals(second) && state.getFeed() != null) {
+                        state.getFeed().setLink(getContent(state));
+                    } else if (ITEM.equals(second) && state.getCurrentItem() != null) {
+                        state.getCurrentItem().setLink(getContent(state));
+                    }
+                    break;
+                case PUBDATE:
+                    if (ITEM.equals(second) && state.getCurrentItem() != null) {
+                        state.getCurrentItem().setPubDate(
+                                DateUtils.parseOrNullIfFuture(getContent(state), state.getDateFormatMemo()));
+                    }
+                    break;
+                case URL:
+                    // prefer itunes:image
+                    if (IMAGE.equals(second) && state.getTagstack().size() >= 3
+                            && CHANNEL.equals(state.getThirdTag().getName())
+                            && state.getFeed() != null && state.getFeed().getImageUrl() == null) {
+                        state.getFeed().setImageUrl(getContent(state));
+                    }
+                    break;
+                case DESCR:
+                    if (CHANNEL.equals(second) && state.getFeed() != null) {
+                        state.getFeed().setDescription(getContentFromHtml(state));
+                    } else if (ITEM.equals(second) && state.getCurrentItem() != null) {
+                        // fromHtml here breaks \n when not html
+                        state.getCurrentItem().setDescriptionIfLonger(getContent(state));
+                    }
+                    break;
+                case LANGUAGE:
+                    if (state.getFeed() != null) {
+                        state.getFeed().setLanguage(getContent(state).toLowerCase(Locale.US));
+                    }
+                    break;
+                default:
+                    break;
             }
         }
     }
 
+    private static String getContent(HandlerState state) {
+        return SyndStringUtils.trimAllWhitespace(state.getContentBuf().toString());
+    }
+
+    /**
+     * Only called for elements where it is needed because it is slow for huge feeds.
+     */
+    private static String getContentFromHtml(HandlerState state) {
+        return HtmlCompat.fromHtml(getContent(state), HtmlCompat.FROM_HTML_MODE_COMPACT).toString();
+    }
+
 }
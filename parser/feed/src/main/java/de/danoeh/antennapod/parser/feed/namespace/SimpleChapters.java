@@ -46,7 +46,7 @@ public class SimpleChapters extends Namespace {
                 }
             }
         }
-        return new SyndElement(localName, this);
+        return getElement(localName);
     }
 
     @Override
@@ -0,0 +1,402 @@
+package de.danoeh.antennapod.parser.feed.util;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Parses the date formats that are used by almost all feeds without creating any objects.
+ * Supports RFC 822 dates with or without weekday and with numeric or common named time zones
+ * (including CET/CEST and "Sept"), as well as ISO 8601 dates with optional fractional seconds.
+ * Everything else is left to the slower pattern-based parsing in {@link DateUtils}.
+ */
+final class DateTokenParser {
+    static final long FAILED = Long.MIN_VALUE;
+    private static final int NO_OFFSET = Integer.MIN_VALUE;
+    private static final int MINUTE = 60 * 1000;
+    private static final int HOUR = 60 * MINUTE;
+    private static final long DAY = 24L * HOUR;
+
+    private static final String[] MONTHS = {"january", "february", "march", "april", "may", "june",
+            "july", "august", "september", "october", "november", "december"};
+
+    /**
+     * Two-digit years are placed in the same window as SimpleDateFormat does: 80 years before until 20 years after.
+     */
+    private static final int CENTURY_START = Calendar.getInstance(TimeZone.getTimeZone("GMT"))
+            .get(Calendar.YEAR) - 80;
+
+    private DateTokenParser() {
+    }
+
+    /**
+     * @return Milliseconds since the epoch, or {@link #FAILED} if the format is not supported.
+     */
+    static long parse(String input) {
+        int end = input.length();
+        while (end > 0 && isWhitespace(input.charAt(end - 1))) {
+            end--;
+        }
+        int pos = skipWhitespace(input, 0, end);
+        if (pos >= end) {
+            return FAILED;
+        }
+        char first = input.charAt(pos);
+        if (isDigit(first)) {
+            if (digitsEnd(input, pos, end) - pos == 4) {
+                return parseIso8601(input, pos, end);
+            }
+            return parseRfc822(input, pos, end);
+        } else if (isLetter(first)) {
+            // Weekday. It is ignored because some feeds contain dates with the wrong one.
+            while (pos < end && isLetter(input.charAt(pos))) {
+                pos++;
+            }
+            if (pos < end && input.charAt(pos) == ',') {
+                pos++;
+            }
+            int dayStart = skipWhitespace(input, pos, end);
+            if (dayStart == pos && input.charAt(pos - 1) != ',') {
+                return FAILED;
+            }
+            return parseRfc822(input, dayStart, end);
+        }
+        return FAILED;
+    }
+
+    /**
+     * Parses "d MMM yy[yy] [HH:mm[:ss[.SSS]] [zone]]", the part after the weekday.
+     */
+    private static long parseRfc822(String s, int pos, int end) {
+        int dayEnd = digitsEnd(s, pos, end);
+        if (dayEnd - pos < 1 || dayEnd - pos > 2) {
+            return FAILED;
+        }
+        final int day = parseDigits(s, pos, dayEnd);
+        pos = skipWhitespace(s, dayEnd, end);
+        if (pos == dayEnd) {
+            return FAILED;
+        }
+
+        int monthEnd = pos;
+        while (monthEnd < end && isLetter(s.charAt(monthEnd))) {
+            monthEnd++;
+        }
+        final int month = parseMonth(s, pos, monthEnd);
+        if (month < 0) {
+            return FAILED;
+        }
+        pos = skipWhitespace(s, monthEnd, end);
+        if (pos == monthEnd) {
+            return FAILED;
+        }
+
+        int yearEnd = digitsEnd(s, pos, end);
+        int year;
+        if (yearEnd - pos == 4) {
+            year = parseDigits(s, pos, yearEnd);
+        } else if (yearEnd - pos == 2) {
+            year = parseDigits(s, pos, yearEnd) + CENTURY_START / 100 * 100;
+            if (year < CENTURY_START) {
+                year += 100;
+            }
+        } else {
+            return FAILED;
+        }
+        if (!isValidDate(year, month, day)) {
+            return FAILED;
+        }
+        long date = daysFromCivil(year, month, day) * DAY;
+        if (yearEnd == end) {
+            return date;
+        }
+        pos = skipWhitespace(s, yearEnd, end);
+        if (pos == yearEnd) {
+            return FAILED;
+        }
+        return parseTimeAndZone(s, pos, end, date);
+    }
+
+    /**
+     * Parses "yyyy-MM-dd[('T'|' ')HH:mm[:ss[.S+]]][zone]". Slashes are also accepted as separators.
+     */
+    private static long parseIso8601(String s, int pos, int end) {
+        final int year = parseDigits(s, pos, pos + 4);
+        pos += 4;
+        if (pos >= end) {
+            return FAILED;
+        }
+        char separator = s.charAt(pos);
+        if ((separator != '-' && separator != '/') || digitsEnd(s, pos + 1, end) != pos + 3) {
+            return FAILED;
+        }
+        final int month = parseDigits(s, pos + 1, pos + 3) - 1;
+        pos += 3;
+        if (pos >= end || s.charAt(pos) != separator || digitsEnd(s, pos + 1, end) != pos + 3) {
+            return FAILED;
+        }
+        final int day = parseDigits(s, pos + 1, pos + 3);
+        pos += 3;
+        if (!isValidDate(year, month, day)) {
+            return FAILED;
+        }
+        long date = daysFromCivil(year, month, day) * DAY;
+        if (pos == end) {
+            return date;
+        }
+        char c = s.charAt(pos);
+        if (c == 'T' || c == ' ') {
+            return parseTimeAndZone(s, pos + 1, end, date);
+        }
+        // Date with time zone but without time
+        int offset = parseZone(s, pos, end);
+        return offset == NO_OFFSET ? FAILED : date - offset;
+    }
+
+    /**
+     * Parses "HH:mm[:ss[.S+]][ ][zone]" and adds it to the given date.
+     */
+    private static long parseTimeAndZone(String s, int pos, int end, long date) {
+        int hourEnd = digitsEnd(s, pos, end);
+        if (hourEnd - pos < 1 || hourEnd - pos > 2 || hourEnd >= end || s.charAt(hourEnd) != ':') {
+            return FAILED;
+        }
+        final int hour = parseDigits(s, pos, hourEnd);
+        pos = hourEnd + 1;
+        if (digitsEnd(s, pos, end) != pos + 2) {
+            return FAILED;
+        }
+        final int minute = parseDigits(s, pos, pos + 2);
+        pos += 2;
+        int second = 0;
+        int millis = 0;
+        if (pos < end && s.charAt(pos) == ':') {
+            if (digitsEnd(s, pos + 1, end) != pos + 3) {
+                return FAILED;
+            }
+            second = parseDigits(s, pos + 1, pos + 3);
+            pos += 3;
+            if (pos < end && (s.charAt(pos) == '.' || s.charAt(pos) == ',')) {
+                int fractionEnd = digitsEnd(s, pos + 1, end);
+                if (fractionEnd == pos + 1) {
+                    return FAILED;
+                }
+                // Only milliseconds are kept, further decimal places are discarded
+                for (int i = pos + 1; i < pos + 4; i++) {
+                    millis = millis * 10 + (i < fractionEnd ? s.charAt(i) - '0' : 0);
+                }
+                pos = fractionEnd;
+            }
+        }
+        if (hour > 23 || minute > 59 || second > 59) {
+            return FAILED;
+        }
+        int offset = parseZone(s, skipWhitespace(s, pos, end), end);
+        if (offset == NO_OFFSET) {
+            return FAILED;
+        }
+        return date + (long) hour * HOUR + (long) minute * MINUTE + second * 1000L + millis - offset;
+    }
+
+    /**
+     * @return The offset of the time zone in milliseconds, or {@link #NO_OFFSET} if it is not supported.
+     *         Dates without time zone are in GMT.
+     */
+    private static int parseZone(String s, int pos, int end) {
+        if (pos == end) {
+            return 0;
+        }
+        char c = s.charAt(pos);
+        if (c == '+' || c == '-') {
+            return parseNumericOffset(s, pos, end);
+        }
+        int nameEnd = pos;
+        while (nameEnd < end && isLetter(s.charAt(nameEnd))) {
+            nameEnd++;
+        }
+        int offsetHours;
+        switch (nameEnd - pos) {
+            case 1:
+                offsetHours = c == 'Z' ? 0 : NO_OFFSET;
+                break;
+            case 2:
+                offsetHours = s.startsWith("UT", pos) ? 0 : NO_OFFSET;
+                break;
+            case 3:
+                offsetHours = getThreeLetterZoneOffset(s, pos);
+                break;
+            case 4:
+                offsetHours = s.startsWith("CEST", pos) ? 2 : NO_OFFSET;
+                break;
+            default:
+                offsetHours = NO_OFFSET;
+                break;
+        }
+        if (offsetHours == NO_OFFSET) {
+            return NO_OFFSET;
+        } else if (nameEnd == end) {
+            return offsetHours * HOUR;
+        } else if (offsetHours == 0 && s.startsWith("GMT", pos)) {
+            // GMT+0200
+            return parseNumericOffset(s, nameEnd, end);
+        }
+        return NO_OFFSET;
+    }
+
+    private static int getThreeLetterZoneOffset(String s, int pos) {
+        if (s.startsWith("GMT", pos) || s.startsWith("UTC", pos)) {
+            return 0;
+        } else if (s.startsWith("CET", pos)) {
+            return 1;
+        } else if (s.charAt(pos + 2) != 'T') {
+            return NO_OFFSET;
+        }
+        // North American zones
+        int standardOffset;
+        switch (s.charAt(pos)) {
+            case 'E':
+                standardOffset = -5;
+                break;
+            case 'C':
+                standardOffset = -6;
+                break;
+            case 'M':
+                standardOffset = -7;
+                break;
+            case 'P':
+                standardOffset = -8;
+                break;
+            default:
+                return NO_OFFSET;
+        }
+        switch (s.charAt(pos + 1)) {
+            case 'S':
+                return standardOffset;
+            case 'D':
+                return standardOffset + 1;
+            default:
+                return NO_OFFSET;
+        }
+    }
+
+    /**
+     * Parses "+HH", "+HHmm" and "+HH:mm".
+     */
+    private static int parseNumericOffset(String s, int pos, int end) {
+        if (pos >= end) {
+            return NO_OFFSET;
+        }
+        char sign = s.charAt(pos);
+        if (sign != '+' && sign != '-') {
+            return NO_OFFSET;
+        }
+        pos++;
+        int digitsEnd = digitsEnd(s, pos, end);
+        int hours;
+        int minutes = 0;
+        if (digitsEnd - pos == 4 && digitsEnd == end) {
+            hours = parseDigits(s, pos, pos + 2);
+            minutes = parseDigits(s, pos + 2, pos + 4);
+        } else if (digitsEnd - pos == 2 && digitsEnd == end) {
+            hours = parseDigits(s, pos, pos + 2);
+        } else if (digitsEnd - pos == 2 && s.charAt(digitsEnd) == ':' && digitsEnd(s, digitsEnd + 1, end) == end
+                && end - digitsEnd == 3) {
+            hours = parseDigits(s, pos, pos + 2);
+            minutes = parseDigits(s, pos + 3, pos + 5);
+        } else {
+            return NO_OFFSET;
+        }
+        if (hours > 23 || minutes > 59) {
+            return NO_OFFSET;
+        }
+        int offset = hours * HOUR + minutes * MINUTE;
+        return sign == '-' ? -offset : offset;
+    }
+
+    /**
+     * Accepts three-letter abbreviations, full names and "Sept", case-insensitively.
+     *
+     * @return The month from 0 to 11, or -1
+     */
+    private static int parseMonth(String s, int start, int end) {
+        int length = end - start;
+        if (length < 3) {
+            return -1;
+        }
+        for (int month = 0; month < MONTHS.length; month++) {
+            String name = MONTHS[month];
+            if (s.regionMatches(true, start, name, 0, 3)
+                    && (length == 3 || (length == name.length() && s.regionMatches(true, start, name, 0, length))
+                        || (month == Calendar.SEPTEMBER && length == 4
+                            && s.regionMatches(true, start, name, 0, 4)))) {
+                return month;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isValidDate(int year, int month, int day) {
+        if (month < 0 || month > 11 || day < 1) {
+            return false;
+        }
+        int daysInMonth;
+        if (month == Calendar.FEBRUARY) {
+            boolean leapYear = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            daysInMonth = leapYear ? 29 : 28;
+        } else if (month == Calendar.APRIL || month == Calendar.JUNE
+                || month == Calendar.SEPTEMBER || month == Calendar.NOVEMBER) {
+            daysInMonth = 30;
+        } else {
+            daysInMonth = 31;
+        }
+        return day <= daysInMonth;
+    }
+
+    /**
+     * Days since 1970-01-01 in the proleptic Gregorian calendar.
+     *
+     * @param month The month from 0 to 11
+     */
+    private static long daysFromCivil(int year, int month, int day) {
+        int m = month + 1;
+        int y = m <= 2 ? year - 1 : year;
+        int era = (y >= 0 ? y : y - 399) / 400;
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (m > 2 ? m - 3 : m + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097L + dayOfEra - 719468;
+    }
+
+    private static int parseDigits(String s, int start, int end) {
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
+    }
+
+    private static int digitsEnd(String s, int pos, int end) {
+        while (pos < end && isDigit(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int skipWhitespace(String s, int pos, int end) {
+        while (pos < end && isWhitespace(s.charAt(pos))) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+}
@@ -9,9 +9,11 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
 import java.util.TimeZone;
+import java.util.regex.Pattern;
 
 /**
- * Parses several date formats.
+ * Parses several date formats. The common RFC 822 and ISO 8601 formats are handled by a fast tokenizer,
+ * everything else is tried with a list of patterns.
  */
 public abstract class DateUtils {
     private static final TimeZone TIME_ZONE_GMT = TimeZone.getTimeZone("GMT");
@@ -23,27 +25,96 @@ public abstract class DateUtils {
             return dateFormat;
         }
     };
+    private static final ThreadLocal<SimpleDateFormat> FALLBACK_DATE_FORMAT = new ThreadLocal<>() {
+        @Override
+        protected SimpleDateFormat initialValue() {
+            SimpleDateFormat dateFormat = new SimpleDateFormat("", Locale.US);
+            dateFormat.setLenient(false);
+            dateFormat.setTimeZone(TIME_ZONE_GMT);
+            return dateFormat;
+        }
+    };
+
+    private static final Pattern MULTIPLE_SPACES = Pattern.compile("( ){2,}+");
+    private static final Pattern TIMEZONE_WITH_COLON = Pattern.compile("([+-]\\d\\d):(\\d\\d)$");
+    private static final Pattern CEST = Pattern.compile("CEST$");
+    private static final Pattern CET = Pattern.compile("CET$");
+    private static final Pattern SEPT = Pattern.compile("\\bSept\\b");
+    private static final Pattern STARTS_WITH_WEEKDAY = Pattern.compile("^\\w+, .*$");
+
+    private static final String[] PATTERNS = {
+            "dd MMM yy HH:mm:ss Z",
+            "dd MMM yy HH:mm Z",
+            "EEE, dd MMM yyyy HH:mm:ss Z",
+            "EEE, dd MMM yyyy HH:mm:ss",
+            "EEE, dd MMMM yyyy HH:mm:ss Z",
+            "EEE, dd MMMM yyyy HH:mm:ss",
+            "EEEE, dd MMM yyyy HH:mm:ss Z",
+            "EEEE, dd MMM yy HH:mm:ss Z",
+            "EEEE, dd MMM yyyy HH:mm:ss",
+            "EEEE, dd MMM yy HH:mm:ss",
+            "EEE MMM d HH:mm:ss yyyy",
+            "EEE, dd MMM yyyy HH:mm Z",
+            "EEE, dd MMM yyyy HH:mm",
+            "EEE, dd MMMM yyyy HH:mm Z",
+            "EEE, dd MMMM yyyy HH:mm",
+            "EEEE, dd MMM yyyy HH:mm Z",
+            "EEEE, dd MMM yy HH:mm Z",
+            "EEEE, dd MMM yyyy HH:mm",
+            "EEEE, dd MMM yy HH:mm",
+            "EEE MMM d HH:mm yyyy",
+            "yyyy-MM-dd'T'HH:mm:ss",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS Z",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
+            "yyyy-MM-dd'T'HH:mm:ss.SSS",
+            "yyyy-MM-dd'T'HH:mm:ssZ",
+            "yyyy-MM-dd'T'HH:mm:ss'Z'",
+            "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
+            "yyyy-MM-ddZ",
+            "yyyy-MM-dd",
+            "EEE d MMM yyyy HH:mm:ss 'GMT'Z (z)"
+    };
+
+    /**
+     * Remembers which of the fallback patterns matched the last date of a feed. Feeds usually
+     * use the same format for all their dates, so that pattern is tried first next time.
+     * Not thread-safe, use one instance per feed that is parsed.
+     */
+    public static class FormatMemo {
+        private int lastPattern = -1;
+    }
 
     public static Date parse(final String input) {
+        return parse(input, null);
+    }
+
+    /**
+     * @param memo Format of the previous date of the same feed, updated when a fallback pattern matches
+     */
+    public static Date parse(final String input, @Nullable FormatMemo memo) {
         if (input == null) {
             throw new IllegalArgumentException("Date must not be null");
         }
+        long millis = DateTokenParser.parse(input);
+        if (millis != DateTokenParser.FAILED) {
+            return new Date(millis);
+        }
         try {
             return RFC822_DATE_FORMAT.get().parse(input);
         } catch (ParseException ignored) {
             // Feed not following the specification? Now start all our expensive workarounds.
         }
-        String date = input.trim().replace('/', '-').replaceAll("( ){2,}+", " ");
+        String date = MULTIPLE_SPACES.matcher(input.trim().replace('/', '-')).replaceAll(" ");
 
         // remove colon from timezone to avoid differences between Android and Java SimpleDateFormat
-        date = date.replaceAll("([+-]\\d\\d):(\\d\\d)$", "$1$2");
+        date = TIMEZONE_WITH_COLON.matcher(date).replaceAll("$1$2");
 
         // CEST is widely used but not in the "ISO 8601 Time zone" list. Let's hack around.
-        date = date.replaceAll("CEST$", "+0200");
-        date = date.replaceAll("CET$", "+0100");
+        date = CEST.matcher(date).replaceAll("+0200");
+        date = CET.matcher(date).replaceAll("+0100");
 
         // some generators use "Sept" for September
-        date = date.replaceAll("\\bSept\\b", "Sep");
+        date = SEPT.matcher(date).replaceAll("Sep");
 
         // if datetime is more precise than seconds, make sure the value is in ms
         if (date.contains(".")) {
@@ -69,72 +140,70 @@ public abstract class DateUtils {
                 }
             }
         }
-        final String[] patterns = {
-                "dd MMM yy HH:mm:ss Z",
-                "dd MMM yy HH:mm Z",
-                "EEE, dd MMM yyyy HH:mm:ss Z",
-                "EEE, dd MMM yyyy HH:mm:ss",
-                "EEE, dd MMMM yyyy HH:mm:ss Z",
-                "EEE, dd MMMM yyyy HH:mm:ss",
-                "EEEE, dd MMM yyyy HH:mm:ss Z",
-                "EEEE, dd MMM yy HH:mm:ss Z",
-                "EEEE, dd MMM yyyy HH:mm:ss",
-                "EEEE, dd MMM yy HH:mm:ss",
-                "EEE MMM d HH:mm:ss yyyy",
-                "EEE, dd MMM yyyy HH:mm Z",
-                "EEE, dd MMM yyyy HH:mm",
-                "EEE, dd MMMM yyyy HH:mm Z",
-                "EEE, dd MMMM yyyy HH:mm",
-                "EEEE, dd MMM yyyy HH:mm Z",
-                "EEEE, dd MMM yy HH:mm Z",
-                "EEEE, dd MMM yyyy HH:mm",
-                "EEEE, dd MMM yy HH:mm",
-                "EEE MMM d HH:mm yyyy",
-                "yyyy-MM-dd'T'HH:mm:ss",
-                "yyyy-MM-dd'T'HH:mm:ss.SSS Z",
-                "yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
-                "yyyy-MM-dd'T'HH:mm:ss.SSS",
-                "yyyy-MM-dd'T'HH:mm:ssZ",
-                "yyyy-MM-dd'T'HH:mm:ss'Z'",
-                "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
-                "yyyy-MM-ddZ",
-                "yyyy-MM-dd",
-                "EEE d MMM yyyy HH:mm:ss 'GMT'Z (z)"
-        };
-
-        SimpleDateFormat parser = new SimpleDateFormat("", Locale.US);
-        parser.setLenient(false);
-        parser.setTimeZone(TIME_ZONE_GMT);
 
+        SimpleDateFormat parser = FALLBACK_DATE_FORMAT.get();
         ParsePosition pos = new ParsePosition(0);
-        for (String pattern : patterns) {
-            parser.applyPattern(pattern);
-            pos.setIndex(0);
-            try {
-                Date result = parser.parse(date, pos);
-                if (result != null && pos.getIndex() == date.length()) {
-                    return result;
+        if (memo != null && memo.lastPattern >= 0) {
+            Date result = parseWithPattern(parser, PATTERNS[memo.lastPattern], date, pos);
+            if (result != null) {
+                return result;
+            }
+        }
+        for (int i = 0; i < PATTERNS.length; i++) {
+            if (memo != null && i == memo.lastPattern) {
+                continue;
+            }
+            Date result = parseWithPattern(parser, PATTERNS[i], date, pos);
+            if (result != null) {
+                if (memo != null) {
+                    memo.lastPattern = i;
                 }
-            } catch (Exception ignored) {
-                // Ignore
+                return result;
             }
         }
 
         // if date string starts with a weekday, try parsing date string without it
-        if (date.matches("^\\w+, .*$")) {
-            return parse(date.substring(date.indexOf(',') + 1));
+        if (STARTS_WITH_WEEKDAY.matcher(date).matches()) {
+            return parse(date.substring(date.indexOf(',') + 1), memo);
         }
 
         System.out.println("Could not parse date string \"" + input + "\" [" + date + "]");
         return null;
     }
 
+    @Nullable
+    private static Date parseWithPattern(SimpleDateFormat parser, String pattern, String date, ParsePosition pos) {
+        parser.applyPattern(pattern);
+        // Parsing a zone changes the time zone of the reused parser
+        parser.setTimeZone(TIME_ZONE_GMT);
+        pos.setIndex(0);
+        try {
+            Date result = parser.parse(date, pos);
+            if (result != null && pos.getIndex() == date.length()) {
+                return result;
+            }
+        } catch (Exception ignored) {
+            // Ignore
+        }
+        return null;
+    }
+
     /**
      * Parses the date but if the date is in the future, returns null.
      */
     @Nullable
     public static Date parseOrNullIfFuture(final String input) {
-        Date date = parse(input);
+        return parseOrNullIfFuture(input, null);
+    }
+
+    /**
+     * Parses the date but if the date is in the future, returns null.
+     *
+     * @param memo Format of the previous date of the same feed, see {@link #parse(String, FormatMemo)}
+     */
+    @Nullable
+    public static Date parseOrNullIfFuture(final String input, @Nullable FormatMemo memo) {
+        Date date = parse(input, memo);
         if (date == null) {
             return null;
         }
@@ -0,0 +1,48 @@
+package de.danoeh.antennapod.parser.feed;
+
+import de.danoeh.antennapod.model.feed.Feed;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Unit test for {@link HandlerState}.
+ */
+public class HandlerStateTest {
+
+    @Test
+    public void testContentBufferIsReused() {
+        HandlerState state = new HandlerState(new Feed("http://example.com/feed", null));
+        state.startContent();
+        char[] content = "Episode title".toCharArray();
+        state.appendContent(content, 0, content.length);
+        StringBuilder buffer = state.getContentBuf();
+        assertEquals("Episode title", buffer.toString());
+
+        state.endContent();
+        assertNull(state.getContentBuf());
+        state.appendContent(content, 0, content.length);
+        assertNull(state.getContentBuf());
+
+        state.startContent();
+        assertSame(buffer, state.getContentBuf());
+        assertEquals(0, state.getContentBuf().length());
+    }
+
+    @Test
+    public void testHugeContentBufferIsDropped() {
+        HandlerState state = new HandlerState(new Feed("http://example.com/feed", null));
+        state.startContent();
+        char[] content = new char[HandlerState.MAX_RETAINED_BUFFER_SIZE + 1];
+        state.appendContent(content, 0, content.length);
+        StringBuilder buffer = state.getContentBuf();
+        state.endContent();
+
+        state.startContent();
+        assertNotSame(buffer, state.getContentBuf());
+        assertEquals(0, state.getContentBuf().length());
+    }
+}
@@ -0,0 +1,81 @@
+package de.danoeh.antennapod.parser.feed.element.namespace;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import de.danoeh.antennapod.model.feed.Feed;
+import de.danoeh.antennapod.parser.feed.FeedHandler;
+import de.danoeh.antennapod.parser.feed.UnsupportedFeedtypeException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for parsing a feed directly from a stream in FeedHandler.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FeedHandlerTest {
+
+    @Test
+    public void testParseRssFromStream() throws Exception {
+        String xml = "<rss version=\"2.0\"><channel><title>Grüße</title>"
+                + "<item><title>item</title><guid>guid</guid></item></channel></rss>";
+        Feed feed = parse(xml.getBytes(StandardCharsets.ISO_8859_1), "application/rss+xml; charset=ISO-8859-1");
+        assertEquals(Feed.TYPE_RSS2, feed.getType());
+        assertEquals("Grüße", feed.getTitle());
+        assertEquals(1, feed.getItems().size());
+        assertEquals("guid", feed.getItems().get(0).getItemIdentifier());
+    }
+
+    @Test
+    public void testParseTextXmlWithoutCharset() throws Exception {
+        String xml = "<rss version=\"2.0\"><channel><title>Grüße</title></channel></rss>";
+        Feed feed = parse(xml.getBytes(StandardCharsets.UTF_8), "text/xml");
+        assertEquals("Grüße", feed.getTitle());
+    }
+
+    @Test
+    public void testParseAtomFromStream() throws Exception {
+        String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+                + "<feed xmlns=\"http://www.w3.org/2005/Atom\" xml:lang=\"de\"><title>title</title></feed>";
+        Feed feed = parse(xml.getBytes(StandardCharsets.UTF_8), null);
+        assertEquals(Feed.TYPE_ATOM1, feed.getType());
+        assertEquals("de", feed.getLanguage());
+        assertEquals("title", feed.getTitle());
+    }
+
+    @Test
+    public void testWebsiteIsDetected() throws Exception {
+        String html = "<!DOCTYPE html><html><head><title>My podcast</title>"
+                + "<script>if (a && b) {}</script></head><body><br></body></html>";
+        try {
+            parse(html.getBytes(StandardCharsets.UTF_8), "text/html");
+            fail("Expected UnsupportedFeedtypeException");
+        } catch (UnsupportedFeedtypeException e) {
+            assertEquals("html", e.getRootElement());
+        }
+    }
+
+    @Test(expected = UnsupportedFeedtypeException.class)
+    public void testUnknownRootElement() throws Exception {
+        parse("<opml version=\"1.0\"><body/></opml>".getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    @Test(expected = UnsupportedFeedtypeException.class)
+    public void testUnsupportedRssVersion() throws Exception {
+        parse("<rss version=\"1.0\"><channel/></rss>".getBytes(StandardCharsets.UTF_8), null);
+    }
+
+    private static Feed parse(byte[] content, String contentType) throws Exception {
+        Feed feed = new Feed("http://example.com/feed", null);
+        try (InputStream inputStream = new ByteArrayInputStream(content)) {
+            new FeedHandler().parseFeed(feed, inputStream, contentType);
+        }
+        return feed;
+    }
+}
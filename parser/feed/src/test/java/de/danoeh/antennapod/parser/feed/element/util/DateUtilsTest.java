@@ -9,6 +9,7 @@ import java.util.GregorianCalendar;
 import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 /**
  * Unit test for {@link DateUtils}.
@@ -181,4 +182,56 @@ public class DateUtilsTest {
         final Date actual = DateUtils.parse("Sun 01 Mar 2015 01:00:00 GMT-0400 (EDT)");
         assertEquals(expected, actual);
     }
+
+    @Test
+    public void testParseRfc822Variants() {
+        final GregorianCalendar exp = new GregorianCalendar(2014, Calendar.SEPTEMBER, 8, 10, 15, 30);
+        exp.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final Date expected = new Date(exp.getTimeInMillis());
+        assertEquals(expected, DateUtils.parse("Mon, 08 Sep 2014 10:15:30 +0000"));
+        assertEquals(expected, DateUtils.parse("8 September 2014 10:15:30 GMT"));
+        assertEquals(expected, DateUtils.parse("Monday, 08 sep 14 10:15:30 UT"));
+        assertEquals(expected, DateUtils.parse("Mon, 08 Sep 2014 12:15:30 +02:00"));
+        assertEquals(expected, DateUtils.parse("Mon, 08 Sep 2014 06:15:30 EDT"));
+        assertEquals(expected, DateUtils.parse("Mon, 08 Sep 2014 03:15:30 PDT"));
+        assertEquals(expected, DateUtils.parse("  Mon, 08 Sep 2014 10:15:30 Z\n"));
+        assertEquals(new Date(exp.getTimeInMillis() - 30000), DateUtils.parse("Mon, 08 Sep 2014 10:15 +0000"));
+    }
+
+    @Test
+    public void testParseIso8601Variants() {
+        final GregorianCalendar exp = new GregorianCalendar(2014, Calendar.SEPTEMBER, 8, 10, 15, 30);
+        exp.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final Date expected = new Date(exp.getTimeInMillis());
+        assertEquals(expected, DateUtils.parse("2014-09-08T10:15:30Z"));
+        assertEquals(expected, DateUtils.parse("2014-09-08T12:15:30+02:00"));
+        assertEquals(expected, DateUtils.parse("2014-09-08T05:15:30-0500"));
+        assertEquals(expected, DateUtils.parse("2014-09-08 10:15:30"));
+        assertEquals(expected, DateUtils.parse("2014/09/08T10:15:30.000"));
+
+        final GregorianCalendar expDay = new GregorianCalendar(2014, Calendar.SEPTEMBER, 8);
+        expDay.setTimeZone(TimeZone.getTimeZone("GMT"));
+        assertEquals(new Date(expDay.getTimeInMillis()), DateUtils.parse("2014-09-08"));
+        assertEquals(new Date(expDay.getTimeInMillis() - 3600000), DateUtils.parse("2014-09-08+0100"));
+    }
+
+    @Test
+    public void testParseInvalidDate() {
+        assertNull(DateUtils.parse("not a date"));
+        assertNull(DateUtils.parse("2014-13-08T10:15:30Z"));
+        assertNull(DateUtils.parse(""));
+    }
+
+    @Test
+    public void testParseWithFormatMemo() {
+        final GregorianCalendar exp = new GregorianCalendar(2011, Calendar.MAY, 25, 12, 33, 0);
+        exp.setTimeZone(TimeZone.getTimeZone("GMT"));
+        final Date expected = new Date(exp.getTimeInMillis());
+        DateUtils.FormatMemo memo = new DateUtils.FormatMemo();
+        assertEquals(expected, DateUtils.parse("Wed May 25 12:33:00 2011", memo));
+        assertEquals(new Date(expected.getTime() + 86400000), DateUtils.parse("Thu May 26 12:33:00 2011", memo));
+        // A different format in the same feed still works
+        assertEquals(expected, DateUtils.parse("Wed, 25 May 2011 12:33:00", memo));
+        assertEquals(expected, DateUtils.parse("Wed May 25 12:33 2011", memo));
+    }
 }
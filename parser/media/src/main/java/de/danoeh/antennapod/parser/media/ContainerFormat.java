@@ -0,0 +1,51 @@
+package de.danoeh.antennapod.parser.media;
+
+/**
+ * Detects the container of a media file from its first bytes, so that only the matching
+ * chapter parser needs to read the file.
+ */
+public final class ContainerFormat {
+    public static final int UNKNOWN = 0;
+    /**
+     * MP3 (or other) file that starts with an ID3v2 tag.
+     */
+    public static final int ID3 = 1;
+    /**
+     * Ogg file, containing Vorbis or Opus.
+     */
+    public static final int OGG = 2;
+    /**
+     * ISO base media file, like M4A or MP4.
+     */
+    public static final int MP4 = 3;
+    /**
+     * Number of bytes needed by {@link #detect(byte[], int)}.
+     */
+    public static final int HEADER_LENGTH = 8;
+
+    private ContainerFormat() {
+    }
+
+    public static int detect(byte[] header, int length) {
+        if (startsWith(header, length, 0, "ID3")) {
+            return ID3;
+        } else if (startsWith(header, length, 0, "OggS")) {
+            return OGG;
+        } else if (startsWith(header, length, 4, "ftyp")) {
+            return MP4;
+        }
+        return UNKNOWN;
+    }
+
+    private static boolean startsWith(byte[] header, int length, int offset, String magic) {
+        if (length < offset + magic.length()) {
+            return false;
+        }
+        for (int i = 0; i < magic.length(); i++) {
+            if (header[offset + i] != magic.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,37 @@
+package de.danoeh.antennapod.parser.media;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a local file with positional reads, so parsers can jump over the audio data.
+ */
+public class FileChannelSource implements SeekableSource {
+    private final FileChannel channel;
+
+    /**
+     * @param channel Channel that supports positional reads. Closed together with this source.
+     */
+    public FileChannelSource(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    @Override
+    public long length() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        return channel.read(ByteBuffer.wrap(buffer, offset, length), position);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,22 @@
+package de.danoeh.antennapod.parser.media;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A media file that can be read at any position without reading everything before it,
+ * for example a local file or a remote file that supports HTTP range requests.
+ */
+public interface SeekableSource extends Closeable {
+    /**
+     * @return The size of the file in bytes, or -1 if it is not known (yet)
+     */
+    long length() throws IOException;
+
+    /**
+     * Reads up to {@code length} bytes, starting at the given position of the file.
+     *
+     * @return The number of bytes read, or -1 if the position is at the end of the file
+     */
+    int read(long position, byte[] buffer, int offset, int length) throws IOException;
+}
@@ -0,0 +1,202 @@
+package de.danoeh.antennapod.parser.media;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Makes a {@link SeekableSource} usable by stream based parsers. Skipping only moves the position,
+ * so skipping over audio data does not read it.
+ * Reads are buffered. The buffer starts small after each jump, because parsers usually only read a header there,
+ * and grows while the data is read sequentially.
+ */
+public class SeekableSourceInputStream extends InputStream {
+    private static final int MIN_BUFFER_SIZE = 512;
+    private static final int MAX_BUFFER_SIZE = 8 * 1024;
+
+    private final SeekableSource source;
+    private final byte[] buffer = new byte[MAX_BUFFER_SIZE];
+    private final ByteBuffer bufferView = ByteBuffer.wrap(buffer);
+    private long bufferStart = 0;
+    private int bufferLength = 0;
+    private int fillSize = MIN_BUFFER_SIZE;
+    private long position;
+    private long markPosition = -1;
+
+    public SeekableSourceInputStream(SeekableSource source) {
+        this(source, 0);
+    }
+
+    public SeekableSourceInputStream(SeekableSource source, long position) {
+        this.source = source;
+        this.position = position;
+    }
+
+    public long getPosition() {
+        return position;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!request(1)) {
+            return -1;
+        }
+        return buffer[(int) (position++ - bufferStart)] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] destination, int offset, int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        int buffered = getBufferedCount();
+        if (buffered <= 0 && length >= fillSize) {
+            int count = source.read(position, destination, offset, length);
+            if (count > 0) {
+                position += count;
+            }
+            return count;
+        }
+        if (buffered <= 0 && !request(1)) {
+            return -1;
+        }
+        int count = Math.min(length, getBufferedCount());
+        System.arraycopy(buffer, (int) (position - bufferStart), destination, offset, count);
+        position += count;
+        return count;
+    }
+
+    /**
+     * Reads a big-endian 16 bit value.
+     */
+    public short readShort() throws IOException {
+        require(2);
+        short value = bufferView.getShort((int) (position - bufferStart));
+        position += 2;
+        return value;
+    }
+
+    /**
+     * Reads a big-endian 32 bit value.
+     */
+    public int readInt() throws IOException {
+        require(4);
+        int value = bufferView.getInt((int) (position - bufferStart));
+        position += 4;
+        return value;
+    }
+
+    /**
+     * Reads a big-endian 64 bit value.
+     */
+    public long readLong() throws IOException {
+        require(8);
+        long value = bufferView.getLong((int) (position - bufferStart));
+        position += 8;
+        return value;
+    }
+
+    /**
+     * Moves to the given position of the source. The data in between is not read.
+     */
+    public void seek(long position) {
+        this.position = position;
+    }
+
+    /**
+     * @return The size of the source in bytes, or -1 if it is not known
+     */
+    public long length() throws IOException {
+        return source.length();
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        if (n <= 0) {
+            return 0;
+        }
+        long length = source.length();
+        if (length >= 0) {
+            n = Math.max(0, Math.min(n, length - position));
+        }
+        position += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return Math.max(0, getBufferedCount());
+    }
+
+    @Override
+    public boolean markSupported() {
+        return true;
+    }
+
+    /**
+     * Sources that can only be read sequentially can only go back as long as the data is still buffered.
+     */
+    @Override
+    public synchronized void mark(int readLimit) {
+        markPosition = position;
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        if (markPosition < 0) {
+            throw new IOException("Mark not set");
+        }
+        position = markPosition;
+    }
+
+    /**
+     * Does not close the source, so that it can be read again.
+     */
+    @Override
+    public void close() {
+    }
+
+    private int getBufferedCount() {
+        if (position < bufferStart || position >= bufferStart + bufferLength) {
+            return 0;
+        }
+        return (int) (bufferStart + bufferLength - position);
+    }
+
+    private void require(int count) throws IOException {
+        if (!request(count)) {
+            throw new EOFException("Unexpected end of file at position " + position);
+        }
+    }
+
+    /**
+     * Makes sure that the given number of bytes starting at the current position are in the buffer.
+     *
+     * @return False if the file ends before
+     */
+    private boolean request(int count) throws IOException {
+        int buffered = getBufferedCount();
+        if (buffered >= count) {
+            return true;
+        }
+        long bufferEnd = bufferStart + bufferLength;
+        if (buffered > 0) {
+            // Keep what is left, sequential sources cannot go back to read it again
+            System.arraycopy(buffer, (int) (position - bufferStart), buffer, 0, buffered);
+        }
+        fillSize = position + buffered == bufferEnd && bufferLength > 0
+                ? Math.min(2 * fillSize, MAX_BUFFER_SIZE) : MIN_BUFFER_SIZE;
+        bufferStart = position;
+        bufferLength = buffered;
+        int target = Math.max(count, fillSize);
+        while (bufferLength < count) {
+            int read = source.read(bufferStart + bufferLength, buffer, bufferLength, target - bufferLength);
+            if (read < 0) {
+                return false;
+            }
+            bufferLength += read;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package de.danoeh.antennapod.parser.media;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Fallback for media that can only be read from start to end. Jumping forward skips the data in between,
+ * which only reads it if the stream cannot skip. Jumping backward is not possible.
+ */
+public class SequentialSource implements SeekableSource {
+    private static final int SKIP_BUFFER_SIZE = 8 * 1024;
+
+    private final InputStream input;
+    private final long length;
+    private long position = 0;
+    private byte[] skipBuffer = null;
+
+    /**
+     * @param length Size of the file, or -1 if unknown
+     */
+    public SequentialSource(InputStream input, long length) {
+        this.input = input;
+        this.length = length;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+        if (position < this.position) {
+            throw new IOException("Cannot go back to position " + position + " from " + this.position);
+        }
+        while (this.position < position) {
+            long skipped = input.skip(position - this.position);
+            if (skipped <= 0) {
+                // Streams may refuse to skip, reading tells whether the end was reached
+                if (skipBuffer == null) {
+                    skipBuffer = new byte[SKIP_BUFFER_SIZE];
+                }
+                skipped = input.read(skipBuffer, 0, (int) Math.min(SKIP_BUFFER_SIZE, position - this.position));
+                if (skipped < 0) {
+                    return -1;
+                }
+            }
+            this.position += skipped;
+        }
+        int count = input.read(buffer, offset, length);
+        if (count > 0) {
+            this.position += count;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+}
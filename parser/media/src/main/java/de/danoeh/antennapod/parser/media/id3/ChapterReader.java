@@ -6,6 +6,8 @@ import androidx.annotation.NonNull;
 import de.danoeh.antennapod.model.feed.Chapter;
 import de.danoeh.antennapod.model.feed.EmbeddedChapterImage;
 import de.danoeh.antennapod.parser.media.id3.model.FrameHeader;
+import de.danoeh.antennapod.parser.media.SeekableSource;
+import de.danoeh.antennapod.parser.media.SeekableSourceInputStream;
 import org.apache.commons.io.input.CountingInputStream;
 
 import java.io.IOException;
@@ -33,6 +35,14 @@ public class ChapterReader extends ID3Reader {
         super(input);
     }
 
+    public ChapterReader(SeekableSource source) {
+        super(source);
+    }
+
+    public ChapterReader(SeekableSourceInputStream input) {
+        super(input);
+    }
+
     @Override
     protected void readFrame(@NonNull FrameHeader frameHeader) throws IOException, ID3ReaderException {
         if (FRAME_ID_CHAPTER.equals(frameHeader.getId())) {
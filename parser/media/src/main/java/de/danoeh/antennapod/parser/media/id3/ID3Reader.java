@@ -2,12 +2,15 @@ package de.danoeh.antennapod.parser.media.id3;
 
 import android.util.Log;
 import androidx.annotation.NonNull;
+import de.danoeh.antennapod.parser.media.SeekableSource;
+import de.danoeh.antennapod.parser.media.SeekableSourceInputStream;
+import de.danoeh.antennapod.parser.media.SequentialSource;
 import de.danoeh.antennapod.parser.media.id3.model.FrameHeader;
 import de.danoeh.antennapod.parser.media.id3.model.TagHeader;
-import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CountingInputStream;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
@@ -15,6 +18,7 @@ import java.nio.charset.MalformedInputException;
 
 /**
  * Reads the ID3 Tag of a given file.
+ * Frames that are not needed, like embedded images, are skipped without reading them if the input supports seeking.
  * See https://id3.org/id3v2.3.0
  */
 public class ID3Reader {
@@ -26,9 +30,20 @@ public class ID3Reader {
     public static final byte ENCODING_UTF8 = 3;
 
     private TagHeader tagHeader;
-    private final CountingInputStream inputStream;
+    private final SeekableSourceInputStream inputStream;
 
     public ID3Reader(CountingInputStream input) {
+        this(new SeekableSourceInputStream(new SequentialSource(input, -1)));
+    }
+
+    public ID3Reader(SeekableSource source) {
+        this(new SeekableSourceInputStream(source));
+    }
+
+    /**
+     * @param input Input positioned at the start of the tag. Positions are counted from the start of the source.
+     */
+    public ID3Reader(SeekableSourceInputStream input) {
         inputStream = input;
     }
 
@@ -36,7 +51,13 @@ public class ID3Reader {
         tagHeader = readTagHeader();
         int tagContentStartPosition = getPosition();
         while (getPosition() < tagContentStartPosition + tagHeader.getSize()) {
-            FrameHeader frameHeader = readFrameHeader();
+            FrameHeader frameHeader;
+            try {
+                frameHeader = readFrameHeader();
+            } catch (EOFException e) {
+                Log.d(TAG, "Stopping because the file ends inside of the tag");
+                return;
+            }
             if (frameHeader.getId().charAt(0) < '0' || frameHeader.getId().charAt(0) > 'z') {
                 Log.d(TAG, "Stopping because of invalid frame: " + frameHeader.toString());
                 return;
@@ -51,17 +72,19 @@ public class ID3Reader {
     }
 
     int getPosition() {
-        return inputStream.getCount();
+        return (int) inputStream.getPosition();
     }
 
     /**
-     * Skip a certain number of bytes on the given input stream.
+     * Skip a certain number of bytes on the given input stream. Seeks instead of reading if possible.
      */
     void skipBytes(int number) throws IOException, ID3ReaderException {
         if (number < 0) {
             throw new ID3ReaderException("Trying to read a negative number of bytes");
         }
-        IOUtils.skipFully(inputStream, number);
+        if (inputStream.skip(number) < number) {
+            throw new EOFException("Unexpected end of file while skipping " + number + " bytes");
+        }
     }
 
     byte readByte() throws IOException {
@@ -69,17 +92,11 @@ public class ID3Reader {
     }
 
     short readShort() throws IOException {
-        char firstByte = (char) inputStream.read();
-        char secondByte = (char) inputStream.read();
-        return (short) ((firstByte << 8) | secondByte);
+        return inputStream.readShort();
     }
 
     int readInt() throws IOException {
-        char firstByte = (char) inputStream.read();
-        char secondByte = (char) inputStream.read();
-        char thirdByte = (char) inputStream.read();
-        char fourthByte = (char) inputStream.read();
-        return (firstByte << 24) | (secondByte << 16) | (thirdByte << 8) | fourthByte;
+        return inputStream.readInt();
     }
 
     void expectChar(char expected) throws ID3ReaderException, IOException {
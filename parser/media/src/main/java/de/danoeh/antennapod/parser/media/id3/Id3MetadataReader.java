@@ -2,6 +2,8 @@ package de.danoeh.antennapod.parser.media.id3;
 
 import androidx.annotation.NonNull;
 import de.danoeh.antennapod.parser.media.id3.model.FrameHeader;
+import de.danoeh.antennapod.parser.media.SeekableSource;
+import de.danoeh.antennapod.parser.media.SeekableSourceInputStream;
 import org.apache.commons.io.input.CountingInputStream;
 
 import java.io.IOException;
@@ -18,6 +20,14 @@ public class Id3MetadataReader extends ID3Reader {
         super(input);
     }
 
+    public Id3MetadataReader(SeekableSource source) {
+        super(source);
+    }
+
+    public Id3MetadataReader(SeekableSourceInputStream input) {
+        super(input);
+    }
+
     @Override
     protected void readFrame(@NonNull FrameHeader frameHeader) throws IOException, ID3ReaderException {
         if (FRAME_ID_COMMENT.equals(frameHeader.getId())) {
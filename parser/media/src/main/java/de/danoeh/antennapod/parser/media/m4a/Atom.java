@@ -0,0 +1,78 @@
+package de.danoeh.antennapod.parser.media.m4a;
+
+import de.danoeh.antennapod.parser.media.SeekableSourceInputStream;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header of an MP4 atom (box). Atoms are found by jumping from one header to the next,
+ * so the data of atoms that are not needed (for example the audio) is never read.
+ * See ISO/IEC 14496-12, section 4.2
+ */
+class Atom {
+    final String type;
+    final long dataStart;
+    final long end;
+
+    private Atom(String type, long dataStart, long end) {
+        this.type = type;
+        this.dataStart = dataStart;
+        this.end = end;
+    }
+
+    long getDataSize() {
+        return end - dataStart;
+    }
+
+    /**
+     * Reads the header of the atom at the current position.
+     *
+     * @param parentEnd End of the surrounding atom, or -1 if the end of the file is not known
+     * @return The atom, or null if there is no further atom before the end of the parent
+     * @throws IOException If the header is invalid
+     */
+    static Atom read(SeekableSourceInputStream input, long parentEnd) throws IOException {
+        long start = input.getPosition();
+        if (parentEnd >= 0 && start + 8 > parentEnd) {
+            return null;
+        }
+        long size = input.readInt() & 0xffffffffL;
+        byte[] typeBytes = new byte[4];
+        IOUtils.readFully(input, typeBytes);
+        String type = new String(typeBytes, StandardCharsets.ISO_8859_1);
+        if (size == 1) {
+            size = input.readLong(); // 64 bit size, used for atoms larger than 4 GB
+        } else if (size == 0) {
+            // Atom extends to the end of the file
+            long end = parentEnd >= 0 ? parentEnd : input.length();
+            return new Atom(type, input.getPosition(), end >= 0 ? end : Long.MAX_VALUE);
+        }
+        long dataStart = input.getPosition();
+        if (size < dataStart - start || (parentEnd >= 0 && start + size > parentEnd)) {
+            throw new IOException("Invalid size " + size + " of atom " + type + " at " + start);
+        }
+        return new Atom(type, dataStart, start + size);
+    }
+
+    /**
+     * Finds the first child with the given type, starting at the current position.
+     *
+     * @return The child, with the input positioned at its data, or null if there is none
+     */
+    static Atom findChild(SeekableSourceInputStream input, long parentEnd, String type) throws IOException {
+        while (true) {
+            Atom atom = read(input, parentEnd);
+            if (atom == null || atom.type.equals(type)) {
+                return atom;
+            }
+            input.seek(atom.end);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return type + " (" + getDataSize() + " bytes at " + dataStart + ")";
+    }
+}
@@ -4,24 +4,65 @@ import android.util.Log;
 
 import org.apache.commons.io.IOUtils;
 
+import java.io.EOFException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
 
 import de.danoeh.antennapod.model.feed.Chapter;
+import de.danoeh.antennapod.parser.media.SeekableSource;
+import de.danoeh.antennapod.parser.media.SeekableSourceInputStream;
+import de.danoeh.antennapod.parser.media.SequentialSource;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+/**
+ * Reads Nero chapters (moov.udta.chpl) and QuickTime chapter tracks from M4A files.
+ * The reader jumps between atom headers, so finding the chapters does not depend on the size of the audio data.
+ */
 public class M4AChapterReader {
     private static final String TAG = "M4AChapterReader";
     private final List<Chapter> chapters = new ArrayList<>();
-    private final InputStream inputStream;
+    private final SeekableSourceInputStream inputStream;
     private static final int FTYP_CODE = 0x66747970; // "ftyp"
+    private static final String HANDLER_TEXT = "text";
 
+    private final List<Track> tracks = new ArrayList<>();
+
+    /**
+     * Track header data and the tables that are needed to find the samples of a chapter track.
+     * See ISO/IEC 14496-12, section 8.6 and 8.7
+     */
+    private static class Track {
+        int id = -1;
+        String handler = "";
+        long timescale = 0;
+        int[] chapterTrackIds = new int[0];
+        Atom sampleTable = null;
+        long[] sampleCounts = new long[0]; // stts
+        long[] sampleDeltas = new long[0];
+        long[] firstChunks = new long[0]; // stsc
+        long[] samplesPerChunk = new long[0];
+        long fixedSampleSize = 0; // stsz
+        long[] sampleSizes = new long[0];
+        long[] chunkOffsets = new long[0]; // stco or co64
+    }
+
+    /**
+     * Only finds chapters that come after the audio data if the stream supports {@link InputStream#skip(long)}.
+     */
     public M4AChapterReader(InputStream input) {
+        this(new SeekableSourceInputStream(new SequentialSource(input, -1)));
+    }
+
+    public M4AChapterReader(SeekableSource source) {
+        this(new SeekableSourceInputStream(source));
+    }
+
+    public M4AChapterReader(SeekableSourceInputStream input) {
         inputStream = input;
     }
 
@@ -31,72 +72,282 @@ public class M4AChapterReader {
     public void readInputStream() {
         try {
             isM4A(inputStream);
-            int dataSize = this.findAtom("moov.udta.chpl");
-            if (dataSize == -1) {
-                Log.d(TAG, "Nero Chapter Atom not found");
-            } else {
-                Log.d(TAG, "Nero Chapter Atom found. Data Size: " + dataSize);
-                this.parseNeroChapterAtom(dataSize);
+            Atom moov;
+            try {
+                moov = Atom.findChild(inputStream, inputStream.length(), "moov");
+            } catch (EOFException e) {
+                moov = null;
             }
+            if (moov == null) {
+                Log.d(TAG, "Movie atom not found");
+                return;
+            }
+            readMovieAtom(moov);
+            if (!chapters.isEmpty()) {
+                return;
+            }
+            Log.d(TAG, "Nero Chapter Atom not found");
+            readChapterTracks();
         } catch (Exception e) {
             Log.d(TAG, "ERROR: " + e.getMessage());
         }
     }
 
+    private void readMovieAtom(Atom moov) throws IOException {
+        while (true) {
+            Atom atom = Atom.read(inputStream, moov.end);
+            if (atom == null) {
+                return;
+            }
+            if ("udta".equals(atom.type)) {
+                Atom chpl = Atom.findChild(inputStream, atom.end, "chpl");
+                if (chpl != null) {
+                    Log.d(TAG, "Nero Chapter Atom found. Data Size: " + chpl.getDataSize());
+                    parseNeroChapterAtom(chpl.getDataSize());
+                }
+            } else if ("trak".equals(atom.type)) {
+                Track track = new Track();
+                readContainer(atom, track);
+                tracks.add(track);
+            }
+            inputStream.seek(atom.end);
+        }
+    }
+
     /**
-     * Find the atom with the given name in the M4A file
-     *
-     * @param name the name of the atom to find, separated by dots
-     * @return the size of the atom (minus the 8-byte header) if found
-     * @throws IOException if an I/O error occurs or the atom is not found
+     * Reads the children of a track atom. The sample tables are only read later for chapter tracks,
+     * because the tables of the audio track can be large.
      */
-    public int findAtom(String name) throws IOException {
-        // Split the name into parts encoded as UTF-8
-        String[] parts = name.split("\\.");
-        int partIndex = 0;
-        // Initialize remaining size to track the current part's size and check if it is exceeded
-        int remainingSize = -1;
-
-        // Read the M4A file atom by atom
-        ByteBuffer buffer = ByteBuffer.allocate(8).order(ByteOrder.BIG_ENDIAN);
+    private void readContainer(Atom parent, Track track) throws IOException {
         while (true) {
-            // Read the atom header
-            IOUtils.readFully(inputStream, buffer.array());
-            // Get the size of the current atom
-            int chunkSize = buffer.getInt();
-            int dataSize = chunkSize - 8;
-
-            // Get the atom type
-            String atomType = StandardCharsets.UTF_8.decode(buffer).toString();
-
-            // Reset the buffer for reading the atom data
-            buffer.clear();
-
-            // Check if the current atom matches the current part of the name
-            if (atomType.equals(parts[partIndex])) {
-                if (partIndex == parts.length - 1) {
-                    // If the current atom is the last part of the name return its size
-                    return dataSize;
-                } else {
-                    // Else move to the next part of the name
-                    partIndex++;
-                    // Update the remaining size
-                    remainingSize = dataSize;
-                }
-            } else {
-                // Do not check the remaining size of top-level atoms
-                if (partIndex > 0) {
-                    // Update the remaining size
-                    remainingSize -= dataSize;
-                    // If the remaining size is exhausted, throw an exception
-                    if (remainingSize <= 0) {
-                        throw new IOException("Part size exceeded for part \"" + parts[partIndex - 1]
-                                + "\" while searching atom. Remaining Size: " + remainingSize);
+            Atom atom = Atom.read(inputStream, parent.end);
+            if (atom == null) {
+                return;
+            }
+            switch (atom.type) {
+                case "tref":
+                case "mdia":
+                case "minf":
+                    readContainer(atom, track);
+                    break;
+                case "tkhd":
+                    skipVersionAndTimes();
+                    track.id = inputStream.readInt();
+                    break;
+                case "chap":
+                    track.chapterTrackIds = new int[(int) (atom.getDataSize() / 4)];
+                    for (int i = 0; i < track.chapterTrackIds.length; i++) {
+                        track.chapterTrackIds[i] = inputStream.readInt();
                     }
+                    break;
+                case "mdhd":
+                    skipVersionAndTimes();
+                    track.timescale = inputStream.readInt() & 0xffffffffL;
+                    break;
+                case "hdlr":
+                    inputStream.skip(8); // Version, flags and pre-defined
+                    byte[] handler = new byte[4];
+                    IOUtils.readFully(inputStream, handler);
+                    track.handler = new String(handler, StandardCharsets.ISO_8859_1);
+                    break;
+                case "stbl":
+                    track.sampleTable = atom;
+                    break;
+                default:
+                    break;
+            }
+            inputStream.seek(atom.end);
+        }
+    }
+
+    private void readSampleTable(Track track) throws IOException {
+        if (track.sampleTable == null) {
+            throw new IOException("Sample table of chapter track " + track.id + " not found");
+        }
+        inputStream.seek(track.sampleTable.dataStart);
+        while (true) {
+            Atom atom = Atom.read(inputStream, track.sampleTable.end);
+            if (atom == null) {
+                return;
+            }
+            switch (atom.type) {
+                case "stts":
+                    long[][] timeToSample = readTable(atom, 2);
+                    track.sampleCounts = timeToSample[0];
+                    track.sampleDeltas = timeToSample[1];
+                    break;
+                case "stsc":
+                    long[][] sampleToChunk = readTable(atom, 3);
+                    track.firstChunks = sampleToChunk[0];
+                    track.samplesPerChunk = sampleToChunk[1];
+                    break;
+                case "stsz":
+                    inputStream.skip(4); // Version and flags
+                    track.fixedSampleSize = inputStream.readInt() & 0xffffffffL;
+                    long count = inputStream.readInt() & 0xffffffffL;
+                    if (track.fixedSampleSize == 0) {
+                        track.sampleSizes = readEntries(atom, count, 4);
+                    }
+                    break;
+                case "stco":
+                    track.chunkOffsets = readTable(atom, 1)[0];
+                    break;
+                case "co64":
+                    inputStream.skip(4); // Version and flags
+                    track.chunkOffsets = readEntries(atom, inputStream.readInt() & 0xffffffffL, 8);
+                    break;
+                default:
+                    break;
+            }
+            inputStream.seek(atom.end);
+        }
+    }
+
+    /**
+     * Skips the version, flags, creation time and modification time at the start of tkhd and mdhd.
+     * Version 1 uses 64 bit times.
+     */
+    private void skipVersionAndTimes() throws IOException {
+        int version = inputStream.readInt() >>> 24;
+        inputStream.skip(version == 1 ? 16 : 8);
+    }
+
+    /**
+     * Reads a full atom that consists of an entry count and entries of 32 bit values.
+     *
+     * @return The values, one array per column
+     */
+    private long[][] readTable(Atom atom, int columns) throws IOException {
+        inputStream.skip(4); // Version and flags
+        long count = inputStream.readInt() & 0xffffffffL;
+        long[] values = readEntries(atom, count * columns, 4);
+        long[][] table = new long[columns][values.length / columns];
+        for (int i = 0; i < values.length; i++) {
+            table[i % columns][i / columns] = values[i];
+        }
+        return table;
+    }
+
+    private long[] readEntries(Atom atom, long count, int entrySize) throws IOException {
+        if (count < 0 || count > (atom.end - inputStream.getPosition()) / entrySize) {
+            throw new IOException("Invalid entry count " + count + " in " + atom);
+        }
+        long[] entries = new long[(int) count];
+        for (int i = 0; i < count; i++) {
+            entries[i] = entrySize == 8 ? inputStream.readLong() : inputStream.readInt() & 0xffffffffL;
+        }
+        return entries;
+    }
+
+    /**
+     * Reads the chapters from the text tracks that the audio track references as chapter tracks.
+     * The first text track contains the titles. Links can be attached to the samples of any of the tracks.
+     * See https://developer.apple.com/documentation/quicktime-file-format/chapter_lists
+     */
+    private void readChapterTracks() throws IOException {
+        for (Track track : tracks) {
+            for (int chapterTrackId : track.chapterTrackIds) {
+                Track chapterTrack = findTrack(chapterTrackId);
+                if (chapterTrack != null && HANDLER_TEXT.equals(chapterTrack.handler)) {
+                    readTextTrack(chapterTrack);
+                }
+            }
+            if (!chapters.isEmpty()) {
+                return;
+            }
+        }
+    }
+
+    private Track findTrack(int id) {
+        for (Track track : tracks) {
+            if (track.id == id) {
+                return track;
+            }
+        }
+        return null;
+    }
+
+    private void readTextTrack(Track track) throws IOException {
+        if (track.timescale <= 0) {
+            throw new IOException("Invalid timescale of chapter track " + track.id);
+        }
+        readSampleTable(track);
+        boolean isFirstTrack = chapters.isEmpty();
+        long sampleIndex = 0;
+        long time = 0;
+        int timeEntry = 0;
+        long samplesLeftInTimeEntry = track.sampleCounts.length > 0 ? track.sampleCounts[0] : 0;
+        for (int chunk = 0; chunk < track.chunkOffsets.length; chunk++) {
+            long offset = track.chunkOffsets[chunk];
+            for (long i = 0; i < getSamplesPerChunk(track, chunk + 1); i++) {
+                while (samplesLeftInTimeEntry == 0 && timeEntry + 1 < track.sampleCounts.length) {
+                    timeEntry++;
+                    samplesLeftInTimeEntry = track.sampleCounts[timeEntry];
+                }
+                long size = track.fixedSampleSize != 0 ? track.fixedSampleSize
+                        : sampleIndex < track.sampleSizes.length ? track.sampleSizes[(int) sampleIndex] : 0;
+                readTextSample(offset, size, (int) sampleIndex, time * 1000 / track.timescale, isFirstTrack);
+                offset += size;
+                sampleIndex++;
+                if (timeEntry < track.sampleDeltas.length) {
+                    time += track.sampleDeltas[timeEntry];
+                    samplesLeftInTimeEntry--;
+                }
+            }
+        }
+    }
+
+    private static long getSamplesPerChunk(Track track, long chunkNumber) {
+        long samples = 0;
+        for (int i = 0; i < track.firstChunks.length && track.firstChunks[i] <= chunkNumber; i++) {
+            samples = track.samplesPerChunk[i];
+        }
+        return samples;
+    }
+
+    /**
+     * Reads a text sample, which starts with the length of the text and can be followed by atoms that
+     * modify the text, like a link.
+     */
+    private void readTextSample(long offset, long size, int index, long start, boolean isFirstTrack)
+            throws IOException {
+        if (size < 2) {
+            return;
+        }
+        inputStream.seek(offset);
+        int textLength = (int) Math.min(inputStream.readShort() & 0xffff, size - 2);
+        byte[] textBytes = new byte[textLength];
+        IOUtils.readFully(inputStream, textBytes);
+        boolean utf16 = textLength >= 2 && (textBytes[0] & 0xff) == 0xfe && (textBytes[1] & 0xff) == 0xff;
+        String text = new String(textBytes, utf16 ? StandardCharsets.UTF_16 : StandardCharsets.UTF_8);
+
+        Chapter chapter;
+        if (isFirstTrack) {
+            chapter = new Chapter();
+            chapter.setStart(start);
+            chapter.setTitle(text);
+            chapter.setChapterId(String.valueOf(index + 1));
+            chapters.add(chapter);
+            Log.d(TAG, "Chapter track chapter " + (index + 1) + ": " + chapter);
+        } else if (index < chapters.size()) {
+            chapter = chapters.get(index);
+        } else {
+            return;
+        }
+
+        Atom modifier;
+        while ((modifier = Atom.read(inputStream, offset + size)) != null) {
+            if ("href".equals(modifier.type) && chapter.getLink() == null) {
+                inputStream.skip(4); // Start and end of the linked text
+                int urlLength = inputStream.read();
+                if (urlLength < 0) {
+                    throw new EOFException("Unexpected end of link in " + modifier);
                 }
-                // Skip the rest of the atom
-                IOUtils.skipFully(inputStream, dataSize);
+                byte[] url = new byte[urlLength];
+                IOUtils.readFully(inputStream, url);
+                chapter.setLink(new String(url, StandardCharsets.UTF_8).trim());
             }
+            inputStream.seek(modifier.end);
         }
     }
 
@@ -156,6 +407,23 @@ public class M4AChapterReader {
         if (byteBuffer.getInt() != FTYP_CODE) {
             throw new IOException("Not an M4A file");
         }
-        IOUtils.skipFully(inputStream, ftypSize - 8);
+        skipFully(inputStream, ftypSize - 8);
+    }
+
+    /**
+     * Unlike {@link IOUtils#skipFully(InputStream, long)}, this uses {@link InputStream#skip(long)},
+     * so streams that support seeking do not need to read the media data.
+     */
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        while (count > 0) {
+            long skipped = inputStream.skip(count);
+            if (skipped <= 0) {
+                if (inputStream.read() == -1) {
+                    throw new EOFException("Unexpected end of stream while skipping");
+                }
+                skipped = 1;
+            }
+            count -= skipped;
+        }
     }
 }
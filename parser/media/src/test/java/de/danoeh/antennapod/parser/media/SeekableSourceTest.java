@@ -0,0 +1,127 @@
+package de.danoeh.antennapod.parser.media;
+
+import de.danoeh.antennapod.parser.media.m4a.M4AChapterReader;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URISyntaxException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+@RunWith(RobolectricTestRunner.class)
+public class SeekableSourceTest {
+
+    @Test
+    public void testDetectContainer() throws Exception {
+        assertEquals(ContainerFormat.ID3, detect("auphonic.mp3"));
+        assertEquals(ContainerFormat.OGG, detect("auphonic.ogg"));
+        assertEquals(ContainerFormat.OGG, detect("auphonic.opus"));
+        assertEquals(ContainerFormat.MP4, detect("auphonic.m4a"));
+        assertEquals(ContainerFormat.MP4, detect("nero-chapters.m4a"));
+        assertEquals(ContainerFormat.UNKNOWN, ContainerFormat.detect(new byte[] {'I', 'D'}, 2));
+        assertEquals(ContainerFormat.UNKNOWN, ContainerFormat.detect(new byte[8], 8));
+    }
+
+    @Test
+    public void testSkippingDoesNotReadMediaData() throws Exception {
+        File file = getFile("nero-chapters.m4a");
+        CountingSource source = new CountingSource(new FileChannelSource(new FileInputStream(file).getChannel()));
+        M4AChapterReader reader = new M4AChapterReader(new SeekableSourceInputStream(source));
+        reader.readInputStream();
+        source.close();
+
+        assertEquals(4, reader.getChapters().size());
+        // The file has 2762 bytes of media data before the chapters
+        assertTrue(source.bytesRead < file.length() - 2762);
+    }
+
+    @Test
+    public void testSkipStopsAtEnd() throws Exception {
+        File file = getFile("auphonic.ogg");
+        try (SeekableSource source = new FileChannelSource(new FileInputStream(file).getChannel())) {
+            SeekableSourceInputStream in = new SeekableSourceInputStream(source);
+            assertEquals(file.length(), in.skip(Long.MAX_VALUE));
+            assertEquals(-1, in.read());
+        }
+    }
+
+    @Test
+    public void testSequentialSource() throws IOException {
+        byte[] data = new byte[100];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) i;
+        }
+        SequentialSource source = new SequentialSource(new ByteArrayInputStream(data), data.length);
+        byte[] buffer = new byte[10];
+        assertEquals(10, source.read(20, buffer, 0, 10));
+        assertEquals(20, buffer[0]);
+        assertEquals(10, source.read(30, buffer, 0, 10));
+        assertEquals(30, buffer[0]);
+        assertEquals(-1, source.read(200, buffer, 0, 10));
+        try {
+            source.read(0, buffer, 0, 10);
+            fail("Expected IOException");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testStreamReadsSameBytesAsFile() throws Exception {
+        File file = getFile("auphonic.mp3");
+        try (SeekableSource source = new FileChannelSource(new FileInputStream(file).getChannel());
+                InputStream expected = new FileInputStream(file)) {
+            assertArrayEquals(IOUtils.toByteArray(expected),
+                    IOUtils.toByteArray(new SeekableSourceInputStream(source)));
+        }
+    }
+
+    private int detect(String resource) throws Exception {
+        try (InputStream in = new FileInputStream(getFile(resource))) {
+            byte[] header = new byte[ContainerFormat.HEADER_LENGTH];
+            return ContainerFormat.detect(header, IOUtils.read(in, header));
+        }
+    }
+
+    private File getFile(String resource) throws URISyntaxException {
+        return new File(getClass().getClassLoader().getResource(resource).toURI());
+    }
+
+    private static class CountingSource implements SeekableSource {
+        private final SeekableSource source;
+        long bytesRead = 0;
+
+        CountingSource(SeekableSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public long length() throws IOException {
+            return source.length();
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+            int count = source.read(position, buffer, offset, length);
+            if (count > 0) {
+                bytesRead += count;
+            }
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
+}
@@ -2,6 +2,7 @@ package de.danoeh.antennapod.parser.media.id3;
 
 import de.danoeh.antennapod.model.feed.Chapter;
 import de.danoeh.antennapod.model.feed.EmbeddedChapterImage;
+import de.danoeh.antennapod.parser.media.SeekableSource;
 import de.danoeh.antennapod.parser.media.id3.model.FrameHeader;
 import org.apache.commons.io.input.CountingInputStream;
 import org.junit.Test;
@@ -9,10 +10,13 @@ import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
 import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
 public class ChapterReaderTest {
@@ -104,6 +108,57 @@ public class ChapterReaderTest {
         assertEquals(titleSubframeContent.length, reader.getPosition());
     }
 
+    @Test
+    public void testSkipsEmbeddedImages() throws IOException, ID3ReaderException {
+        byte[] imageData = new byte[100000];
+        byte[] chapter = generateChapterWithImage(imageData);
+        byte[] data = Id3ReaderTest.concat(
+                Id3ReaderTest.generateId3Header(2 * chapter.length),
+                chapter,
+                chapter);
+        ByteArraySource source = new ByteArraySource(data);
+        ChapterReader reader = new ChapterReader(source);
+        reader.readInputStream();
+
+        assertEquals(2, reader.getChapters().size());
+        int imageStart = Id3ReaderTest.generateId3Header(0).length + chapter.length - imageData.length;
+        assertEquals(EmbeddedChapterImage.makeUrl(imageStart, imageData.length),
+                reader.getChapters().get(0).getImageUrl());
+        assertTrue("Image data should not be read", source.bytesRead < imageData.length);
+    }
+
+    @Test
+    public void testSkipsEmbeddedImagesOfStreams() throws IOException, ID3ReaderException {
+        byte[] imageData = new byte[100000];
+        byte[] chapter = generateChapterWithImage(imageData);
+        byte[] data = Id3ReaderTest.concat(
+                Id3ReaderTest.generateId3Header(2 * chapter.length),
+                chapter,
+                chapter);
+        ReadCountingInputStream inputStream = new ReadCountingInputStream(new ByteArrayInputStream(data));
+        ChapterReader reader = new ChapterReader(new CountingInputStream(inputStream));
+        reader.readInputStream();
+
+        assertEquals(2, reader.getChapters().size());
+        assertTrue("Image data should be skipped", inputStream.bytesRead < imageData.length);
+    }
+
+    static byte[] generateChapterWithImage(byte[] imageData) {
+        byte[] picture = Id3ReaderTest.concat(new byte[] {
+            ID3Reader.ENCODING_ISO,
+            'i', 'm', 'a', 'g', 'e', '/', 'j', 'p', 'e', 'g', 0, // Mime type
+            ChapterReader.IMAGE_TYPE_COVER,
+            0 // Empty description
+        }, imageData);
+        byte[] chapterData = Id3ReaderTest.concat(
+                CHAPTER_WITHOUT_SUBFRAME,
+                Id3ReaderTest.generateFrameHeader(ChapterReader.FRAME_ID_PICTURE, picture.length),
+                picture);
+        return Id3ReaderTest.concat(
+                Id3ReaderTest.generateFrameHeader(ChapterReader.FRAME_ID_CHAPTER, chapterData.length),
+                chapterData);
+    }
+
     @Test
     public void testRealFileUltraschall() throws IOException, ID3ReaderException {
         CountingInputStream inputStream = new CountingInputStream(getClass().getClassLoader()
@@ -205,4 +260,62 @@ public class ChapterReaderTest {
         assertEquals("Chapter 2", chapters.get(2).getTitle());
         assertEquals("Chapter 3", chapters.get(3).getTitle());
     }
+
+    /**
+     * Counts the bytes that were read, but not the ones that were skipped.
+     */
+    private static class ReadCountingInputStream extends FilterInputStream {
+        int bytesRead = 0;
+
+        ReadCountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                bytesRead++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int count = super.read(buffer, offset, length);
+            if (count > 0) {
+                bytesRead += count;
+            }
+            return count;
+        }
+    }
+
+    private static class ByteArraySource implements SeekableSource {
+        private final byte[] data;
+        int bytesRead = 0;
+
+        ByteArraySource(byte[] data) {
+            this.data = data;
+        }
+
+        @Override
+        public long length() {
+            return data.length;
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) {
+            if (position >= data.length) {
+                return -1;
+            }
+            int count = (int) Math.min(length, data.length - position);
+            System.arraycopy(data, (int) position, buffer, offset, count);
+            bytesRead += count;
+            return count;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
 }
@@ -135,8 +135,8 @@ public class Id3ReaderTest {
                 'I', 'D', '3', // Identifier
                 0, 42, // Version
                 0, // Flags
-                (byte) (size >> 24), (byte) (size >> 16),
-                (byte) (size >> 8), (byte) (size), // Size
+                (byte) ((size >> 21) & 0x7f), (byte) ((size >> 14) & 0x7f),
+                (byte) ((size >> 7) & 0x7f), (byte) (size & 0x7f), // Synchsafe size
         };
     }
 
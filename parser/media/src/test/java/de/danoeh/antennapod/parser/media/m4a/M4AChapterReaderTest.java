@@ -1,12 +1,21 @@
 package de.danoeh.antennapod.parser.media.m4a;
 
 import de.danoeh.antennapod.model.feed.Chapter;
+import de.danoeh.antennapod.parser.media.FileChannelSource;
+import de.danoeh.antennapod.parser.media.SeekableSource;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 import static org.junit.Assert.assertEquals;
@@ -38,4 +47,128 @@ public class M4AChapterReaderTest {
         assertEquals("Chapter 3 - 爱", chapters.get(2).getTitle());
         assertEquals("Chapter 4", chapters.get(3).getTitle());
     }
+
+    @Test
+    public void testChapterTrack() throws IOException, URISyntaxException {
+        List<Chapter> chapters = readFromFile("auphonic.m4a");
+
+        assertEquals(4, chapters.size());
+
+        assertEquals(0, chapters.get(0).getStart());
+        assertEquals(3000, chapters.get(1).getStart());
+        assertEquals(6000, chapters.get(2).getStart());
+        assertEquals(9000, chapters.get(3).getStart());
+
+        assertEquals("Chapter 1 - ❤️😊", chapters.get(0).getTitle());
+        assertEquals("Chapter 2 - ßöÄ", chapters.get(1).getTitle());
+        assertEquals("Chapter 3 - 爱", chapters.get(2).getTitle());
+        assertEquals("Chapter 4", chapters.get(3).getTitle());
+
+        assertEquals("https://example.com", chapters.get(0).getLink());
+        assertEquals("https://example.com", chapters.get(3).getLink());
+    }
+
+    @Test
+    public void testChapterTrackWithShortReads() throws IOException, URISyntaxException {
+        // Remote sources return what arrived so far, so headers can be split over several reads
+        File file = new File(getClass().getClassLoader().getResource("auphonic.m4a").toURI());
+        try (FileChannelSource source = new FileChannelSource(new FileInputStream(file).getChannel())) {
+            M4AChapterReader reader = new M4AChapterReader(new ShortReadSource(source));
+            reader.readInputStream();
+            List<Chapter> chapters = reader.getChapters();
+
+            assertEquals(4, chapters.size());
+            assertEquals(9000, chapters.get(3).getStart());
+            assertEquals("Chapter 4", chapters.get(3).getTitle());
+            assertEquals("https://example.com", chapters.get(3).getLink());
+        }
+    }
+
+    @Test
+    public void testChapterTrackBeforeMovieAtom() throws IOException, URISyntaxException {
+        List<Chapter> chapters = readFromFile("hindenburg-journalist-pro.m4a");
+
+        assertEquals(2, chapters.size());
+
+        assertEquals(0, chapters.get(0).getStart());
+        assertEquals(5005, chapters.get(1).getStart());
+
+        assertEquals("Chapter Marker 1", chapters.get(0).getTitle());
+        assertEquals("Chapter Marker 2", chapters.get(1).getTitle());
+
+        assertEquals("https://example.com/chapter1url", chapters.get(0).getLink());
+        assertEquals("https://example.com/chapter2url", chapters.get(1).getLink());
+    }
+
+    @Test
+    public void testLargeAtomSize() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(16);
+        out.writeBytes("ftypM4A ");
+        out.writeInt(0);
+        // Audio data with a 64 bit size
+        out.writeInt(1);
+        out.writeBytes("mdat");
+        out.writeLong(16 + 1000);
+        out.write(new byte[1000]);
+        byte[] title = "Intro".getBytes(StandardCharsets.UTF_8);
+        int chplSize = 8 + 5 + 4 + 8 + 1 + title.length;
+        out.writeInt(8 + 8 + chplSize);
+        out.writeBytes("moov");
+        out.writeInt(8 + chplSize);
+        out.writeBytes("udta");
+        out.writeInt(chplSize);
+        out.writeBytes("chpl");
+        out.write(new byte[5]); // Version, flags and reserved
+        out.writeInt(1);
+        out.writeLong(20000000); // 2 seconds in 100 ns units
+        out.writeByte(title.length);
+        out.write(title);
+
+        M4AChapterReader reader = new M4AChapterReader(new ByteArrayInputStream(bytes.toByteArray()));
+        reader.readInputStream();
+        List<Chapter> chapters = reader.getChapters();
+        assertEquals(1, chapters.size());
+        assertEquals(2000, chapters.get(0).getStart());
+        assertEquals("Intro", chapters.get(0).getTitle());
+    }
+
+    private List<Chapter> readFromFile(String resource) throws IOException, URISyntaxException {
+        File file = new File(getClass().getClassLoader().getResource(resource).toURI());
+        try (FileChannelSource source = new FileChannelSource(new FileInputStream(file).getChannel())) {
+            M4AChapterReader reader = new M4AChapterReader(source);
+            reader.readInputStream();
+            return reader.getChapters();
+        }
+    }
+
+    /**
+     * Returns at most three bytes per read.
+     */
+    private static class ShortReadSource implements SeekableSource {
+        private final SeekableSource source;
+        private int nextReadSize = 1;
+
+        ShortReadSource(SeekableSource source) {
+            this.source = source;
+        }
+
+        @Override
+        public long length() throws IOException {
+            return source.length();
+        }
+
+        @Override
+        public int read(long position, byte[] buffer, int offset, int length) throws IOException {
+            int count = source.read(position, buffer, offset, Math.min(length, nextReadSize));
+            nextReadSize = nextReadSize % 3 + 1;
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            source.close();
+        }
+    }
 }
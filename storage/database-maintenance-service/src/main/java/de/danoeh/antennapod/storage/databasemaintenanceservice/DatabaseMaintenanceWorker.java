@@ -36,6 +36,7 @@ public class DatabaseMaintenanceWorker extends Worker {
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
         adapter.clearOldDownloadLog();
+        adapter.checkpoint();
         adapter.close();
         return Result.success();
     }
@@ -1,6 +1,7 @@
 package de.danoeh.antennapod.storage.database;
 
 import android.database.Cursor;
+import android.text.TextUtils;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -8,11 +9,16 @@ import androidx.annotation.Nullable;
 import androidx.collection.ArrayMap;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import de.danoeh.antennapod.model.feed.Chapter;
 import de.danoeh.antennapod.model.feed.Feed;
@@ -29,15 +35,23 @@ import de.danoeh.antennapod.storage.database.mapper.ChapterCursor;
 import de.danoeh.antennapod.storage.database.mapper.DownloadResultCursor;
 import de.danoeh.antennapod.storage.database.mapper.FeedCursor;
 import de.danoeh.antennapod.storage.database.mapper.FeedItemCursor;
+import de.danoeh.antennapod.storage.database.mapper.FullTextSearchQuery;
 
 /**
  * Provides methods for reading data from the AntennaPod database.
  * In general, all database calls in DBReader-methods are executed on the caller's thread.
  * This means that the caller should make sure that DBReader-methods are not executed on the GUI-thread.
+ * Queries use the read connections of the database's connection pool, so they are not blocked by
+ * transactions that DBWriter is running at the same time.
  */
 public final class DBReader {
 
     private static final String TAG = "DBReader";
+    /**
+     * Items published this close to a new item are checked for being a duplicate of it.
+     */
+    private static final long DUPLICATE_TIME_RANGE = TimeUnit.DAYS.toMillis(2);
+    private static final int MAX_TIME_RANGES_PER_QUERY = 100;
 
     /**
      * Maximum size of the list returned by {@link #getDownloadLog()}.
@@ -72,6 +86,46 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Returns the average time between episode releases of each feed, based on the episodes
+     * of the given time span.
+     *
+     * @param timeSpan Only episodes released within this many milliseconds are considered.
+     * @return Map from feed ID to the interval in milliseconds. Feeds with less than two
+     *         episodes in the time span are not included.
+     */
+    @NonNull
+    public static Map<Long, Long> getAverageReleaseIntervals(long timeSpan) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            return adapter.getAverageReleaseIntervals(System.currentTimeMillis() - timeSpan);
+        } finally {
+            adapter.close();
+        }
+    }
+
+    /**
+     * Returns the release dates of the most recent episodes of a feed.
+     *
+     * @param limit Maximum number of dates
+     * @return The dates, newest first
+     */
+    @NonNull
+    public static List<Date> getReleaseDates(long feedId, int limit) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getReleaseDatesCursor(feedId, limit)) {
+            List<Date> result = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                result.add(new Date(cursor.getLong(0)));
+            }
+            return result;
+        } finally {
+            adapter.close();
+        }
+    }
+
     /**
      * Returns a list with the download URLs of all feeds.
      *
@@ -105,8 +159,8 @@ public final class DBReader {
     }
 
     private static void loadTagsOfFeedItemList(List<FeedItem> items) {
-        LongList favoriteIds = getFavoriteIDList();
-        LongList queueIds = getQueueIDList();
+        LongHashSet favoriteIds = getFavoriteIdSet();
+        LongHashSet queueIds = getQueueIdSet();
 
         for (FeedItem item : items) {
             if (favoriteIds.contains(item.getId())) {
@@ -236,22 +290,36 @@ public final class DBReader {
         }
     }
 
-    private static LongList getFavoriteIDList() {
-        Log.d(TAG, "getFavoriteIDList() called");
+    static LongHashSet getQueueIdSet() {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getQueueIDCursor()) {
+            return getIdSet(cursor);
+        } finally {
+            adapter.close();
+        }
+    }
+
+    private static LongHashSet getFavoriteIdSet() {
+        Log.d(TAG, "getFavoriteIdSet() called");
 
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
         try (Cursor cursor = adapter.getFavoritesIdsCursor()) {
-            LongList favoriteIDs = new LongList(cursor.getCount());
-            while (cursor.moveToNext()) {
-                favoriteIDs.add(cursor.getLong(0));
-            }
-            return favoriteIDs;
+            return getIdSet(cursor);
         } finally {
             adapter.close();
         }
     }
 
+    private static LongHashSet getIdSet(Cursor cursor) {
+        LongHashSet ids = new LongHashSet(cursor.getCount());
+        while (cursor.moveToNext()) {
+            ids.add(cursor.getLong(0));
+        }
+        return ids;
+    }
+
     /**
      *
      * @param offset The first episode that should be loaded.
@@ -272,6 +340,68 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads the episodes that come after the given episode in the sort order. Unlike loading a page
+     * with an offset, this does not get slower the further the list is scrolled.
+     *
+     * @param after The last episode of the previous page, or null to load the first page.
+     * @param limit The maximum number of episodes that should be loaded.
+     * @param filter The filter describing which episodes to filter out.
+     */
+    @NonNull
+    public static List<FeedItem> getEpisodesAfter(@Nullable FeedItem after, int limit,
+                                                  FeedItemFilter filter, SortOrder sortOrder) {
+        Log.d(TAG, "getEpisodesAfter() called with: after=" + (after != null ? after.getId() : 0) + ", limit=" + limit);
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (FeedItemCursor cursor = new FeedItemCursor(adapter.getEpisodesCursor(after, limit, filter, sortOrder))) {
+            List<FeedItem> items = extractItemlistFromCursor(cursor);
+            loadAdditionalFeedItemListData(items);
+            return items;
+        } finally {
+            adapter.close();
+        }
+    }
+
+    /**
+     * Loads a page of played episodes for uploading their state to a synchronization service.
+     * To keep this fast for large databases, the returned objects only contain what is needed for that:
+     * the item ID and identifier, the download URL of the feed, and the download URL and duration of the media.
+     *
+     * @param afterItemId Only load items with a higher ID, 0 to load the first page
+     * @return The items, ordered by ID.
+     */
+    @NonNull
+    public static List<FeedItem> getPlayedEpisodesForSync(long afterItemId, int limit) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getPlayedEpisodesForSyncCursor(afterItemId, limit)) {
+            Map<Long, Feed> feeds = new HashMap<>();
+            List<FeedItem> items = new ArrayList<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                long feedId = cursor.getLong(2);
+                Feed feed = feeds.get(feedId);
+                if (feed == null) {
+                    feed = new Feed(cursor.getString(3), null);
+                    feed.setId(feedId);
+                    feeds.put(feedId, feed);
+                }
+                FeedItem item = new FeedItem();
+                item.setId(cursor.getLong(0));
+                item.setItemIdentifier(cursor.getString(1));
+                item.setFeed(feed);
+                item.setPlayed(true);
+                FeedMedia media = new FeedMedia(item, cursor.getString(4), 0, null);
+                media.setDuration(cursor.getInt(5));
+                item.setMedia(media);
+                items.add(item);
+            }
+            return items;
+        } finally {
+            adapter.close();
+        }
+    }
+
     public static int getTotalEpisodeCount(FeedItemFilter filter) {
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
@@ -391,6 +521,57 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads the items of a feed that come after the given item in the sort order of the feed,
+     * like the items that {@link #getFeed(long, boolean, int, int)} loads.
+     *
+     * @param filtered Whether the item filter of the feed should be applied
+     * @param after The last item of the previous page, or null to load the first page.
+     * @return The items. Their feed is set to the given feed.
+     */
+    @NonNull
+    public static List<FeedItem> getFeedItemsAfter(Feed feed, boolean filtered, @Nullable FeedItem after, int limit) {
+        FeedItemFilter filter = (filtered && feed.getItemFilter() != null)
+                ? feed.getItemFilter() : FeedItemFilter.unfiltered();
+        filter = new FeedItemFilter(filter, FeedItemFilter.INCLUDE_NOT_SUBSCRIBED);
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (FeedItemCursor cursor = new FeedItemCursor(adapter.getItemsOfFeedCursor(
+                feed, filter, feed.getSortOrder(), after, limit))) {
+            List<FeedItem> items = extractItemlistFromCursor(cursor);
+            for (FeedItem item : items) {
+                item.setFeed(feed);
+            }
+            loadTagsOfFeedItemList(items);
+            return items;
+        } finally {
+            adapter.close();
+        }
+    }
+
+    /**
+     * Loads the feed with the given identifying value (see {@link Feed#getIdentifyingValue()}),
+     * without its items.
+     *
+     * @return The feed or null if there is no feed with this identifying value.
+     */
+    @Nullable
+    public static Feed getFeedByIdentifyingValue(String identifyingValue) {
+        if (identifyingValue == null) {
+            return null;
+        }
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (FeedCursor cursor = new FeedCursor(adapter.getFeedCursorByIdentifyingValue(identifyingValue))) {
+            if (cursor.moveToNext()) {
+                return cursor.getFeed();
+            }
+            return null;
+        } finally {
+            adapter.close();
+        }
+    }
+
     /**
      * Loads a specific FeedItem from the database. This method should not be used for loading more
      * than one FeedItem because this method might query the database several times for each item.
@@ -417,6 +598,33 @@ public final class DBReader {
         return null;
     }
 
+    /**
+     * Loads the FeedItems with the given IDs. Items that do not exist are left out.
+     */
+    @NonNull
+    public static List<FeedItem> getFeedItems(@NonNull Collection<Long> itemIds) {
+        List<String> ids = new ArrayList<>(itemIds.size());
+        for (long id : itemIds) {
+            ids.add(Long.toString(id));
+        }
+        List<FeedItem> items = new ArrayList<>(ids.size());
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            for (int i = 0; i < ids.size(); i += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+                List<String> chunk = ids.subList(i, Math.min(ids.size(), i + PodDBAdapter.IN_OPERATOR_MAXIMUM));
+                try (FeedItemCursor cursor = new FeedItemCursor(
+                        adapter.getFeedItemCursor(chunk.toArray(new String[0])))) {
+                    items.addAll(extractItemlistFromCursor(cursor));
+                }
+            }
+        } finally {
+            adapter.close();
+        }
+        loadAdditionalFeedItemListData(items);
+        return items;
+    }
+
     /**
      * Get next feed item in queue following a particular feeditem
      *
@@ -478,6 +686,82 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads the FeedItems for many (guid, episodeUrl) pairs, like {@link #getFeedItemByGuidOrEpisodeUrl}
+     * does for one of them. The items are loaded with a few queries instead of one per pair.
+     *
+     * @param guids       feed item guids, or null entries to look up the item by its episode url
+     * @param episodeUrls the feed items' urls, in the same order as the guids
+     * @return The FeedItems in the order of the pairs, with null entries for pairs without an item.
+     *          Does NOT load additional attributes like feed or queue state.
+     */
+    @NonNull
+    public static List<FeedItem> getFeedItemsByGuidOrEpisodeUrl(List<String> guids, List<String> episodeUrls) {
+        if (guids.size() != episodeUrls.size()) {
+            throw new IllegalArgumentException("guids and episodeUrls must have the same size");
+        }
+        Set<String> guidSet = new HashSet<>();
+        Set<String> episodeUrlSet = new HashSet<>();
+        for (int i = 0; i < guids.size(); i++) {
+            if (guids.get(i) != null) {
+                guidSet.add(guids.get(i));
+            } else if (episodeUrls.get(i) != null) {
+                episodeUrlSet.add(episodeUrls.get(i));
+            }
+        }
+
+        Map<String, FeedItem> itemsByGuid = new HashMap<>();
+        Map<String, FeedItem> itemsByEpisodeUrl = new HashMap<>();
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            for (List<String> chunk : chunk(new ArrayList<>(guidSet))) {
+                try (FeedItemCursor cursor = new FeedItemCursor(adapter.getFeedItemsByValueCursor(
+                        PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_ITEM_IDENTIFIER, chunk))) {
+                    for (FeedItem item : extractItemlistFromCursor(cursor)) {
+                        putIfAbsent(itemsByGuid, item.getItemIdentifier(), item);
+                    }
+                }
+            }
+            for (List<String> chunk : chunk(new ArrayList<>(episodeUrlSet))) {
+                try (FeedItemCursor cursor = new FeedItemCursor(adapter.getFeedItemsByValueCursor(
+                        PodDBAdapter.TABLE_NAME_FEED_MEDIA + "." + PodDBAdapter.KEY_DOWNLOAD_URL, chunk))) {
+                    for (FeedItem item : extractItemlistFromCursor(cursor)) {
+                        if (item.getMedia() != null) {
+                            putIfAbsent(itemsByEpisodeUrl, item.getMedia().getDownloadUrl(), item);
+                        }
+                    }
+                }
+            }
+        } finally {
+            adapter.close();
+        }
+
+        List<FeedItem> result = new ArrayList<>(guids.size());
+        for (int i = 0; i < guids.size(); i++) {
+            if (guids.get(i) != null) {
+                result.add(itemsByGuid.get(guids.get(i)));
+            } else {
+                result.add(itemsByEpisodeUrl.get(episodeUrls.get(i)));
+            }
+        }
+        return result;
+    }
+
+    private static List<List<String>> chunk(List<String> values) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int i = 0; i < values.size(); i += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+            chunks.add(values.subList(i, Math.min(values.size(), i + PodDBAdapter.IN_OPERATOR_MAXIMUM)));
+        }
+        return chunks;
+    }
+
+    private static void putIfAbsent(Map<String, FeedItem> items, String key, FeedItem item) {
+        if (key != null && !items.containsKey(key)) {
+            items.put(key, item);
+        }
+    }
+
     /**
      * Loads shownotes information about a FeedItem.
      *
@@ -498,6 +782,125 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads the stored items of a feed that a new version of the feed needs to be merged with: items with the
+     * same identifying value as one of the new items, and possible duplicates of the new items that are not
+     * stored yet (same media URL or published at about the same time). Other items are not loaded, so that
+     * updating feeds with a lot of episodes does not need to load all of them.
+     *
+     * @return The items, newest first. Their feed is set to the given feed.
+     */
+    @NonNull
+    static List<FeedItem> getItemsForMerge(Feed feed, List<FeedItem> newItems) {
+        List<String> identifiers = new ArrayList<>();
+        List<String> otherIdentifyingValues = new ArrayList<>();
+        for (FeedItem item : newItems) {
+            if (!TextUtils.isEmpty(item.getItemIdentifier())) {
+                identifiers.add(item.getItemIdentifier());
+            } else if (item.getIdentifyingValue() != null) {
+                otherIdentifyingValues.add(item.getIdentifyingValue());
+            }
+        }
+
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            Map<Long, FeedItem> items = new HashMap<>();
+            addItemsByValue(adapter, feed.getId(), PodDBAdapter.TABLE_NAME_FEED_ITEMS + "."
+                    + PodDBAdapter.KEY_ITEM_IDENTIFIER, identifiers, items);
+            if (!otherIdentifyingValues.isEmpty()) {
+                addItemsByValue(adapter, feed.getId(), PodDBAdapter.TABLE_NAME_FEED_ITEMS + "."
+                        + PodDBAdapter.KEY_TITLE, otherIdentifyingValues, items);
+                addItemsByValue(adapter, feed.getId(), PodDBAdapter.TABLE_NAME_FEED_ITEMS + "."
+                        + PodDBAdapter.KEY_LINK, otherIdentifyingValues, items);
+                addItemsByValue(adapter, feed.getId(), PodDBAdapter.TABLE_NAME_FEED_MEDIA + "."
+                        + PodDBAdapter.KEY_DOWNLOAD_URL, otherIdentifyingValues, items);
+            }
+
+            Set<String> storedIdentifyingValues = new HashSet<>();
+            for (FeedItem item : items.values()) {
+                storedIdentifyingValues.add(item.getIdentifyingValue());
+            }
+            List<String> mediaUrls = new ArrayList<>();
+            List<Date> pubDates = new ArrayList<>();
+            for (FeedItem item : newItems) {
+                if (storedIdentifyingValues.contains(item.getIdentifyingValue())) {
+                    continue;
+                }
+                if (item.getMedia() != null && !TextUtils.isEmpty(item.getMedia().getStreamUrl())) {
+                    mediaUrls.add(item.getMedia().getStreamUrl());
+                }
+                if (item.getPubDate() != null) {
+                    pubDates.add(item.getPubDate());
+                }
+            }
+            addItemsByValue(adapter, feed.getId(), PodDBAdapter.TABLE_NAME_FEED_MEDIA + "."
+                    + PodDBAdapter.KEY_DOWNLOAD_URL, mediaUrls, items);
+            for (int i = 0; i < pubDates.size(); i += MAX_TIME_RANGES_PER_QUERY) {
+                int count = Math.min(MAX_TIME_RANGES_PER_QUERY, pubDates.size() - i);
+                long[] rangeStarts = new long[count];
+                long[] rangeEnds = new long[count];
+                for (int j = 0; j < count; j++) {
+                    rangeStarts[j] = pubDates.get(i + j).getTime() - DUPLICATE_TIME_RANGE;
+                    rangeEnds[j] = pubDates.get(i + j).getTime() + DUPLICATE_TIME_RANGE;
+                }
+                try (FeedItemCursor cursor = new FeedItemCursor(
+                        adapter.getItemsOfFeedInTimeRangesCursor(feed.getId(), rangeStarts, rangeEnds))) {
+                    addItemsFromCursor(cursor, items);
+                }
+            }
+
+            List<FeedItem> result = new ArrayList<>(items.values());
+            Collections.sort(result, new FeedItemPubdateComparator());
+            for (FeedItem item : result) {
+                item.setFeed(feed);
+            }
+            return result;
+        } finally {
+            adapter.close();
+        }
+    }
+
+    private static void addItemsByValue(PodDBAdapter adapter, long feedId, String column,
+                                        List<String> values, Map<Long, FeedItem> items) {
+        for (int i = 0; i < values.size(); i += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+            List<String> chunk = values.subList(i, Math.min(values.size(), i + PodDBAdapter.IN_OPERATOR_MAXIMUM));
+            try (FeedItemCursor cursor = new FeedItemCursor(
+                    adapter.getItemsOfFeedByValueCursor(feedId, column, chunk))) {
+                addItemsFromCursor(cursor, items);
+            }
+        }
+    }
+
+    private static void addItemsFromCursor(FeedItemCursor cursor, Map<Long, FeedItem> items) {
+        while (cursor.moveToNext()) {
+            FeedItem item = cursor.getFeedItem();
+            if (!items.containsKey(item.getId())) {
+                items.put(item.getId(), item);
+            }
+        }
+    }
+
+    /**
+     * Loads the descriptions of the given items, without loading the items themselves.
+     *
+     * @return The descriptions by item ID
+     */
+    @NonNull
+    static Map<Long, String> getDescriptionsOfItems(List<Long> itemIds) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (Cursor cursor = adapter.getDescriptionsOfItemsCursor(itemIds)) {
+            Map<Long, String> result = new HashMap<>(cursor.getCount());
+            while (cursor.moveToNext()) {
+                result.put(cursor.getLong(0), cursor.getString(1));
+            }
+            return result;
+        } finally {
+            adapter.close();
+        }
+    }
+
     /**
      * Loads the list of chapters that belongs to this FeedItem if available. This method overwrites
      * any chapters that this FeedItem has. If no chapters were found in the database, the chapters
@@ -526,6 +929,34 @@ public final class DBReader {
         }
     }
 
+    /**
+     * Loads the chapters that were cached by {@link DBWriter#setCachedChapters}.
+     *
+     * @param fingerprint Describes the current chapter sources of the item
+     * @return The chapters, or null if none are cached or if they were loaded from sources that changed since
+     */
+    @Nullable
+    public static List<Chapter> loadCachedChapters(long itemId, @NonNull String fingerprint) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try (ChapterCursor cursor = new ChapterCursor(adapter.getCachedChaptersCursor(itemId))) {
+            if (!cursor.moveToFirst() || !fingerprint.equals(
+                    cursor.getString(cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_CHAPTER_FINGERPRINT)))) {
+                return null;
+            }
+            int indexStart = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_START);
+            List<Chapter> chapters = new ArrayList<>();
+            do {
+                if (!cursor.isNull(indexStart)) {
+                    chapters.add(cursor.getChapter());
+                }
+            } while (cursor.moveToNext());
+            return chapters;
+        } finally {
+            adapter.close();
+        }
+    }
+
     /**
      * Searches the DB for a FeedMedia of the given id.
      *
@@ -686,8 +1117,49 @@ public final class DBReader {
                                                  FeedOrder feedOrder, FeedCounter feedCounter, int feedState) {
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
+        try {
+            return getNavDrawerData(adapter, subscriptionsFilter, feedOrder, feedState,
+                    adapter.getFeedCounters(feedCounter));
+        } finally {
+            adapter.close();
+        }
+    }
 
-        final Map<Long, Integer> feedCounters = adapter.getFeedCounters(feedCounter);
+    /**
+     * Like {@link #getNavDrawerData(SubscriptionsFilter, FeedOrder, FeedCounter, int)}, but only counts
+     * the episodes of the changed feeds again. The counters of the other feeds are taken from the previous data.
+     *
+     * @param previous       Data that was loaded with the same settings
+     * @param changedFeedIds Feeds whose episodes changed since the previous data was loaded
+     */
+    @NonNull
+    public static NavDrawerData getNavDrawerData(@Nullable SubscriptionsFilter subscriptionsFilter,
+                                                 FeedOrder feedOrder, FeedCounter feedCounter, int feedState,
+                                                 @NonNull NavDrawerData previous,
+                                                 @NonNull Collection<Long> changedFeedIds) {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            Map<Long, Integer> feedCounters = new HashMap<>(previous.feedCounters);
+            if (!changedFeedIds.isEmpty()) {
+                long[] feedIds = new long[changedFeedIds.size()];
+                int i = 0;
+                for (long feedId : changedFeedIds) {
+                    feedCounters.remove(feedId);
+                    feedIds[i++] = feedId;
+                }
+                feedCounters.putAll(adapter.getFeedCounters(feedCounter, feedIds));
+            }
+            return getNavDrawerData(adapter, subscriptionsFilter, feedOrder, feedState, feedCounters);
+        } finally {
+            adapter.close();
+        }
+    }
+
+    private static NavDrawerData getNavDrawerData(PodDBAdapter adapter,
+                                                  @Nullable SubscriptionsFilter subscriptionsFilter,
+                                                  FeedOrder feedOrder, int feedState,
+                                                  final Map<Long, Integer> feedCounters) {
         List<Feed> allFeeds = getFeedList();
         List<Feed> typeFilteredFeeds = new ArrayList<>();
         for (Feed feed : allFeeds) {
@@ -745,10 +1217,10 @@ public final class DBReader {
                 };
                 break;
             default:
-                final Map<Long, Long> recentPubDates = adapter.getMostRecentItemDates();
+                final LongLongMap recentPubDates = adapter.getMostRecentItemDates();
                 comparator = (lhs, rhs) -> {
-                    long dateLhs = recentPubDates.containsKey(lhs.getId()) ? recentPubDates.get(lhs.getId()) : 0;
-                    long dateRhs = recentPubDates.containsKey(rhs.getId()) ? recentPubDates.get(rhs.getId()) : 0;
+                    long dateLhs = recentPubDates.get(lhs.getId(), 0);
+                    long dateRhs = recentPubDates.get(rhs.getId(), 0);
                     return Long.compare(dateRhs, dateLhs);
                 };
                 break;
@@ -781,10 +1253,7 @@ public final class DBReader {
             tagsSorted.add(0, untaggedTag);
         }
 
-        NavDrawerData result = new NavDrawerData(feeds, tagsSorted,
-                queueSize, numNewItems, numDownloadedItems, feedCounters);
-        adapter.close();
-        return result;
+        return new NavDrawerData(feeds, tagsSorted, queueSize, numNewItems, numDownloadedItems, feedCounters);
     }
 
     public static List<NavDrawerData.TagItem> getAllTags(int feedState) {
@@ -826,11 +1295,42 @@ public final class DBReader {
         return tagsSorted;
     }
 
-    public static List<FeedItem> searchFeedItems(final long feedId, final String query, int state) {
+    /**
+     * Searches the title and description of episodes. Episodes that contain all words
+     * of the query in their title are returned first, newest first within each group.
+     * Words are found by their beginning. After all of those results, episodes that contain
+     * the words in the middle of their title follow.
+     *
+     * @param feedId The feed to search in, or 0 to search all feeds with the given state
+     * @param offset The number of results to skip, used for loading further pages
+     * @param limit  The maximum number of results
+     */
+    @NonNull
+    public static List<FeedItem> searchFeedItems(final long feedId, final String query, int state,
+                                                 int offset, int limit) {
+        final String matchQuery = FullTextSearchQuery.generateFrom(query);
+        if (matchQuery.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final String titleMatchQuery = FullTextSearchQuery.generateFrom(query, PodDBAdapter.KEY_TITLE);
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        try (FeedItemCursor searchResult = new FeedItemCursor(adapter.searchItems(feedId, query, state))) {
-            List<FeedItem> items = extractItemlistFromCursor(searchResult);
+        try {
+            List<FeedItem> items;
+            try (FeedItemCursor searchResult = new FeedItemCursor(adapter.searchItems(feedId, matchQuery,
+                    titleMatchQuery, state, offset, limit))) {
+                items = extractItemlistFromCursor(searchResult);
+            }
+            if (items.size() < limit) {
+                // The index results are used up, continue with the slower search in the middle of titles
+                int indexResultCount = items.isEmpty() && offset > 0
+                        ? adapter.getSearchItemsCount(feedId, matchQuery, state) : offset + items.size();
+                try (FeedItemCursor searchResult = new FeedItemCursor(adapter.searchItemTitles(feedId, matchQuery,
+                        getContainsPatterns(query), state, Math.max(0, offset - indexResultCount),
+                        limit - items.size()))) {
+                    items.addAll(extractItemlistFromCursor(searchResult));
+                }
+            }
             loadAdditionalFeedItemListData(items);
             return items;
         } finally {
@@ -838,10 +1338,22 @@ public final class DBReader {
         }
     }
 
-    public static List<Feed> searchFeeds(final String query, int state) {
+    /**
+     * Searches title, author and description of feeds. Feeds that contain all words
+     * of the query in their title are returned first.
+     */
+    @NonNull
+    public static List<Feed> searchFeeds(final String query, int state, int offset, int limit) {
+        final String matchQuery = FullTextSearchQuery.generateFrom(query);
+        if (matchQuery.isEmpty()) {
+            return new ArrayList<>();
+        }
+        final String titleMatchQuery = FullTextSearchQuery.generateFrom(query, PodDBAdapter.KEY_TITLE);
+        final List<String> containsPatterns = getContainsPatterns(query);
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        try (FeedCursor cursor = new FeedCursor(adapter.searchFeeds(query, state))) {
+        try (FeedCursor cursor = new FeedCursor(
+                adapter.searchFeeds(matchQuery, titleMatchQuery, containsPatterns, state, offset, limit))) {
             List<Feed> items = new ArrayList<>();
             while (cursor.moveToNext()) {
                 items.add(cursor.getFeed());
@@ -851,4 +1363,12 @@ public final class DBReader {
             adapter.close();
         }
     }
+
+    private static List<String> getContainsPatterns(String query) {
+        List<String> patterns = new ArrayList<>();
+        for (String word : FullTextSearchQuery.getWords(query)) {
+            patterns.add(FullTextSearchQuery.toContainsPattern(word));
+        }
+        return patterns;
+    }
 }
@@ -355,6 +355,54 @@ class DBUpgrader {
             db.execSQL("DELETE FROM " + PodDBAdapter.TABLE_NAME_FAVORITES + " WHERE " + PodDBAdapter.KEY_FEEDITEM
                     + " NOT IN (SELECT " + PodDBAdapter.KEY_ID + " FROM " + PodDBAdapter.TABLE_NAME_FEED_ITEMS + ")");
         }
+        if (oldVersion < 3120000) {
+            PodDBAdapter.createSearchIndexes(db);
+            PodDBAdapter.rebuildSearchIndexes(db);
+        }
+        if (oldVersion < 3130000) {
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_NEXT_REFRESH_DUE + " INTEGER DEFAULT 0");
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_UNCHANGED_REFRESHES + " INTEGER DEFAULT 0");
+        }
+        if (oldVersion < 3140000) {
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_ETAG + " TEXT");
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_CONTENT_HASH + " TEXT");
+        }
+        if (oldVersion < 3150000) {
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER);
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDMEDIA_DOWNLOAD_URL);
+        }
+        if (oldVersion < 3160000) {
+            db.execSQL("ALTER TABLE " + PodDBAdapter.TABLE_NAME_FEEDS
+                    + " ADD COLUMN " + PodDBAdapter.KEY_IDENTIFYING_VALUE + " TEXT");
+            // Same as Feed.getIdentifyingValue()
+            db.execSQL("UPDATE " + PodDBAdapter.TABLE_NAME_FEEDS + " SET " + PodDBAdapter.KEY_IDENTIFYING_VALUE
+                    + " = CASE"
+                    + " WHEN " + PodDBAdapter.KEY_FEED_IDENTIFIER + " IS NOT NULL AND "
+                    + PodDBAdapter.KEY_FEED_IDENTIFIER + " != '' THEN " + PodDBAdapter.KEY_FEED_IDENTIFIER
+                    + " WHEN " + PodDBAdapter.KEY_DOWNLOAD_URL + " IS NOT NULL AND "
+                    + PodDBAdapter.KEY_DOWNLOAD_URL + " != '' THEN " + PodDBAdapter.KEY_DOWNLOAD_URL
+                    + " WHEN " + PodDBAdapter.KEY_TITLE + " IS NOT NULL AND "
+                    + PodDBAdapter.KEY_TITLE + " != '' THEN " + PodDBAdapter.KEY_TITLE
+                    + " ELSE " + PodDBAdapter.KEY_LINK + " END");
+            db.execSQL(PodDBAdapter.CREATE_INDEX_FEEDS_IDENTIFYING_VALUE);
+        }
+        if (oldVersion < 3170000) {
+            // Spread the queue positions to sparse sort keys. The keys become negative in between,
+            // so that no row gets the ID of a row that was not updated yet.
+            db.execSQL("UPDATE " + PodDBAdapter.TABLE_NAME_QUEUE + " SET " + PodDBAdapter.KEY_ID
+                    + " = -" + PodDBAdapter.KEY_ID + " - 1");
+            db.execSQL("UPDATE " + PodDBAdapter.TABLE_NAME_QUEUE + " SET " + PodDBAdapter.KEY_ID
+                    + " = -" + PodDBAdapter.KEY_ID + " * " + PodDBAdapter.QUEUE_KEY_GAP);
+        }
+        if (oldVersion < 3180000) {
+            db.execSQL(PodDBAdapter.CREATE_TABLE_CHAPTER_CACHE);
+            db.execSQL(PodDBAdapter.CREATE_TABLE_CACHED_CHAPTERS);
+            db.execSQL(PodDBAdapter.CREATE_INDEX_CACHED_CHAPTERS_FEEDITEM);
+        }
     }
 
 }
@@ -13,6 +13,7 @@ import androidx.documentfile.provider.DocumentFile;
 
 import com.google.common.util.concurrent.Futures;
 import de.danoeh.antennapod.event.DownloadLogEvent;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 
 import de.danoeh.antennapod.model.feed.FeedItemFilter;
 import de.danoeh.antennapod.net.download.serviceinterface.AutoDownloadManager;
@@ -34,6 +35,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import de.danoeh.antennapod.event.FavoritesEvent;
 import de.danoeh.antennapod.event.FeedItemEvent;
@@ -44,7 +46,9 @@ import de.danoeh.antennapod.event.UnreadItemsUpdateEvent;
 import de.danoeh.antennapod.event.FeedEvent;
 import de.danoeh.antennapod.storage.preferences.PlaybackPreferences;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
+import de.danoeh.antennapod.model.download.DownloadRequest;
 import de.danoeh.antennapod.model.download.DownloadResult;
+import de.danoeh.antennapod.model.feed.Chapter;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedMedia;
@@ -64,6 +68,7 @@ public class DBWriter {
     private static final String TAG = "DBWriter";
 
     private static final ExecutorService dbExec;
+    private static final AtomicBoolean queueRenumberingScheduled = new AtomicBoolean(false);
 
     static {
         dbExec = Executors.newSingleThreadExecutor(r -> {
@@ -141,6 +146,11 @@ public class DBWriter {
             if (mediaFile.exists() && !mediaFile.delete()) {
                 Log.d(TAG, "Deletion of downloaded file failed.");
             }
+            // progress of a cancelled download over several connections
+            File segmentMapFile = new File(media.getLocalFileUrl() + DownloadRequest.SEGMENT_MAP_SUFFIX);
+            if (segmentMapFile.exists() && !segmentMapFile.delete()) {
+                Log.d(TAG, "Deletion of segment map failed.");
+            }
             media.setDownloaded(false, 0);
             media.setLocalFileUrl(null);
             media.setHasEmbeddedPicture(false);
@@ -213,10 +223,10 @@ public class DBWriter {
      * Deleting media also removes the download log entries.
      */
     private static void deleteFeedItemsSynchronous(@NonNull Context context, @NonNull List<FeedItem> items) {
-        List<FeedItem> queue = DBReader.getQueue();
+        LongHashSet queueIds = DBReader.getQueueIdSet();
         List<FeedItem> removedFromQueue = new ArrayList<>();
         for (FeedItem item : items) {
-            if (queue.remove(item)) {
+            if (queueIds.contains(item.getId())) {
                 removedFromQueue.add(item);
             }
             if (item.getMedia() != null) {
@@ -239,7 +249,11 @@ public class DBWriter {
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
         if (!removedFromQueue.isEmpty()) {
-            adapter.setQueue(queue);
+            long[] removedIds = new long[removedFromQueue.size()];
+            for (int i = 0; i < removedIds.length; i++) {
+                removedIds[i] = removedFromQueue.get(i).getId();
+            }
+            adapter.removeQueueItems(removedIds);
         }
         adapter.removeFeedItems(items);
         adapter.close();
@@ -349,13 +363,14 @@ public class DBWriter {
         return runOnDbThread(() -> {
             final PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
-            final List<FeedItem> queue = DBReader.getQueue();
+            final LongList queueIds = DBReader.getQueueIDList();
 
-            if (!itemListContains(queue, itemId)) {
+            if (!queueIds.contains(itemId)) {
                 FeedItem item = DBReader.getFeedItem(itemId);
                 if (item != null) {
-                    queue.add(index, item);
-                    adapter.setQueue(queue);
+                    if (adapter.addQueueItem(item, Math.min(index, queueIds.size()))) {
+                        renumberQueueInBackground();
+                    }
                     item.addTag(FeedItem.TAG_QUEUE);
                     EventBus.getDefault().post(QueueEvent.added(item, index));
                     EventBus.getDefault().post(FeedItemEvent.updated(item));
@@ -385,34 +400,67 @@ public class DBWriter {
 
             final PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
-            final List<FeedItem> queue = DBReader.getQueue();
+            ItemEnqueuePositionCalculator positionCalculator =
+                    new ItemEnqueuePositionCalculator(UserPreferences.getEnqueueLocation());
+            // The whole queue is only needed for sorting it and for some of the enqueue locations
+            final List<FeedItem> queue = isQueueKeptSorted() || positionCalculator.needsQueueItems()
+                    ? DBReader.getQueue() : null;
+            final LongList queueIdList = queue == null ? DBReader.getQueueIDList() : null;
+            int queueSize = queue != null ? queue.size() : queueIdList.size();
 
             LongList markAsUnplayedIds = new LongList();
             List<QueueEvent> events = new ArrayList<>();
             List<FeedItem> updatedItems = new ArrayList<>();
-            ItemEnqueuePositionCalculator positionCalculator =
-                    new ItemEnqueuePositionCalculator(UserPreferences.getEnqueueLocation());
-            Playable currentlyPlaying = DBReader.getFeedMedia(PlaybackPreferences.getCurrentlyPlayingFeedMediaId());
-            int insertPosition = positionCalculator.calcPosition(queue, currentlyPlaying);
+            int insertPosition;
+            if (positionCalculator.needsQueueItems()) {
+                Playable currentlyPlaying = DBReader.getFeedMedia(
+                        PlaybackPreferences.getCurrentlyPlayingFeedMediaId());
+                insertPosition = positionCalculator.calcPosition(queue, currentlyPlaying);
+            } else {
+                insertPosition = positionCalculator.calcPosition(queueSize);
+            }
+            LongHashSet queueIds = new LongHashSet(queueSize + items.length);
+            if (queue != null) {
+                for (FeedItem queueItem : queue) {
+                    queueIds.add(queueItem.getId());
+                }
+            } else {
+                for (int i = 0; i < queueIdList.size(); i++) {
+                    queueIds.add(queueIdList.get(i));
+                }
+            }
             for (FeedItem item : items) {
-                if (itemListContains(queue, item.getId())) {
+                if (queueIds.contains(item.getId())) {
                     continue;
                 } else if (!item.hasMedia()) {
                     continue;
                 }
-                queue.add(insertPosition, item);
+                queueIds.add(item.getId());
+                updatedItems.add(item);
                 events.add(QueueEvent.added(item, insertPosition));
+                if (queue != null) {
+                    queue.add(insertPosition, item);
+                }
 
                 item.addTag(FeedItem.TAG_QUEUE);
-                updatedItems.add(item);
                 if (item.isNew()) {
                     markAsUnplayedIds.add(item.getId());
                 }
                 insertPosition++;
             }
             if (!updatedItems.isEmpty()) {
-                applySortOrder(queue, events);
-                adapter.setQueue(queue);
+                if (isQueueKeptSorted()) {
+                    applySortOrder(queue, events);
+                    adapter.setQueue(queue);
+                } else {
+                    boolean crowded = false;
+                    for (QueueEvent event : events) {
+                        crowded |= adapter.addQueueItem(event.item, event.position);
+                    }
+                    if (crowded) {
+                        renumberQueueInBackground();
+                    }
+                }
                 for (QueueEvent event : events) {
                     EventBus.getDefault().post(event);
                 }
@@ -434,17 +482,12 @@ public class DBWriter {
      * @param events Replaces the events by a single SORT event if the list has to be sorted automatically.
      */
     private static void applySortOrder(List<FeedItem> queue, List<QueueEvent> events) {
-        if (!UserPreferences.isQueueKeepSorted()) {
-            // queue is not in keep sorted mode, there's nothing to do
+        if (!isQueueKeptSorted()) {
             return;
         }
 
         // Sort queue by configured sort order
         SortOrder sortOrder = UserPreferences.getQueueKeepSortedOrder();
-        if (sortOrder == SortOrder.RANDOM) {
-            // do not shuffle the list on every change
-            return;
-        }
         Permutor<FeedItem> permutor = FeedItemPermutors.getPermutor(sortOrder);
         permutor.reorder(queue);
 
@@ -453,6 +496,31 @@ public class DBWriter {
         events.add(QueueEvent.sorted(queue));
     }
 
+    /**
+     * Returns true if the queue has to be sorted after adding items. A random order is not kept,
+     * because the list should not be shuffled on every change.
+     */
+    private static boolean isQueueKeptSorted() {
+        return UserPreferences.isQueueKeepSorted()
+                && UserPreferences.getQueueKeepSortedOrder() != SortOrder.RANDOM;
+    }
+
+    /**
+     * Spreads the sort keys of the queue after the current database operations, so that items can
+     * be inserted between any two neighbours again without renumbering the queue synchronously.
+     */
+    private static void renumberQueueInBackground() {
+        if (queueRenumberingScheduled.compareAndSet(false, true)) {
+            dbExec.submit(() -> {
+                queueRenumberingScheduled.set(false);
+                final PodDBAdapter adapter = PodDBAdapter.getInstance();
+                adapter.open();
+                adapter.renumberQueue();
+                adapter.close();
+            });
+        }
+    }
+
     /**
      * Removes all FeedItem objects from the queue.
      */
@@ -492,31 +560,31 @@ public class DBWriter {
         }
         final PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        final List<FeedItem> queue = DBReader.getQueue();
+        final LongHashSet queueIds = DBReader.getQueueIdSet();
 
-        boolean queueModified = false;
-        List<QueueEvent> events = new ArrayList<>();
-        List<FeedItem> updatedItems = new ArrayList<>();
+        List<Long> removedIds = new ArrayList<>();
         for (long itemId : itemIds) {
-            int position = indexInItemList(queue, itemId);
-            if (position >= 0) {
-                final FeedItem item = DBReader.getFeedItem(itemId);
-                if (item == null) {
-                    Log.e(TAG, "removeQueueItem - item in queue but somehow cannot be loaded."
-                            + " Item ignored. It should never happen. id:" + itemId);
-                    continue;
-                }
-                queue.remove(position);
-                item.removeTag(FeedItem.TAG_QUEUE);
-                events.add(QueueEvent.removed(item));
-                updatedItems.add(item);
-                queueModified = true;
+            if (queueIds.remove(itemId)) {
+                removedIds.add(itemId);
             } else {
                 Log.v(TAG, "removeQueueItem - item  not in queue:" + itemId);
             }
         }
-        if (queueModified) {
-            adapter.setQueue(queue);
+        List<QueueEvent> events = new ArrayList<>();
+        List<FeedItem> updatedItems = DBReader.getFeedItems(removedIds);
+        long[] removedItemIds = new long[updatedItems.size()];
+        for (int i = 0; i < updatedItems.size(); i++) {
+            FeedItem item = updatedItems.get(i);
+            item.removeTag(FeedItem.TAG_QUEUE);
+            events.add(QueueEvent.removed(item));
+            removedItemIds[i] = item.getId();
+        }
+        if (updatedItems.size() < removedIds.size()) {
+            Log.e(TAG, "removeQueueItem - item in queue but somehow cannot be loaded."
+                    + " Item ignored. It should never happen.");
+        }
+        if (!updatedItems.isEmpty()) {
+            adapter.removeQueueItems(removedItemIds);
             for (QueueEvent event : events) {
                 EventBus.getDefault().post(event);
             }
@@ -573,15 +641,18 @@ public class DBWriter {
         return runOnDbThread(() -> {
             final PodDBAdapter adapter = PodDBAdapter.getInstance();
             adapter.open();
-            final List<FeedItem> queue = DBReader.getQueue();
+            final int queueSize = adapter.getQueueSize();
 
-            if (from >= 0 && from < queue.size() && to >= 0 && to < queue.size()) {
-                final FeedItem item = queue.remove(from);
-                queue.add(to, item);
-
-                adapter.setQueue(queue);
+            if (from >= 0 && from < queueSize && to >= 0 && to < queueSize) {
+                final long itemId = adapter.getQueueItemIdAt(from);
+                if (adapter.moveQueueItem(itemId, to)) {
+                    renumberQueueInBackground();
+                }
                 if (broadcastUpdate) {
-                    EventBus.getDefault().post(QueueEvent.moved(item, to));
+                    final FeedItem item = DBReader.getFeedItem(itemId);
+                    if (item != null) {
+                        EventBus.getDefault().post(QueueEvent.moved(item, to));
+                    }
                 }
             }
             adapter.close();
@@ -603,28 +674,25 @@ public class DBWriter {
 
         final PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
-        final List<FeedItem> queue = DBReader.getQueue();
+        final LongHashSet queueIds = DBReader.getQueueIdSet();
 
         List<FeedItem> selectedItems = moveToTop ? new ArrayList<>(items) : items;
         if (moveToTop) {
             Collections.reverse(selectedItems);
         }
 
-        boolean queueModified = false;
+        // Moving to the front or back never runs out of keys, so this does not need renumbering
         List<QueueEvent> events = new ArrayList<>();
-
-        queue.removeAll(selectedItems);
-        events.add(QueueEvent.setQueue(queue));
-
         for (FeedItem item : selectedItems) {
-            int newIndex = moveToTop ? 0 : queue.size();
-            queue.add(newIndex, item);
+            if (!queueIds.contains(item.getId())) {
+                continue;
+            }
+            int newIndex = moveToTop ? 0 : queueIds.size() - 1;
+            adapter.moveQueueItem(item.getId(), newIndex);
             events.add(QueueEvent.moved(item, newIndex));
-            queueModified = true;
         }
 
-        if (queueModified) {
-            adapter.setQueue(queue);
+        if (!events.isEmpty()) {
             for (QueueEvent event : events) {
                 EventBus.getDefault().post(event);
             }
@@ -753,6 +821,32 @@ public class DBWriter {
         });
     }
 
+    /**
+     * Updates a feed and inserts or updates only the given items of it.
+     */
+    static Future<?> setFeedAndItems(final Feed feed, final List<FeedItem> items) {
+        return runOnDbThread(() -> {
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setFeedAndItems(feed, items);
+            adapter.close();
+        });
+    }
+
+    /**
+     * Saves the played state and the media position of the items. Unlike {@link #setItemList(List)},
+     * other attributes of the items are not written, so large lists are saved quickly.
+     */
+    public static Future<?> setItemPlaybackStates(final List<FeedItem> items) {
+        return runOnDbThread(() -> {
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setFeedItemsPlaybackState(items);
+            adapter.close();
+            EventBus.getDefault().post(FeedItemEvent.updated(items));
+        });
+    }
+
     public static Future<?> setItemList(final List<FeedItem> items) {
         return runOnDbThread(() -> {
             PodDBAdapter adapter = PodDBAdapter.getInstance();
@@ -808,6 +902,21 @@ public class DBWriter {
         });
     }
 
+    /**
+     * Stores the chapters of an item that were loaded from its media file and merged with the other sources.
+     *
+     * @param fingerprint Describes the sources, see {@link DBReader#loadCachedChapters}
+     */
+    public static Future<?> setCachedChapters(final long itemId, @NonNull final String fingerprint,
+                                              @NonNull final List<Chapter> chapters) {
+        return runOnDbThread(() -> {
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setCachedChapters(itemId, fingerprint, chapters);
+            adapter.close();
+        });
+    }
+
     /**
      * Updates download URL of a feed
      */
@@ -836,20 +945,6 @@ public class DBWriter {
         });
     }
 
-    private static boolean itemListContains(List<FeedItem> items, long itemId) {
-        return indexInItemList(items, itemId) >= 0;
-    }
-
-    private static int indexInItemList(List<FeedItem> items, long itemId) {
-        for (int i = 0; i < items.size(); i++) {
-            FeedItem item = items.get(i);
-            if (item.getId() == itemId) {
-                return i;
-            }
-        }
-        return -1;
-    }
-
     /**
      * Saves if a feed's last update failed
      *
@@ -862,7 +957,40 @@ public class DBWriter {
             adapter.open();
             adapter.setFeedLastUpdateFailed(feedId, lastUpdateFailed);
             adapter.close();
-            EventBus.getDefault().post(new FeedListUpdateEvent(feedId));
+            // Called for every feed of a refresh, so the event is coalesced with the episode changes
+            EpisodeChangeEvent changes = new EpisodeChangeEvent();
+            changes.feedChanged(feedId);
+            EpisodeChangePublisher.publish(changes);
+        });
+    }
+
+    /**
+     * Saves when a feed should be refreshed next, see {@link FeedRefreshScheduler}.
+     *
+     * @param unchangedRefreshes Number of refreshes in a row that did not find new episodes
+     */
+    public static Future<?> setFeedRefreshSchedule(final long feedId, final long nextRefreshDue,
+                                                   final int unchangedRefreshes) {
+        return runOnDbThread(() -> {
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setFeedRefreshSchedule(feedId, nextRefreshDue, unchangedRefreshes);
+            adapter.close();
+        });
+    }
+
+    /**
+     * Stores the values that are used to check if the feed changed since the last refresh.
+     *
+     * @param contentHash Hash of the last feed content that was parsed and stored
+     */
+    public static Future<?> setFeedValidators(final long feedId, final String etag, final String lastModified,
+                                              final String contentHash) {
+        return runOnDbThread(() -> {
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.setFeedValidators(feedId, etag, lastModified, contentHash);
+            adapter.close();
         });
     }
 
@@ -960,6 +1088,19 @@ public class DBWriter {
         });
     }
 
+    /**
+     * Writes the content of the write-ahead log back to the database file.
+     * Should be called after operations that wrote a lot of data, like refreshing all feeds.
+     */
+    public static Future<?> checkpointDatabase() {
+        return runOnDbThread(() -> {
+            PodDBAdapter adapter = PodDBAdapter.getInstance();
+            adapter.open();
+            adapter.checkpoint();
+            adapter.close();
+        });
+    }
+
     /**
      * Reset the statistics in DB
      */
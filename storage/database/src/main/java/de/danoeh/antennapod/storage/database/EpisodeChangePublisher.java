@@ -0,0 +1,65 @@
+package de.danoeh.antennapod.storage.database;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
+import org.greenrobot.eventbus.EventBus;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects the episode changes of database writes and posts them as one {@link EpisodeChangeEvent}
+ * after a short delay. A refresh of many feeds then only causes a few events instead of one per feed.
+ */
+class EpisodeChangePublisher {
+    static final long COALESCE_MILLIS = 1000;
+
+    private static final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r);
+        t.setName("EpisodeChangePublisher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static EpisodeChangeEvent pending = null;
+
+    private EpisodeChangePublisher() {
+    }
+
+    /**
+     * Adds the changes to the next event. The event is posted at most {@link #COALESCE_MILLIS}
+     * after the first change that it contains.
+     */
+    static void publish(@NonNull EpisodeChangeEvent changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        synchronized (EpisodeChangePublisher.class) {
+            if (pending == null) {
+                pending = new EpisodeChangeEvent();
+                executor.schedule(EpisodeChangePublisher::flush, COALESCE_MILLIS, TimeUnit.MILLISECONDS);
+            }
+            pending.merge(changes);
+        }
+    }
+
+    /**
+     * Posts the collected changes immediately.
+     *
+     * @return the posted event, or null if there were no changes
+     */
+    @Nullable
+    static EpisodeChangeEvent flush() {
+        EpisodeChangeEvent event;
+        synchronized (EpisodeChangePublisher.class) {
+            event = pending;
+            pending = null;
+        }
+        if (event != null) {
+            EventBus.getDefault().post(event);
+        }
+        return event;
+    }
+}
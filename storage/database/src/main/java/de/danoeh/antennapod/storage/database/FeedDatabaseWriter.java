@@ -2,24 +2,28 @@ package de.danoeh.antennapod.storage.database;
 
 import android.content.Context;
 import android.util.Log;
-import de.danoeh.antennapod.event.FeedListUpdateEvent;
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
 import de.danoeh.antennapod.model.download.DownloadError;
 import de.danoeh.antennapod.model.download.DownloadResult;
 import de.danoeh.antennapod.model.feed.Feed;
 import de.danoeh.antennapod.model.feed.FeedItem;
 import de.danoeh.antennapod.model.feed.FeedItemFilter;
+import de.danoeh.antennapod.model.feed.FeedMedia;
 import de.danoeh.antennapod.model.feed.FeedPreferences;
 import de.danoeh.antennapod.model.feed.SortOrder;
 import de.danoeh.antennapod.net.sync.serviceinterface.EpisodeAction;
 import de.danoeh.antennapod.net.sync.serviceinterface.SynchronizationQueue;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
-import org.greenrobot.eventbus.EventBus;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutionException;
 
 /**
@@ -28,37 +32,37 @@ import java.util.concurrent.ExecutionException;
 public abstract class FeedDatabaseWriter {
     private static final String TAG = "FeedDbWriter";
 
+    /**
+     * Finds the stored version of the feed, without loading its items.
+     */
     private static Feed searchFeedByIdentifyingValueOrID(Feed feed) {
         if (feed.getId() != 0) {
-            return DBReader.getFeed(feed.getId(), false, 0, Integer.MAX_VALUE);
+            return DBReader.getFeed(feed.getId(), false, 0, 0);
         } else {
-            List<Feed> feeds = DBReader.getFeedList();
-            for (Feed f : feeds) {
-                if (f.getIdentifyingValue().equals(feed.getIdentifyingValue())) {
-                    f.setItems(DBReader.getFeedItemList(f, FeedItemFilter.unfiltered(),
-                            SortOrder.DATE_NEW_OLD, 0, Integer.MAX_VALUE));
-                    return f;
-                }
-            }
+            return DBReader.getFeedByIdentifyingValue(feed.getIdentifyingValue());
         }
-        return null;
     }
 
     /**
      * Adds new Feeds to the database or updates the old versions if they already exists. If another Feed with the same
      * identifying value already exists, this method will add new FeedItems from the new Feed to the existing Feed.
      * These FeedItems will be marked as unread with the exception of the most recent FeedItem.
+     * Only the stored items that are needed for merging are loaded and only new or changed items are written.
      *
      * @param context Used for accessing the DB.
      * @param newFeed The new Feed object.
      * @param removeUnlistedItems The item list in the new Feed object is considered to be exhaustive.
      *                            I.e. items are removed from the database if they are not in this item list.
      * @return The updated Feed from the database if it already existed, or the new Feed from the parameters otherwise.
+     *         For existing feeds, the items are the stored versions of the items of the new Feed. Other stored items
+     *         are only included for local feeds and if removeUnlistedItems is set.
      */
     public static synchronized Feed updateFeed(Context context, Feed newFeed, boolean removeUnlistedItems) {
         Feed resultFeed;
         List<FeedItem> unlistedItems = new ArrayList<>();
         List<FeedItem> itemsToAddToQueue = new ArrayList<>();
+        Set<FeedItem> itemsToStore = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<FeedItem> itemsToCompareDescription = new ArrayList<>();
 
         PodDBAdapter adapter = PodDBAdapter.getInstance();
         adapter.open();
@@ -75,6 +79,12 @@ public abstract class FeedDatabaseWriter {
                         + " already exists. Syncing new with existing one.");
 
             Collections.sort(newFeed.getItems(), new FeedItemPubdateComparator());
+            if (removeUnlistedItems || newFeed.isLocalFeed()) {
+                DBReader.getFeedItemList(savedFeed, FeedItemFilter.unfiltered(),
+                        SortOrder.DATE_NEW_OLD, 0, Integer.MAX_VALUE);
+            } else {
+                savedFeed.setItems(DBReader.getItemsForMerge(savedFeed, newFeed.getItems()));
+            }
             FeedItemDuplicateGuesserPool newFeedDuplicateGuesser = new FeedItemDuplicateGuesserPool(newFeed.getItems());
             FeedItemDuplicateGuesserPool savedFeedDuplicateGuesser
                     = new FeedItemDuplicateGuesserPool(savedFeed.getItems());
@@ -88,10 +98,10 @@ public abstract class FeedDatabaseWriter {
             }
 
             // get the most recent date now, before we start changing the list
-            FeedItem priorMostRecent = savedFeed.getMostRecentItem();
+            List<Date> priorReleaseDates = DBReader.getReleaseDates(savedFeed.getId(), 1);
             Date priorMostRecentDate = new Date();
-            if (priorMostRecent != null) {
-                priorMostRecentDate = priorMostRecent.getPubDate();
+            if (!priorReleaseDates.isEmpty()) {
+                priorMostRecentDate = priorReleaseDates.get(0);
             }
 
             // Look for new or updated Items
@@ -113,9 +123,11 @@ public abstract class FeedDatabaseWriter {
                 }
 
                 FeedItem oldItem = savedFeedDuplicateGuesser.findById(item);
+                List<Object> oldState = oldItem != null ? getStoredState(oldItem) : null;
                 if (!newFeed.isLocalFeed() && oldItem == null) {
                     oldItem = savedFeedDuplicateGuesser.guessDuplicate(item);
                     if (oldItem != null) {
+                        oldState = getStoredState(oldItem);
                         Log.d(TAG, "Repaired duplicate: " + oldItem + ", " + item);
                         DBWriter.addDownloadStatus(new DownloadResult(item.getTitle(),
                                 savedFeed.getId(), Feed.FEEDFILETYPE_FEED, false,
@@ -142,9 +154,15 @@ public abstract class FeedDatabaseWriter {
 
                 if (oldItem != null) {
                     oldItem.updateFromOther(item);
+                    if (!oldState.equals(getStoredState(oldItem))) {
+                        itemsToStore.add(oldItem);
+                    } else if (oldItem.getDescription() != null) {
+                        itemsToCompareDescription.add(oldItem);
+                    }
                 } else {
                     Log.d(TAG, "Found new item: " + item.getTitle());
                     item.setFeed(savedFeed);
+                    itemsToStore.add(item);
 
                     if (idx >= savedFeed.getItems().size()) {
                         savedFeed.getItems().add(item);
@@ -195,6 +213,22 @@ public abstract class FeedDatabaseWriter {
                 }
             }
 
+            // The descriptions of stored items are not loaded, so they are compared separately
+            for (int i = 0; i < itemsToCompareDescription.size(); i += PodDBAdapter.IN_OPERATOR_MAXIMUM) {
+                List<FeedItem> chunk = itemsToCompareDescription.subList(i,
+                        Math.min(itemsToCompareDescription.size(), i + PodDBAdapter.IN_OPERATOR_MAXIMUM));
+                List<Long> ids = new ArrayList<>();
+                for (FeedItem item : chunk) {
+                    ids.add(item.getId());
+                }
+                Map<Long, String> storedDescriptions = DBReader.getDescriptionsOfItems(ids);
+                for (FeedItem item : chunk) {
+                    if (!item.getDescription().equals(storedDescriptions.get(item.getId()))) {
+                        itemsToStore.add(item);
+                    }
+                }
+            }
+
             // update attributes
             savedFeed.setLastModified(newFeed.getLastModified());
             savedFeed.setType(newFeed.getType());
@@ -203,16 +237,44 @@ public abstract class FeedDatabaseWriter {
             resultFeed = savedFeed;
         }
 
+        EpisodeChangeEvent changes = new EpisodeChangeEvent();
         try {
             if (savedFeed == null) {
                 DBWriter.addNewFeed(context, newFeed).get();
                 // Update with default values that are set in database
-                resultFeed = searchFeedByIdentifyingValueOrID(newFeed);
+                resultFeed = DBReader.getFeed(newFeed.getId(), false, 0, Integer.MAX_VALUE);
+                changes.feedChanged(newFeed.getId());
+                for (FeedItem item : newFeed.getItems()) {
+                    changes.itemInserted(newFeed.getId(), item.getId());
+                }
             } else {
-                DBWriter.setCompleteFeed(savedFeed).get();
+                List<FeedItem> changedItems = new ArrayList<>();
+                Set<FeedItem> newItems = Collections.newSetFromMap(new IdentityHashMap<>());
+                for (FeedItem item : savedFeed.getItems()) {
+                    if (itemsToStore.contains(item)) {
+                        changedItems.add(item);
+                        if (item.getId() == 0) {
+                            newItems.add(item);
+                        }
+                    }
+                }
+                Log.d(TAG, "Storing " + changedItems.size() + " new or changed items of "
+                        + newFeed.getItems().size() + " items in the feed");
+                DBWriter.setFeedAndItems(savedFeed, changedItems).get();
+                changes.feedChanged(savedFeed.getId());
+                for (FeedItem item : changedItems) {
+                    if (newItems.contains(item)) {
+                        changes.itemInserted(savedFeed.getId(), item.getId());
+                    } else {
+                        changes.itemUpdated(savedFeed.getId(), item.getId());
+                    }
+                }
             }
             if (removeUnlistedItems) {
                 DBWriter.deleteFeedItems(context, unlistedItems).get();
+                for (FeedItem item : unlistedItems) {
+                    changes.itemDeleted(savedFeed.getId(), item.getId());
+                }
             }
         } catch (InterruptedException | ExecutionException e) {
             e.printStackTrace();
@@ -223,15 +285,29 @@ public abstract class FeedDatabaseWriter {
 
         adapter.close();
 
-        if (savedFeed != null) {
-            EventBus.getDefault().post(new FeedListUpdateEvent(savedFeed));
-        } else {
-            EventBus.getDefault().post(new FeedListUpdateEvent(Collections.emptyList()));
-        }
+        EpisodeChangePublisher.publish(changes);
 
         return resultFeed;
     }
 
+    /**
+     * Returns the values of an item that are written to the database, except for the description.
+     * Used to find out if an item needs to be written after merging it with its new version.
+     */
+    private static List<Object> getStoredState(FeedItem item) {
+        List<Object> state = new ArrayList<>(Arrays.asList(item.getTitle(), item.getLink(),
+                item.getPubDate() != null ? item.getPubDate().getTime() : null, item.getPaymentLink(),
+                item.getItemIdentifier(), item.getImageUrl(), item.getPlayState(), item.isAutoDownloadEnabled(),
+                item.getChapters() != null || item.hasChapters(), item.getPodcastIndexChapterUrl(),
+                item.getSocialInteractUrl(), item.getTranscriptUrl(), item.getTranscriptType()));
+        FeedMedia media = item.getMedia();
+        if (media != null) {
+            state.addAll(Arrays.asList(media.getId(), media.getDownloadUrl(), media.getSize(),
+                    media.getMimeType(), media.getDuration()));
+        }
+        return state;
+    }
+
     private static String duplicateEpisodeDetails(FeedItem item) {
         return "Title: " + item.getTitle()
                 + "\nID: " + item.getItemIdentifier()
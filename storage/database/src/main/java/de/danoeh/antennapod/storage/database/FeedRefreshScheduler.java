@@ -0,0 +1,73 @@
+package de.danoeh.antennapod.storage.database;
+
+import de.danoeh.antennapod.model.feed.Feed;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Decides when a feed needs to be refreshed next, based on its guessed release schedule
+ * and on how often refreshes did not find new episodes.
+ */
+public class FeedRefreshScheduler {
+    /**
+     * Feeds are refreshed at least once per day, even if no release is expected.
+     */
+    static final long MAX_INTERVAL = ReleaseScheduleGuesser.ONE_DAY;
+    private static final int MAX_BACKOFF_EXPONENT = 5;
+    private static final int MAX_UNCHANGED_REFRESHES = 1000;
+    private static final int NUM_RELEASE_DATES = 40;
+
+    private FeedRefreshScheduler() {
+    }
+
+    /**
+     * Computes and saves when the feed needs to be refreshed next. Call this after the feed was refreshed.
+     *
+     * @param feed The feed as it was loaded before the refresh
+     * @param notModified The server reported that the feed did not change
+     * @param minInterval The refresh interval set by the user, in milliseconds
+     */
+    public static void onRefreshed(Feed feed, boolean notModified, long minInterval) {
+        List<Date> releaseDates = DBReader.getReleaseDates(feed.getId(), NUM_RELEASE_DATES);
+        boolean foundNewEpisodes = !notModified && !releaseDates.isEmpty()
+                && releaseDates.get(0).getTime() > feed.getLastRefreshAttempt();
+        int unchangedRefreshes = foundNewEpisodes ? 0
+                : Math.min(feed.getUnchangedRefreshes() + 1, MAX_UNCHANGED_REFRESHES);
+        long nextRefreshDue = getNextRefreshDue(releaseDates, unchangedRefreshes,
+                minInterval, System.currentTimeMillis());
+        DBWriter.setFeedRefreshSchedule(feed.getId(), nextRefreshDue, unchangedRefreshes);
+    }
+
+    /**
+     * @param releaseDates Release dates of the most recent episodes
+     * @param unchangedRefreshes Number of refreshes in a row that did not find new episodes
+     * @param minInterval The refresh interval set by the user, in milliseconds
+     * @return Time of the next refresh
+     */
+    public static long getNextRefreshDue(List<Date> releaseDates, int unchangedRefreshes,
+                                         long minInterval, long now) {
+        ReleaseScheduleGuesser.Guess guess = null;
+        if (releaseDates.size() > 1) {
+            guess = ReleaseScheduleGuesser.performGuess(new ArrayList<>(releaseDates));
+        }
+        long interval;
+        if (guess != null && guess.schedule != ReleaseScheduleGuesser.Schedule.UNKNOWN
+                && guess.nextExpectedDate != null) {
+            long expected = guess.nextExpectedDate.getTime();
+            if (expected > now) {
+                // Wait for the next release
+                interval = expected - now;
+            } else {
+                // Release is late. Check often at first, then less often the longer it is delayed.
+                interval = (now - expected) / 2;
+            }
+        } else {
+            // No schedule: check less often the more refreshes did not find anything new
+            interval = minInterval << Math.min(unchangedRefreshes, MAX_BACKOFF_EXPONENT);
+        }
+        long maxInterval = Math.max(minInterval, MAX_INTERVAL);
+        return now + Math.min(Math.max(interval, minInterval), maxInterval);
+    }
+}
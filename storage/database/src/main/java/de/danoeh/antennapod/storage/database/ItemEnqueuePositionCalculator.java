@@ -33,7 +33,8 @@ public class ItemEnqueuePositionCalculator {
     public int calcPosition(@NonNull List<FeedItem> curQueue, @Nullable Playable currentPlaying) {
         switch (enqueueLocation) {
             case BACK:
-                return curQueue.size();
+            case RANDOM:
+                return calcPosition(curQueue.size());
             case FRONT:
                 // Return not necessarily 0, so that when a list of items are downloaded and enqueued
                 // in succession of calls (e.g., users manually tapping download one by one),
@@ -44,11 +45,35 @@ public class ItemEnqueuePositionCalculator {
                 int currentlyPlayingPosition = getCurrentlyPlayingPosition(curQueue, currentPlaying);
                 return getPositionOfFirstNonDownloadingItem(
                         currentlyPlayingPosition + 1, curQueue);
+            default:
+                throw new AssertionError("calcPosition() : unrecognized enqueueLocation option: " + enqueueLocation);
+        }
+    }
+
+    /**
+     * Returns true if the position depends on the items of the queue, not only on its size.
+     * Otherwise, {@link #calcPosition(int)} can be used without loading the queue.
+     */
+    public boolean needsQueueItems() {
+        return enqueueLocation == EnqueueLocation.FRONT || enqueueLocation == EnqueueLocation.AFTER_CURRENTLY_PLAYING;
+    }
+
+    /**
+     * Determine the position (0-based) for locations that only depend on the size of the queue.
+     *
+     * @param queueSize the number of items in the queue
+     * @throws IllegalStateException if {@link #needsQueueItems()} is true
+     */
+    public int calcPosition(int queueSize) {
+        switch (enqueueLocation) {
+            case BACK:
+                return queueSize;
             case RANDOM:
                 Random random = new Random();
-                return random.nextInt(curQueue.size() + 1);
+                return random.nextInt(queueSize + 1);
             default:
-                throw new AssertionError("calcPosition() : unrecognized enqueueLocation option: " + enqueueLocation);
+                throw new IllegalStateException("calcPosition() : position depends on the queue items: "
+                        + enqueueLocation);
         }
     }
 
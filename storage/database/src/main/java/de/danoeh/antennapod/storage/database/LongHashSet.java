@@ -0,0 +1,218 @@
+package de.danoeh.antennapod.storage.database;
+
+/**
+ * Fast and memory efficient set of longs. Uses open addressing with linear probing,
+ * so lookups do not need to box the values or follow pointers.
+ */
+public final class LongHashSet {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private boolean containsZero;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    /**
+     * Constructs an empty instance with a default initial capacity.
+     */
+    public LongHashSet() {
+        this(4);
+    }
+
+    /**
+     * Constructs an empty instance.
+     *
+     * @param expectedSize {@code >= 0;} number of values that can be added without resizing
+     */
+    public LongHashSet(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expected size must be 0 or higher");
+        }
+        allocate(LongHashing.tableSize(expectedSize, LOAD_FACTOR));
+    }
+
+    public static LongHashSet of(long... values) {
+        if (values == null || values.length == 0) {
+            return new LongHashSet(0);
+        }
+        LongHashSet result = new LongHashSet(values.length);
+        for (long value : values) {
+            result.add(value);
+        }
+        return result;
+    }
+
+    /**
+     * Gets the number of elements in this set.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Adds a value to the set. This will increase the set's capacity if necessary.
+     *
+     * @param value the value to add
+     * @return {@code true} if the value was added, {@code false} if it was already contained
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = LongHashing.hash(value) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = value;
+        size++;
+        if (size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if the given value is contained in the set
+     *
+     * @param value value to look for
+     * @return {@code true} if this set contains {@code value}, {@code false} otherwise
+     */
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int slot = LongHashing.hash(value) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes a value from this set.
+     *
+     * @param value value to remove
+     * @return {@code true} if the value was removed, {@code false} otherwise
+     */
+    public boolean remove(long value) {
+        if (value == 0) {
+            if (!containsZero) {
+                return false;
+            }
+            containsZero = false;
+            size--;
+            return true;
+        }
+        int slot = LongHashing.hash(value) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == value) {
+                shiftKeys(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes all values from this set.
+     */
+    public void clear() {
+        allocate(LongHashing.tableSize(0, LOAD_FACTOR));
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * Returns an array with the values of this set, in no particular order.
+     */
+    public long[] toArray() {
+        long[] result = new long[size];
+        int i = 0;
+        if (containsZero) {
+            result[i++] = 0;
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * 5 + 13);
+        sb.append("LongHashSet{");
+        long[] values = toArray();
+        for (int i = 0; i < values.length; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(values[i]);
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * Closes the gap left by a removed key, so that lookups do not stop early.
+     */
+    private void shiftKeys(int slot) {
+        while (true) {
+            int last = slot;
+            slot = (slot + 1) & mask;
+            long key;
+            while (true) {
+                key = keys[slot];
+                if (key == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int home = LongHashing.hash(key) & mask;
+                if (LongHashing.canMove(home, last, slot)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[last] = key;
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        allocate(newCapacity);
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int slot = LongHashing.hash(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+}
@@ -0,0 +1,47 @@
+package de.danoeh.antennapod.storage.database;
+
+/**
+ * Shared helpers of the open addressing tables {@link LongHashSet} and {@link LongLongMap}.
+ */
+final class LongHashing {
+    private static final int MIN_CAPACITY = 4;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private LongHashing() {
+    }
+
+    /**
+     * Spreads the bits of the value, so that consecutive IDs do not end up in consecutive slots.
+     */
+    static int hash(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * @return The power of two table size that holds the expected number of values below the load factor.
+     */
+    static int tableSize(int expectedSize, float loadFactor) {
+        long needed = (long) Math.ceil(expectedSize / loadFactor) + 1;
+        int capacity = MIN_CAPACITY;
+        while (capacity < needed) {
+            if (capacity == MAX_CAPACITY) {
+                throw new IllegalArgumentException("expected size is too large: " + expectedSize);
+            }
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    /**
+     * Whether the key in the given slot may be moved to the gap when removing a key with linear probing.
+     * This is the case unless its home slot lies cyclically between the gap and the slot.
+     */
+    static boolean canMove(int home, int gap, int slot) {
+        if (gap <= slot) {
+            return home <= gap || home > slot;
+        } else {
+            return home <= gap && home > slot;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package de.danoeh.antennapod.storage.database;
+
+/**
+ * Fast and memory efficient map from long to long. Uses open addressing with linear probing,
+ * so lookups do not need to box the keys or values.
+ */
+public final class LongLongMap {
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+    private long[] values;
+    private boolean containsZeroKey;
+    private long zeroKeyValue;
+    private int size;
+    private int mask;
+    private int resizeAt;
+
+    /**
+     * Constructs an empty instance with a default initial capacity.
+     */
+    public LongLongMap() {
+        this(4);
+    }
+
+    /**
+     * Constructs an empty instance.
+     *
+     * @param expectedSize {@code >= 0;} number of entries that can be added without resizing
+     */
+    public LongLongMap(int expectedSize) {
+        if (expectedSize < 0) {
+            throw new IllegalArgumentException("expected size must be 0 or higher");
+        }
+        allocate(LongHashing.tableSize(expectedSize, LOAD_FACTOR));
+    }
+
+    /**
+     * Gets the number of entries in this map.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Associates the value with the key. This will increase the map's capacity if necessary.
+     *
+     * @return the previous value of the key, or {@code defaultValue} if there was none
+     */
+    public long put(long key, long value, long defaultValue) {
+        if (key == 0) {
+            long previous = containsZeroKey ? zeroKeyValue : defaultValue;
+            if (!containsZeroKey) {
+                containsZeroKey = true;
+                size++;
+            }
+            zeroKeyValue = value;
+            return previous;
+        }
+        int slot = LongHashing.hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size >= resizeAt) {
+            rehash(keys.length * 2);
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Associates the value with the key. This will increase the map's capacity if necessary.
+     */
+    public void put(long key, long value) {
+        put(key, value, 0);
+    }
+
+    /**
+     * Gets the value of the key.
+     *
+     * @return the value, or {@code defaultValue} if the map does not contain the key
+     */
+    public long get(long key, long defaultValue) {
+        if (key == 0) {
+            return containsZeroKey ? zeroKeyValue : defaultValue;
+        }
+        int slot = LongHashing.hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        if (key == 0) {
+            return containsZeroKey;
+        }
+        int slot = LongHashing.hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * Removes the key from this map.
+     *
+     * @return the previous value of the key, or {@code defaultValue} if there was none
+     */
+    public long remove(long key, long defaultValue) {
+        if (key == 0) {
+            if (!containsZeroKey) {
+                return defaultValue;
+            }
+            containsZeroKey = false;
+            size--;
+            return zeroKeyValue;
+        }
+        int slot = LongHashing.hash(key) & mask;
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                shiftKeys(slot);
+                size--;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Removes all entries from this map.
+     */
+    public void clear() {
+        allocate(LongHashing.tableSize(0, LOAD_FACTOR));
+        containsZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Returns an array with the keys of this map, in no particular order.
+     */
+    public long[] keys() {
+        long[] result = new long[size];
+        int i = 0;
+        if (containsZeroKey) {
+            result[i++] = 0;
+        }
+        for (long key : keys) {
+            if (key != 0) {
+                result[i++] = key;
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(size * 10 + 13);
+        sb.append("LongLongMap{");
+        long[] mapKeys = keys();
+        for (int i = 0; i < mapKeys.length; i++) {
+            if (i != 0) {
+                sb.append(", ");
+            }
+            sb.append(mapKeys[i]).append('=').append(get(mapKeys[i], 0));
+        }
+        sb.append("}");
+        return sb.toString();
+    }
+
+    /**
+     * Closes the gap left by a removed key, so that lookups do not stop early.
+     */
+    private void shiftKeys(int slot) {
+        while (true) {
+            int last = slot;
+            slot = (slot + 1) & mask;
+            long key;
+            while (true) {
+                key = keys[slot];
+                if (key == 0) {
+                    keys[last] = 0;
+                    return;
+                }
+                int home = LongHashing.hash(key) & mask;
+                if (LongHashing.canMove(home, last, slot)) {
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[last] = key;
+            values[last] = values[slot];
+        }
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(newCapacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            long key = oldKeys[i];
+            if (key != 0) {
+                int slot = LongHashing.hash(key) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        resizeAt = (int) (capacity * LOAD_FACTOR);
+    }
+}
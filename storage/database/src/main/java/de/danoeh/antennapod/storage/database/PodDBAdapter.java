@@ -24,6 +24,7 @@ import de.danoeh.antennapod.model.feed.FeedFunding;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -54,12 +55,29 @@ public class PodDBAdapter {
 
     private static final String TAG = "PodDBAdapter";
     public static final String DATABASE_NAME = "Antennapod.db";
-    public static final int VERSION = 3110000;
+    public static final int VERSION = 3180000;
 
     /**
      * Maximum number of arguments for IN-operator.
      */
-    private static final int IN_OPERATOR_MAXIMUM = 800;
+    static final int IN_OPERATOR_MAXIMUM = 800;
+
+    /**
+     * Distance between the sort keys of neighbouring queue items after renumbering. The sort key is stored
+     * in the ID column of the queue. An item is moved or inserted by giving it a key between the keys of
+     * its new neighbours, so only its own row is written.
+     */
+    static final long QUEUE_KEY_GAP = 1L << 20;
+
+    /**
+     * If the keys around an inserted item are closer than this, the queue should be renumbered soon.
+     */
+    static final long QUEUE_KEY_MIN_GAP = 1L << 6;
+
+    /**
+     * Time after which unused read connections of the WAL connection pool are closed.
+     */
+    private static final long IDLE_CONNECTION_TIMEOUT_MS = 30 * 1000;
 
     // Key-constants
     public static final String KEY_ID = "id";
@@ -125,8 +143,14 @@ public class PodDBAdapter {
     public static final String KEY_PODCASTINDEX_CHAPTER_URL = "podcastindex_chapter_url";
     public static final String KEY_SOCIAL_INTERACT_URL = "social_interact_url";
     public static final String KEY_STATE = "state";
+    public static final String KEY_NEXT_REFRESH_DUE = "next_refresh_due";
+    public static final String KEY_UNCHANGED_REFRESHES = "unchanged_refreshes";
+    public static final String KEY_ETAG = "etag";
+    public static final String KEY_CONTENT_HASH = "content_hash";
+    public static final String KEY_IDENTIFYING_VALUE = "identifying_value";
     public static final String KEY_PODCASTINDEX_TRANSCRIPT_URL = "podcastindex_transcript_url";
     public static final String KEY_PODCASTINDEX_TRANSCRIPT_TYPE = "podcastindex_transcript_type";
+    public static final String KEY_CHAPTER_FINGERPRINT = "chapter_fingerprint";
 
     // Table names
     public static final String TABLE_NAME_FEEDS = "Feeds";
@@ -137,6 +161,10 @@ public class PodDBAdapter {
     public static final String TABLE_NAME_QUEUE = "Queue";
     public static final String TABLE_NAME_SIMPLECHAPTERS = "SimpleChapters";
     public static final String TABLE_NAME_FAVORITES = "Favorites";
+    public static final String TABLE_NAME_CHAPTER_CACHE = "ChapterCache";
+    public static final String TABLE_NAME_CACHED_CHAPTERS = "CachedChapters";
+    public static final String TABLE_NAME_FEED_ITEMS_SEARCH = "FeedItemsSearch";
+    public static final String TABLE_NAME_FEEDS_SEARCH = "FeedsSearch";
 
     // SQL Statements for creating new tables
     private static final String TABLE_PRIMARY_KEY = KEY_ID
@@ -178,6 +206,11 @@ public class PodDBAdapter {
             + KEY_FEED_SKIP_ENDING + " INTEGER DEFAULT 0,"
             + KEY_EPISODE_NOTIFICATION + " INTEGER DEFAULT 0,"
             + KEY_STATE + " INTEGER DEFAULT " + Feed.STATE_SUBSCRIBED + ","
+            + KEY_NEXT_REFRESH_DUE + " INTEGER DEFAULT 0,"
+            + KEY_UNCHANGED_REFRESHES + " INTEGER DEFAULT 0,"
+            + KEY_ETAG + " TEXT,"
+            + KEY_CONTENT_HASH + " TEXT,"
+            + KEY_IDENTIFYING_VALUE + " TEXT,"
             + KEY_NEW_EPISODES_ACTION + " INTEGER DEFAULT 0)";
 
     private static final String CREATE_TABLE_FEED_ITEMS = "CREATE TABLE "
@@ -221,6 +254,18 @@ public class PodDBAdapter {
             + " TEXT," + KEY_START + " INTEGER," + KEY_FEEDITEM + " INTEGER,"
             + KEY_LINK + " TEXT," + KEY_IMAGE_URL + " TEXT)";
 
+    // Chapters that were loaded from the media file and merged with the other sources, one row per item.
+    // The fingerprint describes the sources, so the chapters are loaded again when a source changes.
+    static final String CREATE_TABLE_CHAPTER_CACHE = "CREATE TABLE "
+            + TABLE_NAME_CHAPTER_CACHE + " (" + KEY_FEEDITEM + " INTEGER PRIMARY KEY,"
+            + KEY_CHAPTER_FINGERPRINT + " TEXT)";
+
+    // The ID is the ID of the chapter in SimpleChapters, or 0 if the chapter is not stored there
+    static final String CREATE_TABLE_CACHED_CHAPTERS = "CREATE TABLE "
+            + TABLE_NAME_CACHED_CHAPTERS + " (" + KEY_FEEDITEM + " INTEGER," + KEY_ID + " INTEGER,"
+            + KEY_TITLE + " TEXT," + KEY_START + " INTEGER,"
+            + KEY_LINK + " TEXT," + KEY_IMAGE_URL + " TEXT)";
+
     // SQL Statements for creating indexes
     static final String CREATE_INDEX_FEEDITEMS_FEED = "CREATE INDEX "
             + TABLE_NAME_FEED_ITEMS + "_" + KEY_FEED + " ON " + TABLE_NAME_FEED_ITEMS + " ("
@@ -242,14 +287,34 @@ public class PodDBAdapter {
             + TABLE_NAME_FEED_MEDIA + "_" + KEY_FEEDITEM + " ON " + TABLE_NAME_FEED_MEDIA + " ("
             + KEY_FEEDITEM + ")";
 
+    static final String CREATE_INDEX_FEEDS_IDENTIFYING_VALUE = "CREATE INDEX "
+            + TABLE_NAME_FEEDS + "_" + KEY_IDENTIFYING_VALUE + " ON " + TABLE_NAME_FEEDS + " ("
+            + KEY_IDENTIFYING_VALUE + ")";
+
+    static final String CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER = "CREATE INDEX "
+            + TABLE_NAME_FEED_ITEMS + "_" + KEY_ITEM_IDENTIFIER + " ON " + TABLE_NAME_FEED_ITEMS + " ("
+            + KEY_ITEM_IDENTIFIER + ")";
+
+    static final String CREATE_INDEX_FEEDMEDIA_DOWNLOAD_URL = "CREATE INDEX "
+            + TABLE_NAME_FEED_MEDIA + "_" + KEY_DOWNLOAD_URL + " ON " + TABLE_NAME_FEED_MEDIA + " ("
+            + KEY_DOWNLOAD_URL + ")";
+
     static final String CREATE_INDEX_SIMPLECHAPTERS_FEEDITEM = "CREATE INDEX "
             + TABLE_NAME_SIMPLECHAPTERS + "_" + KEY_FEEDITEM + " ON " + TABLE_NAME_SIMPLECHAPTERS + " ("
             + KEY_FEEDITEM + ")";
 
+    static final String CREATE_INDEX_CACHED_CHAPTERS_FEEDITEM = "CREATE INDEX "
+            + TABLE_NAME_CACHED_CHAPTERS + "_" + KEY_FEEDITEM + " ON " + TABLE_NAME_CACHED_CHAPTERS + " ("
+            + KEY_FEEDITEM + ")";
+
     static final String CREATE_TABLE_FAVORITES = "CREATE TABLE "
             + TABLE_NAME_FAVORITES + "(" + KEY_ID + " INTEGER PRIMARY KEY,"
             + KEY_FEEDITEM + " INTEGER," + KEY_FEED + " INTEGER)";
 
+    // Full-text search indexes. They do not store a copy of the text but read it from their content table.
+    private static final String[] FEED_ITEMS_SEARCH_COLUMNS = {KEY_TITLE, KEY_DESCRIPTION};
+    private static final String[] FEEDS_SEARCH_COLUMNS = {KEY_TITLE, KEY_CUSTOM_TITLE, KEY_AUTHOR, KEY_DESCRIPTION};
+
     /**
      * All the tables in the database
      */
@@ -260,7 +325,9 @@ public class PodDBAdapter {
             TABLE_NAME_DOWNLOAD_LOG,
             TABLE_NAME_QUEUE,
             TABLE_NAME_SIMPLECHAPTERS,
-            TABLE_NAME_FAVORITES
+            TABLE_NAME_FAVORITES,
+            TABLE_NAME_CHAPTER_CACHE,
+            TABLE_NAME_CACHED_CHAPTERS
     };
 
     public static final String SELECT_KEY_ITEM_ID = "item_id";
@@ -337,6 +404,10 @@ public class PodDBAdapter {
             + TABLE_NAME_FEEDS + "." + KEY_FEED_SKIP_ENDING + ", "
             + TABLE_NAME_FEEDS + "." + KEY_EPISODE_NOTIFICATION + ", "
             + TABLE_NAME_FEEDS + "." + KEY_STATE + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_NEXT_REFRESH_DUE + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_UNCHANGED_REFRESHES + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_ETAG + ", "
+            + TABLE_NAME_FEEDS + "." + KEY_CONTENT_HASH + ", "
             + TABLE_NAME_FEEDS + "." + KEY_NEW_EPISODES_ACTION;
 
     private static final String JOIN_FEED_ITEM_AND_MEDIA = " LEFT JOIN " + TABLE_NAME_FEED_MEDIA
@@ -377,11 +448,19 @@ public class PodDBAdapter {
         db = openDb();
     }
 
+    /**
+     * Opens the database in write-ahead logging mode. In this mode, SQLiteDatabase keeps a single primary
+     * connection that is used for all writes and transactions (in practice, the DBWriter executor)
+     * and a small pool of read-only connections for queries outside of transactions (DBReader).
+     * Readers see the last committed state and never wait for a running write transaction.
+     */
     private SQLiteDatabase openDb() {
         SQLiteDatabase newDb;
         try {
             newDb = dbHelper.getWritableDatabase();
-            newDb.disableWriteAheadLogging();
+            if (!newDb.isWriteAheadLoggingEnabled()) {
+                Log.w(TAG, "Write-ahead logging not available, falling back to rollback journal");
+            }
         } catch (SQLException ex) {
             Log.e(TAG, Log.getStackTraceString(ex));
             newDb = dbHelper.getReadableDatabase();
@@ -431,6 +510,26 @@ public class PodDBAdapter {
         instance = null;
     }
 
+    /**
+     * Copies the content of the write-ahead log into the main database file and truncates the log.
+     * SQLite already checkpoints automatically when the log grows, so this only needs to be called
+     * after large batches of writes and before the database file is accessed directly.
+     *
+     * @return False if the log could not be copied completely, for example because the database is busy
+     */
+    public boolean checkpoint() {
+        try (Cursor cursor = db.rawQuery("PRAGMA wal_checkpoint(TRUNCATE)", null)) {
+            if (cursor.moveToFirst() && cursor.getInt(0) != 0) {
+                Log.d(TAG, "Checkpoint could not complete because the database is busy");
+                return false;
+            }
+            return true;
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+            return false;
+        }
+    }
+
     public static boolean deleteDatabase() {
         PodDBAdapter adapter = getInstance();
         adapter.open();
@@ -465,6 +564,7 @@ public class PodDBAdapter {
         values.put(KEY_LASTUPDATE, feed.getLastModified());
         values.put(KEY_TYPE, feed.getType());
         values.put(KEY_FEED_IDENTIFIER, feed.getFeedIdentifier());
+        values.put(KEY_IDENTIFYING_VALUE, feed.getIdentifyingValue());
         values.put(KEY_STATE, feed.getState());
 
         values.put(KEY_IS_PAGED, feed.isPaged());
@@ -628,6 +728,27 @@ public class PodDBAdapter {
         }
     }
 
+    /**
+     * Updates a feed and inserts or updates only the given items of it, in a single transaction.
+     */
+    public void setFeedAndItems(Feed feed, List<FeedItem> items) {
+        try {
+            db.beginTransactionNonExclusive();
+            setFeed(feed);
+            for (FeedItem item : items) {
+                updateOrInsertFeedItem(item, false);
+            }
+            if (feed.getPreferences() != null) {
+                setFeedPreferences(feed.getPreferences());
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     /**
      * Updates the download URL of a Feed.
      */
@@ -635,6 +756,11 @@ public class PodDBAdapter {
         ContentValues values = new ContentValues();
         values.put(KEY_DOWNLOAD_URL, updated);
         db.update(TABLE_NAME_FEEDS, values, KEY_DOWNLOAD_URL + "=?", new String[]{original});
+        // The download URL is the identifying value of feeds that do not have a feed identifier
+        values.clear();
+        values.put(KEY_IDENTIFYING_VALUE, updated);
+        db.update(TABLE_NAME_FEEDS, values, KEY_DOWNLOAD_URL + "=? AND (" + KEY_FEED_IDENTIFIER + " IS NULL OR "
+                + KEY_FEED_IDENTIFIER + "='')", new String[]{updated});
     }
 
     public void storeFeedItemlist(List<FeedItem> items) {
@@ -754,6 +880,34 @@ public class PodDBAdapter {
         }
     }
 
+    /**
+     * Saves the played state and the media position of the items in one transaction.
+     * Other attributes are not written.
+     */
+    public void setFeedItemsPlaybackState(List<FeedItem> items) {
+        try {
+            db.beginTransactionNonExclusive();
+            ContentValues values = new ContentValues();
+            for (FeedItem item : items) {
+                values.clear();
+                values.put(KEY_READ, item.getPlayState());
+                db.update(TABLE_NAME_FEED_ITEMS, values, KEY_ID + "=?", new String[]{String.valueOf(item.getId())});
+                FeedMedia media = item.getMedia();
+                if (media != null && media.getId() != 0) {
+                    values.clear();
+                    values.put(KEY_POSITION, media.getPosition());
+                    db.update(TABLE_NAME_FEED_MEDIA, values, KEY_ID + "=?",
+                            new String[]{String.valueOf(media.getId())});
+                }
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     /**
      * Sets the 'read' attribute of the item.
      *
@@ -794,6 +948,37 @@ public class PodDBAdapter {
         }
     }
 
+    /**
+     * Replaces the cached chapters of an item. An empty list is stored as well,
+     * so that files without chapters are not parsed again.
+     */
+    public void setCachedChapters(long itemId, String fingerprint, List<Chapter> chapters) {
+        try {
+            db.beginTransactionNonExclusive();
+            String[] whereArgs = {String.valueOf(itemId)};
+            db.delete(TABLE_NAME_CACHED_CHAPTERS, KEY_FEEDITEM + "=?", whereArgs);
+            ContentValues values = new ContentValues();
+            values.put(KEY_FEEDITEM, itemId);
+            values.put(KEY_CHAPTER_FINGERPRINT, fingerprint);
+            db.insertWithOnConflict(TABLE_NAME_CHAPTER_CACHE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            for (Chapter chapter : chapters) {
+                values.clear();
+                values.put(KEY_FEEDITEM, itemId);
+                values.put(KEY_ID, chapter.getId());
+                values.put(KEY_TITLE, chapter.getTitle());
+                values.put(KEY_START, chapter.getStart());
+                values.put(KEY_LINK, chapter.getLink());
+                values.put(KEY_IMAGE_URL, chapter.getImageUrl());
+                db.insert(TABLE_NAME_CACHED_CHAPTERS, null, values);
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
     public void resetPagedFeedPage(Feed feed) {
         final String sql = "UPDATE " + TABLE_NAME_FEEDS
                 + " SET " + KEY_NEXT_PAGE_LINK + "=" + KEY_DOWNLOAD_URL
@@ -809,6 +994,25 @@ public class PodDBAdapter {
         db.execSQL(sql);
     }
 
+    public void setFeedRefreshSchedule(long feedId, long nextRefreshDue, int unchangedRefreshes) {
+        final String sql = "UPDATE " + TABLE_NAME_FEEDS
+                + " SET " + KEY_NEXT_REFRESH_DUE + "=" + nextRefreshDue
+                + "," + KEY_UNCHANGED_REFRESHES + "=" + unchangedRefreshes
+                + " WHERE " + KEY_ID + "=" + feedId;
+        db.execSQL(sql);
+    }
+
+    /**
+     * Stores the values that are used to check if the feed changed since the last refresh.
+     */
+    public void setFeedValidators(long feedId, String etag, String lastModified, String contentHash) {
+        ContentValues values = new ContentValues();
+        values.put(KEY_ETAG, etag);
+        values.put(KEY_LASTUPDATE, lastModified);
+        values.put(KEY_CONTENT_HASH, contentHash);
+        db.update(TABLE_NAME_FEEDS, values, KEY_ID + "=?", new String[]{String.valueOf(feedId)});
+    }
+
     public void setFeedCustomTitle(long feedId, String customTitle) {
         ContentValues values = new ContentValues();
         values.put(KEY_CUSTOM_TITLE, customTitle);
@@ -897,7 +1101,7 @@ public class PodDBAdapter {
             db.delete(TABLE_NAME_QUEUE, null, null);
             for (int i = 0; i < queue.size(); i++) {
                 FeedItem item = queue.get(i);
-                values.put(KEY_ID, i);
+                values.put(KEY_ID, (i + 1) * QUEUE_KEY_GAP);
                 values.put(KEY_FEEDITEM, item.getId());
                 values.put(KEY_FEED, item.getFeed().getId());
                 db.insertWithOnConflict(TABLE_NAME_QUEUE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
@@ -914,6 +1118,174 @@ public class PodDBAdapter {
         db.delete(TABLE_NAME_QUEUE, null, null);
     }
 
+    /**
+     * Inserts an item into the queue without changing the rows of the other items.
+     *
+     * @param index Position of the item. Must be in range 0..queue size
+     * @return true if the queue should be renumbered, see {@link #renumberQueue()}
+     */
+    public boolean addQueueItem(FeedItem item, int index) {
+        boolean crowded = false;
+        try {
+            db.beginTransactionNonExclusive();
+            long[] neighbours = getQueueNeighbourKeys(index, item.getId());
+            crowded = isQueueCrowded(neighbours);
+            ContentValues values = new ContentValues();
+            values.put(KEY_ID, getQueueKeyBetween(neighbours));
+            values.put(KEY_FEEDITEM, item.getId());
+            values.put(KEY_FEED, item.getFeedId());
+            db.insertWithOnConflict(TABLE_NAME_QUEUE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+        return crowded;
+    }
+
+    /**
+     * Moves an item of the queue without changing the rows of the other items.
+     *
+     * @param index New position of the item. Must be in range 0..queue size - 1
+     * @return true if the queue should be renumbered, see {@link #renumberQueue()}
+     */
+    public boolean moveQueueItem(long itemId, int index) {
+        boolean crowded = false;
+        try {
+            db.beginTransactionNonExclusive();
+            long[] neighbours = getQueueNeighbourKeys(index, itemId);
+            crowded = isQueueCrowded(neighbours);
+            ContentValues values = new ContentValues();
+            values.put(KEY_ID, getQueueKeyBetween(neighbours));
+            db.update(TABLE_NAME_QUEUE, values, KEY_FEEDITEM + "=?", new String[]{String.valueOf(itemId)});
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+        return crowded;
+    }
+
+    public void removeQueueItems(long... itemIds) {
+        try {
+            db.beginTransactionNonExclusive();
+            for (int i = 0; i < itemIds.length; i += IN_OPERATOR_MAXIMUM) {
+                StringBuilder ids = new StringBuilder();
+                for (int j = i; j < Math.min(itemIds.length, i + IN_OPERATOR_MAXIMUM); j++) {
+                    if (ids.length() != 0) {
+                        ids.append(",");
+                    }
+                    ids.append(itemIds[j]);
+                }
+                db.delete(TABLE_NAME_QUEUE, KEY_FEEDITEM + " IN (" + ids + ")", null);
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Spreads the sort keys of the queue evenly again, so that there is room between all neighbours.
+     * The order of the queue does not change.
+     */
+    public void renumberQueue() {
+        Cursor cursor = db.query(TABLE_NAME_QUEUE, new String[]{KEY_FEEDITEM, KEY_FEED},
+                null, null, null, null, KEY_ID + " ASC");
+        long[] itemIds = new long[cursor.getCount()];
+        long[] feedIds = new long[cursor.getCount()];
+        for (int i = 0; cursor.moveToNext(); i++) {
+            itemIds[i] = cursor.getLong(0);
+            feedIds[i] = cursor.getLong(1);
+        }
+        cursor.close();
+
+        ContentValues values = new ContentValues();
+        try {
+            db.beginTransactionNonExclusive();
+            db.delete(TABLE_NAME_QUEUE, null, null);
+            for (int i = 0; i < itemIds.length; i++) {
+                values.put(KEY_ID, (i + 1) * QUEUE_KEY_GAP);
+                values.put(KEY_FEEDITEM, itemIds[i]);
+                values.put(KEY_FEED, feedIds[i]);
+                db.insert(TABLE_NAME_QUEUE, null, values);
+            }
+            db.setTransactionSuccessful();
+        } catch (SQLException e) {
+            Log.e(TAG, Log.getStackTraceString(e));
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the keys of the queue items that would be before and after an item inserted at the given index.
+     * If there is no room between them, the queue is renumbered first.
+     *
+     * @param ignoredItemId Item that is not counted, because it is the one that is moved
+     * @return the keys of the neighbours, {@code Long.MIN_VALUE} or {@code Long.MAX_VALUE} if there is none
+     */
+    private long[] getQueueNeighbourKeys(int index, long ignoredItemId) {
+        long[] neighbours = queryQueueNeighbourKeys(index, ignoredItemId);
+        if (neighbours[0] != Long.MIN_VALUE && neighbours[1] != Long.MAX_VALUE
+                && neighbours[1] - neighbours[0] < 2) {
+            renumberQueue();
+            neighbours = queryQueueNeighbourKeys(index, ignoredItemId);
+        }
+        return neighbours;
+    }
+
+    private long[] queryQueueNeighbourKeys(int index, long ignoredItemId) {
+        final String query = "SELECT " + KEY_ID + " FROM " + TABLE_NAME_QUEUE
+                + " WHERE " + KEY_FEEDITEM + " != " + ignoredItemId
+                + " ORDER BY " + KEY_ID + " LIMIT 2 OFFSET " + Math.max(0, index - 1);
+        long[] neighbours = {Long.MIN_VALUE, Long.MAX_VALUE};
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            if (index == 0) {
+                if (cursor.moveToFirst()) {
+                    neighbours[1] = cursor.getLong(0);
+                }
+            } else if (cursor.moveToFirst()) {
+                neighbours[0] = cursor.getLong(0);
+                if (cursor.moveToNext()) {
+                    neighbours[1] = cursor.getLong(0);
+                }
+            }
+        }
+        return neighbours;
+    }
+
+    private static long getQueueKeyBetween(long[] neighbours) {
+        if (neighbours[0] == Long.MIN_VALUE && neighbours[1] == Long.MAX_VALUE) {
+            return QUEUE_KEY_GAP;
+        } else if (neighbours[0] == Long.MIN_VALUE) {
+            return neighbours[1] - QUEUE_KEY_GAP;
+        } else if (neighbours[1] == Long.MAX_VALUE) {
+            return neighbours[0] + QUEUE_KEY_GAP;
+        }
+        return neighbours[0] + (neighbours[1] - neighbours[0]) / 2;
+    }
+
+    private static boolean isQueueCrowded(long[] neighbours) {
+        return neighbours[0] != Long.MIN_VALUE && neighbours[1] != Long.MAX_VALUE
+                && neighbours[1] - neighbours[0] < 2 * QUEUE_KEY_MIN_GAP;
+    }
+
+    /**
+     * Returns the ID of the item at the given position of the queue, or 0 if the queue is shorter.
+     */
+    public long getQueueItemIdAt(int index) {
+        final String query = "SELECT " + KEY_FEEDITEM + " FROM " + TABLE_NAME_QUEUE
+                + " ORDER BY " + KEY_ID + " LIMIT 1 OFFSET " + index;
+        try (Cursor cursor = db.rawQuery(query, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0;
+        }
+    }
+
     /**
      * Remove the listed items and their FeedMedia entries.
      */
@@ -936,6 +1308,8 @@ public class PodDBAdapter {
 
             db.beginTransactionNonExclusive();
             db.delete(TABLE_NAME_SIMPLECHAPTERS, KEY_FEEDITEM + " IN (" + itemIds + ")", null);
+            db.delete(TABLE_NAME_CHAPTER_CACHE, KEY_FEEDITEM + " IN (" + itemIds + ")", null);
+            db.delete(TABLE_NAME_CACHED_CHAPTERS, KEY_FEEDITEM + " IN (" + itemIds + ")", null);
             db.delete(TABLE_NAME_DOWNLOAD_LOG, KEY_FEEDFILETYPE + "=" + FeedMedia.FEEDFILETYPE_FEEDMEDIA
                             + " AND " + KEY_FEEDFILE + " IN (" + mediaIds + ")", null);
             db.delete(TABLE_NAME_FEED_MEDIA, KEY_ID + " IN (" + mediaIds + ")", null);
@@ -1011,9 +1385,27 @@ public class PodDBAdapter {
      */
     public final Cursor getItemsOfFeedCursor(final Feed feed, FeedItemFilter filter, SortOrder sortOrder,
                                              int offset, int limit) {
+        return getItemsOfFeedCursor(feed, filter, sortOrder, null, offset, limit);
+    }
+
+    /**
+     * Returns a cursor with the FeedItems of a Feed that come after the given item in the sort order.
+     *
+     * @param after The last item of the previous page, or null to start at the beginning.
+     */
+    public final Cursor getItemsOfFeedCursor(final Feed feed, FeedItemFilter filter, SortOrder sortOrder,
+                                             @Nullable FeedItem after, int limit) {
+        return getItemsOfFeedCursor(feed, filter, sortOrder, after, 0, limit);
+    }
+
+    private Cursor getItemsOfFeedCursor(final Feed feed, FeedItemFilter filter, SortOrder sortOrder,
+                                        @Nullable FeedItem after, int offset, int limit) {
         String orderByQuery = FeedItemSortQuery.generateFrom(sortOrder);
         String filterQuery = FeedItemFilterQuery.generateFrom(filter);
         String whereClauseAnd = "".equals(filterQuery) ? "" : " AND " + filterQuery;
+        if (after != null) {
+            whereClauseAnd += " AND " + FeedItemSortQuery.generateAfter(sortOrder, after);
+        }
         final String query = SELECT_FEED_ITEMS_AND_MEDIA
                 + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + feed.getId()
                 + whereClauseAnd
@@ -1022,6 +1414,59 @@ public class PodDBAdapter {
         return db.rawQuery(query, null);
     }
 
+    /**
+     * Returns a cursor with the items of a feed that have one of the given values in a column.
+     *
+     * @param column The column, including its table name, for example FeedItems.item_identifier
+     */
+    public final Cursor getItemsOfFeedByValueCursor(long feedId, String column, List<String> values) {
+        if (values.size() > IN_OPERATOR_MAXIMUM) {
+            throw new IllegalArgumentException("number of values must not be larger than " + IN_OPERATOR_MAXIMUM);
+        }
+        StringBuilder valuesString = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i != 0) {
+                valuesString.append(",");
+            }
+            valuesString.append(DatabaseUtils.sqlEscapeString(values.get(i)));
+        }
+        final String query = SELECT_FEED_ITEMS_AND_MEDIA
+                + " WHERE " + column + " IN (" + valuesString + ")"
+                + " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + feedId;
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Returns a cursor with the items of a feed that were published in one of the given time ranges.
+     */
+    public final Cursor getItemsOfFeedInTimeRangesCursor(long feedId, long[] rangeStarts, long[] rangeEnds) {
+        StringBuilder ranges = new StringBuilder();
+        for (int i = 0; i < rangeStarts.length; i++) {
+            if (i != 0) {
+                ranges.append(" OR ");
+            }
+            ranges.append(TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + " BETWEEN ")
+                    .append(rangeStarts[i]).append(" AND ").append(rangeEnds[i]);
+        }
+        final String query = SELECT_FEED_ITEMS_AND_MEDIA
+                + " WHERE (" + ranges + ")"
+                + " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + feedId;
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Returns a cursor with the IDs and descriptions of the given items.
+     */
+    public final Cursor getDescriptionsOfItemsCursor(List<Long> itemIds) {
+        if (itemIds.size() > IN_OPERATOR_MAXIMUM) {
+            throw new IllegalArgumentException("number of IDs must not be larger than " + IN_OPERATOR_MAXIMUM);
+        }
+        final String query = "SELECT " + KEY_ID + ", " + KEY_DESCRIPTION
+                + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_ID + " IN (" + TextUtils.join(",", itemIds) + ")";
+        return db.rawQuery(query, null);
+    }
+
     /**
      * Return the description and content_encoded of item
      */
@@ -1039,6 +1484,25 @@ public class PodDBAdapter {
         );
     }
 
+    /**
+     * Returns the fingerprint of the cached chapters together with the chapters, in their original order.
+     * Items without chapters have a single row where the chapter columns are null.
+     */
+    public final Cursor getCachedChaptersCursor(final long itemId) {
+        final String query = "SELECT " + TABLE_NAME_CHAPTER_CACHE + "." + KEY_CHAPTER_FINGERPRINT + ", "
+                + TABLE_NAME_CACHED_CHAPTERS + "." + KEY_ID + ", "
+                + TABLE_NAME_CACHED_CHAPTERS + "." + KEY_TITLE + ", "
+                + TABLE_NAME_CACHED_CHAPTERS + "." + KEY_START + ", "
+                + TABLE_NAME_CACHED_CHAPTERS + "." + KEY_LINK + ", "
+                + TABLE_NAME_CACHED_CHAPTERS + "." + KEY_IMAGE_URL
+                + " FROM " + TABLE_NAME_CHAPTER_CACHE
+                + " LEFT JOIN " + TABLE_NAME_CACHED_CHAPTERS + " ON "
+                + TABLE_NAME_CACHED_CHAPTERS + "." + KEY_FEEDITEM + "=" + TABLE_NAME_CHAPTER_CACHE + "." + KEY_FEEDITEM
+                + " WHERE " + TABLE_NAME_CHAPTER_CACHE + "." + KEY_FEEDITEM + "=" + itemId
+                + " ORDER BY " + TABLE_NAME_CACHED_CHAPTERS + ".rowid";
+        return db.rawQuery(query, null);
+    }
+
     public final Cursor getDownloadLog(final int feedFileType, final long feedFileId, final long limit) {
         final String query = "SELECT * FROM " + TABLE_NAME_DOWNLOAD_LOG +
                 " WHERE " + KEY_FEEDFILE + "=" + feedFileId + " AND " + KEY_FEEDFILETYPE + "=" + feedFileType
@@ -1123,11 +1587,57 @@ public class PodDBAdapter {
     }
 
     public final Cursor getEpisodesCursor(int offset, int limit, FeedItemFilter filter, SortOrder sortOrder) {
+        return getEpisodesCursor(null, offset, limit, filter, sortOrder);
+    }
+
+    /**
+     * Returns a cursor with the episodes that come after the given item in the sort order.
+     *
+     * @param after The last item of the previous page, or null to start at the beginning.
+     */
+    public final Cursor getEpisodesCursor(@Nullable FeedItem after, int limit,
+                                          FeedItemFilter filter, SortOrder sortOrder) {
+        return getEpisodesCursor(after, 0, limit, filter, sortOrder);
+    }
+
+    private Cursor getEpisodesCursor(@Nullable FeedItem after, int offset, int limit,
+                                     FeedItemFilter filter, SortOrder sortOrder) {
         String orderByQuery = FeedItemSortQuery.generateFrom(sortOrder);
         String filterQuery = FeedItemFilterQuery.generateFrom(filter);
+        if (after != null) {
+            String afterQuery = FeedItemSortQuery.generateAfter(sortOrder, after);
+            filterQuery = "".equals(filterQuery) ? afterQuery : filterQuery + " AND " + afterQuery;
+        }
         String whereClause = "".equals(filterQuery) ? "" : " WHERE " + filterQuery;
         final String query = SELECT_FEED_ITEMS_AND_MEDIA + whereClause
-                + "ORDER BY " +  orderByQuery + " LIMIT " + offset + ", " + limit;
+                + " ORDER BY " +  orderByQuery + " LIMIT " + offset + ", " + limit;
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Returns a cursor with the columns that are needed to upload the state of played episodes:
+     * item ID, item identifier, feed ID, feed download URL, media download URL and media duration.
+     * Items without media and items of feeds that the user is not subscribed to are not included.
+     *
+     * @param afterItemId Only return items with a higher ID
+     */
+    public final Cursor getPlayedEpisodesForSyncCursor(long afterItemId, int limit) {
+        final String query = "SELECT " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID
+                + ", " + TABLE_NAME_FEED_ITEMS + "." + KEY_ITEM_IDENTIFIER
+                + ", " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED
+                + ", " + TABLE_NAME_FEEDS + "." + KEY_DOWNLOAD_URL
+                + ", " + TABLE_NAME_FEED_MEDIA + "." + KEY_DOWNLOAD_URL
+                + ", " + TABLE_NAME_FEED_MEDIA + "." + KEY_DURATION
+                + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " INNER JOIN " + TABLE_NAME_FEED_MEDIA
+                + " ON " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + "=" + TABLE_NAME_FEED_MEDIA + "." + KEY_FEEDITEM
+                + " INNER JOIN " + TABLE_NAME_FEEDS
+                + " ON " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_READ + "=" + FeedItem.PLAYED
+                + " AND " + TABLE_NAME_FEEDS + "." + KEY_STATE + "=" + Feed.STATE_SUBSCRIBED
+                + " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + ">" + afterItemId
+                + " ORDER BY " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID
+                + " LIMIT " + limit;
         return db.rawQuery(query, null);
     }
 
@@ -1184,6 +1694,19 @@ public class PodDBAdapter {
         return db.rawQuery(query, null);
     }
 
+    /**
+     * Returns the feed with the given identifying value. If there are multiple, returns the first one
+     * in the same order as {@link #getAllFeedsCursor()}.
+     */
+    public final Cursor getFeedCursorByIdentifyingValue(String identifyingValue) {
+        final String query = "SELECT " + KEYS_FEED
+                + " FROM " + TABLE_NAME_FEEDS
+                + " WHERE " + TABLE_NAME_FEEDS + "." + KEY_IDENTIFYING_VALUE + "=?"
+                + " ORDER BY " + TABLE_NAME_FEEDS + "." + KEY_TITLE + " COLLATE NOCASE ASC"
+                + " LIMIT 1";
+        return db.rawQuery(query, new String[]{identifyingValue});
+    }
+
     public final Cursor getFeedItemCursor(final String id) {
         return getFeedItemCursor(new String[]{id});
     }
@@ -1230,6 +1753,30 @@ public class PodDBAdapter {
         return db.rawQuery(query, null);
     }
 
+    /**
+     * Returns a cursor with the items of subscribed or unsubscribed feeds that have one of the given
+     * values in a column.
+     *
+     * @param column The column, including its table name, for example FeedItems.item_identifier
+     */
+    public final Cursor getFeedItemsByValueCursor(String column, List<String> values) {
+        if (values.size() > IN_OPERATOR_MAXIMUM) {
+            throw new IllegalArgumentException("number of values must not be larger than " + IN_OPERATOR_MAXIMUM);
+        }
+        StringBuilder valuesString = new StringBuilder();
+        for (int i = 0; i < values.size(); i++) {
+            if (i != 0) {
+                valuesString.append(",");
+            }
+            valuesString.append(DatabaseUtils.sqlEscapeString(values.get(i)));
+        }
+        final String query = SELECT_FEED_ITEMS_AND_MEDIA
+                + " INNER JOIN " + TABLE_NAME_FEEDS
+                + " ON " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + "=" + TABLE_NAME_FEEDS + "." + KEY_ID
+                + " WHERE " + column + " IN (" + valuesString + ")";
+        return db.rawQuery(query, null);
+    }
+
     public final Cursor getMonthlyStatisticsCursor() {
         final String query = "SELECT SUM(" + KEY_PLAYED_DURATION + ") AS total_duration"
                 + ", strftime('%m', datetime(" + KEY_LAST_PLAYED_TIME_STATISTICS + "/1000, 'unixepoch')) AS month"
@@ -1381,14 +1928,14 @@ public class PodDBAdapter {
         return conditionalFeedCounterRead(whereRead, feedIds);
     }
 
-    public final Map<Long, Long> getMostRecentItemDates() {
+    public final LongLongMap getMostRecentItemDates() {
         final String query = "SELECT " + KEY_FEED + ","
                 + " MAX(" + TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + ") AS most_recent_pubdate"
                 + " FROM " + TABLE_NAME_FEED_ITEMS
                 + " GROUP BY " + KEY_FEED;
 
         Cursor c = db.rawQuery(query, null);
-        Map<Long, Long> result = new HashMap<>();
+        LongLongMap result = new LongLongMap(c.getCount());
         if (c.moveToFirst()) {
             do {
                 long feedId = c.getLong(0);
@@ -1401,92 +1948,214 @@ public class PodDBAdapter {
     }
 
     /**
-     * Uses DatabaseUtils to escape a search query and removes ' at the
-     * beginning and the end of the string returned by the escape method.
+     * Release dates of the most recent episodes of a feed, newest first.
      */
-    private String[] prepareSearchQuery(String query) {
-        String[] queryWords = query.split("\\s+");
-        for (int i = 0; i < queryWords.length; ++i) {
-            StringBuilder builder = new StringBuilder();
-            DatabaseUtils.appendEscapedSQLString(builder, queryWords[i]);
-            builder.deleteCharAt(0);
-            builder.deleteCharAt(builder.length() - 1);
-            queryWords[i] = builder.toString();
-        }
+    public Cursor getReleaseDatesCursor(long feedId, int limit) {
+        final String query = "SELECT " + KEY_PUBDATE
+                + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_FEED + "=" + feedId + " AND " + KEY_PUBDATE + ">0"
+                + " ORDER BY " + KEY_PUBDATE + " DESC"
+                + " LIMIT " + limit;
+        return db.rawQuery(query, null);
+    }
+
+    /**
+     * Average time between the releases of the episodes of each feed, considering only episodes released
+     * after the given date. Feeds with less than two such episodes are not included.
+     */
+    public final Map<Long, Long> getAverageReleaseIntervals(long releasedAfter) {
+        final String query = "SELECT " + KEY_FEED + ","
+                + " (MAX(" + KEY_PUBDATE + ") - MIN(" + KEY_PUBDATE + ")) / (COUNT(*) - 1) AS release_interval"
+                + " FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + KEY_PUBDATE + " > " + releasedAfter
+                + " GROUP BY " + KEY_FEED
+                + " HAVING COUNT(*) > 1";
 
-        return queryWords;
+        Cursor c = db.rawQuery(query, null);
+        Map<Long, Long> result = new HashMap<>();
+        if (c.moveToFirst()) {
+            do {
+                long feedId = c.getLong(0);
+                long interval = c.getLong(1);
+                result.put(feedId, interval);
+            } while (c.moveToNext());
+        }
+        c.close();
+        return result;
     }
 
     /**
-     * Searches for the given query in various values of all items or the items
-     * of a specified feed.
+     * Searches for the given query in the title and description of all items or the items
+     * of a specified feed. Items with all words in their title are listed first.
      *
+     * @param matchQuery An FTS MATCH expression, see
+     *                   {@link de.danoeh.antennapod.storage.database.mapper.FullTextSearchQuery}
+     * @param titleMatchQuery The same expression, restricted to the title column
      * @return A cursor with all search results in SEL_FI_EXTRA selection.
      */
-    public Cursor searchItems(long feedID, String searchQuery, int state) {
-        final String[] queryWords = prepareSearchQuery(searchQuery);
-
-        String queryFeedId;
-        if (feedID != 0) {
-            // search items in specific feed
-            queryFeedId = KEY_FEED + " = " + feedID;
-        } else {
-            // search through all items
-            queryFeedId = "1 = 1";
-        }
+    public Cursor searchItems(long feedID, String matchQuery, String titleMatchQuery, int state,
+                              int offset, int limit) {
+        final String matchingIds = "SELECT docid FROM " + TABLE_NAME_FEED_ITEMS_SEARCH
+                + " WHERE " + TABLE_NAME_FEED_ITEMS_SEARCH + " MATCH ?";
+        String query = SELECT_FEED_ITEMS_AND_MEDIA_WITH_DESCRIPTION
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + " IN (" + matchingIds + ")"
+                + getSearchScope(feedID, state)
+                + " ORDER BY " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + " IN (" + matchingIds + ") DESC, "
+                + TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + " DESC"
+                + " LIMIT " + offset + ", " + limit;
+        return db.rawQuery(query, new String[]{matchQuery, titleMatchQuery});
+    }
 
-        String queryStart = SELECT_FEED_ITEMS_AND_MEDIA_WITH_DESCRIPTION + " WHERE " + queryFeedId;
-        if (state == Feed.STATE_SUBSCRIBED && feedID == 0) {
-            queryStart += " AND " + SELECT_WHERE_FEED_IS_SUBSCRIBED;
+    /**
+     * @return The number of items that {@link #searchItems} finds in total
+     */
+    public int getSearchItemsCount(long feedID, String matchQuery, int state) {
+        final String query = "SELECT COUNT(*) FROM " + TABLE_NAME_FEED_ITEMS
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + " IN (SELECT docid FROM "
+                + TABLE_NAME_FEED_ITEMS_SEARCH + " WHERE " + TABLE_NAME_FEED_ITEMS_SEARCH + " MATCH ?)"
+                + getSearchScope(feedID, state);
+        try (Cursor cursor = db.rawQuery(query, new String[]{matchQuery})) {
+            return cursor.moveToFirst() ? cursor.getInt(0) : 0;
         }
-        queryStart += " AND (";
-        StringBuilder sb = new StringBuilder(queryStart);
+    }
 
-        for (int i = 0; i < queryWords.length; i++) {
-            sb
-                    .append("(")
-                    .append(KEY_DESCRIPTION + " LIKE '%").append(queryWords[i])
-                    .append("%' OR ")
-                    .append(KEY_TITLE).append(" LIKE '%").append(queryWords[i])
-                    .append("%') ");
+    /**
+     * Finds items that contain the words in the middle of their title, but that the index does not find.
+     * This has to look at every title, so it is only used after all results of {@link #searchItems}.
+     *
+     * @param containsPatterns LIKE patterns of the words
+     * @return A cursor with the items in SEL_FI_EXTRA selection, newest first
+     */
+    public Cursor searchItemTitles(long feedID, String matchQuery, List<String> containsPatterns, int state,
+                                   int offset, int limit) {
+        List<String> args = new ArrayList<>();
+        args.add(matchQuery);
+        String query = SELECT_FEED_ITEMS_AND_MEDIA_WITH_DESCRIPTION
+                + " WHERE " + TABLE_NAME_FEED_ITEMS + "." + KEY_ID + " NOT IN (SELECT docid FROM "
+                + TABLE_NAME_FEED_ITEMS_SEARCH + " WHERE " + TABLE_NAME_FEED_ITEMS_SEARCH + " MATCH ?)"
+                + " AND " + containsAllWords(containsPatterns, args, TABLE_NAME_FEED_ITEMS + "." + KEY_TITLE)
+                + getSearchScope(feedID, state)
+                + " ORDER BY " + TABLE_NAME_FEED_ITEMS + "." + KEY_PUBDATE + " DESC"
+                + " LIMIT " + offset + ", " + limit;
+        return db.rawQuery(query, args.toArray(new String[0]));
+    }
 
-            if (i != queryWords.length - 1) {
-                sb.append("AND ");
-            }
+    private static String getSearchScope(long feedID, int state) {
+        if (feedID != 0) {
+            // search items in specific feed
+            return " AND " + TABLE_NAME_FEED_ITEMS + "." + KEY_FEED + " = " + feedID;
+        } else if (state == Feed.STATE_SUBSCRIBED) {
+            return " AND " + SELECT_WHERE_FEED_IS_SUBSCRIBED;
         }
-
-        sb.append(") ORDER BY " + KEY_PUBDATE + " DESC LIMIT 300");
-
-        return db.rawQuery(sb.toString(), null);
+        return "";
     }
 
     /**
      * Searches for the given query in various values of all feeds.
+     * Feeds with all words in their title are listed first.
+     * There are only few feeds, so they are also searched for the words at any position.
      *
+     * @param matchQuery An FTS MATCH expression, see
+     *                   {@link de.danoeh.antennapod.storage.database.mapper.FullTextSearchQuery}
+     * @param titleMatchQuery The same expression, restricted to the title column
+     * @param containsPatterns LIKE patterns of the words
      * @return A cursor with all search results in SEL_FI_EXTRA selection.
      */
-    public Cursor searchFeeds(String searchQuery, int state) {
-        final String[] queryWords = prepareSearchQuery(searchQuery);
-        String queryStart = "SELECT " + KEYS_FEED + " FROM " + TABLE_NAME_FEEDS
-                + " WHERE " + KEY_STATE + " = " + state;
-        StringBuilder sb = new StringBuilder(queryStart);
+    public Cursor searchFeeds(String matchQuery, String titleMatchQuery, List<String> containsPatterns,
+                              int state, int offset, int limit) {
+        final String matchingIds = "SELECT docid FROM " + TABLE_NAME_FEEDS_SEARCH
+                + " WHERE " + TABLE_NAME_FEEDS_SEARCH + " MATCH ?";
+        List<String> args = new ArrayList<>();
+        args.add(matchQuery);
+        String query = "SELECT " + KEYS_FEED + " FROM " + TABLE_NAME_FEEDS
+                + " WHERE " + KEY_STATE + " = " + state
+                + " AND (" + TABLE_NAME_FEEDS + "." + KEY_ID + " IN (" + matchingIds + ")"
+                + " OR " + containsAllWords(containsPatterns, args,
+                        KEY_TITLE, KEY_CUSTOM_TITLE, KEY_AUTHOR, KEY_DESCRIPTION) + ")";
+        args.add(titleMatchQuery);
+        query += " ORDER BY (" + TABLE_NAME_FEEDS + "." + KEY_ID + " IN (" + matchingIds + ")"
+                + " OR " + containsAllWords(containsPatterns, args, KEY_TITLE, KEY_CUSTOM_TITLE) + ") DESC, "
+                + TABLE_NAME_FEEDS + "." + KEY_TITLE + " COLLATE NOCASE ASC"
+                + " LIMIT " + offset + ", " + limit;
+        return db.rawQuery(query, args.toArray(new String[0]));
+    }
 
-        for (int i = 0; i < queryWords.length; i++) {
-            sb
-                    .append(" AND (")
-                    .append(KEY_TITLE).append(" LIKE '%").append(queryWords[i])
-                    .append("%' OR ")
-                    .append(KEY_CUSTOM_TITLE).append(" LIKE '%").append(queryWords[i])
-                    .append("%' OR ")
-                    .append(KEY_AUTHOR).append(" LIKE '%").append(queryWords[i])
-                    .append("%' OR ")
-                    .append(KEY_DESCRIPTION).append(" LIKE '%").append(queryWords[i])
-                    .append("%') ");
+    /**
+     * @param args The patterns are added to the arguments in the order of the placeholders
+     * @return A condition that is true if every word is found in at least one of the columns
+     */
+    private static String containsAllWords(List<String> patterns, List<String> args, String... columns) {
+        if (patterns.isEmpty()) {
+            return "0";
         }
+        StringBuilder builder = new StringBuilder("(");
+        for (int word = 0; word < patterns.size(); word++) {
+            if (word > 0) {
+                builder.append(" AND ");
+            }
+            builder.append("(");
+            for (int column = 0; column < columns.length; column++) {
+                if (column > 0) {
+                    builder.append(" OR ");
+                }
+                builder.append(columns[column]).append(" LIKE ?");
+                args.add(patterns.get(word));
+            }
+            builder.append(")");
+        }
+        return builder.append(")").toString();
+    }
 
-        sb.append(" ORDER BY " + KEY_TITLE + " ASC LIMIT 300");
+    /**
+     * Creates the full-text search indexes and the triggers that keep them up to date.
+     * The index is only updated if one of the searchable columns actually changes.
+     */
+    static void createSearchIndexes(SQLiteDatabase db) {
+        createSearchIndex(db, TABLE_NAME_FEED_ITEMS_SEARCH, TABLE_NAME_FEED_ITEMS, FEED_ITEMS_SEARCH_COLUMNS);
+        createSearchIndex(db, TABLE_NAME_FEEDS_SEARCH, TABLE_NAME_FEEDS, FEEDS_SEARCH_COLUMNS);
+    }
 
-        return db.rawQuery(sb.toString(), null);
+    /**
+     * Fills the full-text search indexes with the current content of their tables.
+     */
+    static void rebuildSearchIndexes(SQLiteDatabase db) {
+        db.execSQL("INSERT INTO " + TABLE_NAME_FEED_ITEMS_SEARCH + "(" + TABLE_NAME_FEED_ITEMS_SEARCH
+                + ") VALUES('rebuild')");
+        db.execSQL("INSERT INTO " + TABLE_NAME_FEEDS_SEARCH + "(" + TABLE_NAME_FEEDS_SEARCH
+                + ") VALUES('rebuild')");
+    }
+
+    private static void createSearchIndex(SQLiteDatabase db, String index, String table, String[] columns) {
+        final String columnList = TextUtils.join(", ", columns);
+        final String createTable = "CREATE VIRTUAL TABLE " + index + " USING fts4(content=" + table + ", "
+                + columnList;
+        try {
+            db.execSQL(createTable + ", tokenize=unicode61)");
+        } catch (SQLException e) {
+            // Some old SQLite versions do not ship the unicode61 tokenizer
+            Log.w(TAG, "Creating search index with default tokenizer: " + e.getMessage());
+            db.execSQL(createTable + ")");
+        }
+
+        StringBuilder changed = new StringBuilder();
+        StringBuilder newValues = new StringBuilder();
+        for (String column : columns) {
+            if (changed.length() != 0) {
+                changed.append(" OR ");
+                newValues.append(", ");
+            }
+            changed.append("old.").append(column).append(" IS NOT new.").append(column);
+            newValues.append("new.").append(column);
+        }
+        final String deleteOld = " BEGIN DELETE FROM " + index + " WHERE docid = old." + KEY_ID + "; END";
+        final String insertNew = " BEGIN INSERT INTO " + index + "(docid, " + columnList + ")"
+                + " VALUES (new." + KEY_ID + ", " + newValues + "); END";
+        db.execSQL("CREATE TRIGGER " + index + "_before_update BEFORE UPDATE OF " + columnList + " ON " + table
+                + " WHEN " + changed + deleteOld);
+        db.execSQL("CREATE TRIGGER " + index + "_before_delete BEFORE DELETE ON " + table + deleteOld);
+        db.execSQL("CREATE TRIGGER " + index + "_after_update AFTER UPDATE OF " + columnList + " ON " + table
+                + " WHEN " + changed + insertNew);
+        db.execSQL("CREATE TRIGGER " + index + "_after_insert AFTER INSERT ON " + table + insertNew);
     }
 
     /**
@@ -1533,6 +2202,10 @@ public class PodDBAdapter {
          */
         public PodDBHelper(final Context context, final String name, final CursorFactory factory) {
             super(context, name, factory, VERSION, new PodDbErrorHandler());
+            setWriteAheadLoggingEnabled(true);
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+                setIdleConnectionTimeout(IDLE_CONNECTION_TIMEOUT_MS);
+            }
         }
 
         @Override
@@ -1544,6 +2217,8 @@ public class PodDBAdapter {
             db.execSQL(CREATE_TABLE_QUEUE);
             db.execSQL(CREATE_TABLE_SIMPLECHAPTERS);
             db.execSQL(CREATE_TABLE_FAVORITES);
+            db.execSQL(CREATE_TABLE_CHAPTER_CACHE);
+            db.execSQL(CREATE_TABLE_CACHED_CHAPTERS);
 
             db.execSQL(CREATE_INDEX_FEEDITEMS_FEED);
             db.execSQL(CREATE_INDEX_FEEDITEMS_PUBDATE);
@@ -1551,6 +2226,11 @@ public class PodDBAdapter {
             db.execSQL(CREATE_INDEX_FEEDMEDIA_FEEDITEM);
             db.execSQL(CREATE_INDEX_QUEUE_FEEDITEM);
             db.execSQL(CREATE_INDEX_SIMPLECHAPTERS_FEEDITEM);
+            db.execSQL(CREATE_INDEX_CACHED_CHAPTERS_FEEDITEM);
+            db.execSQL(CREATE_INDEX_FEEDITEMS_ITEM_IDENTIFIER);
+            db.execSQL(CREATE_INDEX_FEEDMEDIA_DOWNLOAD_URL);
+            db.execSQL(CREATE_INDEX_FEEDS_IDENTIFYING_VALUE);
+            createSearchIndexes(db);
         }
 
         @Override
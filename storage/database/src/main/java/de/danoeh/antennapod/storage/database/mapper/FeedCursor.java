@@ -35,6 +35,10 @@ public class FeedCursor extends CursorWrapper {
     private final int indexLastUpdateFailed;
     private final int indexImageUrl;
     private final int indexState;
+    private final int indexNextRefreshDue;
+    private final int indexUnchangedRefreshes;
+    private final int indexEtag;
+    private final int indexContentHash;
 
     public FeedCursor(Cursor cursor) {
         super(new FeedPreferencesCursor(cursor));
@@ -60,6 +64,10 @@ public class FeedCursor extends CursorWrapper {
         indexLastUpdateFailed = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_LAST_UPDATE_FAILED);
         indexImageUrl = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_IMAGE_URL);
         indexState = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_STATE);
+        indexNextRefreshDue = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_NEXT_REFRESH_DUE);
+        indexUnchangedRefreshes = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_UNCHANGED_REFRESHES);
+        indexEtag = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_ETAG);
+        indexContentHash = cursor.getColumnIndexOrThrow(PodDBAdapter.KEY_CONTENT_HASH);
     }
 
     /**
@@ -89,6 +97,10 @@ public class FeedCursor extends CursorWrapper {
                 SortOrder.fromCodeString(getString(indexSortOrder)),
                 getInt(indexLastUpdateFailed) > 0,
                 getInt(indexState));
+        feed.setNextRefreshDue(getLong(indexNextRefreshDue));
+        feed.setUnchangedRefreshes(getInt(indexUnchangedRefreshes));
+        feed.setEtag(getString(indexEtag));
+        feed.setContentHash(getString(indexContentHash));
         feed.setPreferences(preferencesCursor.getFeedPreferences());
         return feed;
     }
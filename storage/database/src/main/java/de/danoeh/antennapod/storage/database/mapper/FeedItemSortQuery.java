@@ -1,39 +1,115 @@
 package de.danoeh.antennapod.storage.database.mapper;
 
+import android.database.DatabaseUtils;
+import androidx.annotation.NonNull;
+import de.danoeh.antennapod.model.feed.FeedItem;
+import de.danoeh.antennapod.model.feed.FeedMedia;
 import de.danoeh.antennapod.model.feed.SortOrder;
 import de.danoeh.antennapod.storage.database.PodDBAdapter;
 import de.danoeh.antennapod.storage.preferences.UserPreferences;
 
 public class FeedItemSortQuery {
+    private static final String KEY_ITEM_ID = PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_ID;
+
+    /**
+     * Generates the ORDER BY clause of the sort order. Items with the same sort key are sorted by their ID,
+     * so that the order is stable and can be used for {@link #generateAfter}.
+     */
     public static String generateFrom(SortOrder sortOrder) {
+        sortOrder = resolve(sortOrder);
+        String direction = isDescending(sortOrder) ? " DESC" : " ASC";
+        return getSortKeyColumn(sortOrder) + direction + ", " + KEY_ITEM_ID + direction;
+    }
+
+    /**
+     * Generates a condition for keyset pagination: it matches the items that come after the given item
+     * in the sort order. Unlike an offset, this does not need to skip over the items before.
+     */
+    public static String generateAfter(SortOrder sortOrder, @NonNull FeedItem lastItem) {
+        sortOrder = resolve(sortOrder);
+        String column = getSortKeyColumn(sortOrder);
+        Object key = getSortKey(sortOrder, lastItem);
+        String value = key instanceof String ? DatabaseUtils.sqlEscapeString((String) key) : String.valueOf(key);
+        String operator = isDescending(sortOrder) ? "<" : ">";
+        // The first part can be answered from an index on the column, the second one decides ties
+        return "(" + column + " " + operator + "= " + value
+                + " AND (" + column + " " + operator + " " + value
+                + " OR " + KEY_ITEM_ID + " " + operator + " " + lastItem.getId() + "))";
+    }
+
+    private static SortOrder resolve(SortOrder sortOrder) {
         if (sortOrder == null || SortOrder.GLOBAL_DEFAULT.equals(sortOrder)) {
-            sortOrder = UserPreferences.getPrefGlobalSortedOrder();
+            return UserPreferences.getPrefGlobalSortedOrder();
         }
+        return sortOrder;
+    }
+
+    private static boolean isDescending(SortOrder sortOrder) {
+        switch (sortOrder) {
+            case EPISODE_TITLE_A_Z:
+            case DURATION_SHORT_LONG:
+            case SIZE_SMALL_LARGE:
+            case DATE_OLD_NEW:
+            case EPISODE_FILENAME_A_Z:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Columns that can be NULL are compared with a replacement value. NULL is smaller than
+     * any other value in SQLite, so the replacement does not change the order.
+     */
+    private static String getSortKeyColumn(SortOrder sortOrder) {
         switch (sortOrder) {
             case EPISODE_TITLE_A_Z:
-                return PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_TITLE + " " + "ASC";
             case EPISODE_TITLE_Z_A:
-                return PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_TITLE + " " + "DESC";
+                return "IFNULL(" + PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_TITLE + ", '')";
             case DURATION_SHORT_LONG:
-                return PodDBAdapter.TABLE_NAME_FEED_MEDIA + "." + PodDBAdapter.KEY_DURATION + " " + "ASC";
             case DURATION_LONG_SHORT:
-                return PodDBAdapter.TABLE_NAME_FEED_MEDIA + "." + PodDBAdapter.KEY_DURATION + " " + "DESC";
+                return "IFNULL(" + PodDBAdapter.TABLE_NAME_FEED_MEDIA + "." + PodDBAdapter.KEY_DURATION + ", 0)";
             case SIZE_SMALL_LARGE:
-                return PodDBAdapter.TABLE_NAME_FEED_MEDIA + "." + PodDBAdapter.KEY_SIZE + " " + "ASC";
             case SIZE_LARGE_SMALL:
-                return PodDBAdapter.TABLE_NAME_FEED_MEDIA + "." + PodDBAdapter.KEY_SIZE + " " + "DESC";
+                return "IFNULL(" + PodDBAdapter.TABLE_NAME_FEED_MEDIA + "." + PodDBAdapter.KEY_SIZE + ", 0)";
             case COMPLETION_DATE_NEW_OLD:
-                return PodDBAdapter.TABLE_NAME_FEED_MEDIA + "."
-                        + PodDBAdapter.KEY_LAST_PLAYED_TIME_HISTORY + " " + "DESC";
+                return "IFNULL(" + PodDBAdapter.TABLE_NAME_FEED_MEDIA + "."
+                        + PodDBAdapter.KEY_LAST_PLAYED_TIME_HISTORY + ", 0)";
+            case EPISODE_FILENAME_A_Z:
+            case EPISODE_FILENAME_Z_A:
+                return "IFNULL(" + PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_LINK + ", '')";
             case DATE_OLD_NEW:
-                return PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_PUBDATE + " " + "ASC";
+            case DATE_NEW_OLD:
+            default:
+                return PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_PUBDATE;
+        }
+    }
+
+    /**
+     * The value of the sort key column of the item, as it is stored in the database.
+     */
+    private static Object getSortKey(SortOrder sortOrder, FeedItem item) {
+        FeedMedia media = item.getMedia();
+        switch (sortOrder) {
+            case EPISODE_TITLE_A_Z:
+            case EPISODE_TITLE_Z_A:
+                return item.getTitle() != null ? item.getTitle() : "";
+            case DURATION_SHORT_LONG:
+            case DURATION_LONG_SHORT:
+                return media != null ? media.getDuration() : 0;
+            case SIZE_SMALL_LARGE:
+            case SIZE_LARGE_SMALL:
+                return media != null ? media.getSize() : 0;
+            case COMPLETION_DATE_NEW_OLD:
+                return media != null && media.getLastPlayedTimeHistory() != null
+                        ? media.getLastPlayedTimeHistory().getTime() : 0;
             case EPISODE_FILENAME_A_Z:
-                return PodDBAdapter.KEY_LINK + " " + "ASC";
             case EPISODE_FILENAME_Z_A:
-                return PodDBAdapter.KEY_LINK + " " + "DESC";
+                return item.getLink() != null ? item.getLink() : "";
+            case DATE_OLD_NEW:
             case DATE_NEW_OLD:
             default:
-                return PodDBAdapter.TABLE_NAME_FEED_ITEMS + "." + PodDBAdapter.KEY_PUBDATE + " " + "DESC";
+                return item.getPubDate() != null ? item.getPubDate().getTime() : 0;
         }
     }
-}
\ No newline at end of file
+}
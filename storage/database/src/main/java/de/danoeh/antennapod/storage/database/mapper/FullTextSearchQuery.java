@@ -0,0 +1,68 @@
+package de.danoeh.antennapod.storage.database.mapper;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Converts a search query typed by the user into an FTS MATCH expression.
+ * Every word becomes a prefix query, and all words need to match (implicit AND).
+ */
+public class FullTextSearchQuery {
+    private FullTextSearchQuery() {
+    }
+
+    @NonNull
+    public static String generateFrom(String query) {
+        return generateFrom(query, null);
+    }
+
+    /**
+     * @param column If not null, only matches the given column of the search index.
+     * @return The MATCH expression, or an empty string if the query does not contain any searchable word.
+     */
+    @NonNull
+    public static String generateFrom(String query, @Nullable String column) {
+        StringBuilder builder = new StringBuilder();
+        for (String word : getWords(query)) {
+            if (builder.length() != 0) {
+                builder.append(' ');
+            }
+            if (column != null) {
+                builder.append(column).append(':');
+            }
+            builder.append(word).append('*');
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Splits the query at everything the tokenizer would split at, so that no FTS operators or quotes remain.
+     */
+    @NonNull
+    public static List<String> getWords(String query) {
+        List<String> words = new ArrayList<>();
+        if (query == null) {
+            return words;
+        }
+        for (String word : query.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    /**
+     * The index only finds words by their beginning. This LIKE pattern finds the word anywhere,
+     * for example "cast" in "podcast" or a part of a title that is not separated by spaces.
+     * Words only contain letters and digits, so nothing needs to be escaped.
+     */
+    @NonNull
+    public static String toContainsPattern(String word) {
+        return "%" + word + "%";
+    }
+}
@@ -0,0 +1,102 @@
+package de.danoeh.antennapod.storage.database;
+
+import de.danoeh.antennapod.event.EpisodeChangeEvent;
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class EpisodeChangePublisherTest {
+    private final List<EpisodeChangeEvent> events = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        EpisodeChangePublisher.flush();
+        EventBus.getDefault().register(this);
+    }
+
+    @After
+    public void tearDown() {
+        EventBus.getDefault().unregister(this);
+    }
+
+    @Subscribe
+    public void onEpisodesChanged(EpisodeChangeEvent event) {
+        events.add(event);
+    }
+
+    @Test
+    public void testChangesOfSeveralFeedsArePostedOnce() {
+        for (long feedId = 1; feedId <= 500; feedId++) {
+            EpisodeChangeEvent changes = new EpisodeChangeEvent();
+            changes.feedChanged(feedId);
+            changes.itemInserted(feedId, feedId * 10);
+            changes.itemUpdated(feedId, feedId * 10 + 1);
+            EpisodeChangePublisher.publish(changes);
+        }
+        EpisodeChangePublisher.flush();
+
+        assertEquals(1, events.size());
+        EpisodeChangeEvent event = events.get(0);
+        assertEquals(500, event.getFeedIds().size());
+        assertEquals(500, event.getInsertedItemIds().size());
+        assertEquals(500, event.getUpdatedItemIds().size());
+        assertTrue(event.getDeletedItemIds().isEmpty());
+    }
+
+    @Test
+    public void testEmptyChangesAreNotPosted() {
+        EpisodeChangePublisher.publish(new EpisodeChangeEvent());
+        assertNull(EpisodeChangePublisher.flush());
+        assertTrue(events.isEmpty());
+    }
+
+    @Test
+    public void testDelayedPost() throws InterruptedException {
+        EpisodeChangeEvent changes = new EpisodeChangeEvent();
+        changes.feedChanged(1);
+        EpisodeChangePublisher.publish(changes);
+        assertTrue(events.isEmpty());
+        Thread.sleep(EpisodeChangePublisher.COALESCE_MILLIS * 2);
+        assertEquals(1, events.size());
+    }
+
+    @Test
+    public void testMerge() {
+        EpisodeChangeEvent first = new EpisodeChangeEvent();
+        first.itemInserted(1, 10);
+        first.itemInserted(1, 11);
+        first.itemUpdated(1, 12);
+        first.itemUpdated(1, 13);
+        first.itemDeleted(2, 20);
+
+        EpisodeChangeEvent second = new EpisodeChangeEvent();
+        second.itemUpdated(1, 10); // Still new for subscribers
+        second.itemDeleted(1, 11); // Never seen by subscribers
+        second.itemDeleted(1, 12);
+        second.itemInserted(2, 20); // Stored again
+        second.feedChanged(3);
+
+        first.merge(second);
+        assertEquals(new HashSet<>(Arrays.asList(1L, 2L, 3L)), first.getFeedIds());
+        assertEquals(Collections.singleton(10L), first.getInsertedItemIds());
+        assertEquals(new HashSet<>(Arrays.asList(13L, 20L)), first.getUpdatedItemIds());
+        assertEquals(Collections.singleton(12L), first.getDeletedItemIds());
+        assertNotNull(first.toString());
+    }
+}
@@ -1,6 +1,8 @@
 package de.danoeh.antennapod.storage.database;
 
 import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
 import de.danoeh.antennapod.model.download.DownloadError;
 import de.danoeh.antennapod.model.download.DownloadResult;
 import de.danoeh.antennapod.model.feed.Feed;
@@ -292,6 +294,90 @@ public class FeedDatabaseWriterTest {
         assertEquals("id 0-duplicate", updatedItem.getItemIdentifier()); // Should use the new ID for sync etc
     }
 
+    @Test
+    public void testUpdateLargeFeedOnlyWritesNewItems() {
+        final int numItems = 5000;
+        Feed feed = createFeed();
+        for (int i = 0; i < numItems; i++) {
+            feed.getItems().add(createItem("item-" + i, "Item " + i, new Date(i * 3600000L), feed));
+        }
+        feed = FeedDatabaseWriter.updateFeed(context, feed, false);
+
+        Feed updatedFeed = createFeed();
+        for (int i = 0; i < numItems + 2; i++) {
+            updatedFeed.getItems().add(createItem("item-" + i, "Item " + i, new Date(i * 3600000L), updatedFeed));
+        }
+        SQLiteDatabase db = SQLiteDatabase.openDatabase(
+                context.getDatabasePath(PodDBAdapter.DATABASE_NAME).getAbsolutePath(),
+                null, SQLiteDatabase.OPEN_READWRITE);
+        String[] tables = {PodDBAdapter.TABLE_NAME_FEED_ITEMS, PodDBAdapter.TABLE_NAME_FEED_MEDIA};
+        addWriteCounters(db, tables);
+        FeedDatabaseWriter.updateFeed(context, updatedFeed, false);
+
+        int itemWrites = getWriteCount(db, PodDBAdapter.TABLE_NAME_FEED_ITEMS);
+        int mediaWrites = getWriteCount(db, PodDBAdapter.TABLE_NAME_FEED_MEDIA);
+        removeWriteCounters(db, tables);
+        db.close();
+        assertEquals(2, itemWrites);
+        assertEquals(2, mediaWrites);
+
+        List<FeedItem> dbItems = DBReader.getFeedItemList(feed, FeedItemFilter.unfiltered(),
+                SortOrder.DATE_NEW_OLD, 0, Integer.MAX_VALUE);
+        assertEquals(numItems + 2, dbItems.size());
+        assertEquals("item-" + (numItems + 1), dbItems.get(0).getItemIdentifier());
+    }
+
+    @Test
+    public void testUpdateChangedDescription() {
+        Feed feed = createFeed();
+        for (int i = 0; i < 3; i++) {
+            feed.getItems().add(createItem("item-" + i, "Item " + i, new Date(i * 3600000L), feed));
+        }
+        feed = FeedDatabaseWriter.updateFeed(context, feed, false);
+
+        Feed updatedFeed = createFeed();
+        for (int i = 0; i < 3; i++) {
+            updatedFeed.getItems().add(createItem("item-" + i, "Item " + i, new Date(i * 3600000L), updatedFeed));
+        }
+        updatedFeed.getItems().get(1).setDescriptionIfLonger("A changed and longer description");
+        FeedDatabaseWriter.updateFeed(context, updatedFeed, false);
+
+        List<FeedItem> dbItems = DBReader.getFeedItemList(feed, FeedItemFilter.unfiltered(),
+                SortOrder.EPISODE_TITLE_A_Z, 0, Integer.MAX_VALUE);
+        DBReader.loadDescriptionOfFeedItem(dbItems.get(1));
+        assertEquals("A changed and longer description", dbItems.get(1).getDescription());
+        DBReader.loadDescriptionOfFeedItem(dbItems.get(2));
+        assertEquals("Description of Item 2", dbItems.get(2).getDescription());
+    }
+
+    /**
+     * Counts inserted and updated rows with triggers.
+     */
+    private static void addWriteCounters(SQLiteDatabase db, String[] tables) {
+        db.execSQL("CREATE TABLE WriteCounts (name TEXT PRIMARY KEY, count INTEGER)");
+        for (String table : tables) {
+            db.execSQL("INSERT INTO WriteCounts VALUES ('" + table + "', 0)");
+            for (String operation : new String[]{"INSERT", "UPDATE"}) {
+                db.execSQL("CREATE TRIGGER count_" + operation + "_" + table + " AFTER " + operation + " ON " + table
+                        + " BEGIN UPDATE WriteCounts SET count = count + 1 WHERE name = '" + table + "'; END");
+            }
+        }
+    }
+
+    private static int getWriteCount(SQLiteDatabase db, String table) {
+        try (Cursor cursor = db.rawQuery("SELECT count FROM WriteCounts WHERE name = ?", new String[]{table})) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getInt(0);
+        }
+    }
+
+    private static void removeWriteCounters(SQLiteDatabase db, String[] tables) {
+        for (String table : tables) {
+            db.execSQL("DROP TRIGGER count_INSERT_" + table);
+            db.execSQL("DROP TRIGGER count_UPDATE_" + table);
+        }
+        db.execSQL("DROP TABLE WriteCounts");
+    }
 
     @SuppressWarnings("SameParameterValue")
     private void updatedFeedTest(final Feed newFeed, long feedID, List<Long> itemIDs,
@@ -324,6 +410,13 @@ public class FeedDatabaseWriterTest {
         return feed;
     }
 
+    private FeedItem createItem(String identifier, String title, Date pubDate, Feed feed) {
+        FeedItem item = createItem(identifier, title, feed);
+        item.setPubDate(pubDate);
+        item.setDescriptionIfLonger("Description of " + title);
+        return item;
+    }
+
     private FeedItem createItem(String identifier, String title, Feed feed) {
         FeedItem item = new FeedItem();
         item.setItemIdentifier(identifier);
@@ -0,0 +1,69 @@
+package de.danoeh.antennapod.storage.database;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import static de.danoeh.antennapod.storage.database.ReleaseScheduleGuesser.ONE_DAY;
+import static de.danoeh.antennapod.storage.database.ReleaseScheduleGuesser.ONE_HOUR;
+import static de.danoeh.antennapod.storage.database.ReleaseScheduleGuesser.ONE_WEEK;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FeedRefreshSchedulerTest {
+    private static final long NOW = 1700000000000L;
+
+    private static List<Date> releasesEvery(long interval, long lastRelease) {
+        List<Date> dates = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            dates.add(new Date(lastRelease - i * interval));
+        }
+        return dates;
+    }
+
+    @Test
+    public void testWeeklyFeedIsCheckedDailyBeforeRelease() {
+        List<Date> releaseDates = releasesEvery(ONE_WEEK, NOW - ONE_DAY);
+        long due = FeedRefreshScheduler.getNextRefreshDue(releaseDates, 0, ONE_HOUR, NOW);
+        assertEquals(NOW + FeedRefreshScheduler.MAX_INTERVAL, due);
+    }
+
+    @Test
+    public void testWeeklyFeedIsCheckedAtExpectedRelease() {
+        long lastRelease = NOW - ONE_WEEK + 3 * ONE_HOUR;
+        List<Date> releaseDates = releasesEvery(ONE_WEEK, lastRelease);
+        long due = FeedRefreshScheduler.getNextRefreshDue(releaseDates, 0, ONE_HOUR, NOW);
+        assertTrue(due >= NOW + ONE_HOUR);
+        assertTrue(due <= lastRelease + ONE_WEEK + ONE_HOUR);
+    }
+
+    @Test
+    public void testLateReleaseIsCheckedLessOftenOverTime() {
+        long slightlyLate = FeedRefreshScheduler.getNextRefreshDue(
+                releasesEvery(ONE_WEEK, NOW - ONE_WEEK - ONE_HOUR), 3, ONE_HOUR, NOW);
+        long veryLate = FeedRefreshScheduler.getNextRefreshDue(
+                releasesEvery(ONE_WEEK, NOW - ONE_WEEK - 12 * ONE_HOUR), 3, ONE_HOUR, NOW);
+        assertEquals(NOW + ONE_HOUR, slightlyLate);
+        assertTrue(veryLate > NOW + 4 * ONE_HOUR);
+        assertTrue(veryLate <= NOW + FeedRefreshScheduler.MAX_INTERVAL);
+    }
+
+    @Test
+    public void testUnknownScheduleBacksOff() {
+        List<Date> releaseDates = new ArrayList<>();
+        releaseDates.add(new Date(NOW - ONE_DAY));
+        assertEquals(NOW + ONE_HOUR, FeedRefreshScheduler.getNextRefreshDue(releaseDates, 0, ONE_HOUR, NOW));
+        assertEquals(NOW + 4 * ONE_HOUR, FeedRefreshScheduler.getNextRefreshDue(releaseDates, 2, ONE_HOUR, NOW));
+        assertEquals(NOW + FeedRefreshScheduler.MAX_INTERVAL,
+                FeedRefreshScheduler.getNextRefreshDue(releaseDates, 100, ONE_HOUR, NOW));
+    }
+
+    @Test
+    public void testLongUserIntervalIsRespected() {
+        List<Date> releaseDates = releasesEvery(ONE_DAY, NOW - ONE_HOUR);
+        long userInterval = 2 * ONE_DAY;
+        assertEquals(NOW + userInterval, FeedRefreshScheduler.getNextRefreshDue(releaseDates, 0, userInterval, NOW));
+    }
+}
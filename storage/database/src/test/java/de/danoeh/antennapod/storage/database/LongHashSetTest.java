@@ -0,0 +1,86 @@
+package de.danoeh.antennapod.storage.database;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class LongHashSetTest {
+
+    @Test
+    public void testAddContainsRemove() {
+        LongHashSet set = LongHashSet.of(1, 2, 3, 0, -5);
+        assertEquals(5, set.size());
+        assertTrue(set.contains(0));
+        assertTrue(set.contains(-5));
+        assertFalse(set.contains(4));
+        assertFalse(set.add(2));
+        assertTrue(set.remove(2));
+        assertFalse(set.remove(2));
+        assertFalse(set.contains(2));
+        assertTrue(set.remove(0));
+        assertFalse(set.contains(0));
+        assertEquals(3, set.size());
+
+        long[] values = set.toArray();
+        Arrays.sort(values);
+        assertArrayEquals(new long[]{-5, 1, 3}, values);
+
+        set.clear();
+        assertTrue(set.isEmpty());
+        assertFalse(set.contains(1));
+    }
+
+    @Test
+    public void testSameAsHashSet() {
+        Random random = new Random(42);
+        LongHashSet set = new LongHashSet();
+        Set<Long> expected = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            // Small range, so that there are a lot of collisions and removals of existing values
+            long value = random.nextInt(2000) - 100;
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(value), set.remove(value));
+            } else {
+                assertEquals(expected.add(value), set.add(value));
+            }
+            assertEquals(expected.size(), set.size());
+        }
+        for (long value = -200; value < 2100; value++) {
+            assertEquals(expected.contains(value), set.contains(value));
+        }
+    }
+
+    @Test
+    public void testDatabaseIdsNeedFewProbes() {
+        // Database IDs are mostly consecutive, which must not turn the linear probing into a linear search
+        final int numIds = 5000;
+        int mask = LongHashing.tableSize(numIds, 0.5f) - 1;
+        boolean[] used = new boolean[mask + 1];
+        int maxProbes = 0;
+        int totalProbes = 0;
+        for (long id = 1; id <= numIds; id++) {
+            int slot = LongHashing.hash(id) & mask;
+            int probes = 1;
+            while (used[slot]) {
+                slot = (slot + 1) & mask;
+                probes++;
+            }
+            used[slot] = true;
+            maxProbes = Math.max(maxProbes, probes);
+            totalProbes += probes;
+        }
+        assertTrue("Average probes: " + (float) totalProbes / numIds, totalProbes < 2 * numIds);
+        assertTrue("Max probes: " + maxProbes, maxProbes <= 32);
+    }
+}
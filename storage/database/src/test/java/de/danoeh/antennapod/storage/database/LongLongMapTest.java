@@ -0,0 +1,65 @@
+package de.danoeh.antennapod.storage.database;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(JUnit4.class)
+public class LongLongMapTest {
+
+    @Test
+    public void testPutGetRemove() {
+        LongLongMap map = new LongLongMap();
+        map.put(1, 10);
+        map.put(0, 20);
+        assertEquals(10, map.put(1, 11, -1));
+        assertEquals(-1, map.put(2, 12, -1));
+        assertEquals(3, map.size());
+        assertEquals(11, map.get(1, -1));
+        assertEquals(20, map.get(0, -1));
+        assertEquals(-1, map.get(3, -1));
+        assertTrue(map.containsKey(2));
+        assertFalse(map.containsKey(3));
+
+        assertEquals(12, map.remove(2, -1));
+        assertEquals(-1, map.remove(2, -1));
+        assertEquals(20, map.remove(0, -1));
+        assertFalse(map.containsKey(0));
+        assertEquals(1, map.size());
+
+        map.clear();
+        assertTrue(map.isEmpty());
+        assertEquals(-1, map.get(1, -1));
+    }
+
+    @Test
+    public void testSameAsHashMap() {
+        Random random = new Random(42);
+        LongLongMap map = new LongLongMap();
+        Map<Long, Long> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            long key = random.nextInt(2000) - 100;
+            if (random.nextInt(3) == 0) {
+                Long previous = expected.remove(key);
+                assertEquals(previous == null ? -1 : previous, map.remove(key, -1));
+            } else {
+                long value = random.nextLong();
+                Long previous = expected.put(key, value);
+                assertEquals(previous == null ? -1 : previous, map.put(key, value, -1));
+            }
+            assertEquals(expected.size(), map.size());
+        }
+        for (long key = -200; key < 2100; key++) {
+            Long value = expected.get(key);
+            assertEquals(value == null ? -1 : value, map.get(key, -1));
+        }
+    }
+}
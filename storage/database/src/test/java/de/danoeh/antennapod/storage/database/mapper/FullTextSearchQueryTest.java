@@ -0,0 +1,42 @@
+package de.danoeh.antennapod.storage.database.mapper;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+
+public class FullTextSearchQueryTest {
+    @Test
+    public void testSingleWord() {
+        assertEquals("podcast*", FullTextSearchQuery.generateFrom("Podcast"));
+    }
+
+    @Test
+    public void testMultipleWords() {
+        assertEquals("linux* kernel*", FullTextSearchQuery.generateFrom("  linux   Kernel "));
+    }
+
+    @Test
+    public void testColumn() {
+        assertEquals("title:linux* title:kernel*", FullTextSearchQuery.generateFrom("linux kernel", "title"));
+    }
+
+    @Test
+    public void testOperatorsAndQuotesAreRemoved() {
+        assertEquals("a* or* b* c*", FullTextSearchQuery.generateFrom("\"a\" OR b-c*"));
+        assertEquals("", FullTextSearchQuery.generateFrom("\"' * -"));
+        assertEquals("", FullTextSearchQuery.generateFrom(null));
+    }
+
+    @Test
+    public void testNonAsciiWords() {
+        assertEquals("größe* 東京*", FullTextSearchQuery.generateFrom("Größe 東京"));
+    }
+
+    @Test
+    public void testContainsPatterns() {
+        assertEquals(Arrays.asList("cast", "東京"), FullTextSearchQuery.getWords("Cast, %東京_"));
+        assertEquals("%cast%", FullTextSearchQuery.toContainsPattern("cast"));
+    }
+}
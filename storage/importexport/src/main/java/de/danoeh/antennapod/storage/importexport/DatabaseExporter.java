@@ -20,6 +20,8 @@ import java.io.InputStream;
 public class DatabaseExporter {
     private static final String TAG = "DatabaseExporter";
     private static final String TEMP_DB_NAME = PodDBAdapter.DATABASE_NAME + "_tmp";
+    private static final int CHECKPOINT_ATTEMPTS = 5;
+    private static final long CHECKPOINT_RETRY_DELAY_MS = 500;
 
     public static void exportToDocument(Uri uri, Context context) throws IOException {
         ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "wt");
@@ -47,6 +49,7 @@ public class DatabaseExporter {
         if (!currentDB.exists()) {
             throw new IOException("Cannot access current database");
         }
+        checkpoint();
         try (InputStream src = new FileInputStream(currentDB)) {
             return IOUtils.copy(src, outFileStream);
         } catch (IOException e) {
@@ -55,6 +58,28 @@ public class DatabaseExporter {
         }
     }
 
+    /**
+     * Recent changes might still be in the write-ahead log. Copying the database file without them
+     * would silently create an outdated backup, so the export fails if they cannot be written back.
+     */
+    private static void checkpoint() throws IOException {
+        PodDBAdapter adapter = PodDBAdapter.getInstance();
+        adapter.open();
+        try {
+            for (int attempt = 0; attempt < CHECKPOINT_ATTEMPTS; attempt++) {
+                if (adapter.checkpoint()) {
+                    return;
+                }
+                Thread.sleep(CHECKPOINT_RETRY_DELAY_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            adapter.close();
+        }
+        throw new IOException("Database is busy, unable to write recent changes to the backup");
+    }
+
     public static void importBackup(Uri inputUri, Context context) throws IOException {
         InputStream inputStream = null;
         try {
@@ -70,7 +95,8 @@ public class DatabaseExporter {
             db.close();
 
             File currentDB = context.getDatabasePath(PodDBAdapter.DATABASE_NAME);
-            boolean success = currentDB.delete();
+            // Also deletes the write-ahead log, which must not be applied to the imported file
+            boolean success = SQLiteDatabase.deleteDatabase(currentDB);
             if (!success) {
                 throw new IOException("Unable to delete old database");
             }
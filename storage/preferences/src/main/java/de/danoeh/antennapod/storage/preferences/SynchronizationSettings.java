@@ -10,6 +10,7 @@ public class SynchronizationSettings {
     private static final String LAST_SYNC_ATTEMPT_SUCCESS = "last_sync_attempt_success";
     private static final String LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP = "last_episode_actions_sync_timestamp";
     private static final String LAST_SUBSCRIPTION_SYNC_TIMESTAMP = "last_sync_timestamp";
+    private static final String PLAYED_EPISODES_UPLOAD_CHECKPOINT = "played_episodes_upload_checkpoint";
 
     private static SharedPreferences prefs;
 
@@ -26,6 +27,7 @@ public class SynchronizationSettings {
                 .putLong(LAST_SUBSCRIPTION_SYNC_TIMESTAMP, 0)
                 .putLong(LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP, 0)
                 .putLong(LAST_SYNC_ATTEMPT_TIMESTAMP, 0)
+                .putLong(PLAYED_EPISODES_UPLOAD_CHECKPOINT, 0)
                 .apply();
     }
 
@@ -68,4 +70,16 @@ public class SynchronizationSettings {
     public static void setLastEpisodeActionSynchronizationAttemptTimestamp(long timestamp) {
         prefs.edit().putLong(LAST_EPISODE_ACTIONS_SYNC_TIMESTAMP, timestamp).apply();
     }
+
+    /**
+     * ID of the last played episode whose state was uploaded during the first synchronization.
+     * An interrupted first synchronization continues after this episode.
+     */
+    public static long getPlayedEpisodesUploadCheckpoint() {
+        return prefs.getLong(PLAYED_EPISODES_UPLOAD_CHECKPOINT, 0);
+    }
+
+    public static void setPlayedEpisodesUploadCheckpoint(long itemId) {
+        prefs.edit().putLong(PLAYED_EPISODES_UPLOAD_CHECKPOINT, itemId).apply();
+    }
 }
@@ -101,6 +101,8 @@ public abstract class UserPreferences {
     public static final String PREF_AUTODL_GLOBAL = "prefEnableAutoDl";
     public static final String PREF_AUTODL_QUEUE = "prefEnableAutoDlQueue";
     public static final String PREF_ENABLE_AUTODL_ON_BATTERY = "prefEnableAutoDownloadOnBattery";
+    public static final String PREF_MAX_PARALLEL_DOWNLOADS = "prefMaxParallelDownloads";
+    public static final String PREF_DOWNLOAD_SPEED_LIMIT = "prefDownloadSpeedLimit";
     private static final String PREF_PROXY_TYPE = "prefProxyType";
     private static final String PREF_PROXY_HOST = "prefProxyHost";
     private static final String PREF_PROXY_PORT = "prefProxyPort";
@@ -485,6 +487,17 @@ public abstract class UserPreferences {
         return isAllowMobileFor("episode_download");
     }
 
+    public static int getMaxParallelDownloads() {
+        return Integer.parseInt(prefs.getString(PREF_MAX_PARALLEL_DOWNLOADS, "3"));
+    }
+
+    /**
+     * @return Maximum combined speed of episode downloads in KB/s, or 0 for no limit
+     */
+    public static int getDownloadSpeedLimit() {
+        return Integer.parseInt(prefs.getString(PREF_DOWNLOAD_SPEED_LIMIT, "0"));
+    }
+
     public static boolean isAllowMobileAutoDownload() {
         return isAllowMobileFor("auto_download");
     }
@@ -3,6 +3,7 @@ package de.danoeh.antennapod.ui.chapters;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
+import android.os.ParcelFileDescriptor;
 import android.text.TextUtils;
 import android.util.Log;
 import androidx.annotation.NonNull;
@@ -10,7 +11,13 @@ import de.danoeh.antennapod.model.feed.Chapter;
 import de.danoeh.antennapod.model.feed.FeedMedia;
 import de.danoeh.antennapod.net.common.AntennapodHttpClient;
 import de.danoeh.antennapod.storage.database.DBReader;
+import de.danoeh.antennapod.storage.database.DBWriter;
 import de.danoeh.antennapod.parser.feed.PodcastIndexChapterParser;
+import de.danoeh.antennapod.parser.media.ContainerFormat;
+import de.danoeh.antennapod.parser.media.FileChannelSource;
+import de.danoeh.antennapod.parser.media.SeekableSource;
+import de.danoeh.antennapod.parser.media.SeekableSourceInputStream;
+import de.danoeh.antennapod.parser.media.SequentialSource;
 import de.danoeh.antennapod.parser.media.id3.ChapterReader;
 import de.danoeh.antennapod.parser.media.id3.ID3ReaderException;
 import de.danoeh.antennapod.model.playback.Playable;
@@ -20,9 +27,8 @@ import de.danoeh.antennapod.parser.media.m4a.M4AChapterReader;
 import okhttp3.CacheControl;
 import okhttp3.Request;
 import okhttp3.Response;
-import org.apache.commons.io.input.CountingInputStream;
+import org.apache.commons.io.IOUtils;
 
-import java.io.BufferedInputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -51,6 +57,8 @@ public class ChapterUtils {
         try {
             List<Chapter> chaptersFromDatabase = null;
             List<Chapter> chaptersFromPodcastIndex = null;
+            String fingerprint = null;
+            boolean cacheable = true;
             if (playable instanceof FeedMedia) {
                 FeedMedia feedMedia = (FeedMedia) playable;
                 if (feedMedia.getItem() == null) {
@@ -59,15 +67,34 @@ public class ChapterUtils {
                 if (feedMedia.getItem().hasChapters()) {
                     chaptersFromDatabase = DBReader.loadChaptersOfFeedItem(feedMedia.getItem());
                 }
+                fingerprint = getChapterFingerprint(feedMedia, chaptersFromDatabase);
+                if (!forceRefresh) {
+                    List<Chapter> cachedChapters = DBReader.loadCachedChapters(feedMedia.getItemId(), fingerprint);
+                    if (cachedChapters != null) {
+                        Log.d(TAG, "Using cached chapters");
+                        playable.setChapters(cachedChapters);
+                        return;
+                    }
+                }
 
                 if (!TextUtils.isEmpty(feedMedia.getItem().getPodcastIndexChapterUrl())) {
                     chaptersFromPodcastIndex = ChapterUtils.loadChaptersFromUrl(
                             feedMedia.getItem().getPodcastIndexChapterUrl(), forceRefresh);
+                    // Failed requests and dummy chapters of publishers are loaded again next time
+                    cacheable = chaptersFromPodcastIndex != null && chaptersFromPodcastIndex.size() > 1;
                 }
 
             }
 
-            List<Chapter> chaptersFromMediaFile = ChapterUtils.loadChaptersFromMediaFile(playable, context);
+            List<Chapter> chaptersFromMediaFile = null;
+            try {
+                chaptersFromMediaFile = readChaptersFromMediaFile(playable, context);
+            } catch (InterruptedIOException e) {
+                throw e;
+            } catch (IOException e) {
+                Log.e(TAG, "Unable to load chapters from media file: " + e.getMessage());
+                cacheable = false;
+            }
             List<Chapter> chaptersMergePhase1 = ChapterMerger.merge(chaptersFromDatabase, chaptersFromMediaFile);
             List<Chapter> chapters = ChapterMerger.merge(chaptersMergePhase1, chaptersFromPodcastIndex);
             if (chapters == null) {
@@ -76,54 +103,94 @@ public class ChapterUtils {
             } else {
                 playable.setChapters(chapters);
             }
+            if (fingerprint != null && cacheable) {
+                DBWriter.setCachedChapters(((FeedMedia) playable).getItemId(), fingerprint, playable.getChapters());
+            }
         } catch (InterruptedIOException e) {
             Log.d(TAG, "Chapter loading interrupted");
             playable.setChapters(null); // Allow later retry
         }
     }
 
+    /**
+     * Reads the chapters embedded in the media file. The file is opened only once. Its container is detected
+     * from the first bytes, so only the matching parser reads it. Remote files are read with range requests,
+     * so only the parts that the parser needs are downloaded.
+     */
     public static List<Chapter> loadChaptersFromMediaFile(Playable playable, Context context)
             throws InterruptedIOException {
-        try (CountingInputStream in = openStream(playable, context)) {
-            List<Chapter> chapters = readId3ChaptersFrom(in);
-            if (!chapters.isEmpty()) {
-                Log.i(TAG, "Chapters loaded");
-                return chapters;
-            }
+        try {
+            return readChaptersFromMediaFile(playable, context);
         } catch (InterruptedIOException e) {
             throw e;
-        } catch (IOException | ID3ReaderException e) {
-            Log.e(TAG, "Unable to load ID3 chapters: " + e.getMessage());
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to load chapters from media file: " + e.getMessage());
         }
+        return null;
+    }
 
-        try (CountingInputStream in = openStream(playable, context)) {
-            List<Chapter> chapters = readOggChaptersFromInputStream(in);
+    /**
+     * @return The chapters, or null if the file has no chapters or they could not be parsed
+     * @throws IOException If the file could not be read, so trying again later might work
+     */
+    private static List<Chapter> readChaptersFromMediaFile(Playable playable, Context context) throws IOException {
+        try (SeekableSource source = openSource(playable, context)) {
+            SeekableSourceInputStream in = new SeekableSourceInputStream(source);
+            byte[] header = new byte[ContainerFormat.HEADER_LENGTH];
+            in.mark(header.length);
+            int headerLength = IOUtils.read(in, header);
+            in.reset();
+            List<Chapter> chapters;
+            switch (ContainerFormat.detect(header, headerLength)) {
+                case ContainerFormat.ID3:
+                    chapters = readId3ChaptersFrom(in);
+                    break;
+                case ContainerFormat.OGG:
+                    chapters = readOggChaptersFromInputStream(in);
+                    break;
+                case ContainerFormat.MP4:
+                    chapters = readM4AChaptersFrom(in);
+                    break;
+                default:
+                    Log.d(TAG, "No chapter parser for this container");
+                    return null;
+            }
             if (!chapters.isEmpty()) {
                 Log.i(TAG, "Chapters loaded");
                 return chapters;
             }
-        } catch (InterruptedIOException e) {
-            throw e;
-        } catch (IOException | VorbisCommentReaderException e) {
-            Log.e(TAG, "Unable to load vorbis chapters: " + e.getMessage());
+        } catch (ID3ReaderException | VorbisCommentReaderException e) {
+            Log.e(TAG, "Unable to load chapters from media file: " + e.getMessage());
         }
+        return null;
+    }
 
-        try (CountingInputStream in = openStream(playable, context)) {
-            List<Chapter> chapters = readM4AChaptersFromInputStream(in);
-            if (!chapters.isEmpty()) {
-                Log.i(TAG, "Chapters loaded");
-                return chapters;
+    /**
+     * Describes where the chapters of the media come from. If the file, the chapters of the feed
+     * or one of the URLs changes, the cached chapters are not used anymore.
+     */
+    private static String getChapterFingerprint(FeedMedia media, List<Chapter> chaptersFromDatabase) {
+        StringBuilder fingerprint = new StringBuilder();
+        if (media.localFileAvailable() && media.getLocalFileUrl() != null) {
+            File file = new File(media.getLocalFileUrl());
+            fingerprint.append("file ").append(file.length()).append(' ').append(file.lastModified());
+        } else {
+            fingerprint.append("stream ").append(media.getStreamUrl()).append(' ').append(media.getSize());
+        }
+        StringBuilder feedChapters = new StringBuilder();
+        if (chaptersFromDatabase != null) {
+            for (Chapter chapter : chaptersFromDatabase) {
+                feedChapters.append(chapter.getStart()).append(' ').append(chapter.getTitle())
+                        .append(' ').append(chapter.getLink()).append(' ').append(chapter.getImageUrl()).append('\n');
             }
-        } catch (InterruptedIOException e) {
-            throw e;
-        } catch (IOException e) {
-            Log.e(TAG, "Unable to open stream " + e.getMessage());
         }
-
-        return null;
+        fingerprint.append("\nfeed ").append(media.getItem().hasChapters())
+                .append(' ').append(Integer.toHexString(feedChapters.toString().hashCode()));
+        fingerprint.append("\npodcastindex ").append(media.getItem().getPodcastIndexChapterUrl());
+        return fingerprint.toString();
     }
 
-    private static CountingInputStream openStream(Playable playable, Context context) throws IOException {
+    private static SeekableSource openSource(Playable playable, Context context) throws IOException {
         if (playable.localFileAvailable()) {
             if (playable.getLocalFileUrl() == null) {
                 throw new IOException("No local url");
@@ -132,17 +199,22 @@ public class ChapterUtils {
             if (!source.exists()) {
                 throw new IOException("Local file does not exist");
             }
-            return new CountingInputStream(new BufferedInputStream(new FileInputStream(source)));
+            return new FileChannelSource(new FileInputStream(source).getChannel());
         } else if (playable.getStreamUrl().startsWith(ContentResolver.SCHEME_CONTENT)) {
             Uri uri = Uri.parse(playable.getStreamUrl());
-            return new CountingInputStream(new BufferedInputStream(context.getContentResolver().openInputStream(uri)));
-        } else {
-            Request request = new Request.Builder().url(playable.getStreamUrl()).build();
-            Response response = AntennapodHttpClient.getHttpClient().newCall(request).execute();
-            if (response.body() == null) {
-                throw new IOException("Body is null");
+            ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(uri, "r");
+            if (descriptor == null) {
+                throw new IOException("Unable to open " + uri);
             }
-            return new CountingInputStream(new BufferedInputStream(response.body().byteStream()));
+            long length = descriptor.getStatSize();
+            InputStream input = new ParcelFileDescriptor.AutoCloseInputStream(descriptor);
+            if (length < 0) {
+                // Pipe or socket, no random access possible
+                return new SequentialSource(input, -1);
+            }
+            return new FileChannelSource(((FileInputStream) input).getChannel());
+        } else {
+            return new HttpRangeSource(AntennapodHttpClient.getHttpClient(), playable.getStreamUrl());
         }
     }
 
@@ -180,7 +252,8 @@ public class ChapterUtils {
     }
 
     @NonNull
-    private static List<Chapter> readId3ChaptersFrom(CountingInputStream in) throws IOException, ID3ReaderException {
+    private static List<Chapter> readId3ChaptersFrom(SeekableSourceInputStream in)
+            throws IOException, ID3ReaderException {
         ChapterReader reader = new ChapterReader(in);
         reader.readInputStream();
         List<Chapter> chapters = reader.getChapters();
@@ -195,7 +268,7 @@ public class ChapterUtils {
 
     @NonNull
     private static List<Chapter> readOggChaptersFromInputStream(InputStream input) throws VorbisCommentReaderException {
-        VorbisCommentChapterReader reader = new VorbisCommentChapterReader(new BufferedInputStream(input));
+        VorbisCommentChapterReader reader = new VorbisCommentChapterReader(input);
         reader.readInputStream();
         List<Chapter> chapters = reader.getChapters();
         if (chapters == null) {
@@ -210,8 +283,8 @@ public class ChapterUtils {
     }
 
     @NonNull
-    private static List<Chapter> readM4AChaptersFromInputStream(InputStream input) {
-        M4AChapterReader reader = new M4AChapterReader(new BufferedInputStream(input));
+    private static List<Chapter> readM4AChaptersFrom(SeekableSourceInputStream input) {
+        M4AChapterReader reader = new M4AChapterReader(input);
         reader.readInputStream();
         List<Chapter> chapters = reader.getChapters();
         if (chapters == null) {
@@ -0,0 +1,175 @@
+package de.danoeh.antennapod.ui.chapters;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import de.danoeh.antennapod.parser.media.SequentialSource;
+import de.danoeh.antennapod.parser.media.SeekableSource;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.apache.commons.io.IOUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reads parts of a remote media file with HTTP range requests, so that finding the chapters of a streamed
+ * episode does not download the whole file. Data is fetched in blocks. Reading on where the last request
+ * ended fetches more blocks at once. Servers that do not support ranges are read from start to end instead.
+ */
+class HttpRangeSource implements SeekableSource {
+    private static final String TAG = "HttpRangeSource";
+    static final int BLOCK_SIZE = 64 * 1024;
+    private static final int MAX_READ_AHEAD_BLOCKS = 16;
+    private static final int MAX_CACHED_BLOCKS = 64;
+
+    private final OkHttpClient client;
+    private final String url;
+    private final Map<Long, byte[]> blocks = new LinkedHashMap<Long, byte[]>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, byte[]> eldest) {
+            return size() > MAX_CACHED_BLOCKS;
+        }
+    };
+    private long length = -1;
+    private long nextBlock = -1;
+    private int readAheadBlocks = 1;
+    @Nullable
+    private SequentialSource fallback = null;
+
+    HttpRangeSource(OkHttpClient client, String url) {
+        this.client = client;
+        this.url = url;
+    }
+
+    @Override
+    public long length() throws IOException {
+        if (length < 0 && fallback == null) {
+            getBlock(0);
+        }
+        return fallback != null ? fallback.length() : length;
+    }
+
+    @Override
+    public int read(long position, byte[] buffer, int offset, int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (length >= 0 && position >= length) {
+            return -1;
+        }
+        long index = position / BLOCK_SIZE;
+        byte[] block = getBlock(index);
+        if (fallback != null) {
+            return fallback.read(position, buffer, offset, count);
+        }
+        int positionInBlock = (int) (position - index * BLOCK_SIZE);
+        if (positionInBlock >= block.length) {
+            return -1;
+        }
+        int read = Math.min(count, block.length - positionInBlock);
+        System.arraycopy(block, positionInBlock, buffer, offset, read);
+        return read;
+    }
+
+    private byte[] getBlock(long index) throws IOException {
+        byte[] block = blocks.get(index);
+        if (block != null || fallback != null) {
+            return block;
+        }
+        readAheadBlocks = index == nextBlock ? Math.min(2 * readAheadBlocks, MAX_READ_AHEAD_BLOCKS) : 1;
+        long start = index * BLOCK_SIZE;
+        long end = start + (long) readAheadBlocks * BLOCK_SIZE;
+        if (length >= 0) {
+            end = Math.min(end, length);
+        }
+        Log.d(TAG, "Requesting bytes " + start + " to " + end + " of " + url);
+        Request request = new Request.Builder().url(url).header("Range", "bytes=" + start + "-" + (end - 1)).build();
+        Response response = client.newCall(request).execute();
+        ResponseBody body = response.body();
+        if (response.code() == HttpURLConnection.HTTP_OK && body != null) {
+            Log.d(TAG, "Server does not support ranges, reading sequentially");
+            fallback = new SequentialSource(body.byteStream(), body.contentLength());
+            return null;
+        }
+        try {
+            if (response.code() == 416) { // Range not satisfiable, so the file ends before the start
+                length = start;
+                return new byte[0];
+            } else if (response.code() != HttpURLConnection.HTTP_PARTIAL || body == null) {
+                throw new IOException("Unexpected response code " + response.code());
+            }
+            long total = parseTotalLength(response.header("Content-Range"), start);
+            if (total >= 0) {
+                length = total;
+            }
+            readBlocks(body.byteStream(), index);
+        } finally {
+            response.close();
+        }
+        block = blocks.get(index);
+        return block != null ? block : new byte[0];
+    }
+
+    private void readBlocks(InputStream in, long index) throws IOException {
+        long current = index;
+        while (current < index + readAheadBlocks) {
+            byte[] buffer = new byte[BLOCK_SIZE];
+            int count = IOUtils.read(in, buffer);
+            if (count == 0) {
+                break;
+            }
+            if (count < BLOCK_SIZE) {
+                byte[] shortBlock = new byte[count];
+                System.arraycopy(buffer, 0, shortBlock, 0, count);
+                buffer = shortBlock;
+            }
+            blocks.put(current, buffer);
+            current++;
+            if (count < BLOCK_SIZE) {
+                break;
+            }
+        }
+        nextBlock = current;
+    }
+
+    /**
+     * Parses a Content-Range header like "bytes 0-499/1234".
+     *
+     * @return The total length, or -1 if unknown
+     * @throws IOException If the range does not start at the requested position
+     */
+    private static long parseTotalLength(@Nullable String contentRange, long expectedStart) throws IOException {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            throw new IOException("Invalid Content-Range " + contentRange);
+        }
+        int dash = contentRange.indexOf('-');
+        int slash = contentRange.indexOf('/');
+        if (dash < 0 || slash < dash) {
+            throw new IOException("Invalid Content-Range " + contentRange);
+        }
+        try {
+            long start = Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+            if (start != expectedStart) {
+                throw new IOException("Server sent range starting at " + start + " instead of " + expectedStart);
+            }
+            String total = contentRange.substring(slash + 1).trim();
+            return "*".equals(total) ? -1 : Long.parseLong(total);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid Content-Range " + contentRange);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fallback != null) {
+            fallback.close();
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package de.danoeh.antennapod.ui.chapters;
+
+import androidx.annotation.NonNull;
+import de.danoeh.antennapod.parser.media.SeekableSourceInputStream;
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static de.danoeh.antennapod.ui.chapters.HttpRangeSource.BLOCK_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test class for {@link HttpRangeSource}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class HttpRangeSourceTest {
+    private static final int SIZE = 4 * BLOCK_SIZE + 1000;
+
+    private final byte[] content = new byte[SIZE];
+    private final OkHttpClient client = new OkHttpClient();
+    private MockWebServer server;
+    private String url;
+
+    @Before
+    public void setUp() throws IOException {
+        new Random(42).nextBytes(content);
+        server = new MockWebServer();
+        server.start();
+        url = server.url("/episode.mp3").toString();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void testReadsOnlyRequestedRange() throws Exception {
+        server.setDispatcher(new RangeDispatcher(true));
+        try (HttpRangeSource source = new HttpRangeSource(client, url)) {
+            byte[] buffer = new byte[100];
+            assertEquals(100, source.read(2 * BLOCK_SIZE + 10, buffer, 0, 100));
+            assertArrayEquals(Arrays.copyOfRange(content, 2 * BLOCK_SIZE + 10, 2 * BLOCK_SIZE + 110), buffer);
+            assertEquals(SIZE, source.length());
+
+            // Both reads are served from the block that was fetched first
+            assertEquals(100, source.read(2 * BLOCK_SIZE + 500, buffer, 0, 100));
+            assertEquals(1, server.getRequestCount());
+            assertEquals("bytes=" + 2 * BLOCK_SIZE + "-" + (3 * BLOCK_SIZE - 1),
+                    server.takeRequest().getHeader("Range"));
+        }
+    }
+
+    @Test
+    public void testHeaderAcrossBlockEdge() throws IOException {
+        server.setDispatcher(new RangeDispatcher(true));
+        try (HttpRangeSource source = new HttpRangeSource(client, url)) {
+            SeekableSourceInputStream in = new SeekableSourceInputStream(source, BLOCK_SIZE - 4);
+            assertEquals(ByteBuffer.wrap(content, BLOCK_SIZE - 4, 8).getLong(), in.readLong());
+            assertEquals(2, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testServerWithoutRangesIsReadSequentially() throws IOException {
+        server.setDispatcher(new RangeDispatcher(false));
+        try (HttpRangeSource source = new HttpRangeSource(client, url)) {
+            byte[] buffer = new byte[100];
+            assertEquals(100, source.read(0, buffer, 0, 100));
+            assertArrayEquals(Arrays.copyOfRange(content, 0, 100), buffer);
+            assertEquals(100, source.read(3 * BLOCK_SIZE, buffer, 0, 100));
+            assertArrayEquals(Arrays.copyOfRange(content, 3 * BLOCK_SIZE, 3 * BLOCK_SIZE + 100), buffer);
+            assertEquals(SIZE, source.length());
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testRangeNotSatisfiable() throws IOException {
+        server.setDispatcher(new RangeDispatcher(true));
+        try (HttpRangeSource source = new HttpRangeSource(client, url)) {
+            byte[] buffer = new byte[100];
+            assertEquals(-1, source.read(5 * BLOCK_SIZE + 10, buffer, 0, 100));
+            assertEquals(5 * BLOCK_SIZE, source.length());
+            // The end of the file is known now, so reading behind it does not send another request
+            assertEquals(-1, source.read(6 * BLOCK_SIZE, buffer, 0, 100));
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    /**
+     * Responds like a static file server, with or without support for the Range header.
+     */
+    private class RangeDispatcher extends Dispatcher {
+        private final boolean supportsRanges;
+
+        RangeDispatcher(boolean supportsRanges) {
+            this.supportsRanges = supportsRanges;
+        }
+
+        @NonNull
+        @Override
+        public MockResponse dispatch(@NonNull RecordedRequest request) {
+            String range = request.getHeader("Range");
+            if (!supportsRanges || range == null) {
+                return new MockResponse().setResponseCode(200).setBody(new Buffer().write(content));
+            }
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            int start = Integer.parseInt(bounds[0]);
+            if (start >= SIZE) {
+                return new MockResponse().setResponseCode(416).setHeader("Content-Range", "bytes */" + SIZE);
+            }
+            int end = Math.min(Integer.parseInt(bounds[1]) + 1, SIZE);
+            return new MockResponse()
+                    .setResponseCode(206)
+                    .setHeader("Content-Range", "bytes " + start + "-" + (end - 1) + "/" + SIZE)
+                    .setBody(new Buffer().write(Arrays.copyOfRange(content, start, end)));
+        }
+    }
+}
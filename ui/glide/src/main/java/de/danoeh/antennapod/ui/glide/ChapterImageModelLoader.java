@@ -3,6 +3,7 @@ package de.danoeh.antennapod.ui.glide;
 import android.content.ContentResolver;
 import android.content.Context;
 import android.net.Uri;
+import android.util.Log;
 import androidx.annotation.NonNull;
 import com.bumptech.glide.Priority;
 import com.bumptech.glide.load.DataSource;
@@ -13,10 +14,8 @@ import com.bumptech.glide.load.model.ModelLoaderFactory;
 import com.bumptech.glide.load.model.MultiModelLoaderFactory;
 import com.bumptech.glide.signature.ObjectKey;
 import de.danoeh.antennapod.model.feed.EmbeddedChapterImage;
-import java.io.BufferedInputStream;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import de.danoeh.antennapod.net.common.AntennapodHttpClient;
@@ -53,7 +52,10 @@ public final class ChapterImageModelLoader implements ModelLoader<EmbeddedChapte
     @Override
     public LoadData<ByteBuffer> buildLoadData(@NonNull EmbeddedChapterImage model, int width,
                                               int height, @NonNull Options options) {
-        return new LoadData<>(new ObjectKey(model), new EmbeddedImageFetcher(model, context));
+        // Images of different episodes can have the same position, so the episode is part of the cache key
+        ObjectKey key = new ObjectKey(model.getMedia().getIdentifier() + "/" + model.getPosition()
+                + "/" + model.getLength());
+        return new LoadData<>(key, new EmbeddedImageFetcher(model, context));
     }
 
     @Override
@@ -62,6 +64,7 @@ public final class ChapterImageModelLoader implements ModelLoader<EmbeddedChapte
     }
 
     static class EmbeddedImageFetcher implements DataFetcher<ByteBuffer> {
+        private static final String TAG = "EmbeddedImageFetcher";
         private final EmbeddedChapterImage image;
         private final Context context;
 
@@ -73,27 +76,18 @@ public final class ChapterImageModelLoader implements ModelLoader<EmbeddedChapte
         @Override
         public void loadData(@NonNull Priority priority, @NonNull DataCallback<? super ByteBuffer> callback) {
 
-            BufferedInputStream stream = null;
             try {
-                boolean isLocalFeed = image.getMedia().getStreamUrl().startsWith(ContentResolver.SCHEME_CONTENT);
+                String streamUrl = image.getMedia().getStreamUrl();
+                boolean isLocalFeed = streamUrl != null && streamUrl.startsWith(ContentResolver.SCHEME_CONTENT);
                 if (isLocalFeed || image.getMedia().localFileAvailable()) {
-                    if (isLocalFeed) {
-                        Uri uri = Uri.parse(image.getMedia().getStreamUrl());
-                        stream = new BufferedInputStream(context.getContentResolver().openInputStream(uri));
-                    } else {
-                        File localFile = new File(image.getMedia().getLocalFileUrl());
-                        stream = new BufferedInputStream(new FileInputStream(localFile));
-                    }
-                    IOUtils.skip(stream, image.getPosition());
-                    byte[] imageContent = new byte[image.getLength()];
-                    IOUtils.read(stream, imageContent, 0, image.getLength());
-                    callback.onDataReady(ByteBuffer.wrap(imageContent));
+                    String uri = isLocalFeed ? streamUrl : image.getMedia().getLocalFileUrl();
+                    callback.onDataReady(ByteBuffer.wrap(readLocal(uri)));
                 } else {
                     Request.Builder httpReq = new Request.Builder();
                     // Skipping would download the whole file
                     httpReq.header("Range", "bytes=" + image.getPosition()
                             + "-" + (image.getPosition() + image.getLength()));
-                    httpReq.url(image.getMedia().getStreamUrl());
+                    httpReq.url(streamUrl);
                     Response response = AntennapodHttpClient.getHttpClient().newCall(httpReq.build()).execute();
                     if (!response.isSuccessful() || response.body() == null) {
                         throw new IOException("Invalid response: " + response.code() + " " + response.message());
@@ -102,6 +96,28 @@ public final class ChapterImageModelLoader implements ModelLoader<EmbeddedChapte
                 }
             } catch (IOException e) {
                 callback.onLoadFailed(e);
+            }
+        }
+
+        private byte[] readLocal(String uri) throws IOException {
+            try {
+                return MediaFileChannels.read(context, uri, image.getPosition(), image.getLength());
+            } catch (IOException e) {
+                if (!uri.startsWith(ContentResolver.SCHEME_CONTENT)) {
+                    throw e;
+                }
+                // Some providers only hand out pipes, which cannot be read at a position
+                Log.d(TAG, "Positional read failed, reading stream: " + e.getMessage());
+            }
+            InputStream stream = context.getContentResolver().openInputStream(Uri.parse(uri));
+            if (stream == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            try {
+                IOUtils.skipFully(stream, image.getPosition());
+                byte[] imageContent = new byte[image.getLength()];
+                IOUtils.readFully(stream, imageContent);
+                return imageContent;
             } finally {
                 IOUtils.closeQuietly(stream);
             }
@@ -0,0 +1,147 @@
+package de.danoeh.antennapod.ui.glide;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads parts of local media files with positional reads, so loading an embedded chapter image
+ * does not read the file up to the image. A chapter list loads many images of the same file,
+ * so the file stays open while it is used and is shared by all loads.
+ * Files that are not used for a while are closed again.
+ */
+final class MediaFileChannels {
+    private static final String TAG = "MediaFileChannels";
+    private static final int MAX_OPEN_FILES = 4;
+    private static final long CLOSE_IDLE_AFTER_MS = 30 * 1000;
+
+    private static final Map<String, Handle> handles = new LinkedHashMap<String, Handle>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Handle> eldest) {
+            if (size() <= MAX_OPEN_FILES) {
+                return false;
+            }
+            eldest.getValue().evicted = true;
+            eldest.getValue().closeIfUnused();
+            return true;
+        }
+    };
+    private static final Handler handler = new Handler(Looper.getMainLooper());
+    private static final Runnable closeIdleFiles = MediaFileChannels::closeIdleFiles;
+
+    private MediaFileChannels() {
+    }
+
+    /**
+     * Reads a part of a local media file.
+     *
+     * @param uri Path of a downloaded file or content:// uri of a local feed item
+     * @throws IOException If the file cannot be opened or ends before the requested part
+     */
+    static byte[] read(Context context, String uri, long position, int length) throws IOException {
+        Handle handle = acquire(context, uri);
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (handle.channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("File ends before position " + (position + length));
+                }
+            }
+            return buffer.array();
+        } finally {
+            release(handle);
+        }
+    }
+
+    private static Handle acquire(Context context, String uri) throws IOException {
+        synchronized (handles) {
+            Handle handle = handles.get(uri);
+            if (handle == null) {
+                handle = new Handle(open(context, uri));
+                handles.put(uri, handle);
+            }
+            handle.users++;
+            return handle;
+        }
+    }
+
+    private static void release(Handle handle) {
+        synchronized (handles) {
+            handle.users--;
+            handle.lastUsed = System.currentTimeMillis();
+            handle.closeIfUnused();
+        }
+        handler.removeCallbacks(closeIdleFiles);
+        handler.postDelayed(closeIdleFiles, CLOSE_IDLE_AFTER_MS);
+    }
+
+    private static void closeIdleFiles() {
+        List<Handle> idle = new ArrayList<>();
+        synchronized (handles) {
+            long now = System.currentTimeMillis();
+            Iterator<Handle> iterator = handles.values().iterator();
+            while (iterator.hasNext()) {
+                Handle handle = iterator.next();
+                if (handle.users == 0 && now - handle.lastUsed >= CLOSE_IDLE_AFTER_MS) {
+                    iterator.remove();
+                    idle.add(handle);
+                }
+            }
+        }
+        for (Handle handle : idle) {
+            handle.close();
+        }
+    }
+
+    private static FileChannel open(Context context, String uri) throws FileNotFoundException {
+        if (uri.startsWith(ContentResolver.SCHEME_CONTENT)) {
+            ParcelFileDescriptor descriptor = context.getContentResolver().openFileDescriptor(Uri.parse(uri), "r");
+            if (descriptor == null) {
+                throw new FileNotFoundException("Unable to open " + uri);
+            }
+            return new ParcelFileDescriptor.AutoCloseInputStream(descriptor).getChannel();
+        }
+        return new RandomAccessFile(uri, "r").getChannel();
+    }
+
+    private static class Handle {
+        final FileChannel channel;
+        int users = 0;
+        long lastUsed = 0;
+        boolean evicted = false;
+
+        Handle(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void closeIfUnused() {
+            if (evicted && users == 0) {
+                close();
+            }
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.e(TAG, Log.getStackTraceString(e));
+            }
+        }
+    }
+}